@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.benchmarks;
+
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.cache.CacheFilter;
+import com.netflix.spinnaker.cats.cache.RelationshipCacheFilter;
+import com.netflix.spinnaker.cats.cache.WriteableCache;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Shared benchmark suite for {@link WriteableCache} implementations.
+ *
+ * <p>The cache is populated once per trial with {@code itemCount} items of {@link
+ * CacheFixtures#TYPE}; each benchmark then exercises one of the hot read or write paths against
+ * that inventory. The default sizes keep a full run short; larger ones are selected with {@code
+ * -Pjmh.params="itemCount=2000000;relationshipsPerItem=50"}, or with {@code -p itemCount=2000000
+ * -p relationshipsPerItem=50} when running the jar directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public abstract class AbstractCacheBenchmark {
+  private static final int POPULATE_BATCH_SIZE = 10_000;
+
+  @Param({"10000", "100000"})
+  public int itemCount;
+
+  @Param({"5"})
+  public int relationshipsPerItem;
+
+  @Param({"500"})
+  public int batchSize;
+
+  protected WriteableCache cache;
+
+  private CacheFixtures fixtures;
+  private List<String> lookupIds;
+  private String glob;
+  private int generation;
+
+  private final CacheFilter relationshipFilter =
+      RelationshipCacheFilter.include("serverGroups", "loadBalancers");
+
+  protected abstract WriteableCache createCache() throws Exception;
+
+  protected void destroyCache() throws Exception {}
+
+  /**
+   * Stores {@code items} without evicting anything else previously written, which is what an
+   * on-demand or partial caching run does.
+   */
+  protected void store(Collection<CacheData> items) {
+    cache.mergeAll(CacheFixtures.TYPE, items);
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    cache = createCache();
+    fixtures = new CacheFixtures(relationshipsPerItem);
+
+    for (int i = 0; i < itemCount; i += POPULATE_BATCH_SIZE) {
+      store(fixtures.items(i, Math.min(i + POPULATE_BATCH_SIZE, itemCount), generation));
+    }
+
+    lookupIds = fixtures.sampleIds(itemCount, batchSize);
+    glob = CacheFixtures.glob(itemCount);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    destroyCache();
+  }
+
+  @Benchmark
+  public void mergeAll() {
+    // bump the generation so every invocation writes changed bodies rather than no-op hashes
+    generation++;
+    int from = (generation * batchSize) % Math.max(itemCount - batchSize, 1);
+    store(fixtures.items(from, Math.min(from + batchSize, itemCount), generation));
+  }
+
+  @Benchmark
+  public Collection<CacheData> getAllWithCacheFilter() {
+    return cache.getAll(CacheFixtures.TYPE, lookupIds, relationshipFilter);
+  }
+
+  @Benchmark
+  public Collection<String> filterIdentifiers() {
+    return cache.filterIdentifiers(CacheFixtures.TYPE, glob);
+  }
+
+  @Benchmark
+  public Collection<String> existingIdentifiers() {
+    return cache.existingIdentifiers(CacheFixtures.TYPE, lookupIds);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.benchmarks;
+
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.cache.DefaultCacheData;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates deterministic, instance-shaped {@link CacheData} for the cache benchmarks.
+ *
+ * <p>Identifiers follow the {@code provider:type:account:region:id} layout used by the cloud
+ * providers so that glob and prefix matching behave as they do against production keys.
+ */
+public class CacheFixtures {
+  public static final String TYPE = "instances";
+
+  static final String[] RELATIONSHIP_TYPES = {
+    "serverGroups", "loadBalancers", "securityGroups", "images", "clusters"
+  };
+
+  private final int relationshipsPerItem;
+  private final Random random = new Random(42);
+
+  public CacheFixtures(int relationshipsPerItem) {
+    this.relationshipsPerItem = relationshipsPerItem;
+  }
+
+  public static String id(int index) {
+    return String.format("aws:%s:test:us-east-1:i-%08d", TYPE, index);
+  }
+
+  /** @return a glob that matches roughly one in a thousand generated identifiers */
+  public static String glob(int itemCount) {
+    String prefix = String.format("%08d", Math.max(itemCount / 2, 1));
+    return "aws:" + TYPE + ":*:i-" + prefix.substring(0, 5) + "*";
+  }
+
+  public CacheData item(int index, int generation) {
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put("instanceId", String.format("i-%08d", index));
+    attributes.put("account", "test");
+    attributes.put("region", "us-east-1");
+    attributes.put("launchTime", 1500000000000L + index);
+    attributes.put("generation", generation);
+    attributes.put("privateIpAddress", "10.0." + (index / 256 % 256) + "." + (index % 256));
+
+    Map<String, Collection<String>> relationships = new HashMap<>();
+    for (int i = 0; i < relationshipsPerItem; i++) {
+      String relType = RELATIONSHIP_TYPES[i % RELATIONSHIP_TYPES.length];
+      relationships
+          .computeIfAbsent(relType, k -> new ArrayList<>())
+          .add(String.format("aws:%s:test:us-east-1:%s-%d", relType, relType, index % 1000 + i));
+    }
+
+    return new DefaultCacheData(id(index), attributes, relationships);
+  }
+
+  public List<CacheData> items(int fromInclusive, int toExclusive, int generation) {
+    List<CacheData> items = new ArrayList<>(toExclusive - fromInclusive);
+    for (int i = fromInclusive; i < toExclusive; i++) {
+      items.add(item(i, generation));
+    }
+    return items;
+  }
+
+  /** @return {@code count} identifiers sampled from the populated key space, ~10% of them absent */
+  public List<String> sampleIds(int itemCount, int count) {
+    List<String> ids = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int index = random.nextInt(itemCount);
+      ids.add(i % 10 == 0 ? id(itemCount + index) : id(index));
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.benchmarks;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.spinnaker.cats.cache.WriteableCache;
+import com.netflix.spinnaker.cats.redis.cache.RedisCache;
+import com.netflix.spinnaker.cats.redis.cache.RedisCacheOptions;
+import com.netflix.spinnaker.kork.jedis.EmbeddedRedis;
+import com.netflix.spinnaker.kork.jedis.JedisClientDelegate;
+import org.openjdk.jmh.annotations.Param;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Runs the cache suite against {@link RedisCache} backed by an embedded redis server.
+ *
+ * <p>{@code multiOpSize} and {@code maxMergeBatch} map onto the corresponding {@link
+ * RedisCacheOptions} so that the impact of the {@code redis.cache.*} tuning knobs can be measured.
+ */
+public class RedisCacheBenchmark extends AbstractCacheBenchmark {
+  @Param({"200"})
+  public int multiOpSize;
+
+  @Param({"200"})
+  public int maxMergeBatch;
+
+  @Param({"true"})
+  public boolean hashingEnabled;
+
+  private EmbeddedRedis embeddedRedis;
+
+  @Override
+  protected WriteableCache createCache() {
+    embeddedRedis = EmbeddedRedis.embed();
+    JedisPool pool = (JedisPool) embeddedRedis.getPool();
+    try (Jedis jedis = pool.getResource()) {
+      jedis.flushAll();
+    }
+
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    RedisCacheOptions options =
+        RedisCacheOptions.builder()
+            .multiOp(multiOpSize)
+            .maxMset(multiOpSize % 2 == 0 ? multiOpSize : multiOpSize + 1)
+            .maxMergeBatch(maxMergeBatch)
+            .hashing(hashingEnabled)
+            .build();
+
+    return new RedisCache("benchmark", new JedisClientDelegate(pool), mapper, options, null);
+  }
+
+  @Override
+  protected void destroyCache() {
+    if (embeddedRedis != null) {
+      embeddedRedis.destroy();
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.cache.WriteableCache;
+import com.netflix.spinnaker.cats.sql.cache.NoopCacheMetrics;
+import com.netflix.spinnaker.cats.sql.cache.SqlCache;
+import com.netflix.spinnaker.config.SqlConstraints;
+import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService;
+import com.netflix.spinnaker.kork.sql.config.RetryProperties;
+import com.netflix.spinnaker.kork.sql.config.SqlRetryProperties;
+import com.netflix.spinnaker.kork.sql.test.SqlTestUtil;
+import java.lang.reflect.Proxy;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Runs the cache suite against {@link SqlCache} on a throwaway MySQL container, the same database
+ * the cats-sql specs use. {@code SqlCache} relies on MySQL-only syntax ({@code ON DUPLICATE KEY
+ * UPDATE}, {@code CREATE TABLE ... LIKE}), so H2 is not a faithful stand-in.
+ *
+ * <p>{@code readBatchSize}, {@code writeBatchSize} and {@code maxQueryConcurrency} are fed through
+ * {@link DynamicConfigService} as {@code sql.cache.read-batch-size}, {@code
+ * sql.cache.write-batch-size} and {@code sql.cache.max-query-concurrency}. Reads are synchronous
+ * since no coroutine context is supplied.
+ */
+public class SqlCacheBenchmark extends AbstractCacheBenchmark {
+  private static final String AGENT = "BenchmarkCachingAgent";
+
+  @Param({"500"})
+  public int readBatchSize;
+
+  @Param({"100"})
+  public int writeBatchSize;
+
+  @Param({"4"})
+  public int maxQueryConcurrency;
+
+  private SqlTestUtil.TestDatabase database;
+
+  @Override
+  protected WriteableCache createCache() {
+    database = SqlTestUtil.initTcMysqlDatabase();
+
+    Map<String, Object> config = new HashMap<>();
+    config.put("sql.cache.read-batch-size", readBatchSize);
+    config.put("sql.cache.write-batch-size", writeBatchSize);
+    config.put("sql.cache.max-query-concurrency", maxQueryConcurrency);
+
+    return new SqlCache(
+        "benchmark",
+        database.context,
+        new ObjectMapper(),
+        null,
+        Clock.systemDefaultZone(),
+        new SqlRetryProperties(new RetryProperties(1, 10), new RetryProperties(1, 10)),
+        "bench",
+        new NoopCacheMetrics(),
+        dynamicConfig(config),
+        new SqlConstraints());
+  }
+
+  @Override
+  protected void store(Collection<CacheData> items) {
+    // authoritative without cleanup, otherwise each batch would evict the rest of the inventory
+    ((SqlCache) cache).mergeAll(CacheFixtures.TYPE, AGENT, new ArrayList<>(items), true, false);
+  }
+
+  @Override
+  protected void destroyCache() {
+    if (database != null) {
+      SqlTestUtil.cleanupDb(database.context);
+      database.dataSource.close();
+    }
+  }
+
+  /** A {@link DynamicConfigService} that serves fixed values and falls back to defaults. */
+  private static DynamicConfigService dynamicConfig(Map<String, Object> config) {
+    return (DynamicConfigService)
+        Proxy.newProxyInstance(
+            DynamicConfigService.class.getClassLoader(),
+            new Class<?>[] {DynamicConfigService.class},
+            (proxy, method, args) -> {
+              if (method.getName().equals("getConfig")) {
+                return config.getOrDefault((String) args[1], args[2]);
+              }
+              if (method.getName().equals("isEnabled")) {
+                return args[1];
+              }
+              if (method.getName().equals("toString")) {
+                return "BenchmarkDynamicConfigService" + config;
+              }
+              throw new UnsupportedOperationException(method.getName());
+            });
+  }
+}
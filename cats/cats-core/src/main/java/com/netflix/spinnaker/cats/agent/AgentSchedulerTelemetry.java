@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent;
+
+/**
+ * Receives scheduling events from AgentSchedulers and CacheExecutions.
+ *
+ * <p>Schedulers report through {@link SchedulerTelemetryStore#getStore()}, which keeps the latest
+ * values for introspection and forwards every event to the registered listeners.
+ *
+ * <p>Together these separate the reasons an agent's data can be stale: the agent waited for a
+ * thread or a lock (queue wait, lock latency, saturation), its cloud calls were slow (load) or the
+ * cache store was slow (store).
+ */
+public interface AgentSchedulerTelemetry {
+  enum Phase {
+    /** Loading data from the cloud provider, {@link CachingAgent#loadData}. */
+    LOAD,
+    /** Writing a result to the provider cache. */
+    STORE
+  }
+
+  /** An agent started running {@code waitMs} after it became due. */
+  default void agentWaited(String scheduler, Agent agent, long waitMs) {}
+
+  /** An attempt to lock an agent for execution took {@code elapsedMs}. */
+  default void lockAttempted(String scheduler, Agent agent, long elapsedMs, boolean acquired) {}
+
+  /** One phase of an agent execution completed, or failed, after {@code elapsedMs}. */
+  default void phaseCompleted(Agent agent, Phase phase, long elapsedMs, boolean success) {}
+
+  /** An agent started late enough that {@code count} of its intervals passed without a run. */
+  default void intervalsMissed(String scheduler, Agent agent, long count) {}
+
+  /**
+   * @param running agents currently executing on this node
+   * @param capacity maximum concurrently executing agents, or -1 if unbounded
+   */
+  default void saturation(String scheduler, int running, int capacity) {}
+}
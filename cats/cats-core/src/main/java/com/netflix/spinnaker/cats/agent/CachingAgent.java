@@ -20,14 +20,19 @@ import com.netflix.spinnaker.cats.cache.AgentIntrospection;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.cats.cache.CacheIntrospectionStore;
 import com.netflix.spinnaker.cats.cache.DefaultAgentIntrospection;
+import com.netflix.spinnaker.cats.cache.DefaultCacheData;
 import com.netflix.spinnaker.cats.provider.ProviderCache;
 import com.netflix.spinnaker.cats.provider.ProviderRegistry;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,6 +70,19 @@ public interface CachingAgent extends Agent {
     private final Logger log = LoggerFactory.getLogger(CacheExecution.class);
     private final ProviderRegistry providerRegistry;
 
+    /**
+     * The cache type holding the generation last stored for each DeltaCachingAgent, by agent type.
+     * It is kept with the cache rather than in memory so that it is shared by every node an agent
+     * may be scheduled on.
+     */
+    static final String STORED_GENERATIONS_TYPE = "cachingAgentGenerations";
+
+    /**
+     * Tells the generations stored by this execution from those stored by another node, since each
+     * node's instance of an agent numbers its generations independently.
+     */
+    private final String executionId = UUID.randomUUID().toString();
+
     public CacheExecution(ProviderRegistry providerRegistry) {
       this.providerRegistry = providerRegistry;
     }
@@ -82,10 +100,39 @@ public interface CachingAgent extends Agent {
       CachingAgent cachingAgent = (CachingAgent) agent;
       ProviderCache cache = providerRegistry.getProviderCache(cachingAgent.getProviderName());
 
-      return cachingAgent.loadData(cache);
+      long startTime = System.nanoTime();
+      boolean success = false;
+      try {
+        CacheResult result = cachingAgent.loadData(cache);
+        success = true;
+        return result;
+      } finally {
+        SchedulerTelemetryStore.getStore()
+            .phaseCompleted(
+                agent,
+                AgentSchedulerTelemetry.Phase.LOAD,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime),
+                success);
+      }
     }
 
     public void storeAgentResult(Agent agent, CacheResult result) {
+      long startTime = System.nanoTime();
+      boolean success = false;
+      try {
+        storeAgentResultInternal(agent, result);
+        success = true;
+      } finally {
+        SchedulerTelemetryStore.getStore()
+            .phaseCompleted(
+                agent,
+                AgentSchedulerTelemetry.Phase.STORE,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime),
+                success);
+      }
+    }
+
+    private void storeAgentResultInternal(Agent agent, CacheResult result) {
       CachingAgent cachingAgent = (CachingAgent) agent;
       ProviderCache cache = providerRegistry.getProviderCache(cachingAgent.getProviderName());
       Collection<AgentDataType> providedTypes = cachingAgent.getProvidedDataTypes();
@@ -96,6 +143,13 @@ public interface CachingAgent extends Agent {
         }
       }
 
+      DeltaCacheResult deltaResult =
+          result instanceof DeltaCacheResult ? (DeltaCacheResult) result : null;
+      if (deltaResult != null && !deltaResult.isFullResult()) {
+        storeDelta(cachingAgent, cache, authoritative, deltaResult);
+        return;
+      }
+
       Optional<Map<String, String>> cacheKeyPatterns = cachingAgent.getCacheKeyPatterns();
       if (cacheKeyPatterns.isPresent()) {
         for (String type : authoritative) {
@@ -133,11 +187,103 @@ public interface CachingAgent extends Agent {
         }
       }
 
-      if (result.isPartialResult()) {
+      if (deltaResult != null) {
+        cache.putCacheResult(agent.getAgentType(), authoritative, result);
+        putStoredGeneration(
+            cache,
+            agent.getAgentType(),
+            new StoredGeneration(deltaResult.getGeneration(), System.currentTimeMillis()));
+      } else if (result.isPartialResult()) {
         cache.addCacheResult(agent.getAgentType(), authoritative, result);
       } else {
         cache.putCacheResult(agent.getAgentType(), authoritative, result);
       }
     }
+
+    /**
+     * A delta is only stored on top of the generation it was computed against, as last stored by
+     * this node; otherwise it is dropped and the agent asked for a full resync, as it is once every
+     * full resync interval. A failed store leaves the previous generation in place, so that the
+     * next delta asks for a resync too.
+     */
+    private void storeDelta(
+        CachingAgent agent,
+        ProviderCache cache,
+        Collection<String> authoritative,
+        DeltaCacheResult result) {
+      String agentType = agent.getAgentType();
+      long now = System.currentTimeMillis();
+
+      StoredGeneration stored = getStoredGeneration(cache, agentType);
+      if (stored == null || stored.generation != result.getBaseGeneration()) {
+        log.warn(
+            "Dropping delta of {} from generation {} to {}, last stored generation is {}",
+            agentType,
+            result.getBaseGeneration(),
+            result.getGeneration(),
+            stored == null ? "unknown" : stored.generation);
+        requestFullResync(agent);
+        return;
+      }
+
+      cache.putCacheDelta(agentType, authoritative, result);
+      putStoredGeneration(
+          cache,
+          agentType,
+          new StoredGeneration(result.getGeneration(), stored.fullResultTimestamp));
+
+      if (agent instanceof DeltaCachingAgent
+          && now - stored.fullResultTimestamp
+              >= ((DeltaCachingAgent) agent).getFullResyncIntervalMillis()) {
+        requestFullResync(agent);
+      }
+    }
+
+    /** @return the generation last stored for the agent by this execution, if any */
+    private StoredGeneration getStoredGeneration(ProviderCache cache, String agentType) {
+      CacheData cacheData = cache.get(STORED_GENERATIONS_TYPE, agentType);
+      if (cacheData == null) {
+        return null;
+      }
+
+      Map<String, Object> attributes = cacheData.getAttributes();
+      if (!executionId.equals(attributes.get("executionId"))) {
+        return null;
+      }
+      return new StoredGeneration(
+          ((Number) attributes.get("generation")).longValue(),
+          ((Number) attributes.get("fullResultTimestamp")).longValue());
+    }
+
+    private void putStoredGeneration(
+        ProviderCache cache, String agentType, StoredGeneration generation) {
+      Map<String, Object> attributes = new HashMap<>();
+      attributes.put("executionId", executionId);
+      attributes.put("generation", generation.generation);
+      attributes.put("fullResultTimestamp", generation.fullResultTimestamp);
+      cache.putCacheData(
+          STORED_GENERATIONS_TYPE,
+          new DefaultCacheData(agentType, attributes, Collections.emptyMap()));
+    }
+
+    private void requestFullResync(CachingAgent agent) {
+      if (agent instanceof DeltaCachingAgent) {
+        ((DeltaCachingAgent) agent).requestFullResync();
+      } else {
+        log.error(
+            "{} returned a DeltaCacheResult but is not a DeltaCachingAgent, it can't be resynced",
+            agent.getAgentType());
+      }
+    }
+
+    private static class StoredGeneration {
+      private final long generation;
+      private final long fullResultTimestamp;
+
+      StoredGeneration(long generation, long fullResultTimestamp) {
+        this.generation = generation;
+        this.fullResultTimestamp = fullResultTimestamp;
+      }
+    }
   }
 }
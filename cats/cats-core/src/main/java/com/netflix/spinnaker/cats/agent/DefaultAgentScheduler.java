@@ -23,7 +23,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An AgentScheduler that executes on a fixed interval.
@@ -36,11 +38,14 @@ import java.util.concurrent.TimeUnit;
  */
 public class DefaultAgentScheduler extends CatsModuleAware implements AgentScheduler<AgentLock> {
   private static final long DEFAULT_INTERVAL = 60000;
+  private static final String SCHEDULER_NAME = DefaultAgentScheduler.class.getSimpleName();
 
   private final ScheduledExecutorService scheduledExecutorService;
   private final long interval;
   private final TimeUnit timeUnit;
   private final Map<Agent, Future> agentFutures = new ConcurrentHashMap<Agent, Future>();
+  private final AtomicInteger runningAgents = new AtomicInteger();
+  private final AgentSchedulerTelemetry telemetry = SchedulerTelemetryStore.getStore();
 
   public DefaultAgentScheduler() {
     this(DEFAULT_INTERVAL);
@@ -82,7 +87,12 @@ public class DefaultAgentScheduler extends CatsModuleAware implements AgentSched
 
     Future agentFuture =
         scheduledExecutorService.scheduleAtFixedRate(
-            new AgentExecutionRunnable(agent, agentExecution, executionInstrumentation),
+            new AgentExecutionRunnable(
+                agent,
+                agentExecution,
+                executionInstrumentation,
+                agentTimeUnit.toMillis(agentInterval),
+                this),
             0,
             agentInterval,
             agentTimeUnit);
@@ -113,19 +123,39 @@ public class DefaultAgentScheduler extends CatsModuleAware implements AgentSched
     return false;
   }
 
+  /** @return the number of threads agents can run on, or -1 if unknown */
+  private int capacity() {
+    if (scheduledExecutorService instanceof ThreadPoolExecutor) {
+      return ((ThreadPoolExecutor) scheduledExecutorService).getCorePoolSize();
+    }
+    return -1;
+  }
+
   private static class AgentExecutionRunnable implements Runnable {
     private final Agent agent;
     private final AgentExecution execution;
     private final ExecutionInstrumentation executionInstrumentation;
+    private final long intervalMs;
+    private final DefaultAgentScheduler scheduler;
+
+    /** When the executor should start the next run; a fixed rate schedule catches up late runs. */
+    private long nextDueMs = System.currentTimeMillis();
 
     public AgentExecutionRunnable(
-        Agent agent, AgentExecution execution, ExecutionInstrumentation executionInstrumentation) {
+        Agent agent,
+        AgentExecution execution,
+        ExecutionInstrumentation executionInstrumentation,
+        long intervalMs,
+        DefaultAgentScheduler scheduler) {
       this.agent = agent;
       this.execution = execution;
       this.executionInstrumentation = executionInstrumentation;
+      this.intervalMs = intervalMs;
+      this.scheduler = scheduler;
     }
 
     public void run() {
+      reportStart();
       try {
         executionInstrumentation.executionStarted(agent);
         long startTime = System.nanoTime();
@@ -134,6 +164,24 @@ public class DefaultAgentScheduler extends CatsModuleAware implements AgentSched
             agent, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
       } catch (Throwable t) {
         executionInstrumentation.executionFailed(agent, t);
+      } finally {
+        scheduler.runningAgents.decrementAndGet();
+      }
+    }
+
+    private void reportStart() {
+      long waitMs = Math.max(0, System.currentTimeMillis() - nextDueMs);
+      nextDueMs += intervalMs;
+
+      int running = scheduler.runningAgents.incrementAndGet();
+      try {
+        scheduler.telemetry.agentWaited(SCHEDULER_NAME, agent, waitMs);
+        if (intervalMs > 0 && waitMs >= intervalMs) {
+          scheduler.telemetry.intervalsMissed(SCHEDULER_NAME, agent, waitMs / intervalMs);
+        }
+        scheduler.telemetry.saturation(SCHEDULER_NAME, running, scheduler.capacity());
+      } catch (Throwable t) {
+        // telemetry must not abort the schedule of this agent
       }
     }
   }
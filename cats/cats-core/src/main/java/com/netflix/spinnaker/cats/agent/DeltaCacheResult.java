@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent;
+
+import com.netflix.spinnaker.cats.cache.CacheData;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Getter;
+
+/**
+ * A CacheResult of a {@link DeltaCachingAgent}, numbered by generation.
+ *
+ * <p>A full result carries the complete set of data for the agent, like any other CacheResult. A
+ * delta result only carries the items upserted and deleted since the result of its base
+ * generation, and may only be applied on top of that generation; an id should not be both upserted
+ * and deleted by the same delta.
+ */
+public class DeltaCacheResult implements CacheResult {
+  private final Map<String, Collection<CacheData>> upserts;
+  private final Map<String, Collection<String>> deletes;
+  @Getter private final long generation;
+  private final Long baseGeneration;
+  @Getter private final Map<String, Object> introspectionDetails = new HashMap<>();
+
+  private DeltaCacheResult(
+      Map<String, Collection<CacheData>> upserts,
+      Map<String, Collection<String>> deletes,
+      long generation,
+      Long baseGeneration) {
+    this.upserts = upserts;
+    this.deletes = deletes;
+    this.generation = generation;
+    this.baseGeneration = baseGeneration;
+  }
+
+  /**
+   * @param generation the generation of this result
+   * @param cacheResults the complete set of data for the agent, keyed by item type
+   */
+  public static DeltaCacheResult full(
+      long generation, Map<String, Collection<CacheData>> cacheResults) {
+    return new DeltaCacheResult(cacheResults, new HashMap<>(), generation, null);
+  }
+
+  /**
+   * @param baseGeneration the generation this delta was computed against
+   * @param generation the generation of this result
+   * @param upserts the items created or updated since baseGeneration, keyed by item type
+   * @param deletes the ids of items deleted since baseGeneration, keyed by item type
+   */
+  public static DeltaCacheResult delta(
+      long baseGeneration,
+      long generation,
+      Map<String, Collection<CacheData>> upserts,
+      Map<String, Collection<String>> deletes) {
+    return new DeltaCacheResult(upserts, deletes, generation, baseGeneration);
+  }
+
+  public boolean isFullResult() {
+    return baseGeneration == null;
+  }
+
+  /** @return the generation a delta applies to, null for a full result */
+  public Long getBaseGeneration() {
+    return baseGeneration;
+  }
+
+  @Override
+  public Map<String, Collection<CacheData>> getCacheResults() {
+    return upserts;
+  }
+
+  @Override
+  public Map<String, Collection<String>> getEvictions() {
+    return deletes;
+  }
+
+  /** Deltas never evict items they don't name, so they must not be stored as a full result. */
+  @Override
+  public boolean isPartialResult() {
+    return !isFullResult();
+  }
+}
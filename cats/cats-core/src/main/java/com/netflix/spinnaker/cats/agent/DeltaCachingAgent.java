@@ -0,0 +1,39 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A CachingAgent that may return only what changed since its previous run, as a {@link
+ * DeltaCacheResult}, so that watch or stream based agents write O(changes) rather than O(total).
+ *
+ * <p>The agent must return a full result on its first run, and whenever a full resync has been
+ * requested since its last run. A full resync is requested when a delta does not apply on top of
+ * the last stored generation (e.g. the agent moved to another node, or a store failed) and
+ * periodically as a safety net against drift.
+ */
+public interface DeltaCachingAgent extends CachingAgent {
+
+  /** Asks the agent to return a full result from its next {@link #loadData} call. */
+  void requestFullResync();
+
+  /** @return how often a full result is requested even if every delta applied cleanly */
+  default long getFullResyncIntervalMillis() {
+    return TimeUnit.MINUTES.toMillis(30);
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the latest scheduling telemetry per agent and per scheduler, and forwards every event to
+ * the registered {@link AgentSchedulerTelemetry} listeners.
+ */
+public class SchedulerTelemetryStore implements AgentSchedulerTelemetry {
+  private static final Logger log = LoggerFactory.getLogger(SchedulerTelemetryStore.class);
+
+  private static final SchedulerTelemetryStore store = new SchedulerTelemetryStore();
+
+  private final List<AgentSchedulerTelemetry> listeners = new CopyOnWriteArrayList<>();
+  private final Map<String, AgentStats> agents = new ConcurrentHashMap<>();
+  private final Map<String, SchedulerStats> schedulers = new ConcurrentHashMap<>();
+
+  public static SchedulerTelemetryStore getStore() {
+    return store;
+  }
+
+  public void addListener(AgentSchedulerTelemetry listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(AgentSchedulerTelemetry listener) {
+    listeners.remove(listener);
+  }
+
+  public Collection<AgentStats> listAgents() {
+    return agents.values();
+  }
+
+  public Collection<SchedulerStats> listSchedulers() {
+    return schedulers.values();
+  }
+
+  @Override
+  public void agentWaited(String scheduler, Agent agent, long waitMs) {
+    AgentStats stats = agentStats(agent);
+    stats.setScheduler(scheduler);
+    stats.setLastQueueWaitMs(waitMs);
+    stats.setLastStartMs(System.currentTimeMillis());
+    forward(l -> l.agentWaited(scheduler, agent, waitMs));
+  }
+
+  @Override
+  public void lockAttempted(String scheduler, Agent agent, long elapsedMs, boolean acquired) {
+    AgentStats stats = agentStats(agent);
+    stats.setScheduler(scheduler);
+    stats.setLastLockLatencyMs(elapsedMs);
+    forward(l -> l.lockAttempted(scheduler, agent, elapsedMs, acquired));
+  }
+
+  @Override
+  public void phaseCompleted(Agent agent, Phase phase, long elapsedMs, boolean success) {
+    AgentStats stats = agentStats(agent);
+    if (phase == Phase.LOAD) {
+      stats.setLastLoadMs(elapsedMs);
+    } else {
+      stats.setLastStoreMs(elapsedMs);
+    }
+    stats.setLastFailedPhase(success ? null : phase);
+    forward(l -> l.phaseCompleted(agent, phase, elapsedMs, success));
+  }
+
+  @Override
+  public void intervalsMissed(String scheduler, Agent agent, long count) {
+    AgentStats stats = agentStats(agent);
+    synchronized (stats) {
+      stats.setMissedIntervals(stats.getMissedIntervals() + count);
+    }
+    forward(l -> l.intervalsMissed(scheduler, agent, count));
+  }
+
+  @Override
+  public void saturation(String scheduler, int running, int capacity) {
+    SchedulerStats stats = schedulers.computeIfAbsent(scheduler, SchedulerStats::new);
+    stats.setRunning(running);
+    stats.setCapacity(capacity);
+    stats.setLastUpdatedMs(System.currentTimeMillis());
+    forward(l -> l.saturation(scheduler, running, capacity));
+  }
+
+  private AgentStats agentStats(Agent agent) {
+    String agentType = agent.getAgentType();
+    if (agentType == null) {
+      // not tracked, but still forwarded to listeners
+      return new AgentStats(null, agent.getProviderName());
+    }
+    return agents.computeIfAbsent(agentType, type -> new AgentStats(type, agent.getProviderName()));
+  }
+
+  private void forward(Consumer<AgentSchedulerTelemetry> event) {
+    for (AgentSchedulerTelemetry listener : listeners) {
+      try {
+        event.accept(listener);
+      } catch (Exception e) {
+        // telemetry must never fail an agent execution
+        log.warn("Failed to report scheduling telemetry to {}", listener, e);
+      }
+    }
+  }
+
+  @Data
+  public static class AgentStats {
+    private final String agentType;
+    private final String providerName;
+    private volatile String scheduler;
+    private volatile Long lastStartMs;
+    private volatile Long lastQueueWaitMs;
+    private volatile Long lastLockLatencyMs;
+    private volatile Long lastLoadMs;
+    private volatile Long lastStoreMs;
+    private volatile Phase lastFailedPhase;
+    private volatile long missedIntervals;
+  }
+
+  @Data
+  public static class SchedulerStats {
+    private final String scheduler;
+    private volatile int running;
+    private volatile int capacity;
+    private volatile long lastUpdatedMs;
+
+    /** @return running / capacity, or -1 if the scheduler is unbounded */
+    public double getSaturation() {
+      return capacity > 0 ? (double) running / capacity : -1;
+    }
+  }
+}
@@ -20,6 +20,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /** Cache provides view access to data keyed by type and identifier. */
 public interface Cache {
@@ -96,6 +97,26 @@ public interface Cache {
 
   Collection<CacheData> getAll(String type, CacheFilter cacheFilter);
 
+  /**
+   * Streams all the items for the specified type.
+   *
+   * <p>Unlike {@link #getAll(String, CacheFilter)}, implementations may read the backing store
+   * lazily (in pages, or through a cursor) rather than materializing every item up front, so
+   * callers that only need to iterate should prefer this method. The returned stream may hold
+   * resources of the backing store and should be closed once consumed.
+   *
+   * @param type the type for which to retrieve items
+   * @param cacheFilter the cacheFilter to govern which relationships to fetch
+   * @return a stream of all the items for the type
+   */
+  default Stream<CacheData> streamAll(String type, CacheFilter cacheFilter) {
+    return getAll(type, cacheFilter).stream();
+  }
+
+  default Stream<CacheData> streamAll(String type) {
+    return streamAll(type, null);
+  }
+
   /**
    * Retrieves the items for the specified type matching the provided identifiers
    *
@@ -17,6 +17,7 @@
 package com.netflix.spinnaker.cats.cache;
 
 import java.util.*;
+import java.util.stream.Stream;
 
 /** A cache that provides a unified view of multiples, merging items from each cache together. */
 public class CompositeCache implements Cache {
@@ -66,6 +67,46 @@ public class CompositeCache implements Cache {
     return allItems.values();
   }
 
+  /**
+   * Streams items from each underlying cache in turn. Only items whose identifier is present in
+   * more than one cache are buffered so that they can be merged; they are emitted last.
+   */
+  @Override
+  public Stream<CacheData> streamAll(String type, CacheFilter cacheFilter) {
+    if (caches.size() == 1) {
+      return caches.iterator().next().streamAll(type, cacheFilter);
+    }
+
+    Set<String> seen = new HashSet<>();
+    Set<String> shared = new HashSet<>();
+    for (Cache cache : caches) {
+      for (String id : cache.getIdentifiers(type)) {
+        if (!seen.add(id)) {
+          shared.add(id);
+        }
+      }
+    }
+    seen.clear();
+
+    Map<String, CacheData> sharedItems = new HashMap<>();
+    Stream<CacheData> unique =
+        caches.stream()
+            .flatMap(cache -> cache.streamAll(type, cacheFilter))
+            .filter(
+                item -> {
+                  if (!shared.contains(item.getId())) {
+                    return true;
+                  }
+                  sharedItems.merge(item.getId(), item, (a, b) -> merge(item.getId(), a, b));
+                  return false;
+                });
+
+    // deferred until the unique items have been consumed and sharedItems is complete
+    Stream<CacheData> merged = Stream.of(sharedItems).flatMap(items -> items.values().stream());
+
+    return Stream.concat(unique, merged);
+  }
+
   @Override
   public Collection<String> existingIdentifiers(String type, Collection<String> ids) {
     HashSet<String> identifiers = new HashSet<>(ids.size());
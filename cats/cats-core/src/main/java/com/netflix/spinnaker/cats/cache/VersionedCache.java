@@ -0,0 +1,31 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.cache;
+
+/**
+ * A Cache that can cheaply report whether the items of a type may have changed, without reading
+ * them.
+ */
+public interface VersionedCache {
+
+  /**
+   * @param type the type of the items
+   * @return a value that changes whenever an item of the type is written by any node, or {@code
+   *     null} if the version is unknown
+   */
+  Long getTypeVersion(String type);
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.mem;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.cache.CacheFilter;
+import com.netflix.spinnaker.cats.cache.DefaultCacheData;
+import com.netflix.spinnaker.cats.cache.WriteableCache;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A WriteableCache that keeps each type as an immutable snapshot.
+ *
+ * <p>Items are stored as compact array-backed records in a {@link PersistentStringMap}. A merge or
+ * evict builds a new snapshot that shares all untouched items with the previous one and swaps it
+ * in with a compare-and-set, so readers never block and always see a type either before or after
+ * a whole {@link #mergeAll} or {@link #evictAll}. Ids, attribute names and relationship names are
+ * interned, which makes a relationship to an item cost a reference rather than a copy of its key.
+ *
+ * <p>Merge semantics are the same as {@link InMemoryCache}.
+ */
+public class CompactInMemoryCache implements WriteableCache {
+  private static final String[] NO_STRINGS = new String[0];
+  private static final Object[] NO_VALUES = new Object[0];
+  private static final String[][] NO_RELATIONSHIPS = new String[0][];
+
+  private final ConcurrentMap<String, AtomicReference<PersistentStringMap<Item>>> typeMap =
+      new ConcurrentHashMap<>();
+  private final Interner<String> interner;
+
+  public CompactInMemoryCache() {
+    this(Interners.newWeakInterner());
+  }
+
+  /** @param interner shared by caches that reference each other's ids */
+  public CompactInMemoryCache(Interner<String> interner) {
+    this.interner = interner;
+  }
+
+  @Override
+  public void merge(String type, CacheData cacheData) {
+    mergeAll(type, Collections.singletonList(cacheData));
+  }
+
+  @Override
+  public void mergeAll(String type, Collection<CacheData> items) {
+    if (items.isEmpty()) {
+      return;
+    }
+
+    // interning and copying happen once, outside of the (possibly retried) swap
+    List<Update> updates = new ArrayList<>(items.size());
+    for (CacheData item : items) {
+      updates.add(new Update(item));
+    }
+
+    getTypeMap(type)
+        .updateAndGet(
+            snapshot -> {
+              for (Update update : updates) {
+                String id = update.item.id;
+                snapshot = snapshot.put(id, update.applyTo(snapshot.get(id)));
+              }
+              return snapshot;
+            });
+  }
+
+  @Override
+  public void evict(String type, String id) {
+    evictAll(type, Collections.singletonList(id));
+  }
+
+  @Override
+  public void evictAll(String type, Collection<String> ids) {
+    if (ids.isEmpty()) {
+      return;
+    }
+
+    getTypeMap(type)
+        .updateAndGet(
+            snapshot -> {
+              for (String id : ids) {
+                snapshot = snapshot.remove(id);
+              }
+              return snapshot;
+            });
+  }
+
+  @Override
+  public CacheData get(String type, String id) {
+    return get(type, id, null);
+  }
+
+  @Override
+  public CacheData get(String type, String id, CacheFilter cacheFilter) {
+    return wrap(snapshot(type).get(id), cacheFilter);
+  }
+
+  @Override
+  public Collection<CacheData> getAll(String type) {
+    return getAll(type, (CacheFilter) null);
+  }
+
+  @Override
+  public Collection<CacheData> getAll(String type, CacheFilter cacheFilter) {
+    PersistentStringMap<Item> snapshot = snapshot(type);
+    Collection<CacheData> values = new ArrayList<>(snapshot.size());
+    snapshot.forEach(
+        (id, item) -> {
+          CacheData toReturn = wrap(item, cacheFilter);
+          if (toReturn != null) {
+            values.add(toReturn);
+          }
+        });
+    return values;
+  }
+
+  @Override
+  public Stream<CacheData> streamAll(String type, CacheFilter cacheFilter) {
+    PersistentStringMap<Item> snapshot = snapshot(type);
+    List<Item> items = new ArrayList<>(snapshot.size());
+    snapshot.forEach((id, item) -> items.add(item));
+    return items.stream().map(item -> wrap(item, cacheFilter)).filter(Objects::nonNull);
+  }
+
+  @Override
+  public Collection<CacheData> getAll(String type, Collection<String> identifiers) {
+    return getAll(type, identifiers, null);
+  }
+
+  @Override
+  public Collection<CacheData> getAll(
+      String type, Collection<String> identifiers, CacheFilter cacheFilter) {
+    PersistentStringMap<Item> snapshot = snapshot(type);
+    Collection<CacheData> values = new ArrayList<>(identifiers.size());
+    for (String id : identifiers) {
+      CacheData toReturn = wrap(snapshot.get(id), cacheFilter);
+      if (toReturn != null) {
+        values.add(toReturn);
+      }
+    }
+    return values;
+  }
+
+  @Override
+  public Collection<CacheData> getAll(String type, String... identifiers) {
+    return getAll(type, Arrays.asList(identifiers));
+  }
+
+  @Override
+  public Collection<String> existingIdentifiers(String type, Collection<String> ids) {
+    PersistentStringMap<Item> snapshot = snapshot(type);
+    Set<String> existing = new HashSet<>(ids.size());
+    for (String id : ids) {
+      if (snapshot.containsKey(id)) {
+        existing.add(id);
+      }
+    }
+    return existing;
+  }
+
+  @Override
+  public Collection<String> getIdentifiers(String type) {
+    PersistentStringMap<Item> snapshot = snapshot(type);
+    Set<String> identifiers = new HashSet<>(snapshot.size());
+    snapshot.forEach((id, item) -> identifiers.add(id));
+    return identifiers;
+  }
+
+  @Override
+  public Collection<String> filterIdentifiers(String type, String glob) {
+    final Pattern pattern = new InMemoryCache.Glob(glob).toPattern();
+    final Set<String> matches = new HashSet<>();
+    snapshot(type)
+        .forEach(
+            (id, item) -> {
+              if (pattern.matcher(id).matches()) {
+                matches.add(id);
+              }
+            });
+    return matches;
+  }
+
+  private PersistentStringMap<Item> snapshot(String type) {
+    AtomicReference<PersistentStringMap<Item>> ref = typeMap.get(type);
+    return ref == null ? PersistentStringMap.empty() : ref.get();
+  }
+
+  private AtomicReference<PersistentStringMap<Item>> getTypeMap(String type) {
+    return typeMap.computeIfAbsent(type, t -> new AtomicReference<>(PersistentStringMap.empty()));
+  }
+
+  private static CacheData wrap(Item item, CacheFilter cacheFilter) {
+    if (item == null || item.attributeNames.length == 0) {
+      return null;
+    }
+
+    Map<String, Object> attributes = new HashMap<>(item.attributeNames.length * 2);
+    for (int i = 0; i < item.attributeNames.length; i++) {
+      attributes.put(item.attributeNames[i], item.attributeValues[i]);
+    }
+
+    Collection<String> included = Arrays.asList(item.relationshipNames);
+    if (cacheFilter != null) {
+      included = new HashSet<>(cacheFilter.filter(CacheFilter.Type.RELATIONSHIP, included));
+    }
+
+    Map<String, Collection<String>> relationships = new HashMap<>();
+    for (int i = 0; i < item.relationshipNames.length; i++) {
+      if (cacheFilter == null || included.contains(item.relationshipNames[i])) {
+        relationships.put(
+            item.relationshipNames[i], new ArrayList<>(Arrays.asList(item.relationships[i])));
+      }
+    }
+
+    return new DefaultCacheData(item.id, attributes, relationships);
+  }
+
+  /** An immutable cached item; the relationship arrays are shared between snapshots. */
+  private static final class Item {
+    private final String id;
+    private final String[] attributeNames;
+    private final Object[] attributeValues;
+    private final String[] relationshipNames;
+    private final String[][] relationships;
+
+    Item(
+        String id,
+        String[] attributeNames,
+        Object[] attributeValues,
+        String[] relationshipNames,
+        String[][] relationships) {
+      this.id = id;
+      this.attributeNames = attributeNames;
+      this.attributeValues = attributeValues;
+      this.relationshipNames = relationshipNames;
+      this.relationships = relationships;
+    }
+  }
+
+  /**
+   * A CacheData converted to an {@link Item}, plus the relationships it removes.
+   *
+   * <p>Null attribute or relationship values remove the key, as the backing ConcurrentHashMaps of
+   * {@link InMemoryCache} do.
+   */
+  private final class Update {
+    private final Item item;
+    private final Set<String> removedRelationships;
+
+    Update(CacheData cacheData) {
+      List<String> attributeNames = new ArrayList<>(cacheData.getAttributes().size());
+      List<Object> attributeValues = new ArrayList<>(cacheData.getAttributes().size());
+      for (Map.Entry<String, Object> attribute : cacheData.getAttributes().entrySet()) {
+        if (attribute.getValue() != null) {
+          attributeNames.add(interner.intern(attribute.getKey()));
+          attributeValues.add(attribute.getValue());
+        }
+      }
+
+      Set<String> removed = null;
+      List<String> relationshipNames = new ArrayList<>(cacheData.getRelationships().size());
+      List<String[]> relationships = new ArrayList<>(cacheData.getRelationships().size());
+      for (Map.Entry<String, Collection<String>> relationship :
+          cacheData.getRelationships().entrySet()) {
+        String name = interner.intern(relationship.getKey());
+        if (relationship.getValue() == null) {
+          if (removed == null) {
+            removed = new HashSet<>();
+          }
+          removed.add(name);
+        } else {
+          relationshipNames.add(name);
+          relationships.add(intern(relationship.getValue()));
+        }
+      }
+
+      this.item =
+          new Item(
+              interner.intern(cacheData.getId()),
+              attributeNames.isEmpty() ? NO_STRINGS : attributeNames.toArray(NO_STRINGS),
+              attributeValues.isEmpty() ? NO_VALUES : attributeValues.toArray(),
+              relationshipNames.isEmpty() ? NO_STRINGS : relationshipNames.toArray(NO_STRINGS),
+              relationships.isEmpty() ? NO_RELATIONSHIPS : relationships.toArray(NO_RELATIONSHIPS));
+      this.removedRelationships = removed == null ? Collections.emptySet() : removed;
+    }
+
+    private String[] intern(Collection<String> ids) {
+      if (ids.isEmpty()) {
+        return NO_STRINGS;
+      }
+      String[] interned = new String[ids.size()];
+      int i = 0;
+      for (String id : ids) {
+        interned[i++] = interner.intern(id);
+      }
+      return interned;
+    }
+
+    /** Attributes are replaced, relationships are merged by name. */
+    Item applyTo(Item existing) {
+      if (existing == null || existing.relationshipNames.length == 0) {
+        return item;
+      }
+
+      Map<String, String[]> merged = new LinkedHashMap<>();
+      for (int i = 0; i < existing.relationshipNames.length; i++) {
+        if (!removedRelationships.contains(existing.relationshipNames[i])) {
+          merged.put(existing.relationshipNames[i], existing.relationships[i]);
+        }
+      }
+      for (int i = 0; i < item.relationshipNames.length; i++) {
+        merged.put(item.relationshipNames[i], item.relationships[i]);
+      }
+      if (merged.isEmpty()) {
+        return item;
+      }
+
+      return new Item(
+          item.id,
+          item.attributeNames,
+          item.attributeValues,
+          merged.keySet().toArray(NO_STRINGS),
+          merged.values().toArray(NO_RELATIONSHIPS));
+    }
+  }
+}
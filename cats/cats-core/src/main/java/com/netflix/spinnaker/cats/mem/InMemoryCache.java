@@ -28,11 +28,13 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /** A WriteableCache that stores objects in an in-memory map. */
 public class InMemoryCache implements WriteableCache {
@@ -96,6 +98,13 @@ public class InMemoryCache implements WriteableCache {
     return values;
   }
 
+  @Override
+  public Stream<CacheData> streamAll(String type, CacheFilter cacheFilter) {
+    return getTypeMap(type).values().stream()
+        .map(data -> wrap(data, cacheFilter))
+        .filter(Objects::nonNull);
+  }
+
   @Override
   public Collection<CacheData> getAll(String type, Collection<String> identifiers) {
     return getAll(type, identifiers, null);
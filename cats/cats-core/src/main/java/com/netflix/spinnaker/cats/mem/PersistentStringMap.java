@@ -0,0 +1,314 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.mem;
+
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable hash array mapped trie keyed by String.
+ *
+ * <p>{@link #put} and {@link #remove} return a new map that shares every untouched node with the
+ * original, so an update copies at most one small array per trie level.
+ *
+ * @param <V> the value type
+ */
+final class PersistentStringMap<V> {
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private static final PersistentStringMap<?> EMPTY = new PersistentStringMap<>(null, 0);
+
+  private final Node<V> root;
+  private final int size;
+
+  private PersistentStringMap(Node<V> root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <V> PersistentStringMap<V> empty() {
+    return (PersistentStringMap<V>) EMPTY;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  V get(String key) {
+    return root == null ? null : root.get(key, key.hashCode(), 0);
+  }
+
+  boolean containsKey(String key) {
+    return get(key) != null;
+  }
+
+  PersistentStringMap<V> put(String key, V value) {
+    if (value == null) {
+      throw new IllegalArgumentException("null values are not supported");
+    }
+    int[] sizeDelta = new int[1];
+    Node<V> start = root == null ? new BitmapNode<>(0, new Object[0]) : root;
+    Node<V> updated = start.put(key, key.hashCode(), value, 0, sizeDelta);
+    if (updated == root) {
+      return this;
+    }
+    return new PersistentStringMap<>(updated, size + sizeDelta[0]);
+  }
+
+  PersistentStringMap<V> remove(String key) {
+    if (root == null) {
+      return this;
+    }
+    int[] sizeDelta = new int[1];
+    Node<V> updated = root.remove(key, key.hashCode(), 0, sizeDelta);
+    if (updated == root) {
+      return this;
+    }
+    return updated == null ? empty() : new PersistentStringMap<>(updated, size + sizeDelta[0]);
+  }
+
+  void forEach(BiConsumer<String, V> action) {
+    if (root != null) {
+      root.forEach(action);
+    }
+  }
+
+  private static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  private static Object[] insertPair(Object[] array, int index, Object key, Object value) {
+    Object[] copy = new Object[array.length + 2];
+    System.arraycopy(array, 0, copy, 0, index);
+    copy[index] = key;
+    copy[index + 1] = value;
+    System.arraycopy(array, index, copy, index + 2, array.length - index);
+    return copy;
+  }
+
+  private static Object[] removePair(Object[] array, int index) {
+    Object[] copy = new Object[array.length - 2];
+    System.arraycopy(array, 0, copy, 0, index);
+    System.arraycopy(array, index + 2, copy, index, array.length - index - 2);
+    return copy;
+  }
+
+  private static Object[] setPair(Object[] array, int index, Object key, Object value) {
+    Object[] copy = array.clone();
+    copy[index] = key;
+    copy[index + 1] = value;
+    return copy;
+  }
+
+  private static <V> Node<V> createNode(
+      int shift, String key1, V value1, String key2, int hash2, V value2) {
+    int hash1 = key1.hashCode();
+    if (hash1 == hash2) {
+      return new CollisionNode<>(hash1, new Object[] {key1, value1, key2, value2});
+    }
+    int[] ignored = new int[1];
+    return new BitmapNode<V>(0, new Object[0])
+        .put(key1, hash1, value1, shift, ignored)
+        .put(key2, hash2, value2, shift, ignored);
+  }
+
+  private abstract static class Node<V> {
+    abstract V get(String key, int hash, int shift);
+
+    abstract Node<V> put(String key, int hash, V value, int shift, int[] sizeDelta);
+
+    /** @return the updated node, or null if it is now empty */
+    abstract Node<V> remove(String key, int hash, int shift, int[] sizeDelta);
+
+    abstract void forEach(BiConsumer<String, V> action);
+  }
+
+  /**
+   * Stores up to 32 slots as key/value pairs; a null key marks the value as a child node one level
+   * down.
+   */
+  private static final class BitmapNode<V> extends Node<V> {
+    private final int bitmap;
+    private final Object[] array;
+
+    BitmapNode(int bitmap, Object[] array) {
+      this.bitmap = bitmap;
+      this.array = array;
+    }
+
+    private int index(int bit) {
+      return 2 * Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    V get(String key, int hash, int shift) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+      int idx = index(bit);
+      Object existingKey = array[idx];
+      Object existingValue = array[idx + 1];
+      if (existingKey == null) {
+        return ((Node<V>) existingValue).get(key, hash, shift + BITS);
+      }
+      return key.equals(existingKey) ? (V) existingValue : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Node<V> put(String key, int hash, V value, int shift, int[] sizeDelta) {
+      int bit = bit(hash, shift);
+      int idx = index(bit);
+      if ((bitmap & bit) == 0) {
+        sizeDelta[0] = 1;
+        return new BitmapNode<>(bitmap | bit, insertPair(array, idx, key, value));
+      }
+
+      Object existingKey = array[idx];
+      Object existingValue = array[idx + 1];
+      if (existingKey == null) {
+        Node<V> child = (Node<V>) existingValue;
+        Node<V> updated = child.put(key, hash, value, shift + BITS, sizeDelta);
+        return updated == child
+            ? this
+            : new BitmapNode<>(bitmap, setPair(array, idx, null, updated));
+      }
+      if (key.equals(existingKey)) {
+        return existingValue == value
+            ? this
+            : new BitmapNode<>(bitmap, setPair(array, idx, existingKey, value));
+      }
+
+      sizeDelta[0] = 1;
+      Node<V> child =
+          createNode(shift + BITS, (String) existingKey, (V) existingValue, key, hash, value);
+      return new BitmapNode<>(bitmap, setPair(array, idx, null, child));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Node<V> remove(String key, int hash, int shift, int[] sizeDelta) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int idx = index(bit);
+      Object existingKey = array[idx];
+      Object existingValue = array[idx + 1];
+      if (existingKey == null) {
+        Node<V> child = (Node<V>) existingValue;
+        Node<V> updated = child.remove(key, hash, shift + BITS, sizeDelta);
+        if (updated == child) {
+          return this;
+        }
+        if (updated != null) {
+          return new BitmapNode<>(bitmap, setPair(array, idx, null, updated));
+        }
+      } else if (!key.equals(existingKey)) {
+        return this;
+      } else {
+        sizeDelta[0] = -1;
+      }
+
+      if (bitmap == bit) {
+        return null;
+      }
+      return new BitmapNode<>(bitmap ^ bit, removePair(array, idx));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<String, V> action) {
+      for (int i = 0; i < array.length; i += 2) {
+        if (array[i] == null) {
+          ((Node<V>) array[i + 1]).forEach(action);
+        } else {
+          action.accept((String) array[i], (V) array[i + 1]);
+        }
+      }
+    }
+  }
+
+  /** Holds keys whose hash codes are identical. */
+  private static final class CollisionNode<V> extends Node<V> {
+    private final int hash;
+    private final Object[] array;
+
+    CollisionNode(int hash, Object[] array) {
+      this.hash = hash;
+      this.array = array;
+    }
+
+    private int find(String key) {
+      for (int i = 0; i < array.length; i += 2) {
+        if (key.equals(array[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    V get(String key, int hash, int shift) {
+      int idx = find(key);
+      return idx == -1 ? null : (V) array[idx + 1];
+    }
+
+    @Override
+    Node<V> put(String key, int hash, V value, int shift, int[] sizeDelta) {
+      if (hash != this.hash) {
+        // nest this node one level down so that the new key gets its own slot
+        return new BitmapNode<V>(bit(this.hash, shift), new Object[] {null, this})
+            .put(key, hash, value, shift, sizeDelta);
+      }
+      int idx = find(key);
+      if (idx == -1) {
+        sizeDelta[0] = 1;
+        return new CollisionNode<>(hash, insertPair(array, array.length, key, value));
+      }
+      return array[idx + 1] == value
+          ? this
+          : new CollisionNode<>(hash, setPair(array, idx, key, value));
+    }
+
+    @Override
+    Node<V> remove(String key, int hash, int shift, int[] sizeDelta) {
+      int idx = find(key);
+      if (idx == -1) {
+        return this;
+      }
+      sizeDelta[0] = -1;
+      return array.length == 2 ? null : new CollisionNode<>(hash, removePair(array, idx));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<String, V> action) {
+      for (int i = 0; i < array.length; i += 2) {
+        action.accept((String) array[i], (V) array[i + 1]);
+      }
+    }
+  }
+}
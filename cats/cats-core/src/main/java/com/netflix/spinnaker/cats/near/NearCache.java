@@ -0,0 +1,618 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.near;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.cache.CacheFilter;
+import com.netflix.spinnaker.cats.cache.RelationshipCacheFilter;
+import com.netflix.spinnaker.cats.cache.VersionedCache;
+import com.netflix.spinnaker.cats.cache.WriteableCache;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A size bounded, in-process read-through cache in front of another WriteableCache.
+ *
+ * <p>Items (per relationship filter) and identifier queries are served from memory for up to the
+ * TTL of their type. Writes made through this cache immediately invalidate the written items, the
+ * items they are related to and the identifier queries of their type.
+ *
+ * <p>When the backing store is a {@link VersionedCache}, the version of a type is checked at most
+ * once per version check interval before serving it, and any change drops every entry of the type;
+ * items written by other nodes are therefore seen within that interval. Deletes and
+ * relationship-only changes made by other nodes are bounded by the TTL alone.
+ *
+ * <p>Reads of a whole type ({@code getAll(type)}, {@code streamAll}) are always passed through.
+ * Other reads return shallow copies of the near cached items, as the in-memory caches do.
+ */
+public class NearCache implements WriteableCache {
+
+  public interface CacheMetrics {
+    default void hits(String name, String type, int count) {
+      // noop
+    }
+
+    default void misses(String name, String type, int count) {
+      // noop
+    }
+
+    default void evictions(String name, String type, int count) {
+      // noop
+    }
+
+    default void invalidations(String name, String type, int count) {
+      // noop
+    }
+
+    class NOOP implements CacheMetrics {}
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(NearCache.class);
+
+  private static final String ALL_RELATIONSHIPS = "*";
+
+  private final String name;
+  private final WriteableCache backingStore;
+  private final NearCacheOptions options;
+  private final CacheMetrics cacheMetrics;
+  private final Clock clock;
+
+  private final Cache<ItemKey, ConcurrentMap<String, Entry<CachedCacheData>>> items;
+  private final Cache<IdentifierKey, Entry<Collection<String>>> identifiers;
+  private final ConcurrentMap<String, TypeState> types = new ConcurrentHashMap<>();
+
+  public NearCache(
+      String name,
+      WriteableCache backingStore,
+      NearCacheOptions options,
+      CacheMetrics cacheMetrics) {
+    this(name, backingStore, options, cacheMetrics, Clock.systemDefaultZone());
+  }
+
+  public NearCache(
+      String name,
+      WriteableCache backingStore,
+      NearCacheOptions options,
+      CacheMetrics cacheMetrics,
+      Clock clock) {
+    this.name = name;
+    this.backingStore = backingStore;
+    this.options = options;
+    this.cacheMetrics = cacheMetrics == null ? new CacheMetrics.NOOP() : cacheMetrics;
+    this.clock = clock;
+
+    RemovalListener<TypedKey, Object> evictionListener =
+        notification -> {
+          if (notification.wasEvicted() && notification.getKey() != null) {
+            this.cacheMetrics.evictions(name, notification.getKey().type, 1);
+          }
+        };
+    long maxTtlMillis = Math.max(options.getMaxTtlMillis(), 1);
+
+    this.items =
+        CacheBuilder.newBuilder()
+            .maximumSize(options.getMaxItems())
+            .expireAfterWrite(maxTtlMillis, TimeUnit.MILLISECONDS)
+            .removalListener(evictionListener)
+            .build();
+    this.identifiers =
+        CacheBuilder.newBuilder()
+            .maximumSize(options.getMaxIdentifierQueries())
+            .expireAfterWrite(maxTtlMillis, TimeUnit.MILLISECONDS)
+            .removalListener(evictionListener)
+            .build();
+  }
+
+  public WriteableCache getBackingStore() {
+    return backingStore;
+  }
+
+  @Override
+  public CacheData get(String type, String id) {
+    return get(type, id, null);
+  }
+
+  @Override
+  public CacheData get(String type, String id, CacheFilter cacheFilter) {
+    if (!isCacheable(type, cacheFilter)) {
+      return backingStore.get(type, id, cacheFilter);
+    }
+    Collection<CacheData> result = getAll(type, Collections.singleton(id), cacheFilter);
+    return result.isEmpty() ? null : result.iterator().next();
+  }
+
+  @Override
+  public Collection<CacheData> getAll(String type) {
+    return backingStore.getAll(type);
+  }
+
+  @Override
+  public Collection<CacheData> getAll(String type, CacheFilter cacheFilter) {
+    return backingStore.getAll(type, cacheFilter);
+  }
+
+  @Override
+  public Stream<CacheData> streamAll(String type, CacheFilter cacheFilter) {
+    return backingStore.streamAll(type, cacheFilter);
+  }
+
+  @Override
+  public Collection<CacheData> getAll(String type, Collection<String> identifiers) {
+    return getAll(type, identifiers, null);
+  }
+
+  @Override
+  public Collection<CacheData> getAll(String type, String... identifiers) {
+    return getAll(type, Arrays.asList(identifiers));
+  }
+
+  @Override
+  public Collection<CacheData> getAll(
+      String type, Collection<String> identifiers, CacheFilter cacheFilter) {
+    if (!isCacheable(type, cacheFilter)) {
+      return backingStore.getAll(type, identifiers, cacheFilter);
+    }
+
+    String filterKey = filterKey(cacheFilter);
+    TypeState state = checkVersion(type);
+    long generation = state.generation.get();
+    long writes = state.writes.get();
+    long now = clock.millis();
+
+    Collection<CacheData> result = new ArrayList<>(identifiers.size());
+    Set<String> misses = new LinkedHashSet<>();
+    int hits = 0;
+    for (String id : identifiers) {
+      Map<String, Entry<CachedCacheData>> views = items.getIfPresent(new ItemKey(type, id));
+      Entry<CachedCacheData> entry = views == null ? null : views.get(filterKey);
+      if (entry != null && entry.isValid(generation, now)) {
+        hits++;
+        if (entry.value != null) {
+          result.add(entry.value.copy());
+        }
+      } else {
+        misses.add(id);
+      }
+    }
+    cacheMetrics.hits(name, type, hits);
+
+    if (misses.isEmpty()) {
+      return result;
+    }
+    cacheMetrics.misses(name, type, misses.size());
+
+    Map<String, CachedCacheData> loaded = new HashMap<>();
+    for (CacheData item : backingStore.getAll(type, misses, cacheFilter)) {
+      CachedCacheData cached = CachedCacheData.of(item);
+      loaded.put(cached.getId(), cached);
+      result.add(cached.copy());
+    }
+
+    // anything written through this node while loading may already be stale, and a write that
+    // invalidates the items before they are inserted is caught by checking again afterwards
+    if (state.writes.get() == writes) {
+      long expiresAt = now + options.getTtlMillis(type);
+      List<Runnable> rollback = new ArrayList<>(misses.size());
+      for (String id : misses) {
+        ConcurrentMap<String, Entry<CachedCacheData>> views =
+            items.asMap().computeIfAbsent(new ItemKey(type, id), key -> new ConcurrentHashMap<>());
+        Entry<CachedCacheData> entry = new Entry<>(loaded.get(id), generation, expiresAt);
+        views.put(filterKey, entry);
+        rollback.add(() -> views.remove(filterKey, entry));
+      }
+      if (state.writes.get() != writes) {
+        rollback.forEach(Runnable::run);
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  public Collection<String> existingIdentifiers(String type, Collection<String> identifiers) {
+    return backingStore.existingIdentifiers(type, identifiers);
+  }
+
+  @Override
+  public Collection<String> getIdentifiers(String type) {
+    return getIdentifiers(type, null, () -> backingStore.getIdentifiers(type));
+  }
+
+  @Override
+  public Collection<String> filterIdentifiers(String type, String glob) {
+    return getIdentifiers(type, glob, () -> backingStore.filterIdentifiers(type, glob));
+  }
+
+  @Override
+  public boolean supportsGetAllByApplication() {
+    return backingStore.supportsGetAllByApplication();
+  }
+
+  @Override
+  public Map<String, Collection<CacheData>> getAllByApplication(String type, String application) {
+    return backingStore.getAllByApplication(type, application);
+  }
+
+  @Override
+  public Map<String, Collection<CacheData>> getAllByApplication(
+      String type, String application, CacheFilter cacheFilter) {
+    return backingStore.getAllByApplication(type, application, cacheFilter);
+  }
+
+  @Override
+  public Map<String, Collection<CacheData>> getAllByApplication(
+      Collection<String> types, String application, Map<String, CacheFilter> cacheFilters) {
+    return backingStore.getAllByApplication(types, application, cacheFilters);
+  }
+
+  @Override
+  public void merge(String type, CacheData cacheData) {
+    List<CacheData> merged = Collections.singletonList(cacheData);
+    invalidate(type, merged);
+    try {
+      backingStore.merge(type, cacheData);
+    } finally {
+      invalidate(type, merged);
+    }
+  }
+
+  @Override
+  public void mergeAll(String type, Collection<CacheData> items) {
+    invalidate(type, items);
+    try {
+      backingStore.mergeAll(type, items);
+    } finally {
+      invalidate(type, items);
+    }
+  }
+
+  @Override
+  public void evict(String type, String id) {
+    invalidateIds(type, Collections.singleton(id));
+    try {
+      backingStore.evict(type, id);
+    } finally {
+      invalidateIds(type, Collections.singleton(id));
+    }
+  }
+
+  @Override
+  public void evictAll(String type, Collection<String> ids) {
+    invalidateIds(type, ids);
+    try {
+      backingStore.evictAll(type, ids);
+    } finally {
+      invalidateIds(type, ids);
+    }
+  }
+
+  /**
+   * Drops the items (and the items they are related to) and the identifier queries of a type.
+   *
+   * <p>Writes that reach the backing store without going through this cache should call this both
+   * before and after writing, so that reads racing the write don't cache what it replaced.
+   */
+  public void invalidate(String type, Collection<CacheData> items) {
+    invalidateIds(
+        type, items.stream().map(CacheData::getId).collect(Collectors.toList()));
+
+    Map<String, Set<String>> related = new HashMap<>();
+    for (CacheData item : items) {
+      item.getRelationships()
+          .forEach(
+              (relationship, ids) ->
+                  related
+                      .computeIfAbsent(relationshipType(relationship), t -> new LinkedHashSet<>())
+                      .addAll(ids));
+    }
+    related.forEach(this::invalidateItems);
+  }
+
+  /** Drops the identified items and the identifier queries of a type. */
+  public void invalidateIds(String type, Collection<String> ids) {
+    TypeState state = typeState(type);
+    state.identifierGeneration.incrementAndGet();
+    invalidateItems(type, ids);
+  }
+
+  /** Drops every entry of a type, for writes that may have removed items it can't name. */
+  public void invalidateType(String type) {
+    TypeState state = typeState(type);
+    state.writes.incrementAndGet();
+    state.generation.incrementAndGet();
+    state.identifierGeneration.incrementAndGet();
+  }
+
+  private void invalidateItems(String type, Collection<String> ids) {
+    if (ids.isEmpty()) {
+      return;
+    }
+    typeState(type).writes.incrementAndGet();
+    items.invalidateAll(ids.stream().map(id -> new ItemKey(type, id)).collect(Collectors.toList()));
+    cacheMetrics.invalidations(name, type, ids.size());
+  }
+
+  private Collection<String> getIdentifiers(
+      String type, String glob, Supplier<Collection<String>> loader) {
+    if (options.getTtlMillis(type) <= 0) {
+      return loader.get();
+    }
+
+    TypeState state = checkVersion(type);
+    long generation = state.identifierGeneration.get();
+    long writes = state.writes.get();
+    long now = clock.millis();
+
+    IdentifierKey key = new IdentifierKey(type, glob);
+    Entry<Collection<String>> entry = identifiers.getIfPresent(key);
+    if (entry != null && entry.isValid(generation, now)) {
+      cacheMetrics.hits(name, type, 1);
+      return new ArrayList<>(entry.value);
+    }
+    cacheMetrics.misses(name, type, 1);
+
+    Collection<String> loaded = loader.get();
+    if (state.writes.get() == writes) {
+      Entry<Collection<String>> loadedEntry =
+          new Entry<>(
+              Collections.unmodifiableList(new ArrayList<>(loaded)),
+              generation,
+              now + options.getTtlMillis(type));
+      identifiers.put(key, loadedEntry);
+      if (state.writes.get() != writes) {
+        identifiers.asMap().remove(key, loadedEntry);
+      }
+    }
+    return loaded;
+  }
+
+  private boolean isCacheable(String type, CacheFilter cacheFilter) {
+    return options.getTtlMillis(type) > 0 && filterKey(cacheFilter) != null;
+  }
+
+  /**
+   * Returns the {@link TypeState} of a type after dropping its entries if the backing store reports
+   * a new version for it.
+   */
+  private TypeState checkVersion(String type) {
+    TypeState state = typeState(type);
+    if (!(backingStore instanceof VersionedCache)) {
+      return state;
+    }
+
+    long now = clock.millis();
+    long nextCheck = state.nextVersionCheck.get();
+    if (now < nextCheck
+        || !state.nextVersionCheck.compareAndSet(
+            nextCheck, now + options.getVersionCheckIntervalMillis())) {
+      return state;
+    }
+
+    Long version;
+    try {
+      version = ((VersionedCache) backingStore).getTypeVersion(type);
+    } catch (Exception e) {
+      log.warn("Failed checking version of {} in {}, dropping near cached items", type, name, e);
+      version = null;
+    }
+
+    if (version == null || !version.equals(state.version)) {
+      state.version = version;
+      state.generation.incrementAndGet();
+      state.identifierGeneration.incrementAndGet();
+    }
+    return state;
+  }
+
+  private TypeState typeState(String type) {
+    return types.computeIfAbsent(type, t -> new TypeState());
+  }
+
+  /** @return the key entries loaded with a filter are stored under, null if not cacheable */
+  private static String filterKey(CacheFilter cacheFilter) {
+    if (cacheFilter == null) {
+      return ALL_RELATIONSHIPS;
+    }
+    if (cacheFilter instanceof RelationshipCacheFilter) {
+      return ((RelationshipCacheFilter) cacheFilter)
+          .getAllowableRelationshipPrefixes().stream()
+              .sorted()
+              .collect(Collectors.joining(",", "[", "]"));
+    }
+    return null;
+  }
+
+  /** Relationships may be keyed by {@code type:agent}. */
+  private static String relationshipType(String relationship) {
+    int idx = relationship.indexOf(':');
+    return idx == -1 ? relationship : relationship.substring(0, idx);
+  }
+
+  private static class TypeState {
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong identifierGeneration = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong nextVersionCheck = new AtomicLong();
+    private volatile Long version;
+  }
+
+  /**
+   * A near cached item, which is shared by every reader of this node and is never handed out
+   * itself: each read gets a shallow copy that callers are free to modify. Nested attribute values
+   * are not copied and must not be modified.
+   */
+  private static class CachedCacheData implements CacheData {
+    private final String id;
+    private final int ttlSeconds;
+    private final Map<String, Object> attributes;
+    private final Map<String, Collection<String>> relationships;
+
+    private CachedCacheData(
+        String id,
+        int ttlSeconds,
+        Map<String, Object> attributes,
+        Map<String, Collection<String>> relationships) {
+      this.id = id;
+      this.ttlSeconds = ttlSeconds;
+      this.attributes = attributes;
+      this.relationships = relationships;
+    }
+
+    static CachedCacheData of(CacheData source) {
+      return new CachedCacheData(
+          source.getId(),
+          source.getTtlSeconds(),
+          copyAttributes(source.getAttributes()),
+          copyRelationships(source.getRelationships()));
+    }
+
+    CacheData copy() {
+      return new CachedCacheData(
+          id, ttlSeconds, copyAttributes(attributes), copyRelationships(relationships));
+    }
+
+    private static Map<String, Object> copyAttributes(Map<String, Object> attributes) {
+      return attributes == null ? new HashMap<>() : new HashMap<>(attributes);
+    }
+
+    private static Map<String, Collection<String>> copyRelationships(
+        Map<String, Collection<String>> relationships) {
+      Map<String, Collection<String>> copy = new HashMap<>();
+      if (relationships != null) {
+        relationships.forEach((type, ids) -> copy.put(type, new ArrayList<>(ids)));
+      }
+      return copy;
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @Override
+    public int getTtlSeconds() {
+      return ttlSeconds;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+      return attributes;
+    }
+
+    @Override
+    public Map<String, Collection<String>> getRelationships() {
+      return relationships;
+    }
+  }
+
+  private static class Entry<T> {
+    private final T value;
+    private final long generation;
+    private final long expiresAt;
+
+    Entry(T value, long generation, long expiresAt) {
+      this.value = value;
+      this.generation = generation;
+      this.expiresAt = expiresAt;
+    }
+
+    boolean isValid(long currentGeneration, long now) {
+      return generation == currentGeneration && now < expiresAt;
+    }
+  }
+
+  private abstract static class TypedKey {
+    final String type;
+
+    TypedKey(String type) {
+      this.type = type;
+    }
+  }
+
+  private static class ItemKey extends TypedKey {
+    private final String id;
+
+    ItemKey(String type, String id) {
+      super(type);
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ItemKey itemKey = (ItemKey) o;
+      return type.equals(itemKey.type) && id.equals(itemKey.id);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(type, id);
+    }
+  }
+
+  private static class IdentifierKey extends TypedKey {
+    private final String glob;
+
+    IdentifierKey(String type, String glob) {
+      super(type);
+      this.glob = glob;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      IdentifierKey that = (IdentifierKey) o;
+      return type.equals(that.type) && Objects.equals(glob, that.glob);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(type, glob);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.near;
+
+import com.netflix.spinnaker.cats.cache.NamedCacheFactory;
+import com.netflix.spinnaker.cats.cache.WriteableCache;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/** Wraps the caches produced by another NamedCacheFactory in NearCaches. */
+public class NearCacheNamedCacheFactory implements NamedCacheFactory {
+  private final NamedCacheFactory delegate;
+  private final NearCacheOptions options;
+  private final NearCache.CacheMetrics cacheMetrics;
+  private final ConcurrentMap<String, WriteableCache> caches = new ConcurrentHashMap<>();
+
+  public NearCacheNamedCacheFactory(
+      NamedCacheFactory delegate, NearCacheOptions options, NearCache.CacheMetrics cacheMetrics) {
+    this.delegate = delegate;
+    this.options = options;
+    this.cacheMetrics = cacheMetrics;
+  }
+
+  @Override
+  public WriteableCache getCache(String name) {
+    return caches.computeIfAbsent(
+        name, n -> new NearCache(n, delegate.getCache(n), options, cacheMetrics));
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.near;
+
+import com.google.common.base.Preconditions;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class NearCacheOptions {
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private final long maxItems;
+  private final long maxIdentifierQueries;
+  private final long defaultTtlMillis;
+  private final Map<String, Long> ttlMillisByType;
+  private final long versionCheckIntervalMillis;
+
+  private static long nonNegative(String name, long value) {
+    Preconditions.checkArgument(value >= 0, "%s must not be negative (%s)", name, value);
+    return value;
+  }
+
+  public NearCacheOptions(
+      long maxItems,
+      long maxIdentifierQueries,
+      long defaultTtlMillis,
+      Map<String, Long> ttlMillisByType,
+      long versionCheckIntervalMillis) {
+    this.maxItems = nonNegative("maxItems", maxItems);
+    this.maxIdentifierQueries = nonNegative("maxIdentifierQueries", maxIdentifierQueries);
+    this.defaultTtlMillis = nonNegative("defaultTtlMillis", defaultTtlMillis);
+    ttlMillisByType.forEach((type, ttl) -> nonNegative("ttlMillis." + type, ttl));
+    this.ttlMillisByType = Collections.unmodifiableMap(new HashMap<>(ttlMillisByType));
+    this.versionCheckIntervalMillis =
+        nonNegative("versionCheckIntervalMillis", versionCheckIntervalMillis);
+  }
+
+  public long getMaxItems() {
+    return maxItems;
+  }
+
+  public long getMaxIdentifierQueries() {
+    return maxIdentifierQueries;
+  }
+
+  /**
+   * @param type the type of the items
+   * @return how long items of the type may be served from the near cache, 0 if they are never
+   *     cached
+   */
+  public long getTtlMillis(String type) {
+    return ttlMillisByType.getOrDefault(type, defaultTtlMillis);
+  }
+
+  public long getMaxTtlMillis() {
+    return ttlMillisByType.values().stream().reduce(defaultTtlMillis, Math::max);
+  }
+
+  public long getVersionCheckIntervalMillis() {
+    return versionCheckIntervalMillis;
+  }
+
+  public static class Builder {
+    public static final long DEFAULT_MAX_ITEMS = 100_000;
+    public static final long DEFAULT_MAX_IDENTIFIER_QUERIES = 1_000;
+    public static final long DEFAULT_TTL_MILLIS = 5_000;
+    public static final long DEFAULT_VERSION_CHECK_INTERVAL_MILLIS = 1_000;
+
+    long maxItems = DEFAULT_MAX_ITEMS;
+    long maxIdentifierQueries = DEFAULT_MAX_IDENTIFIER_QUERIES;
+    long defaultTtlMillis = DEFAULT_TTL_MILLIS;
+    Map<String, Long> ttlMillisByType = new HashMap<>();
+    long versionCheckIntervalMillis = DEFAULT_VERSION_CHECK_INTERVAL_MILLIS;
+
+    public Builder maxItems(long maxItems) {
+      this.maxItems = maxItems;
+      return this;
+    }
+
+    public Builder maxIdentifierQueries(long maxIdentifierQueries) {
+      this.maxIdentifierQueries = maxIdentifierQueries;
+      return this;
+    }
+
+    public Builder defaultTtl(long defaultTtlMillis) {
+      this.defaultTtlMillis = defaultTtlMillis;
+      return this;
+    }
+
+    public Builder ttl(String type, long ttlMillis) {
+      this.ttlMillisByType.put(type, ttlMillis);
+      return this;
+    }
+
+    public Builder versionCheckInterval(long versionCheckIntervalMillis) {
+      this.versionCheckIntervalMillis = versionCheckIntervalMillis;
+      return this;
+    }
+
+    public NearCacheOptions build() {
+      return new NearCacheOptions(
+          maxItems,
+          maxIdentifierQueries,
+          defaultTtlMillis,
+          ttlMillisByType,
+          versionCheckIntervalMillis);
+    }
+  }
+}
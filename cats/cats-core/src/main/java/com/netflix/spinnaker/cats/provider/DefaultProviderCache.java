@@ -17,6 +17,7 @@
 package com.netflix.spinnaker.cats.provider;
 
 import com.netflix.spinnaker.cats.agent.CacheResult;
+import com.netflix.spinnaker.cats.agent.DeltaCacheResult;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.cats.cache.CacheFilter;
 import com.netflix.spinnaker.cats.cache.DefaultCacheData;
@@ -30,6 +31,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * An implementation of ProviderCache that writes through to a provided backing WriteableCache.
@@ -85,6 +87,15 @@ public class DefaultProviderCache implements ProviderCache {
     return buildResponse(all);
   }
 
+  @Override
+  public Stream<CacheData> streamAll(String type, CacheFilter cacheFilter) {
+    validateTypes(type);
+    return backingStore
+        .streamAll(type, cacheFilter)
+        .filter(item -> !ALL_ID.equals(item.getId()))
+        .map(this::mergeRelationships);
+  }
+
   @Override
   public Collection<CacheData> getAll(String type, Collection<String> identifiers) {
     return getAll(type, identifiers, null);
@@ -175,6 +186,39 @@ public class DefaultProviderCache implements ProviderCache {
         });
   }
 
+  /**
+   * Stores a delta, keeping the {@code _ALL_} record of the ids cached by the source agent complete
+   * so that the next full result still evicts everything the agent no longer reports.
+   */
+  @Override
+  public void putCacheDelta(
+      String sourceAgentType, Collection<String> authoritativeTypes, DeltaCacheResult delta) {
+    Set<String> allTypes = new HashSet<>(delta.getCacheResults().keySet());
+    allTypes.addAll(delta.getEvictions().keySet());
+    validateTypes(allTypes);
+
+    for (String type : allTypes) {
+      Collection<CacheData> upserts =
+          delta.getCacheResults().getOrDefault(type, Collections.emptyList());
+      Collection<String> deletes = delta.getEvictions().getOrDefault(type, Collections.emptyList());
+
+      if (authoritativeTypes.contains(type)) {
+        Set<String> sourceIds = new HashSet<>(getExistingSourceIdentifiers(type, sourceAgentType));
+        for (CacheData item : upserts) {
+          sourceIds.add(item.getId());
+        }
+        sourceIds.removeAll(deletes);
+        cacheDataType(type, sourceAgentType, upserts, sourceIds);
+      } else if (!upserts.isEmpty()) {
+        cacheDataType(type, sourceAgentType, upserts);
+      }
+
+      if (!deletes.isEmpty()) {
+        evictDeletedItems(type, deletes);
+      }
+    }
+  }
+
   @Override
   public void putCacheData(String sourceAgentType, CacheData cacheData) {
     backingStore.merge(sourceAgentType, cacheData);
@@ -225,11 +269,18 @@ public class DefaultProviderCache implements ProviderCache {
 
   private void cacheDataType(String type, String sourceAgentType, Collection<CacheData> items) {
     Collection<String> idSet = new HashSet<>();
+    for (CacheData item : items) {
+      idSet.add(item.getId());
+    }
+    cacheDataType(type, sourceAgentType, items, idSet);
+  }
 
+  /** @param idSet the ids recorded as cached by sourceAgentType */
+  private void cacheDataType(
+      String type, String sourceAgentType, Collection<CacheData> items, Collection<String> idSet) {
     int ttlSeconds = -1;
     Collection<CacheData> toStore = new ArrayList<>(items.size() + 1);
     for (CacheData item : items) {
-      idSet.add(item.getId());
       toStore.add(uniqueifyRelationships(item, sourceAgentType));
 
       if (item.getTtlSeconds() > ttlSeconds) {
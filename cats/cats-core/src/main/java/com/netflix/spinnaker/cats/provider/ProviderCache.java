@@ -17,6 +17,7 @@
 package com.netflix.spinnaker.cats.provider;
 
 import com.netflix.spinnaker.cats.agent.CacheResult;
+import com.netflix.spinnaker.cats.agent.DeltaCacheResult;
 import com.netflix.spinnaker.cats.cache.Cache;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import java.util.Collection;
@@ -47,6 +48,21 @@ public interface ProviderCache extends Cache {
   void addCacheResult(
       String source, Collection<String> authoritativeTypes, CacheResult cacheResult);
 
+  /**
+   * * Applies a delta on top of the items previously stored by source: upserts are stored and
+   * deletes are evicted, nothing else is evicted.
+   *
+   * @param source The calling caching agent.
+   * @param authoritativeTypes Authoritative cache results define graph vertices, informative
+   *     results create edges.
+   * @param delta The changes since the previous result of source.
+   */
+  default void putCacheDelta(
+      String source, Collection<String> authoritativeTypes, DeltaCacheResult delta) {
+    addCacheResult(source, authoritativeTypes, delta);
+    delta.getEvictions().forEach(this::evictDeletedItems);
+  }
+
   /**
    * * Add or update a single authoritative resource.
    *
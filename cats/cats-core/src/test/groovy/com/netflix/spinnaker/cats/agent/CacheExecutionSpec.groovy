@@ -28,6 +28,17 @@ class CacheExecutionSpec extends Specification {
   def providerRegistry = Mock(ProviderRegistry)
   def cachingAgent = Mock(CachingAgent)
   def providerCache = Mock(ProviderCache)
+  def storedGenerations = [:]
+
+  def setup() {
+    // the stored generations are the only state of the cache these specs read back
+    providerCache.putCacheData(CachingAgent.CacheExecution.STORED_GENERATIONS_TYPE, _) >> { type, CacheData data ->
+      storedGenerations[data.id] = data
+    }
+    providerCache.get(CachingAgent.CacheExecution.STORED_GENERATIONS_TYPE, _) >> { type, String id ->
+      storedGenerations[id]
+    }
+  }
 
   void "should evict keys that were NOT cached by the responsible agent"() {
     given:
@@ -82,4 +93,104 @@ class CacheExecutionSpec extends Specification {
 
     result.evictions.isEmpty()
   }
+
+  void "should only store deltas on top of the last stored generation"() {
+    given:
+    def deltaCachingAgent = Mock(DeltaCachingAgent) {
+      getAgentType() >> "agent"
+      getProvidedDataTypes() >> [AUTHORITATIVE.forType("securityGroups")]
+      getCacheKeyPatterns() >> Optional.empty()
+      getFullResyncIntervalMillis() >> Long.MAX_VALUE
+    }
+    providerRegistry.getProviderCache(_) >> providerCache
+    def cacheExecution = new CachingAgent.CacheExecution(providerRegistry)
+    def full = DeltaCacheResult.full(1, ["securityGroups": []])
+    def delta = DeltaCacheResult.delta(1, 2, ["securityGroups": []], ["securityGroups": ["foo"]])
+    def gap = DeltaCacheResult.delta(5, 6, ["securityGroups": []], [:])
+
+    when:
+    cacheExecution.storeAgentResult(deltaCachingAgent, gap)
+
+    then:
+    1 * deltaCachingAgent.requestFullResync()
+    0 * providerCache.putCacheDelta(_, _, _)
+
+    when:
+    cacheExecution.storeAgentResult(deltaCachingAgent, full)
+    cacheExecution.storeAgentResult(deltaCachingAgent, delta)
+
+    then:
+    1 * providerCache.putCacheResult("agent", ["securityGroups"] as Set, full)
+    1 * providerCache.putCacheDelta("agent", ["securityGroups"] as Set, delta)
+    0 * deltaCachingAgent.requestFullResync()
+    0 * providerCache.filterIdentifiers(_, _)
+  }
+
+  void "should request a full resync once the resync interval has passed"() {
+    given:
+    def deltaCachingAgent = Mock(DeltaCachingAgent) {
+      getAgentType() >> "agent"
+      getProvidedDataTypes() >> [AUTHORITATIVE.forType("securityGroups")]
+      getCacheKeyPatterns() >> Optional.empty()
+      getFullResyncIntervalMillis() >> 0
+    }
+    providerRegistry.getProviderCache(_) >> providerCache
+    def cacheExecution = new CachingAgent.CacheExecution(providerRegistry)
+
+    when:
+    cacheExecution.storeAgentResult(deltaCachingAgent, DeltaCacheResult.full(1, ["securityGroups": []]))
+    cacheExecution.storeAgentResult(deltaCachingAgent, DeltaCacheResult.delta(1, 2, ["securityGroups": []], [:]))
+
+    then:
+    1 * providerCache.putCacheDelta(_, _, _)
+    1 * deltaCachingAgent.requestFullResync()
+  }
+
+  void "should request a full resync if the last generation was stored by another node"() {
+    given:
+    def deltaCachingAgent = Mock(DeltaCachingAgent) {
+      getAgentType() >> "agent"
+      getProvidedDataTypes() >> [AUTHORITATIVE.forType("securityGroups")]
+      getCacheKeyPatterns() >> Optional.empty()
+      getFullResyncIntervalMillis() >> Long.MAX_VALUE
+    }
+    providerRegistry.getProviderCache(_) >> providerCache
+    def node = new CachingAgent.CacheExecution(providerRegistry)
+    def otherNode = new CachingAgent.CacheExecution(providerRegistry)
+
+    when:
+    node.storeAgentResult(deltaCachingAgent, DeltaCacheResult.full(1, ["securityGroups": []]))
+    otherNode.storeAgentResult(deltaCachingAgent, DeltaCacheResult.full(1, ["securityGroups": []]))
+    node.storeAgentResult(deltaCachingAgent, DeltaCacheResult.delta(1, 2, ["securityGroups": []], [:]))
+
+    then:
+    2 * providerCache.putCacheResult(_, _, _)
+    0 * providerCache.putCacheDelta(_, _, _)
+    1 * deltaCachingAgent.requestFullResync()
+  }
+
+  void "should evict keys that were NOT cached by a full delta result"() {
+    given:
+    def deltaCachingAgent = Mock(DeltaCachingAgent) {
+      getAgentType() >> "agent"
+      getProvidedDataTypes() >> [AUTHORITATIVE.forType("securityGroups")]
+      getCacheKeyPatterns() >> Optional.of(["securityGroups": "securityGroups:*:test:us-west-1"])
+    }
+    providerRegistry.getProviderCache(_) >> providerCache
+    def cacheExecution = new CachingAgent.CacheExecution(providerRegistry)
+    def full = DeltaCacheResult.full(1, [
+      "securityGroups": [new DefaultCacheData("securityGroups:foo:test:us-west-1", [:], [:])]
+    ])
+
+    when:
+    cacheExecution.storeAgentResult(deltaCachingAgent, full)
+
+    then:
+    1 * providerCache.filterIdentifiers("securityGroups", "securityGroups:*:test:us-west-1") >> [
+      "securityGroups:foo:test:us-west-1",
+      "securityGroups:bar:test:us-west-1"
+    ]
+    1 * providerCache.putCacheResult("agent", ["securityGroups"] as Set, full)
+    full.evictions["securityGroups"] == ["securityGroups:bar:test:us-west-1"]
+  }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.agent
+
+import spock.lang.Specification
+import spock.lang.Subject
+
+class SchedulerTelemetryStoreSpec extends Specification {
+  @Subject
+  SchedulerTelemetryStore store = new SchedulerTelemetryStore()
+
+  Agent agent = Stub(Agent) {
+    getAgentType() >> "test/agent"
+    getProviderName() >> "test"
+  }
+
+  def "keeps the latest values per agent and scheduler"() {
+    when:
+    store.agentWaited("scheduler", agent, 100)
+    store.lockAttempted("scheduler", agent, 5, true)
+    store.phaseCompleted(agent, AgentSchedulerTelemetry.Phase.LOAD, 1000, true)
+    store.phaseCompleted(agent, AgentSchedulerTelemetry.Phase.STORE, 200, false)
+    store.intervalsMissed("scheduler", agent, 2)
+    store.intervalsMissed("scheduler", agent, 1)
+    store.saturation("scheduler", 3, 4)
+
+    then:
+    def stats = store.listAgents().first()
+    stats.agentType == "test/agent"
+    stats.scheduler == "scheduler"
+    stats.lastQueueWaitMs == 100
+    stats.lastLockLatencyMs == 5
+    stats.lastLoadMs == 1000
+    stats.lastStoreMs == 200
+    stats.lastFailedPhase == AgentSchedulerTelemetry.Phase.STORE
+    stats.missedIntervals == 3
+
+    store.listSchedulers().first().saturation == 0.75d
+  }
+
+  def "listener failures do not propagate"() {
+    given:
+    def listener = Mock(AgentSchedulerTelemetry)
+    store.addListener(listener)
+
+    when:
+    store.agentWaited("scheduler", agent, 100)
+
+    then:
+    1 * listener.agentWaited("scheduler", agent, 100) >> { throw new IllegalStateException() }
+    noExceptionThrown()
+  }
+}
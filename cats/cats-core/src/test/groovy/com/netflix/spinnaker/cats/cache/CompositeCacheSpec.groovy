@@ -47,4 +47,19 @@ class CompositeCacheSpec extends CacheSpec {
         bar.attributes.c1Att == 'c1washere'
         bar.attributes.c2Att == 'c2washere'
     }
+
+    def "streamAll merges items present in more than one cache"() {
+        setup:
+        c1.merge('foo', createData('bar', [c1Att: 'c1washere']))
+        c2.merge('foo', createData('bar', [c2Att: 'c2washere']))
+        c2.merge('foo', createData('baz'))
+
+        when:
+        def results = cache.streamAll('foo').iterator().toList()
+
+        then:
+        results*.id.sort() == ['bar', 'baz']
+        results.find { it.id == 'bar' }.attributes.c1Att == 'c1washere'
+        results.find { it.id == 'bar' }.attributes.c2Att == 'c2washere'
+    }
 }
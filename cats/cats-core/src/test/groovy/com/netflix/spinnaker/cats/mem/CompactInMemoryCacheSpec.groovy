@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.mem
+
+import com.netflix.spinnaker.cats.cache.WriteableCacheSpec
+
+class CompactInMemoryCacheSpec extends WriteableCacheSpec {
+
+    @Override
+    CompactInMemoryCache getSubject() {
+        new CompactInMemoryCache()
+    }
+
+    def 'merge keeps existing relationships that are not updated'() {
+        setup:
+        cache.merge('foo', createData('bar', [a: 'a'], [rel1: ['r1'], rel2: ['r2']]))
+
+        when:
+        cache.merge('foo', createData('bar', [b: 'b'], [rel2: ['r3'], rel1: null]))
+        def bar = cache.get('foo', 'bar')
+
+        then:
+        bar.attributes == [b: 'b']
+        bar.relationships == [rel2: ['r3']]
+    }
+
+    def 'items read before a merge are unaffected by it'() {
+        setup:
+        cache.merge('foo', createData('bar', [a: 'a'], [rel1: ['r1']]))
+        def before = cache.get('foo', 'bar')
+
+        when:
+        before.relationships.rel1.add('mutated')
+        cache.merge('foo', createData('bar', [a: 'b'], [rel1: ['r2']]))
+
+        then:
+        before.attributes.a == 'a'
+        cache.get('foo', 'bar').attributes.a == 'b'
+        cache.get('foo', 'bar').relationships.rel1 == ['r2']
+    }
+
+    def 'merges and evicts many items'() {
+        when:
+        cache.mergeAll('foo', (0..<5000).collect { createData("id-$it".toString()) })
+        cache.evictAll('foo', (0..<5000).findAll { it % 2 }.collect { "id-$it".toString() })
+
+        then:
+        cache.getIdentifiers('foo').size() == 2500
+        cache.get('foo', 'id-10') != null
+        cache.get('foo', 'id-11') == null
+    }
+}
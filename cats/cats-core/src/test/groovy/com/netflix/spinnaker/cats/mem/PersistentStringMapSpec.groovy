@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.mem
+
+import spock.lang.Specification
+
+class PersistentStringMapSpec extends Specification {
+
+    def 'put and remove leave earlier versions untouched'() {
+        given:
+        def empty = PersistentStringMap.<String>empty()
+
+        when:
+        def one = empty.put('a', '1')
+        def two = one.put('b', '2')
+        def removed = two.remove('a')
+
+        then:
+        empty.size() == 0
+        one.size() == 1
+        one.get('b') == null
+        two.get('a') == '1'
+        two.get('b') == '2'
+        removed.size() == 1
+        removed.get('a') == null
+        removed.get('b') == '2'
+    }
+
+    def 'keys with colliding hash codes are kept apart'() {
+        expect:
+        'Aa'.hashCode() == 'BB'.hashCode()
+
+        when:
+        def map = PersistentStringMap.<String>empty().put('Aa', '1').put('BB', '2').put('C#', '3')
+
+        then:
+        map.size() == 3
+        map.get('Aa') == '1'
+        map.get('BB') == '2'
+        map.get('C#') == '3'
+
+        when:
+        map = map.remove('Aa')
+
+        then:
+        map.size() == 2
+        map.get('Aa') == null
+        map.get('BB') == '2'
+    }
+
+    def 'matches a HashMap across many updates'() {
+        given:
+        def random = new Random(42)
+        def expected = [:]
+        def map = PersistentStringMap.<String>empty()
+
+        when:
+        20000.times {
+            def key = "key-${random.nextInt(5000)}".toString()
+            if (random.nextInt(3) == 0) {
+                expected.remove(key)
+                map = map.remove(key)
+            } else {
+                expected[key] = it.toString()
+                map = map.put(key, it.toString())
+            }
+        }
+        def actual = [:]
+        map.forEach { k, v -> actual[k] = v }
+
+        then:
+        map.size() == expected.size()
+        actual == expected
+    }
+}
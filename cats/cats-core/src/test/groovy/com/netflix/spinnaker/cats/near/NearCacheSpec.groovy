@@ -0,0 +1,218 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.near
+
+import com.netflix.spinnaker.cats.cache.CacheData
+import com.netflix.spinnaker.cats.cache.CacheFilter
+import com.netflix.spinnaker.cats.cache.RelationshipCacheFilter
+import com.netflix.spinnaker.cats.cache.VersionedCache
+import com.netflix.spinnaker.cats.cache.WriteableCacheSpec
+import com.netflix.spinnaker.cats.mem.InMemoryCache
+
+import java.time.Clock
+import java.time.Instant
+import java.time.ZoneId
+import java.time.ZoneOffset
+
+class NearCacheSpec extends WriteableCacheSpec {
+
+    static final long TTL = 1000
+    static final long VERSION_CHECK_INTERVAL = 100
+
+    TestClock clock = new TestClock()
+    VersionedInMemoryCache backingStore = new VersionedInMemoryCache()
+
+    @Override
+    NearCache getSubject() {
+        new NearCache(
+            'test',
+            backingStore,
+            NearCacheOptions.builder().defaultTtl(TTL).versionCheckInterval(VERSION_CHECK_INTERVAL).ttl('uncached', 0).build(),
+            null,
+            clock)
+    }
+
+    def 'serves items from memory until their ttl expires'() {
+        setup:
+        backingStore.merge('foo', createData('bar', [value: 1]))
+
+        when:
+        def first = cache.get('foo', 'bar')
+        backingStore.merge('foo', createData('bar', [value: 2]))
+
+        then:
+        first.attributes.value == 1
+        cache.get('foo', 'bar').attributes.value == 1
+
+        when:
+        clock.now += TTL
+
+        then:
+        cache.get('foo', 'bar').attributes.value == 2
+    }
+
+    def 'caches items separately per relationship filter'() {
+        setup:
+        backingStore.merge('foo', createData('bar', [:], [rel1: ['a'], rel2: ['b']]))
+
+        expect:
+        cache.get('foo', 'bar', RelationshipCacheFilter.include('rel1')).relationships.keySet() == ['rel1'] as Set
+        cache.get('foo', 'bar').relationships.keySet() == ['rel1', 'rel2'] as Set
+        cache.get('foo', 'bar', RelationshipCacheFilter.none()).relationships.isEmpty()
+    }
+
+    def 'writes through the near cache invalidate the items they touch'() {
+        setup:
+        backingStore.merge('foo', createData('bar', [value: 1]))
+        backingStore.merge('rel1', createData('a', [value: 1]))
+        cache.get('foo', 'bar')
+        cache.get('rel1', 'a')
+        cache.filterIdentifiers('foo', '*')
+
+        when:
+        cache.merge('foo', createData('baz', [value: 2], [rel1: ['a']]))
+        backingStore.merge('rel1', createData('a', [value: 2]))
+        cache.evict('foo', 'bar')
+
+        then:
+        cache.get('foo', 'bar') == null
+        cache.get('rel1', 'a').attributes.value == 2
+        cache.filterIdentifiers('foo', '*') as Set == ['baz'] as Set
+    }
+
+    def 'a new version of a type drops its entries once the version is checked'() {
+        setup:
+        backingStore.merge('foo', createData('bar', [value: 1]))
+        cache.get('foo', 'bar')
+
+        when:
+        backingStore.merge('foo', createData('bar', [value: 2]))
+        backingStore.version++
+
+        then:
+        cache.get('foo', 'bar').attributes.value == 1
+
+        when:
+        clock.now += VERSION_CHECK_INTERVAL
+
+        then:
+        cache.get('foo', 'bar').attributes.value == 2
+    }
+
+    def 'remembers items that do not exist'() {
+        when:
+        def first = cache.get('foo', 'bar')
+        backingStore.merge('foo', createData('bar'))
+
+        then:
+        first == null
+        cache.get('foo', 'bar') == null
+        cache.getAll('foo', ['bar']).isEmpty()
+
+        when:
+        clock.now += TTL
+
+        then:
+        cache.get('foo', 'bar') != null
+    }
+
+    def 'types with a ttl of 0 are not near cached'() {
+        setup:
+        backingStore.merge('uncached', createData('bar', [value: 1]))
+        cache.get('uncached', 'bar')
+
+        when:
+        backingStore.merge('uncached', createData('bar', [value: 2]))
+
+        then:
+        cache.get('uncached', 'bar').attributes.value == 2
+    }
+
+    def 'near cached items are copied for each reader'() {
+        setup:
+        backingStore.merge('foo', createData('bar', [value: 1], [rel1: ['a']]))
+        def item = cache.get('foo', 'bar')
+
+        when:
+        item.attributes.value = 2
+        item.relationships.rel1.add('b')
+        item.relationships.rel2 = ['c']
+
+        then:
+        item.attributes.value == 2
+        item.relationships.rel1 as List == ['a', 'b']
+        cache.get('foo', 'bar').attributes.value == 1
+        cache.get('foo', 'bar').relationships == [rel1: ['a']]
+    }
+
+    def 'items written while they are loaded are not near cached'() {
+        setup:
+        backingStore.merge('foo', createData('bar', [value: 1]))
+        backingStore.afterLoad = {
+            backingStore.afterLoad = null
+            cache.evict('foo', 'bar')
+        }
+
+        when:
+        def first = cache.get('foo', 'bar')
+
+        then:
+        first.attributes.value == 1
+        cache.get('foo', 'bar') == null
+    }
+
+    static class VersionedInMemoryCache extends InMemoryCache implements VersionedCache {
+        long version = 0
+        Closure afterLoad
+
+        @Override
+        Collection<CacheData> getAll(String type, Collection<String> identifiers, CacheFilter cacheFilter) {
+            def loaded = super.getAll(type, identifiers, cacheFilter)
+            afterLoad?.call()
+            return loaded
+        }
+
+        @Override
+        Long getTypeVersion(String type) {
+            return version
+        }
+    }
+
+    static class TestClock extends Clock {
+        long now = 0
+
+        @Override
+        ZoneId getZone() {
+            ZoneOffset.UTC
+        }
+
+        @Override
+        Clock withZone(ZoneId zone) {
+            this
+        }
+
+        @Override
+        Instant instant() {
+            Instant.ofEpochMilli(now)
+        }
+
+        @Override
+        long millis() {
+            now
+        }
+    }
+}
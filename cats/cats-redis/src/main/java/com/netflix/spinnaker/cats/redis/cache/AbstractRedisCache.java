@@ -24,6 +24,8 @@ import com.netflix.spinnaker.cats.cache.WriteableCache;
 import com.netflix.spinnaker.kork.jedis.RedisClientDelegate;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Response;
@@ -137,6 +139,21 @@ public abstract class AbstractRedisCache implements WriteableCache {
     return getAll(type, allIds, cacheFilter);
   }
 
+  /**
+   * Pages through the members of the type with SSCAN and fetches each page with MGET as the stream
+   * is consumed, so at most one scan page of items is held at a time.
+   */
+  @Override
+  public Stream<CacheData> streamAll(String type, CacheFilter cacheFilter) {
+    final List<String> knownRels = getKnownRelationships(type, cacheFilter);
+    final Iterator<List<String>> pages = new MemberPageIterator(allOfTypeId(type));
+
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .flatMap(page -> getItems(type, page, knownRels).stream());
+  }
+
   @Override
   public Collection<CacheData> getAll(String type, String... identifiers) {
     return getAll(type, Arrays.asList(identifiers));
@@ -154,14 +171,7 @@ public abstract class AbstractRedisCache implements WriteableCache {
       return new ArrayList<>();
     }
     Collection<String> ids = new LinkedHashSet<>(identifiers);
-    final List<String> knownRels;
-    Set<String> allRelationships = scanMembers(allRelationshipsId(type));
-    if (cacheFilter == null) {
-      knownRels = new ArrayList<>(allRelationships);
-    } else {
-      knownRels =
-          new ArrayList<>(cacheFilter.filter(CacheFilter.Type.RELATIONSHIP, allRelationships));
-    }
+    final List<String> knownRels = getKnownRelationships(type, cacheFilter);
 
     Collection<CacheData> result = new ArrayList<>(ids.size());
 
@@ -182,6 +192,14 @@ public abstract class AbstractRedisCache implements WriteableCache {
     return scanMembers(allOfTypeId(type), Optional.of(glob));
   }
 
+  private List<String> getKnownRelationships(String type, CacheFilter cacheFilter) {
+    Set<String> allRelationships = scanMembers(allRelationshipsId(type));
+    if (cacheFilter == null) {
+      return new ArrayList<>(allRelationships);
+    }
+    return new ArrayList<>(cacheFilter.filter(CacheFilter.Type.RELATIONSHIP, allRelationships));
+  }
+
   private Set<String> scanMembers(String setKey) {
     return scanMembers(setKey, Optional.empty());
   }
@@ -204,6 +222,58 @@ public abstract class AbstractRedisCache implements WriteableCache {
         });
   }
 
+  /**
+   * Iterates over the members of a set one SSCAN page at a time. SSCAN may return an element more
+   * than once, so identifiers already handed out are skipped.
+   */
+  private class MemberPageIterator implements Iterator<List<String>> {
+    private final String setKey;
+    private final ScanParams scanParams = new ScanParams().count(options.getScanSize());
+    private final Set<String> seen = new HashSet<>();
+
+    private String cursor = "0";
+    private boolean complete = false;
+    private List<String> nextPage;
+
+    MemberPageIterator(String setKey) {
+      this.setKey = setKey;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (nextPage == null && !complete) {
+        final ScanResult<String> scanResult =
+            redisClientDelegate.withCommandsClient(
+                client -> {
+                  return client.sscan(setKey, cursor, scanParams);
+                });
+        cursor = scanResult.getCursor();
+        complete = "0".equals(cursor);
+
+        List<String> page = new ArrayList<>(scanResult.getResult().size());
+        for (String member : scanResult.getResult()) {
+          if (seen.add(member)) {
+            page.add(member);
+          }
+        }
+        if (!page.isEmpty()) {
+          nextPage = page;
+        }
+      }
+      return nextPage != null;
+    }
+
+    @Override
+    public List<String> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      List<String> page = nextPage;
+      nextPage = null;
+      return page;
+    }
+  }
+
   protected boolean isHashingDisabled(String type) {
     if (!options.isHashingEnabled()) {
       return true;
@@ -22,7 +22,9 @@ import com.netflix.spinnaker.cats.agent.AgentExecution;
 import com.netflix.spinnaker.cats.agent.AgentLock;
 import com.netflix.spinnaker.cats.agent.AgentScheduler;
 import com.netflix.spinnaker.cats.agent.AgentSchedulerAware;
+import com.netflix.spinnaker.cats.agent.AgentSchedulerTelemetry;
 import com.netflix.spinnaker.cats.agent.ExecutionInstrumentation;
+import com.netflix.spinnaker.cats.agent.SchedulerTelemetryStore;
 import com.netflix.spinnaker.cats.cluster.AgentIntervalProvider;
 import com.netflix.spinnaker.cats.cluster.NodeIdentity;
 import com.netflix.spinnaker.cats.cluster.NodeStatusProvider;
@@ -49,6 +51,7 @@ public class ClusteredAgentScheduler extends CatsModuleAware
   }
 
   private static final Logger logger = LoggerFactory.getLogger(ClusteredAgentScheduler.class);
+  private static final String SCHEDULER_NAME = ClusteredAgentScheduler.class.getSimpleName();
 
   private final RedisClientDelegate redisClientDelegate;
   private final NodeIdentity nodeIdentity;
@@ -58,6 +61,14 @@ public class ClusteredAgentScheduler extends CatsModuleAware
 
   private final Map<String, AgentExecutionAction> agents = new ConcurrentHashMap<>();
   private final Map<String, NextAttempt> activeAgents = new ConcurrentHashMap<>();
+
+  /**
+   * When each agent became due, as far as this node knows: the time it asked its lock to expire.
+   * Forgotten once another node is found holding the lock, so this is best effort.
+   */
+  private final Map<String, Long> dueTimes = new ConcurrentHashMap<>();
+
+  private final AgentSchedulerTelemetry telemetry = SchedulerTelemetryStore.getStore();
   private final NodeStatusProvider nodeStatusProvider;
   private final DynamicConfigService dynamicConfigService;
 
@@ -133,7 +144,19 @@ public class ClusteredAgentScheduler extends CatsModuleAware
         final String agentType = agent.getKey();
         AgentIntervalProvider.Interval interval =
             intervalProvider.getInterval(agent.getValue().getAgent());
-        if (acquireRunKey(agentType, interval.getTimeout())) {
+        long startTime = System.currentTimeMillis();
+        boolean locked = acquireRunKey(agentType, interval.getTimeout());
+        telemetry.lockAttempted(
+            SCHEDULER_NAME,
+            agent.getValue().getAgent(),
+            System.currentTimeMillis() - startTime,
+            locked);
+        if (!locked) {
+          Long dueTime = dueTimes.get(agentType);
+          if (dueTime != null && dueTime <= startTime) {
+            dueTimes.remove(agentType);
+          }
+        } else {
           acquired.put(
               agentType,
               new NextAttempt(
@@ -164,7 +187,28 @@ public class ClusteredAgentScheduler extends CatsModuleAware
     activeAgents.putAll(thisRun);
     for (final Map.Entry<String, NextAttempt> toRun : thisRun.entrySet()) {
       final AgentExecutionAction exec = agents.get(toRun.getKey());
-      agentExecutionPool.submit(new AgentJob(toRun.getValue(), exec, this));
+      Long dueTime = dueTimes.remove(toRun.getKey());
+      agentExecutionPool.submit(
+          new AgentJob(
+              toRun.getValue(),
+              dueTime == null ? toRun.getValue().currentTime : dueTime,
+              exec,
+              this));
+    }
+
+    telemetry.saturation(
+        SCHEDULER_NAME,
+        activeAgents.size(),
+        dynamicConfigService.getConfig(Integer.class, "redis.agent.max-concurrent-agents", 1000));
+  }
+
+  private void agentStarted(Agent agent, long dueTime) {
+    long waitMs = Math.max(0, System.currentTimeMillis() - dueTime);
+    telemetry.agentWaited(SCHEDULER_NAME, agent, waitMs);
+
+    long interval = intervalProvider.getInterval(agent).getInterval();
+    if (interval > 0 && waitMs >= interval) {
+      telemetry.intervalsMissed(SCHEDULER_NAME, agent, waitMs / interval);
     }
   }
 
@@ -235,6 +279,7 @@ public class ClusteredAgentScheduler extends CatsModuleAware
   private void agentCompleted(String agentType, long nextExecutionTime) {
     try {
       releaseRunKey(agentType, nextExecutionTime);
+      dueTimes.put(agentType, nextExecutionTime);
     } finally {
       activeAgents.remove(agentType);
     }
@@ -291,12 +336,17 @@ public class ClusteredAgentScheduler extends CatsModuleAware
 
   private static class AgentJob implements Runnable {
     private final NextAttempt lockReleaseTime;
+    private final long dueTime;
     private final AgentExecutionAction action;
     private final ClusteredAgentScheduler scheduler;
 
     public AgentJob(
-        NextAttempt times, AgentExecutionAction action, ClusteredAgentScheduler scheduler) {
+        NextAttempt times,
+        long dueTime,
+        AgentExecutionAction action,
+        ClusteredAgentScheduler scheduler) {
       this.lockReleaseTime = times;
+      this.dueTime = dueTime;
       this.action = action;
       this.scheduler = scheduler;
     }
@@ -305,6 +355,7 @@ public class ClusteredAgentScheduler extends CatsModuleAware
     public void run() {
       Status status = Status.FAILURE;
       try {
+        scheduler.agentStarted(action.getAgent(), dueTime);
         status = action.execute();
       } finally {
         scheduler.agentCompleted(
@@ -21,9 +21,11 @@ import com.netflix.spinnaker.cats.agent.Agent;
 import com.netflix.spinnaker.cats.agent.AgentExecution;
 import com.netflix.spinnaker.cats.agent.AgentScheduler;
 import com.netflix.spinnaker.cats.agent.AgentSchedulerAware;
+import com.netflix.spinnaker.cats.agent.AgentSchedulerTelemetry;
 import com.netflix.spinnaker.cats.agent.CacheResult;
 import com.netflix.spinnaker.cats.agent.CachingAgent;
 import com.netflix.spinnaker.cats.agent.ExecutionInstrumentation;
+import com.netflix.spinnaker.cats.agent.SchedulerTelemetryStore;
 import com.netflix.spinnaker.cats.cluster.AgentIntervalProvider;
 import com.netflix.spinnaker.cats.cluster.NodeStatusProvider;
 import com.netflix.spinnaker.cats.module.CatsModuleAware;
@@ -39,6 +41,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
@@ -69,8 +72,13 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware
 
   private static final int NOW = 0;
   private static final int REDIS_REFRESH_PERIOD = 30;
+  private static final String SCHEDULER_NAME = ClusteredSortAgentScheduler.class.getSimpleName();
   private int runCount = 0;
 
+  private final int parallelism;
+  private final AtomicInteger workingAgents = new AtomicInteger();
+  private final AgentSchedulerTelemetry telemetry = SchedulerTelemetryStore.getStore();
+
   private final Logger log;
 
   private Map<String, AgentWorker> agents;
@@ -98,6 +106,7 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware
     this.intervalProvider = intervalProvider;
     this.log = LoggerFactory.getLogger(getClass());
 
+    this.parallelism = parallelism;
     if (parallelism == 0 || parallelism < -1) {
       throw new IllegalArgumentException(
           "Argument 'parallelism' must be positive, or -1 (for unlimited parallelism).");
@@ -410,20 +419,42 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware
         String agent = keys.remove(0);
 
         AgentWorker worker = agents.get(agent);
-        ScoreTuple score;
-        if (worker != null && (score = acquireAgent(worker.agent)) != null) {
+        if (worker == null) {
+          continue;
+        }
+
+        long startTime = System.currentTimeMillis();
+        ScoreTuple score = acquireAgent(worker.agent);
+        telemetry.lockAttempted(
+            SCHEDULER_NAME, worker.agent, System.currentTimeMillis() - startTime, score != null);
+        if (score != null) {
           // This score is used to determine if the worker thread running the agent is allowed to
           // store its results.
           // If on release of this agent, the scores don't match, this agent was rescheduled by a
           // separate thread.
           worker.setScore(score.acquireScore);
+          long timeout = intervalProvider.getInterval(worker.agent).getTimeout();
+          worker.setDueTime(startTime - score.waitedMillis(timeout));
           workers.add(worker);
         }
       }
 
       for (AgentWorker worker : workers) {
+        workingAgents.incrementAndGet();
         agentWorkPool.submit(worker);
       }
+
+      telemetry.saturation(SCHEDULER_NAME, workingAgents.get(), parallelism);
+    }
+  }
+
+  private void agentStarted(Agent agent, long dueTime) {
+    long waitMs = Math.max(0, System.currentTimeMillis() - dueTime);
+    telemetry.agentWaited(SCHEDULER_NAME, agent, waitMs);
+
+    long interval = intervalProvider.getInterval(agent).getInterval();
+    if (interval > 0 && waitMs >= interval) {
+      telemetry.intervalsMissed(SCHEDULER_NAME, agent, waitMs / interval);
     }
   }
 
@@ -433,6 +464,7 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware
     private final ExecutionInstrumentation executionInstrumentation;
     private final ClusteredSortAgentScheduler scheduler;
     private String acquireScore;
+    private long dueTime;
 
     AgentWorker(
         Agent agent,
@@ -449,12 +481,17 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware
       acquireScore = score;
     }
 
+    public void setDueTime(long dueTime) {
+      this.dueTime = dueTime;
+    }
+
     @Override
     public void run() {
       assert acquireScore != null;
       CacheResult result = null;
       Status status = Status.FAILURE;
       try {
+        scheduler.agentStarted(agent, dueTime);
         executionInstrumentation.executionStarted(agent);
         long startTime = System.nanoTime();
         result = agentExecution.executeAgentWithoutStore(agent);
@@ -468,6 +505,7 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware
         // is successful (we
         // own this agent), and a result was created, we can store it.
         scheduler.runningAgents.ifPresent(Semaphore::release);
+        scheduler.workingAgents.decrementAndGet();
         if (scheduler.conditionalReleaseAgent(agent, acquireScore, status) != null
             && result != null) {
           agentExecution.storeAgentResult(agent, result);
@@ -484,5 +522,18 @@ public class ClusteredSortAgentScheduler extends CatsModuleAware
       this.acquireScore = acquireScore;
       this.releaseScore = releaseScore;
     }
+
+    /**
+     * Scores are Redis time in seconds plus an offset: the acquire score is the time of acquisition
+     * plus the agent's timeout, the release score the time the agent became ready to run.
+     */
+    long waitedMillis(long timeout) {
+      try {
+        double acquiredAt = Double.parseDouble(acquireScore) - timeout;
+        return Math.max(0, (long) ((acquiredAt - Double.parseDouble(releaseScore)) * 1000));
+      } catch (NumberFormatException e) {
+        return 0;
+      }
+    }
   }
 }
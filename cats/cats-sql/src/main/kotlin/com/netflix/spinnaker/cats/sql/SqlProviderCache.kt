@@ -5,9 +5,12 @@ import com.netflix.spinnaker.cats.cache.CacheData
 import com.netflix.spinnaker.cats.cache.CacheFilter
 import com.netflix.spinnaker.cats.cache.DefaultCacheData
 import com.netflix.spinnaker.cats.cache.WriteableCache
+import com.netflix.spinnaker.cats.near.NearCache
 import com.netflix.spinnaker.cats.provider.ProviderCache
 import com.netflix.spinnaker.cats.sql.cache.SqlCache
+import com.netflix.spinnaker.cats.sql.cache.SqlCacheWrite
 import com.netflix.spinnaker.clouddriver.core.provider.agent.Namespace.ON_DEMAND
+import java.util.stream.Stream
 import kotlin.contracts.ExperimentalContracts
 import org.slf4j.LoggerFactory
 import org.slf4j.MDC
@@ -20,11 +23,14 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
     private val log = LoggerFactory.getLogger(javaClass)
   }
 
-  init {
-    if (backingStore !is SqlCache) {
-      throw IllegalStateException("SqlProviderCache must be wired with a SqlCache backingStore")
-    }
-  }
+  private val sqlCache: SqlCache = when (backingStore) {
+    is SqlCache -> backingStore
+    is NearCache -> backingStore.backingStore as? SqlCache
+    else -> null
+  } ?: throw IllegalStateException("SqlProviderCache must be wired with a SqlCache backingStore")
+
+  // writes made directly against sqlCache bypass the near cache, so they invalidate it themselves
+  private val nearCache = backingStore as? NearCache
 
   /**
    * Filters the supplied list of identifiers to only those that exist in the cache.
@@ -67,6 +73,11 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
     return backingStore.getAll(type, cacheFilter)
   }
 
+  override fun streamAll(type: String, cacheFilter: CacheFilter?): Stream<CacheData> {
+    validateTypes(type)
+    return backingStore.streamAll(type, cacheFilter)
+  }
+
   override fun getAll(
     type: String,
     identifiers: MutableCollection<String>?,
@@ -172,6 +183,7 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
         }
 
       val cachedTypes = mutableSetOf<String>()
+      val writes = mutableListOf<SqlCacheWrite>()
       // Update resource table from Authoritative sources only
       when {
         // OnDemand agents should only be treated as authoritative and don't use standard eviction logic
@@ -181,20 +193,20 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
             it.key.contains(ON_DEMAND.ns, ignoreCase = true)
           }
           .forEach {
-            cacheDataType(it.key, source, it.value, authoritative = true, cleanup = false)
+            writes.add(cacheDataType(it.key, source, it.value, authoritative = true, cleanup = false))
           }
         authoritativeTypes.isNotEmpty() -> cacheResult.cacheResults
           .filter {
             authoritativeTypes.contains(it.key)
           }
           .forEach {
-            cacheDataType(it.key, source, it.value, authoritative = true)
+            writes.add(cacheDataType(it.key, source, it.value, authoritative = true))
             cachedTypes.add(it.key)
           }
         else -> // If there are no authoritative types in cacheResult, override all as authoritative without cleanup
           cacheResult.cacheResults
             .forEach {
-              cacheDataType(it.key, source, it.value, authoritative = true, cleanup = false)
+              writes.add(cacheDataType(it.key, source, it.value, authoritative = true, cleanup = false))
               cachedTypes.add(it.key)
             }
       }
@@ -206,10 +218,12 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
             !cachedTypes.contains(it.key)
           }
           .forEach {
-            cacheDataType(it.key, source, it.value, authoritative = false)
+            writes.add(cacheDataType(it.key, source, it.value, authoritative = false))
           }
       }
 
+      storeWrites(source, writes)
+
       if (cacheResult.evictions.isNotEmpty()) {
         cacheResult.evictions.forEach {
           evictDeletedItems(it.key, it.value)
@@ -229,6 +243,7 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
       MDC.put("agentClass", "$source putCacheResult")
 
       val cachedTypes = mutableSetOf<String>()
+      val writes = mutableListOf<SqlCacheWrite>()
 
       if (authoritativeTypes.isNotEmpty()) {
         cacheResult.cacheResults
@@ -236,7 +251,7 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
             authoritativeTypes.contains(it.key)
           }
           .forEach {
-            cacheDataType(it.key, source, it.value, authoritative = true, cleanup = false)
+            writes.add(cacheDataType(it.key, source, it.value, authoritative = true, cleanup = false))
             cachedTypes.add(it.key)
           }
       }
@@ -244,8 +259,10 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
       cacheResult.cacheResults
         .filter { !cachedTypes.contains(it.key) }
         .forEach {
-          cacheDataType(it.key, source, it.value, authoritative = false, cleanup = false)
+          writes.add(cacheDataType(it.key, source, it.value, authoritative = false, cleanup = false))
         }
+
+      storeWrites(source, writes)
     } finally {
         MDC.remove("agentClass")
     }
@@ -261,7 +278,11 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
   }
 
   fun cleanOnDemand(maxAgeMs: Long): Int {
-    return (backingStore as SqlCache).cleanOnDemand(maxAgeMs)
+    try {
+      return sqlCache.cleanOnDemand(maxAgeMs)
+    } finally {
+      nearCache?.invalidateType(ON_DEMAND.ns)
+    }
   }
 
   private fun validateTypes(type: String) {
@@ -279,8 +300,13 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
     }
   }
 
-  private fun cacheDataType(type: String, agent: String, items: Collection<CacheData>, authoritative: Boolean) {
-    cacheDataType(type, agent, items, authoritative, cleanup = true)
+  private fun cacheDataType(
+    type: String,
+    agent: String,
+    items: Collection<CacheData>,
+    authoritative: Boolean
+  ): SqlCacheWrite {
+    return cacheDataType(type, agent, items, authoritative, cleanup = true)
   }
 
   private fun cacheDataType(
@@ -289,7 +315,7 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
     items: Collection<CacheData>,
     authoritative: Boolean,
     cleanup: Boolean
-  ) {
+  ): SqlCacheWrite {
     val toStore = ArrayList<CacheData>(items.size + 1)
     items.forEach {
       toStore.add(uniqueifyRelationships(it, agent))
@@ -303,7 +329,26 @@ class SqlProviderCache(private val backingStore: WriteableCache) : ProviderCache
         cleanup
       }
 
-    (backingStore as SqlCache).mergeAll(type, agent, toStore, authoritative, cleanupOverride)
+    return SqlCacheWrite(type, toStore, authoritative, cleanupOverride)
+  }
+
+  /**
+   * Stores every type of a cache result together, see [SqlCache.mergeAllBatched].
+   */
+  private fun storeWrites(agent: String, writes: List<SqlCacheWrite>) {
+    writes.forEach { nearCache?.invalidate(it.type, it.items) }
+    try {
+      sqlCache.mergeAllBatched(agent, writes)
+    } finally {
+      writes.forEach {
+        if (it.cleanup) {
+          // items and relationships dropped by the cleanup aren't known here
+          nearCache?.invalidateType(it.type)
+        } else {
+          nearCache?.invalidate(it.type, it.items)
+        }
+      }
+    }
   }
 
   private fun uniqueifyRelationships(source: CacheData, sourceAgentType: String): CacheData {
@@ -18,6 +18,7 @@ package com.netflix.spinnaker.cats.sql.cache
 import com.netflix.spectator.api.BasicTag
 import com.netflix.spectator.api.Registry
 import com.netflix.spectator.api.Tag
+import java.util.concurrent.TimeUnit
 
 class SpectatorSqlCacheMetrics(
   private val registry: Registry
@@ -74,6 +75,29 @@ class SpectatorSqlCacheMetrics(
     registry.counter(id("cats.sqlCache.get", "selectOperations", tags)).increment(selectOperations.toLong())
   }
 
+  override fun batchedMerge(
+    prefix: String,
+    typeCount: Int,
+    statementCount: Int,
+    transactionCount: Int,
+    selectMillis: Long,
+    writeMillis: Long,
+    cleanupMillis: Long
+  ) {
+    val tags = listOf(BasicTag("prefix", prefix))
+    registry.counter(id("cats.sqlCache.batchedMerge", "typeCount", tags)).increment(typeCount.toLong())
+    registry.counter(id("cats.sqlCache.batchedMerge", "statements", tags)).increment(statementCount.toLong())
+    registry.counter(id("cats.sqlCache.batchedMerge", "transactions", tags)).increment(transactionCount.toLong())
+    phaseTimer(prefix, "select").record(selectMillis, TimeUnit.MILLISECONDS)
+    phaseTimer(prefix, "write").record(writeMillis, TimeUnit.MILLISECONDS)
+    phaseTimer(prefix, "cleanup").record(cleanupMillis, TimeUnit.MILLISECONDS)
+  }
+
+  private fun phaseTimer(prefix: String, phase: String) =
+    registry.timer(
+      id("cats.sqlCache.batchedMerge", "duration", listOf(BasicTag("prefix", prefix), BasicTag("phase", phase)))
+    )
+
   private fun id(metricGroup: String, metric: String, tags: Iterable<Tag>) =
     registry.createId("$metricGroup.$metric", tags)
 
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.sql.cache
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.dataformat.smile.SmileFactory
+import com.netflix.spinnaker.cats.cache.CacheData
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import java.io.ByteArrayOutputStream
+import java.security.MessageDigest
+import java.util.Arrays
+import java.util.zip.Adler32
+import java.util.zip.Deflater
+import java.util.zip.Inflater
+
+/**
+ * Body formats understood by [SqlBodyCodec].
+ *
+ * Rows in a binary format hold just their [marker] in the `body` column, and their bytes in `body_bin`, so rows remain
+ * readable whatever format is currently selected for writing. Legacy JSON bodies always start with `{`, which no other
+ * format uses.
+ */
+enum class SqlBodyFormat(val configName: String, val marker: Char) {
+  JSON("json", '{'),
+  SMILE("smile", '1'),
+  SMILE_DEFLATE("smile-deflate", '2');
+
+  companion object {
+    fun fromConfigName(name: String): SqlBodyFormat =
+      values().firstOrNull { it.configName.equals(name, ignoreCase = true) }
+        ?: throw IllegalArgumentException("Unknown sql cache body codec: $name")
+
+    fun fromBody(body: String): SqlBodyFormat =
+      values().firstOrNull { body.isNotEmpty() && it.marker == body[0] } ?: JSON
+  }
+}
+
+/**
+ * The `body` and `body_hash` columns of a row, and its `body_bin` column when written in a binary format.
+ */
+class EncodedBody(
+  val body: String,
+  val hash: String,
+  val binary: ByteArray? = null
+) {
+  override fun equals(other: Any?): Boolean =
+    other is EncodedBody && body == other.body && hash == other.hash && Arrays.equals(binary, other.binary)
+
+  override fun hashCode(): Int = (body.hashCode() * 31 + hash.hashCode()) * 31 + Arrays.hashCode(binary)
+
+  override fun toString(): String = "EncodedBody(body=$body, hash=$hash, binary=${binary?.size} bytes)"
+}
+
+/**
+ * Encodes [CacheData] into the `body` and `body_bin` columns of a cats resource table and back.
+ *
+ * Binary formats are stored as is in the nullable `body_bin` blob column, rather than Base64 armoured into the `body`
+ * text column, which would add a third to their size. Deflate can be primed with a per-type preset dictionary, which is
+ * recorded (by Adler-32 checksum) in the zlib header so that the right dictionary is found on read.
+ *
+ * Changing the format of a type changes its body hashes, so each caching agent rewrites its rows in the new format
+ * on its next run; until then both formats are read side by side.
+ */
+class SqlBodyCodec(
+  private val mapper: ObjectMapper,
+  private val dictionaries: Map<String, ByteArray> = emptyMap()
+) {
+
+  private val smileMapper = ObjectMapper(SmileFactory())
+
+  private val dictionariesByChecksum: Map<Long, ByteArray> = dictionaries.values.associateBy {
+    Adler32().apply { update(it) }.value
+  }
+
+  fun encode(type: String, cacheData: CacheData, format: SqlBodyFormat): EncodedBody {
+    return when (format) {
+      SqlBodyFormat.JSON -> {
+        val body = mapper.writeValueAsString(cacheData)
+        EncodedBody(body, sha256(body.toByteArray()))
+      }
+      SqlBodyFormat.SMILE -> binary(format, smileMapper.writeValueAsBytes(cacheData))
+      SqlBodyFormat.SMILE_DEFLATE -> binary(format, deflate(type, smileMapper.writeValueAsBytes(cacheData)))
+    }
+  }
+
+  fun decode(body: String, binary: ByteArray?): DefaultCacheData {
+    val format = SqlBodyFormat.fromBody(body)
+    if (format == SqlBodyFormat.JSON) {
+      return mapper.readValue(body, DefaultCacheData::class.java)
+    }
+
+    val bytes = binary ?: throw IllegalStateException("Missing body_bin for a $format body")
+    return when (format) {
+      SqlBodyFormat.SMILE_DEFLATE -> smileMapper.readValue(inflate(bytes), DefaultCacheData::class.java)
+      else -> smileMapper.readValue(bytes, DefaultCacheData::class.java)
+    }
+  }
+
+  private fun binary(format: SqlBodyFormat, bytes: ByteArray): EncodedBody {
+    val digest = MessageDigest.getInstance("SHA-256")
+    digest.update(format.marker.toByte())
+    return EncodedBody(format.marker.toString(), hex(digest.digest(bytes)), bytes)
+  }
+
+  private fun deflate(type: String, bytes: ByteArray): ByteArray {
+    val deflater = Deflater(Deflater.BEST_SPEED)
+    try {
+      dictionaries[type]?.let { deflater.setDictionary(it) }
+      deflater.setInput(bytes)
+      deflater.finish()
+
+      val out = ByteArrayOutputStream(bytes.size / 2 + 64)
+      val buffer = ByteArray(8192)
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer))
+      }
+      return out.toByteArray()
+    } finally {
+      deflater.end()
+    }
+  }
+
+  private fun inflate(bytes: ByteArray): ByteArray {
+    val inflater = Inflater()
+    try {
+      inflater.setInput(bytes)
+
+      val out = ByteArrayOutputStream(bytes.size * 4)
+      val buffer = ByteArray(8192)
+      while (!inflater.finished()) {
+        val count = inflater.inflate(buffer)
+        if (count == 0) {
+          when {
+            inflater.needsDictionary() -> inflater.setDictionary(
+              dictionariesByChecksum[inflater.adler.toLong() and 0xffffffffL]
+                ?: throw IllegalStateException("No compression dictionary with checksum ${inflater.adler}")
+            )
+            inflater.needsInput() -> throw IllegalStateException("Truncated compressed body")
+          }
+        }
+        out.write(buffer, 0, count)
+      }
+      return out.toByteArray()
+    } finally {
+      inflater.end()
+    }
+  }
+
+  private fun sha256(bytes: ByteArray): String =
+    hex(MessageDigest.getInstance("SHA-256").digest(bytes))
+
+  private fun hex(digest: ByteArray): String {
+    val sb = StringBuilder(digest.size * 2)
+    digest.forEach { sb.append("%02x".format(it)) }
+    return sb.toString()
+  }
+}
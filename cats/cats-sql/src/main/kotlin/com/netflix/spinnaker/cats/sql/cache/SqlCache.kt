@@ -3,8 +3,8 @@ package com.netflix.spinnaker.cats.sql.cache
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.netflix.spinnaker.cats.cache.CacheData
 import com.netflix.spinnaker.cats.cache.CacheFilter
-import com.netflix.spinnaker.cats.cache.DefaultCacheData
 import com.netflix.spinnaker.cats.cache.RelationshipCacheFilter
+import com.netflix.spinnaker.cats.cache.VersionedCache
 import com.netflix.spinnaker.cats.cache.WriteableCache
 import com.netflix.spinnaker.clouddriver.core.provider.agent.Namespace.ON_DEMAND
 import com.netflix.spinnaker.config.SqlConstraints
@@ -15,15 +15,19 @@ import de.huxhorn.sulky.ulid.ULID
 import io.github.resilience4j.retry.Retry
 import io.github.resilience4j.retry.RetryConfig
 import io.vavr.control.Try
-import java.security.MessageDigest
 import java.sql.ResultSet
 import java.sql.SQLException
 import java.sql.SQLSyntaxErrorException
 import java.time.Clock
 import java.time.Duration
 import java.util.Arrays
+import java.util.Spliterator
+import java.util.Spliterators
 import java.util.concurrent.ConcurrentSkipListSet
+import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
+import java.util.stream.Stream
+import java.util.stream.StreamSupport
 import javax.annotation.PreDestroy
 import kotlin.contracts.ExperimentalContracts
 import kotlin.contracts.contract
@@ -35,9 +39,17 @@ import kotlinx.coroutines.awaitAll
 import kotlinx.coroutines.runBlocking
 import org.jooq.Condition
 import org.jooq.DSLContext
+import org.jooq.Field
+import org.jooq.Query
+import org.jooq.Record
+import org.jooq.Record5
+import org.jooq.SQLDialect
+import org.jooq.Select
 import org.jooq.exception.DataAccessException
 import org.jooq.exception.SQLDialectNotSupportedException
+import org.jooq.impl.DSL
 import org.jooq.impl.DSL.field
+import org.jooq.impl.DSL.max
 import org.jooq.impl.DSL.noCondition
 import org.jooq.impl.DSL.sql
 import org.jooq.impl.DSL.table
@@ -46,7 +58,7 @@ import org.slf4j.LoggerFactory
 import org.springframework.jdbc.BadSqlGrammarException
 
 @ExperimentalContracts
-class SqlCache(
+class SqlCache @JvmOverloads constructor(
   private val name: String,
   private val jooq: DSLContext,
   private val mapper: ObjectMapper,
@@ -56,8 +68,10 @@ class SqlCache(
   tableNamespace: String?,
   private val cacheMetrics: SqlCacheMetrics,
   private val dynamicConfigService: DynamicConfigService,
-  private val sqlConstraints: SqlConstraints
-) : WriteableCache {
+  private val sqlConstraints: SqlConstraints,
+  bodyDictionaries: Map<String, ByteArray> = emptyMap(),
+  relationshipSchema: SqlSchemaVersion = SqlSchemaVersion.V1
+) : WriteableCache, VersionedCache {
 
   companion object {
     private const val onDemandType = "onDemand"
@@ -71,10 +85,22 @@ class SqlCache(
 
   private val sqlNames = SqlNames(tableNamespace, sqlConstraints)
 
+  private val bodyCodec = SqlBodyCodec(mapper, bodyDictionaries)
+
+  // set when relationships are stored in the interned V2 layout
+  private val internedRelationships = when (relationshipSchema) {
+    SqlSchemaVersion.V1 -> null
+    SqlSchemaVersion.V2 -> SqlInternedRelationships(jooq, sqlNames)
+  }
+
   private var createdTables = ConcurrentSkipListSet<String>()
 
+  // resource tables known to have a `body_bin` column
+  private val binaryBodyTables = ConcurrentSkipListSet<String>()
+
   init {
     log.info("Configured for $name")
+    addBinaryBodyColumns()
   }
 
   /**
@@ -129,21 +155,7 @@ class SqlCache(
       return
     }
 
-    var agent: String? = agentHint
-
-    val first: String? = items
-      .firstOrNull { it.relationships.isNotEmpty() }
-      ?.relationships
-      ?.keys
-      ?.firstOrNull()
-
-    if (first != null && agent == null) {
-      agent = first.substringAfter(":", first)
-    }
-
-    if (agent == null) {
-      log.debug("warning: null agent for type $type")
-    }
+    val agent = resolveAgent(type, agentHint, items)
 
     val storeResult = if (authoritative) {
       storeAuthoritative(type, agent, items, cleanup)
@@ -168,6 +180,206 @@ class SqlCache(
     mergeAll(type, null, items, true, true)
   }
 
+  /**
+   * Merges several types written by one caching agent cycle.
+   *
+   * The existing rows of every type are read up front, after which all resource upserts and relationship inserts are
+   * sent as JDBC batches of multi-row statements, each batch in its own transaction of at most
+   * `sql.cache.write-transaction-size` statements. Stale rows are then deleted the same way. Per-type results are
+   * reported through [SqlCacheMetrics.merge] as usual and the time spent in each phase through
+   * [SqlCacheMetrics.batchedMerge].
+   *
+   * Falls back to a [mergeAll] per type if `sql.cache.batched-writes.enabled` is false or the dialect doesn't support
+   * `ON DUPLICATE KEY UPDATE`.
+   */
+  fun mergeAllBatched(agentHint: String?, writes: List<SqlCacheWrite>) {
+    if (!batchedWritesEnabled()) {
+      writes.forEach { mergeAll(it.type, agentHint, it.items, it.authoritative, it.cleanup) }
+      return
+    }
+
+    val selectStart = System.nanoTime()
+    val plans = writes.mapNotNull { planWrite(agentHint, it) }
+    val selectMillis = elapsedMillis(selectStart)
+
+    val writeStart = System.nanoTime()
+    val writeStatements = plans.flatMap { it.writes }
+    var transactions = executeBatched(writeStatements)
+    val writeMillis = elapsedMillis(writeStart)
+
+    val cleanupStart = System.nanoTime()
+    val cleanupStatements = plans.flatMap { it.deletes }
+    transactions += executeBatched(cleanupStatements)
+    val cleanupMillis = elapsedMillis(cleanupStart)
+
+    plans.forEach {
+      cacheMetrics.merge(
+        prefix = name,
+        type = it.type,
+        itemCount = it.result.itemCount.get(),
+        itemsStored = it.result.itemsStored.get(),
+        relationshipCount = it.result.relationshipCount.get(),
+        relationshipsStored = it.result.relationshipsStored.get(),
+        selectOperations = it.result.selectQueries.get(),
+        writeOperations = it.result.writeQueries.get(),
+        deleteOperations = it.result.deleteQueries.get()
+      )
+
+      if (it.evictCount > 0) {
+        cacheMetrics.evict(
+          prefix = name,
+          type = it.type,
+          itemCount = it.evictCount,
+          itemsDeleted = it.itemsEvicted.get(),
+          deleteOperations = it.evictQueries.get()
+        )
+      }
+    }
+
+    cacheMetrics.batchedMerge(
+      prefix = name,
+      typeCount = plans.size,
+      statementCount = writeStatements.size + cleanupStatements.size,
+      transactionCount = transactions,
+      selectMillis = selectMillis,
+      writeMillis = writeMillis,
+      cleanupMillis = cleanupMillis
+    )
+  }
+
+  /**
+   * Reads what is currently stored for [write] and turns the differences into statements, without writing anything.
+   */
+  private fun planWrite(agentHint: String?, write: SqlCacheWrite): WritePlan? {
+    val type = write.type
+    val items = write.items
+    if (type.isEmpty()) {
+      return null
+    }
+
+    createTables(type)
+
+    if (items.isEmpty() || items.none { it.id != "_ALL_" }) {
+      return null
+    }
+
+    val plan = WritePlan(type)
+    val batchSize = dynamicConfigService.getConfig(Int::class.java, "sql.cache.write-batch-size", 100)
+    val now = clock.millis()
+
+    if (write.authoritative) {
+      val diff = diffAuthoritative(type, resolveAgent(type, agentHint, items), items, write.cleanup, plan.result)
+
+      diff.toStore.chunked(batchSize) { chunk ->
+        plan.writes.add(BatchedStatement(resourceUpsert(type, diff, chunk, now)) {
+          plan.result.itemsStored.addAndGet(chunk.size)
+          plan.result.writeQueries.incrementAndGet()
+        })
+      }
+
+      plan.evictCount = diff.toDelete.size
+      diff.toDelete.chunked(batchSize) { chunk ->
+        val delete = jooq.deleteFrom(table(sqlNames.resourceTableName(type)))
+          .where(field("id").`in`(*chunk.toTypedArray()))
+        plan.deletes.add(BatchedStatement(delete) {
+          plan.itemsEvicted.addAndGet(chunk.size)
+          plan.evictQueries.incrementAndGet()
+        })
+      }
+    } else {
+      val diff = diffInformative(type, items, write.cleanup, plan.result) ?: return plan
+
+      var ulid = ULID().nextValue()
+      val nextUuid = {
+        val uuid = ulid.toString()
+        ulid = ULID().nextMonotonicValue(ulid)
+        uuid
+      }
+
+      diff.newFwdRelPointers.forEach { (relType, pointers) ->
+        val reversePointers = pointers.filter { diff.newRevRelIds.contains("${it.rel_id}|${it.id}") }
+        pointers.chunked(batchSize) { chunk ->
+          plan.writes.add(relationshipStatement(
+            plan, relationshipInsert(type, chunk, relType, false, now, nextUuid), chunk.size
+          ))
+        }
+        reversePointers.chunked(batchSize) { chunk ->
+          plan.writes.add(relationshipStatement(
+            plan, relationshipInsert(relType, chunk, type, true, now, nextUuid), chunk.size
+          ))
+        }
+      }
+
+      diff.staleRelIds.forEach { (relType, uuids) ->
+        uuids.chunked(batchSize) { chunk ->
+          plan.deletes.add(BatchedStatement(relationshipDelete(relType, chunk)) {
+            plan.result.deleteQueries.incrementAndGet()
+          })
+        }
+      }
+    }
+
+    return plan
+  }
+
+  private fun relationshipStatement(plan: WritePlan, insert: Query, relationships: Int) =
+    BatchedStatement(insert) {
+      plan.result.relationshipsStored.addAndGet(relationships)
+      plan.result.writeQueries.incrementAndGet()
+    }
+
+  /**
+   * Executes [statements] as JDBC batches, one transaction per `sql.cache.write-transaction-size` statements. A failed
+   * transaction is rolled back and logged without affecting the others.
+   *
+   * @return the number of transactions used
+   */
+  private fun executeBatched(statements: List<BatchedStatement>): Int {
+    var transactions = 0
+    val transactionSize = dynamicConfigService.getConfig(Int::class.java, "sql.cache.write-transaction-size", 20)
+    statements.chunked(transactionSize) { chunk ->
+      transactions++
+      try {
+        withRetry(RetryCategory.WRITE) {
+          jooq.transaction { configuration ->
+            DSL.using(configuration).batch(chunk.map { it.query }).execute()
+          }
+        }
+        chunk.forEach { it.onSuccess() }
+      } catch (e: DataAccessException) {
+        log.error("Error executing batch of ${chunk.size} statements", e)
+      }
+    }
+    return transactions
+  }
+
+  private fun batchedWritesEnabled(): Boolean =
+    jooq.dialect().family() == SQLDialect.MYSQL &&
+      dynamicConfigService.isEnabled("sql.cache.batched-writes", true)
+
+  private fun elapsedMillis(startNanos: Long): Long =
+    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+
+  private fun resolveAgent(type: String, agentHint: String?, items: Collection<CacheData>): String? {
+    var agent: String? = agentHint
+
+    val first: String? = items
+      .firstOrNull { it.relationships.isNotEmpty() }
+      ?.relationships
+      ?.keys
+      ?.firstOrNull()
+
+    if (first != null && agent == null) {
+      agent = first.substringAfter(":", first)
+    }
+
+    if (agent == null) {
+      log.debug("warning: null agent for type $type")
+    }
+
+    return agent
+  }
+
   /**
    * Retrieves all the items for the specified type
    *
@@ -202,6 +414,73 @@ class SqlCache(
     return mergeDataAndRelationships(result.data, result.relPointers, relationshipPrefixes)
   }
 
+  /**
+   * Streams all the items for the specified type through a server-side cursor over the resource table.
+   * Relationships are fetched for each page of `sql.cache.read-batch-size` ids as the stream is consumed,
+   * so only one page of items is held at a time. The stream holds a connection until it is closed.
+   */
+  override fun streamAll(type: String, cacheFilter: CacheFilter?): Stream<CacheData> {
+    val relationshipPrefixes = getRelationshipFilterPrefixes(cacheFilter)
+    val batchSize = dynamicConfigService.getConfig(Int::class.java, "sql.cache.read-batch-size", 500)
+
+    val cursor = try {
+      withRetry(RetryCategory.READ) {
+        jooq.select(field("id"), field("body"), bodyBinField(type))
+          .from(table(sqlNames.resourceTableName(type)))
+          .orderBy(field("id"))
+          // MySQL Connector/J only streams rows, rather than buffering the whole result, with this fetch size
+          .fetchSize(Int.MIN_VALUE)
+          .fetchLazy()
+      }
+    } catch (e: Exception) {
+      suppressedLog("Failed streaming items for type $type", e)
+      return Stream.empty()
+    }
+
+    val rows = cursor.iterator()
+    val pages = object : Iterator<Collection<CacheData>> {
+      private var peeked: Pair<String, Record>? = null
+
+      override fun hasNext(): Boolean = peeked != null || rows.hasNext()
+
+      override fun next(): Collection<CacheData> {
+        if (!hasNext()) {
+          throw NoSuchElementException()
+        }
+
+        val ids = mutableSetOf<String>()
+        val bodies = mutableListOf<CacheData>()
+        var lastId: String? = null
+
+        while (peeked != null || rows.hasNext()) {
+          val row = peeked ?: rows.next().let { it.get(0, String::class.java) to it }
+          peeked = null
+
+          // an id may be stored by more than one agent; keep its rows in the same page so they get merged
+          if (ids.size >= batchSize && row.first != lastId) {
+            peeked = row
+            break
+          }
+
+          lastId = row.first
+          ids.add(row.first)
+          try {
+            bodies.add(decodeBody(row.second, 1))
+          } catch (e: Exception) {
+            log.error("Failed to deserialize cached value: type $type, id ${row.first}", e)
+          }
+        }
+
+        return getPageWithRelationships(type, bodies, ids, relationshipPrefixes)
+      }
+    }
+
+    return StreamSupport
+      .stream(Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED or Spliterator.NONNULL), false)
+      .flatMap { it.stream() }
+      .onClose { cursor.close() }
+  }
+
   /**
    * Retrieves the items for the specified type matching the provided ids
    *
@@ -361,6 +640,23 @@ class SqlCache(
     return ids
   }
 
+  /**
+   * The most recent last_updated of a type, which only moves when a body is written. This is an index
+   * lookup on resource_last_updated_idx. Relationship-only changes and deletes do not change it.
+   */
+  override fun getTypeVersion(type: String): Long? {
+    return try {
+      withRetry(RetryCategory.READ) {
+        jooq.select(max(field("last_updated", Long::class.java)))
+          .from(table(sqlNames.resourceTableName(type)))
+          .fetchOne(0, Long::class.java)
+      } ?: 0L
+    } catch (e: BadSqlGrammarException) {
+      suppressedLog("Failed getting version for type $type", e)
+      0L
+    }
+  }
+
   /**
    * Filters the supplied list of identifiers to only those that exist in the cache.
    *
@@ -501,6 +797,75 @@ class SqlCache(
     cleanup: Boolean
   ): StoreResult {
     val result = StoreResult()
+    val diff = diffAuthoritative(type, agentHint, items, cleanup, result)
+    val agent = diff.agent
+    val apps = diff.apps
+    val bodies = diff.bodies
+
+    val now = clock.millis()
+
+    diff.toStore.chunked(dynamicConfigService.getConfig(Int::class.java, "sql.cache.write-batch-size", 100)) { chunk ->
+      try {
+        val insert = resourceUpsert(type, diff, chunk, now)
+
+        withRetry(RetryCategory.WRITE) {
+          insert.execute()
+        }
+        result.itemsStored.addAndGet(chunk.size)
+        result.writeQueries.incrementAndGet()
+      } catch (e: DataAccessException) {
+        log.error("Error inserting ids: $chunk", e)
+      } catch (e: SQLDialectNotSupportedException) {
+        chunk.forEach {
+          val exists = withRetry(RetryCategory.READ) {
+            jooq.fetchExists(
+              jooq.select()
+                .from(sqlNames.resourceTableName(type))
+                .where(field("id").eq(it), field("agent").eq(agent))
+                .forUpdate()
+            )
+          }
+          result.selectQueries.incrementAndGet()
+          val fields = resourceFields(type)
+          val values = resourceValues(fields, it, agent, apps[it], bodies.getValue(it), clock.millis())
+          if (exists) {
+            withRetry(RetryCategory.WRITE) {
+              jooq.update(table(sqlNames.resourceTableName(type)))
+                .set(fields.zip(values).drop(2).toMap())
+                .where(field("id").eq(it), field("agent").eq(agent))
+                .execute()
+            }
+            result.writeQueries.incrementAndGet()
+            result.itemsStored.incrementAndGet()
+          } else {
+            withRetry(RetryCategory.WRITE) {
+              jooq.insertInto(table(sqlNames.resourceTableName(type)), fields)
+                .values(values)
+                .execute()
+            }
+            result.writeQueries.incrementAndGet()
+            result.itemsStored.incrementAndGet()
+          }
+        }
+      }
+    }
+
+    evictAll(type, diff.toDelete)
+
+    return result
+  }
+
+  /**
+   * Compares [items] against the rows previously stored by the calling caching agent, returning the rows to upsert
+   * and, if [cleanup] is set, the ids to evict.
+   */
+  private fun diffAuthoritative(
+    type: String,
+    agentHint: String?,
+    items: MutableCollection<CacheData>,
+    cleanup: Boolean,
+    result: StoreResult
+  ): AuthoritativeDiff {
     result.itemCount.addAndGet(items.size)
 
     val agent = if (type == ON_DEMAND.ns) {
@@ -524,9 +889,9 @@ class SqlCache(
       .toSet()
     val currentIds = mutableSetOf<String>() // current ids from the caching agent
     val toStore = mutableListOf<String>() // ids that are new or changed
-    val bodies = mutableMapOf<String, String>() // id to body
-    val hashes = mutableMapOf<String, String>() // id to sha256(body)
+    val bodies = mutableMapOf<String, EncodedBody>() // id to body and its hash
     val apps = mutableMapOf<String, String>()
+    val bodyFormat = getBodyFormat(type)
 
     items.filter { it.id.length > sqlConstraints.maxIdLength }
       .forEach {
@@ -553,115 +918,145 @@ class SqlCache(
           it.relationships.putAll(normalized)
         }
 
-        val body: String? = mapper.writeValueAsString(it)
-        val bodyHash = getHash(body)
+        val encoded = encodeBody(type, it, bodyFormat)
 
-        if (body != null && bodyHash != null && !existingHashes.contains(bodyHash)) {
+        if (encoded != null && !existingHashes.contains(encoded.hash)) {
           toStore.add(it.id)
-          bodies[it.id] = body
-          hashes[it.id] = bodyHash
+          bodies[it.id] = encoded
         }
       }
 
+    val toDelete = if (cleanup) {
+      existingIds
+        .asSequence()
+        .filter { !currentIds.contains(it) }
+        .toSet()
+    } else {
+      emptySet()
+    }
+
+    return AuthoritativeDiff(agent, toStore, bodies, apps, toDelete)
+  }
+
+  private fun resourceUpsert(type: String, diff: AuthoritativeDiff, ids: List<String>, now: Long): Query {
+    val fields = resourceFields(type)
+    val insert = jooq.insertInto(table(sqlNames.resourceTableName(type)), fields)
+
+    return insert.apply {
+      ids.forEach {
+        values(resourceValues(fields, it, diff.agent, diff.apps[it], diff.bodies.getValue(it), now))
+      }
+
+      // every column but the (id, agent) key
+      onDuplicateKeyUpdate()
+        .set(fields.drop(2).associateWith { MySQLDSL.values(it) })
+    }
+  }
+
+  /**
+   * The columns a resource row is written to, starting with its `id` and `agent` key; `body_bin` is left out while
+   * the table doesn't have it, in which case bodies are json.
+   */
+  private fun resourceFields(type: String): List<Field<Any>> =
+    listOfNotNull(
+      field("id"),
+      field("agent"),
+      field("application"),
+      field("body_hash"),
+      field("body"),
+      if (hasBinaryBody(sqlNames.resourceTableName(type))) field("body_bin") else null,
+      field("last_updated")
+    )
+
+  private fun resourceValues(
+    fields: List<Field<Any>>,
+    id: String,
+    agent: String,
+    application: String?,
+    body: EncodedBody,
+    now: Long
+  ): List<Any?> =
+    fields.map {
+      when (it.name) {
+        "id" -> id
+        "agent" -> agent
+        "application" -> application
+        "body_hash" -> body.hash
+        "body" -> body.body
+        "body_bin" -> body.binary
+        else -> now
+      }
+    }
+
+  private fun storeInformative(type: String, items: MutableCollection<CacheData>, cleanup: Boolean): StoreResult {
+    val result = StoreResult()
+    val diff = diffInformative(type, items, cleanup, result) ?: return result
+
     val now = clock.millis()
+    var ulid = ULID().nextValue()
+    val nextUuid = {
+      val uuid = ulid.toString()
+      ulid = ULID().nextMonotonicValue(ulid)
+      uuid
+    }
 
-    toStore.chunked(dynamicConfigService.getConfig(Int::class.java, "sql.cache.write-batch-size", 100)) { chunk ->
-      try {
-        val insert = jooq.insertInto(
-          table(sqlNames.resourceTableName(type)),
-          field("id"),
-          field("agent"),
-          field("application"),
-          field("body_hash"),
-          field("body"),
-          field("last_updated")
-        )
+    diff.newFwdRelPointers.forEach { (relType, pointers) ->
+      pointers.chunked(dynamicConfigService.getConfig(Int::class.java, "sql.cache.write-batch-size", 100)) { chunk ->
+        try {
+          val insert = relationshipInsert(type, chunk, relType, false, now, nextUuid)
 
-        insert.apply {
-          chunk.forEach {
-            values(it, agent, apps[it], hashes[it], bodies[it], now)
+          withRetry(RetryCategory.WRITE) {
+            insert.execute()
           }
-
-          onDuplicateKeyUpdate()
-            .set(field("application"), MySQLDSL.values(field("application")) as Any)
-            .set(field("body_hash"), MySQLDSL.values(field("body_hash")) as Any)
-            .set(field("body"), MySQLDSL.values(field("body")) as Any)
-            .set(field("last_updated"), MySQLDSL.values(field("last_updated")) as Any)
+          result.writeQueries.incrementAndGet()
+          result.relationshipsStored.addAndGet(chunk.size)
+        } catch (e: Exception) {
+          log.error("Error inserting forward relationships for $type -> $relType", e)
         }
+      }
+
+      pointers.asSequence().filter { diff.newRevRelIds.contains("${it.rel_id}|${it.id}") }
+        .chunked(dynamicConfigService.getConfig(Int::class.java, "sql.cache.write-batch-size", 100)) { chunk ->
+          try {
+            val insert = relationshipInsert(relType, chunk, type, true, now, nextUuid)
 
-        withRetry(RetryCategory.WRITE) {
-          insert.execute()
-        }
-        result.itemsStored.addAndGet(chunk.size)
-        result.writeQueries.incrementAndGet()
-      } catch (e: DataAccessException) {
-        log.error("Error inserting ids: $chunk", e)
-      } catch (e: SQLDialectNotSupportedException) {
-        chunk.forEach {
-          val exists = withRetry(RetryCategory.READ) {
-            jooq.fetchExists(
-              jooq.select()
-                .from(sqlNames.resourceTableName(type))
-                .where(field("id").eq(it), field("agent").eq(agent))
-                .forUpdate()
-            )
-          }
-          result.selectQueries.incrementAndGet()
-          if (exists) {
-            withRetry(RetryCategory.WRITE) {
-              jooq.update(table(sqlNames.resourceTableName(type)))
-                .set(field("application"), apps[it])
-                .set(field("body_hash"), hashes[it])
-                .set(field("body"), bodies[it])
-                .set(field("last_updated"), clock.millis())
-                .where(field("id").eq(it), field("agent").eq(agent))
-                .execute()
-            }
-            result.writeQueries.incrementAndGet()
-            result.itemsStored.incrementAndGet()
-          } else {
             withRetry(RetryCategory.WRITE) {
-              jooq.insertInto(
-                table(sqlNames.resourceTableName(type)),
-                field("id"),
-                field("agent"),
-                field("application"),
-                field("body_hash"),
-                field("body"),
-                field("last_updated")
-              ).values(
-                it,
-                agent,
-                apps[it],
-                hashes[it],
-                bodies[it],
-                clock.millis()
-              ).execute()
+              insert.execute()
             }
             result.writeQueries.incrementAndGet()
-            result.itemsStored.incrementAndGet()
+            result.relationshipsStored.addAndGet(chunk.size)
+          } catch (e: Exception) {
+            log.error("Error inserting reverse relationships for $relType -> $type", e)
           }
-        }
-      }
+        }.toList()
     }
 
-    if (!cleanup) {
-      return result
+    try {
+      diff.staleRelIds.forEach { (relType, uuids) ->
+        uuids.forEach {
+          withRetry(RetryCategory.WRITE) {
+            relationshipDelete(relType, listOf(it)).execute()
+          }
+          result.deleteQueries.incrementAndGet()
+        }
+      }
+    } catch (e: Exception) {
+      log.error("Error deleting stale relationships", e)
     }
 
-    val toDelete = existingIds
-      .asSequence()
-      .filter { !currentIds.contains(it) }
-      .toSet()
-
-    evictAll(type, toDelete)
-
     return result
   }
 
-  private fun storeInformative(type: String, items: MutableCollection<CacheData>, cleanup: Boolean): StoreResult {
-    val result = StoreResult()
-
+  /**
+   * Compares the relationships of [items] against those previously stored by their source agents, returning the
+   * forward and reverse relationships to insert and, if [cleanup] is set, the stale relationship uuids to delete.
+   */
+  private fun diffInformative(
+    type: String,
+    items: MutableCollection<CacheData>,
+    cleanup: Boolean,
+    result: StoreResult
+  ): InformativeDiff? {
     val sourceAgents = items.filter { it.relationships.isNotEmpty() }
       .map { it.relationships.keys }
       .flatten()
@@ -669,7 +1064,7 @@ class SqlCache(
 
     if (sourceAgents.isEmpty()) {
       log.warn("no relationships found for type $type")
-      return result
+      return null
     }
 
     val existingFwdRelIds = sourceAgents
@@ -747,105 +1142,74 @@ class SqlCache(
         }
       }
 
-    newFwdRelPointers.forEach { (relType, pointers) ->
-      val now = clock.millis()
-      var ulid = ULID().nextValue()
-
-      pointers.chunked(dynamicConfigService.getConfig(Int::class.java, "sql.cache.write-batch-size", 100)) { chunk ->
-        try {
-          val insert = jooq.insertInto(
-            table(sqlNames.relTableName(type)),
-            field("uuid"),
-            field("id"),
-            field("rel_id"),
-            field("rel_agent"),
-            field("rel_type"),
-            field("last_updated")
-          )
-
-          insert.apply {
-            chunk.forEach {
-              values(ulid.toString(), it.id, it.rel_id, it.rel_type, relType, now)
-              ulid = ULID().nextMonotonicValue(ulid)
-            }
-          }
-
-          withRetry(RetryCategory.WRITE) {
-            insert.execute()
+    val staleRelIds = mutableMapOf<String, MutableList<String>>()
+
+    if (cleanup) {
+      oldFwdIds
+        .filter { !currentIds.contains(it.key) }
+        .forEach { staleRelIds.getOrPut(type) { mutableListOf() }.add(it.value) }
+      oldRevIds
+        .filter { !currentIds.contains(it.key) }
+        .forEach {
+          val relType = oldRevIdsToType.getOrDefault(it.key, "")
+          if (relType.isNotBlank()) {
+            staleRelIds.getOrPut(relType) { mutableListOf() }.add(it.value)
+          } else {
+            log.warn("Couldn't delete ${it.key}, no mapping to type")
           }
-          result.writeQueries.incrementAndGet()
-          result.relationshipsStored.addAndGet(chunk.size)
-        } catch (e: Exception) {
-          log.error("Error inserting forward relationships for $type -> $relType", e)
         }
-      }
-
-      pointers.asSequence().filter { newRevRelIds.contains("${it.rel_id}|${it.id}") }
-        .chunked(dynamicConfigService.getConfig(Int::class.java, "sql.cache.write-batch-size", 100)) { chunk ->
-          try {
-            val insert = jooq.insertInto(
-              table(sqlNames.relTableName(relType)),
-              field("uuid"),
-              field("id"),
-              field("rel_id"),
-              field("rel_agent"),
-              field("rel_type"),
-              field("last_updated")
-            )
-
-            insert.apply {
-              chunk.forEach {
-                values(ulid.toString(), it.rel_id, it.id, it.rel_type, type, now)
-                ulid = ULID().nextMonotonicValue(ulid)
-              }
-            }
-
-            withRetry(RetryCategory.WRITE) {
-              insert.execute()
-            }
-            result.writeQueries.incrementAndGet()
-            result.relationshipsStored.addAndGet(chunk.size)
-          } catch (e: Exception) {
-            log.error("Error inserting reverse relationships for $relType -> $type", e)
-          }
-        }.toList()
     }
 
-    if (!cleanup) {
-      return result
+    return InformativeDiff(newFwdRelPointers, newRevRelIds, staleRelIds)
+  }
+
+  /**
+   * Builds a multi-row insert of [pointers] into the relationship table of [type]; reverse relationships swap `id` and
+   * `rel_id`.
+   */
+  private fun relationshipInsert(
+    type: String,
+    pointers: List<RelPointer>,
+    relType: String,
+    reverse: Boolean,
+    now: Long,
+    nextUuid: () -> String
+  ): Query {
+    if (internedRelationships != null) {
+      return internedRelationships.insert(type, pointers, relType, reverse, now)
     }
 
-    val fwdToDelete = oldFwdIds.filter { !currentIds.contains(it.key) }
-    val revToDelete = oldRevIds.filter { !currentIds.contains(it.key) }
+    val insert = jooq.insertInto(
+      table(sqlNames.relTableName(type)),
+      field("uuid"),
+      field("id"),
+      field("rel_id"),
+      field("rel_agent"),
+      field("rel_type"),
+      field("last_updated")
+    )
 
-    if (fwdToDelete.isNotEmpty() || revToDelete.isNotEmpty()) {
-      try {
-        fwdToDelete.forEach {
-          withRetry(RetryCategory.WRITE) {
-            jooq.deleteFrom(table(sqlNames.relTableName(type)))
-              .where(field("uuid").eq(it.value))
-              .execute()
-          }
-          result.deleteQueries.incrementAndGet()
-        }
-        revToDelete.forEach {
-          if (oldRevIdsToType.getOrDefault(it.key, "").isNotBlank()) {
-            withRetry(RetryCategory.WRITE) {
-              jooq.deleteFrom(table(sqlNames.relTableName(oldRevIdsToType[it.key]!!)))
-                .where(field("uuid").eq(it.value))
-                .execute()
-            }
-            result.deleteQueries.incrementAndGet()
-          } else {
-            log.warn("Couldn't delete ${it.key}, no mapping to type")
-          }
+    return insert.apply {
+      pointers.forEach {
+        if (reverse) {
+          values(nextUuid(), it.rel_id, it.id, it.rel_type, relType, now)
+        } else {
+          values(nextUuid(), it.id, it.rel_id, it.rel_type, relType, now)
         }
-      } catch (e: Exception) {
-        log.error("Error deleting stale relationships", e)
       }
     }
+  }
 
-    return result
+  /**
+   * Builds a delete of the relationships of [type] identified by the `uuid`s of their [RelId]s.
+   */
+  private fun relationshipDelete(type: String, uuids: List<String>): Query {
+    if (internedRelationships != null) {
+      return internedRelationships.delete(type, uuids)
+    }
+
+    return jooq.deleteFrom(table(sqlNames.relTableName(type)))
+      .where(field("uuid").`in`(*uuids.toTypedArray()))
   }
 
   private fun createTables(type: String) {
@@ -854,9 +1218,9 @@ class SqlCache(
         withRetry(RetryCategory.WRITE) {
           jooq.execute("CREATE TABLE IF NOT EXISTS ${sqlNames.resourceTableName(type)} " +
             "LIKE cats_v${schemaVersion}_resource_template")
-          jooq.execute("CREATE TABLE IF NOT EXISTS ${sqlNames.relTableName(type)} " +
-            "LIKE cats_v${schemaVersion}_rel_template")
+          createRelTable(type)
         }
+        addBinaryBodyColumn(sqlNames.resourceTableName(type))
 
         createdTables.add(type)
       } catch (e: Exception) {
@@ -869,9 +1233,9 @@ class SqlCache(
         withRetry(RetryCategory.WRITE) {
           jooq.execute("CREATE TABLE IF NOT EXISTS ${sqlNames.resourceTableName(onDemandType)} " +
             "LIKE cats_v${schemaVersion}_resource_template")
-          jooq.execute("CREATE TABLE IF NOT EXISTS ${sqlNames.relTableName(onDemandType)} " +
-            "LIKE cats_v${schemaVersion}_rel_template")
+          createRelTable(onDemandType)
         }
+        addBinaryBodyColumn(sqlNames.resourceTableName(onDemandType))
 
         createdTables.add(onDemandType)
       } catch (e: Exception) {
@@ -880,6 +1244,78 @@ class SqlCache(
     }
   }
 
+  /**
+   * Resource tables created from the template before it had a `body_bin` column don't get it from liquibase. Adding a
+   * nullable column at the end of a table is an online change, so every existing resource table is altered on
+   * startup, before it is read, and each table is checked again before its first write.
+   */
+  private fun addBinaryBodyColumns() {
+    val tables = try {
+      jooq.fetch(
+        "SELECT table_name FROM information_schema.columns WHERE table_schema = DATABASE() " +
+          "AND column_name = 'body_hash' AND table_name LIKE '${sqlNames.resourceTableNamePattern()}'"
+      ).getValues(0, String::class.java)
+    } catch (e: Exception) {
+      log.error("Failed to list the resource tables to add body_bin columns to", e)
+      return
+    }
+
+    tables.forEach { addBinaryBodyColumn(it) }
+  }
+
+  private fun addBinaryBodyColumn(tableName: String) {
+    try {
+      if (!hasBinaryBody(tableName)) {
+        log.info("Adding body_bin column to $tableName")
+        jooq.execute("ALTER TABLE $tableName ADD COLUMN body_bin longblob NULL")
+        binaryBodyTables.add(tableName)
+      }
+    } catch (e: Exception) {
+      log.error("Failed to add body_bin column to $tableName, its bodies are stored as json", e)
+    }
+  }
+
+  /**
+   * Whether [tableName] has a `body_bin` column. A table that this node could not alter, e.g. with read-only grants,
+   * is read and written without it until another node has altered it. Only tables that have the column are
+   * remembered, so that is picked up without a restart.
+   */
+  private fun hasBinaryBody(tableName: String): Boolean {
+    if (binaryBodyTables.contains(tableName)) {
+      return true
+    }
+
+    val present = try {
+      jooq.fetch("SHOW COLUMNS FROM $tableName LIKE 'body\\_bin'").isNotEmpty
+    } catch (e: Exception) {
+      // a table that doesn't exist yet is created from the template, which has the column
+      return true
+    }
+    if (present) {
+      binaryBodyTables.add(tableName)
+    }
+    return present
+  }
+
+  /**
+   * Selects `body_bin` from the resource table of [type], or `null as body_bin` if the table doesn't have it yet.
+   */
+  private fun bodyBinField(type: String): Field<Any> =
+    if (hasBinaryBody(sqlNames.resourceTableName(type))) {
+      field("body_bin").`as`("body_bin")
+    } else {
+      field(sql("null")).`as`("body_bin")
+    }
+
+  private fun createRelTable(type: String) {
+    if (internedRelationships != null) {
+      internedRelationships.createTables(type)
+    } else {
+      jooq.execute("CREATE TABLE IF NOT EXISTS ${sqlNames.relTableName(type)} " +
+        "LIKE cats_v${schemaVersion}_rel_template")
+    }
+  }
+
   private fun getRelationshipFilterPrefixes(cacheFilter: CacheFilter?): List<String> {
     return if (cacheFilter == null) {
       listOf("ALL")
@@ -893,22 +1329,42 @@ class SqlCache(
     }
   }
 
-  private fun getHash(body: String?): String? {
-    if (body.isNullOrBlank()) {
-      return null
-    }
+  private fun encodeBody(type: String, cacheData: CacheData, format: SqlBodyFormat): EncodedBody? {
     return try {
-      val digest = MessageDigest.getInstance("SHA-256")
-        .digest(body.toByteArray())
-      digest.fold("") { str, it ->
-        str + "%02x".format(it)
-      }
+      bodyCodec.encode(type, cacheData, format)
     } catch (e: Exception) {
-      log.error("error calculating hash for body: $body", e)
+      log.error("error encoding body for ${cacheData.id} as $format", e)
       null
     }
   }
 
+  /**
+   * Decodes the `body` and `body_bin` columns found at [offset] in [record].
+   */
+  private fun decodeBody(record: Record, offset: Int = 0): CacheData =
+    bodyCodec.decode(record.get(offset, String::class.java), record.get(offset + 1, ByteArray::class.java))
+
+  /**
+   * The format new bodies of [type] are written in; `sql.cache.codec.format.<type>` overrides
+   * `sql.cache.codec.format.default`. Existing rows are read whatever format they were written in.
+   */
+  private fun getBodyFormat(type: String): SqlBodyFormat {
+    val default = dynamicConfigService.getConfig(String::class.java, "sql.cache.codec.format.default", "json")
+    val format = dynamicConfigService.getConfig(String::class.java, "sql.cache.codec.format.$type", default)
+    val bodyFormat = try {
+      SqlBodyFormat.fromConfigName(format)
+    } catch (e: IllegalArgumentException) {
+      log.warn("Unknown body format '$format' configured for $type, falling back to json")
+      SqlBodyFormat.JSON
+    }
+
+    if (bodyFormat != SqlBodyFormat.JSON && !hasBinaryBody(sqlNames.resourceTableName(type))) {
+      log.warn("${sqlNames.resourceTableName(type)} has no body_bin column, storing $type bodies as json")
+      return SqlBodyFormat.JSON
+    }
+    return bodyFormat
+  }
+
   private fun getHashIds(type: String, agent: String?): List<HashId> {
     return withRetry(RetryCategory.READ) {
       jooq
@@ -922,9 +1378,9 @@ class SqlCache(
     }
   }
 
-  private fun getRelationshipKeys(type: String, sourceAgent: String): MutableList<RelId> {
+  private fun getRelationshipKeys(type: String, sourceAgent: String): List<RelId> {
     return withRetry(RetryCategory.READ) {
-      jooq
+      internedRelationships?.relationshipKeys(type, sourceAgent) ?: jooq
         .select(field("uuid"), field("id"), field("rel_id"), field("rel_agent"))
         .from(table(sqlNames.relTableName(type)))
         .where(field("rel_agent").eq(sourceAgent))
@@ -933,9 +1389,9 @@ class SqlCache(
     }
   }
 
-  private fun getRelationshipKeys(type: String, origType: String, sourceAgent: String): MutableList<RelId> {
+  private fun getRelationshipKeys(type: String, origType: String, sourceAgent: String): List<RelId> {
     return withRetry(RetryCategory.READ) {
-      jooq
+      internedRelationships?.relationshipKeys(type, sourceAgent, origType) ?: jooq
         .select(field("uuid"), field("id"), field("rel_id"), field("rel_agent"))
         .from(table(sqlNames.relTableName(type)))
         .where(
@@ -965,13 +1421,10 @@ class SqlCache(
       if (ids.isEmpty()) {
         withRetry(RetryCategory.READ) {
           cacheData.addAll(
-            jooq.select(field("body"))
+            jooq.select(field("body"), bodyBinField(type))
               .from(table(sqlNames.resourceTableName(type)))
               .fetch()
-              .getValues(0)
-              .asSequence()
-              .map { mapper.readValue(it as String, DefaultCacheData::class.java) }
-              .toList()
+              .map { decodeBody(it) }
           )
         }
         selectQueries += 1
@@ -1027,14 +1480,11 @@ class SqlCache(
     try {
       withRetry(RetryCategory.READ) {
         cacheData.addAll(
-          jooq.select(field("body"))
+          jooq.select(field("body"), bodyBinField(type))
             .from(table(sqlNames.resourceTableName(type)))
             .where(field("application").eq(application))
             .fetch()
-            .getValues(0)
-            .asSequence()
-            .map { mapper.readValue(it as String, DefaultCacheData::class.java) }
-            .toList()
+            .map { decodeBody(it) }
         )
       }
       selectQueries += 1
@@ -1076,36 +1526,19 @@ class SqlCache(
     val relPointers = mutableSetOf<RelPointer>()
     var selectQueries = 0
 
-    val relWhere = getRelWhere(relationshipPrefixes, field("r.application").eq(application))
-
     try {
       val resultSet = withRetry(RetryCategory.READ) {
         jooq
           .select(
             field("body").`as`("body"),
+            bodyBinField(type),
             field(sql("null")).`as`("id"),
             field(sql("null")).`as`("rel_id"),
             field(sql("null")).`as`("rel_type")
           )
           .from(table(sqlNames.resourceTableName(type)))
           .where(field("application").eq(application))
-          .unionAll(
-            jooq.select(
-              field(sql("null")).`as`("body"),
-              field("rel.id").`as`("id"),
-              field("rel.rel_id").`as`("rel_id"),
-              field("rel.rel_type").`as`("rel_type")
-            )
-              .from(table(sqlNames.resourceTableName(type)).`as`("r"))
-              .innerJoin(table(sqlNames.relTableName(type)).`as`("rel"))
-              .on(sql("rel.id=r.id"))
-              .where(relWhere)
-              .groupBy(
-                field("rel_id"),
-                field("id"),
-                field("rel_type")
-              )
-          )
+          .unionAll(selectRelationshipsByApplication(type, application, relationshipPrefixes))
           .fetch()
           .intoResultSet()
       }
@@ -1161,28 +1594,17 @@ class SqlCache(
 
     try {
       if (ids.isEmpty()) {
-
-        val relWhere = getRelWhere(relationshipPrefixes)
-
         val resultSet = withRetry(RetryCategory.READ) {
           jooq
             .select(
               field("body").`as`("body"),
+              bodyBinField(type),
               field(sql("null")).`as`("id"),
               field(sql("null")).`as`("rel_id"),
               field(sql("null")).`as`("rel_type")
             )
             .from(table(sqlNames.resourceTableName(type)))
-            .unionAll(
-              jooq.select(
-                field(sql("null")).`as`("body"),
-                field("id").`as`("id"),
-                field("rel_id").`as`("rel_id"),
-                field("rel_type").`as`("rel_type")
-              )
-                .from(table(sqlNames.relTableName(type)))
-                .where(relWhere)
-            )
+            .unionAll(selectRelationships(type, relationshipPrefixes, null))
             .fetch()
             .intoResultSet()
         }
@@ -1242,13 +1664,11 @@ class SqlCache(
 
   private fun selectBodies(type: String, ids: List<String>): Collection<CacheData> {
     return withRetry(RetryCategory.READ) {
-      jooq.select(field("body"))
+      jooq.select(field("body"), bodyBinField(type))
         .from(table(sqlNames.resourceTableName(type)))
         .where(field("ID").`in`(*ids.toTypedArray()))
         .fetch()
-        .getValues(0)
-        .map { mapper.readValue(it as String, DefaultCacheData::class.java) }
-        .toList()
+        .map { decodeBody(it) }
     }
   }
 
@@ -1259,33 +1679,57 @@ class SqlCache(
   ): ResultSet {
     val where = field("ID").`in`(*ids.toTypedArray())
 
-    val relWhere = getRelWhere(relationshipPrefixes, where)
-
     return withRetry(RetryCategory.READ) {
       jooq
         .select(
           field("body").`as`("body"),
+          bodyBinField(type),
           field(sql("null")).`as`("id"),
           field(sql("null")).`as`("rel_id"),
           field(sql("null")).`as`("rel_type")
         )
         .from(table(sqlNames.resourceTableName(type)))
         .where(where)
-        .unionAll(
-          jooq.select(
-            field(sql("null")).`as`("body"),
-            field("id").`as`("id"),
-            field("rel_id").`as`("rel_id"),
-            field("rel_type").`as`("rel_type")
-          )
-            .from(table(sqlNames.relTableName(type)))
-            .where(relWhere)
-        )
+        .unionAll(selectRelationships(type, relationshipPrefixes, ids))
         .fetch()
         .intoResultSet()
     }
   }
 
+  private fun getPageWithRelationships(
+    type: String,
+    bodies: List<CacheData>,
+    ids: Collection<String>,
+    relationshipPrefixes: List<String>
+  ): Collection<CacheData> {
+    val relPointers = mutableSetOf<RelPointer>()
+    var selectQueries = 0
+
+    if (relationshipPrefixes.isNotEmpty() && ids.isNotEmpty()) {
+      try {
+        withRetry(RetryCategory.READ) {
+          selectRelationships(type, relationshipPrefixes, ids.toList()).fetch()
+        }.forEach {
+          relPointers.add(RelPointer(it.get(2, String::class.java), it.get(3, String::class.java), it.get(4, String::class.java)))
+        }
+        selectQueries += 1
+      } catch (e: Exception) {
+        suppressedLog("Failed selecting relationships for type $type", e)
+      }
+    }
+
+    cacheMetrics.get(
+      prefix = name,
+      type = type,
+      itemCount = bodies.size,
+      requestedSize = ids.size,
+      relationshipsRequested = relPointers.size,
+      selectOperations = selectQueries
+    )
+
+    return mergeDataAndRelationships(bodies, relPointers, relationshipPrefixes)
+  }
+
   private fun selectIdentifiers(type: String, ids: List<String>): MutableCollection<String> {
     return withRetry(RetryCategory.READ) {
       jooq.select(field("id"))
@@ -1305,13 +1749,13 @@ class SqlCache(
     while (resultSet.next()) {
       if (!resultSet.getString(1).isNullOrBlank()) {
         try {
-          cacheData.add(mapper.readValue(resultSet.getString(1), DefaultCacheData::class.java))
+          cacheData.add(bodyCodec.decode(resultSet.getString(1), resultSet.getBytes(2)))
         } catch (e: Exception) {
           log.error("Failed to deserialize cached value: type $type, body ${resultSet.getString(1)}", e)
         }
       } else {
         try {
-          relPointers.add(RelPointer(resultSet.getString(2), resultSet.getString(3), resultSet.getString(4)))
+          relPointers.add(RelPointer(resultSet.getString(3), resultSet.getString(4), resultSet.getString(5)))
         } catch (e: SQLException) {
           log.error("Error reading relationship of type $type", e)
         }
@@ -1427,14 +1871,76 @@ class SqlCache(
     return relationships
   }
 
-  private fun getRelWhere(relationshipPrefixes: List<String>, prefix: Condition? = null): Condition {
+  /**
+   * Selects `(null as body, null as body_bin, id, rel_id, rel_type)` for the relationships of [type] matching
+   * [relationshipPrefixes], restricted to those owned by [ids] if given, in a shape that can be unioned with a select
+   * of bodies.
+   */
+  private fun selectRelationships(
+    type: String,
+    relationshipPrefixes: List<String>,
+    ids: List<String>?
+  ): Select<Record5<Any, Any, Any, Any, Any>> {
+    if (internedRelationships != null) {
+      return internedRelationships.select(type, { getRelWhere(relationshipPrefixes, null, it) }, ids)
+    }
+
+    return jooq
+      .select(
+        field(sql("null")).`as`("body"),
+        field(sql("null")).`as`("body_bin"),
+        field("id").`as`("id"),
+        field("rel_id").`as`("rel_id"),
+        field("rel_type").`as`("rel_type")
+      )
+      .from(table(sqlNames.relTableName(type)))
+      .where(getRelWhere(relationshipPrefixes, ids?.let { field("id").`in`(*it.toTypedArray()) }))
+  }
+
+  private fun selectRelationshipsByApplication(
+    type: String,
+    application: String,
+    relationshipPrefixes: List<String>
+  ): Select<Record5<Any, Any, Any, Any, Any>> {
+    if (internedRelationships != null) {
+      return internedRelationships.selectByApplication(
+        type,
+        application,
+        { getRelWhere(relationshipPrefixes, null, it) }
+      )
+    }
+
+    return jooq
+      .select(
+        field(sql("null")).`as`("body"),
+        field(sql("null")).`as`("body_bin"),
+        field("rel.id").`as`("id"),
+        field("rel.rel_id").`as`("rel_id"),
+        field("rel.rel_type").`as`("rel_type")
+      )
+      .from(table(sqlNames.resourceTableName(type)).`as`("r"))
+      .innerJoin(table(sqlNames.relTableName(type)).`as`("rel"))
+      .on(sql("rel.id=r.id"))
+      .where(getRelWhere(relationshipPrefixes, field("r.application").eq(application)))
+      .groupBy(
+        field("rel_id"),
+        field("id"),
+        field("rel_type")
+      )
+  }
+
+  private fun getRelWhere(
+    relationshipPrefixes: List<String>,
+    prefix: Condition? = null,
+    relTypeField: String = "rel_type"
+  ): Condition {
     var relWhere: Condition = noCondition()
 
     if (relationshipPrefixes.isNotEmpty() && !relationshipPrefixes.contains("ALL")) {
-      relWhere = field("rel_type").like("${relationshipPrefixes[0]}%")
+      relWhere = field(relTypeField).like("${relationshipPrefixes[0]}%")
 
       for (i in 1 until relationshipPrefixes.size) {
-        relWhere = relWhere.or(field("rel_type").like("${relationshipPrefixes[i]}%"))
+        relWhere = relWhere.or(field(relTypeField).like("${relationshipPrefixes[i]}%"))
       }
     }
 
@@ -1547,6 +2053,34 @@ class SqlCache(
     val withAsync: Boolean = false
   )
 
+  private class AuthoritativeDiff(
+    val agent: String,
+    val toStore: List<String>,
+    val bodies: Map<String, EncodedBody>,
+    val apps: Map<String, String>,
+    val toDelete: Set<String>
+  )
+
+  private class InformativeDiff(
+    val newFwdRelPointers: Map<String, List<RelPointer>>,
+    val newRevRelIds: Set<String>,
+    val staleRelIds: Map<String, List<String>> // rel table type to uuids
+  )
+
+  private class BatchedStatement(
+    val query: Query,
+    val onSuccess: () -> Unit
+  )
+
+  private inner class WritePlan(val type: String) {
+    val result = StoreResult()
+    val writes = mutableListOf<BatchedStatement>()
+    val deletes = mutableListOf<BatchedStatement>()
+    var evictCount = 0
+    val itemsEvicted = AtomicInteger(0)
+    val evictQueries = AtomicInteger(0)
+  }
+
   private inner class StoreResult {
     val itemCount = AtomicInteger(0)
     val itemsStored = AtomicInteger(0)
@@ -1583,3 +2117,13 @@ class CatsCoroutineScope(context: CoroutineContext) : CoroutineScope {
   @PreDestroy
   fun killChildJobs() = jobs.cancel()
 }
+
+/**
+ * One type's share of a [SqlCache.mergeAllBatched] call.
+ */
+data class SqlCacheWrite(
+  val type: String,
+  val items: MutableCollection<CacheData>,
+  val authoritative: Boolean,
+  val cleanup: Boolean
+)
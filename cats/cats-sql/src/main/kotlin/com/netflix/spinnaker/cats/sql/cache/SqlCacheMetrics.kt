@@ -45,6 +45,20 @@ interface SqlCacheMetrics {
     selectOperations: Int,
     async: Boolean = false
   ) {}
+
+  /**
+   * Reports a [SqlCache.mergeAllBatched] call: the time spent reading existing rows, writing new and changed rows, and
+   * deleting stale rows, along with the number of statements and transactions used.
+   */
+  fun batchedMerge(
+    prefix: String,
+    typeCount: Int,
+    statementCount: Int,
+    transactionCount: Int,
+    selectMillis: Long,
+    writeMillis: Long,
+    cleanupMillis: Long
+  ) {}
 }
 
 class NoopCacheMetrics : SqlCacheMetrics
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.cats.sql.cache
+
+import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.cats.agent.RunnableAgent
+import com.netflix.spinnaker.clouddriver.cache.CustomScheduledAgent
+import com.netflix.spinnaker.clouddriver.core.provider.CoreProvider
+import com.netflix.spinnaker.clouddriver.sql.SqlAgent
+import com.netflix.spinnaker.config.ConnectionPools
+import com.netflix.spinnaker.kork.sql.routing.withPool
+import java.util.concurrent.TimeUnit
+import kotlin.contracts.ExperimentalContracts
+import org.slf4j.LoggerFactory
+
+/**
+ * Deletes the [SqlSchemaVersion.V2] interned ids that no relationship refers to anymore, such as the ids of resources
+ * that were deleted from the cloud provider, so that the shared ids table doesn't grow forever.
+ */
+@ExperimentalContracts
+class SqlInternedIdCleanupAgent(
+  private val relationships: SqlInternedRelationships,
+  private val registry: Registry
+) : RunnableAgent, CustomScheduledAgent, SqlAgent {
+
+  companion object {
+    private val DEFAULT_POLL_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(6)
+    private val DEFAULT_TIMEOUT_MILLIS = TimeUnit.HOURS.toMillis(1)
+
+    private val log = LoggerFactory.getLogger(SqlInternedIdCleanupAgent::class.java)
+  }
+
+  private val deletedId = registry.createId("cats.sqlCache.internedIds.deleted")
+
+  override fun run() {
+    withPool(ConnectionPools.CACHE_WRITER.value) {
+      relationships.createSharedTables()
+
+      val deleted = relationships.deleteUnusedIds()
+      registry.counter(deletedId).increment(deleted.toLong())
+      log.info("Deleted {} unused interned ids", deleted)
+    }
+  }
+
+  override fun getAgentType(): String = javaClass.simpleName
+  override fun getProviderName(): String = CoreProvider.PROVIDER_NAME
+  override fun getPollIntervalMillis(): Long = DEFAULT_POLL_INTERVAL_MILLIS
+  override fun getTimeoutMillis(): Long = DEFAULT_TIMEOUT_MILLIS
+}
@@ -0,0 +1,605 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.sql.cache
+
+import com.google.common.base.Supplier
+import com.google.common.base.Suppliers
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.netflix.spinnaker.cats.sql.cache.SqlCache.RelId
+import com.netflix.spinnaker.cats.sql.cache.SqlCache.RelPointer
+import java.time.Clock
+import java.util.Arrays
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentMap
+import java.util.concurrent.TimeUnit
+import kotlin.contracts.ExperimentalContracts
+import org.jooq.Condition
+import org.jooq.DSLContext
+import org.jooq.Query
+import org.jooq.Record5
+import org.jooq.Select
+import org.jooq.impl.DSL.field
+import org.jooq.impl.DSL.max
+import org.jooq.impl.DSL.row
+import org.jooq.impl.DSL.sql
+import org.jooq.impl.DSL.table
+import org.jooq.util.mysql.MySQLDSL
+import org.slf4j.LoggerFactory
+
+/**
+ * Reads and writes [SqlSchemaVersion.V2] relationship tables.
+ *
+ * Resource ids, relationship types and source agents are interned into the shared `ids`, `rel_types` and `rel_agents`
+ * tables, so that each relationship is stored as `(id, rel_id, rel_agent, rel_type)` integers and read back by joining
+ * on those keys. Keys are only assigned while writing, and are never reused. The most recently used ones are kept in
+ * memory, ids for at most [ID_CACHE_TTL_MILLIS] so that ids no relationship refers to anymore can be deleted by
+ * [deleteUnusedIds].
+ *
+ * Until [SqlRelationshipMigrationAgent] has copied a type's V1 relationship table, reads of that type also include the
+ * V1 rows; see [hasLegacyRelationships].
+ */
+@ExperimentalContracts
+class SqlInternedRelationships @JvmOverloads constructor(
+  private val jooq: DSLContext,
+  private val sqlNames: SqlNames,
+  private val clock: Clock = Clock.systemUTC(),
+  maxCachedIds: Long = DEFAULT_MAX_CACHED_IDS
+) {
+
+  companion object {
+    private const val DEFAULT_MAX_CACHED_IDS = 500_000L
+    private const val INTERN_BATCH_SIZE = 500
+    private const val SCAN_ROWS = 50_000
+
+    /**
+     * How long an interned id is used without being interned again.
+     */
+    val ID_CACHE_TTL_MILLIS = TimeUnit.HOURS.toMillis(1)
+
+    /**
+     * How long an id is kept after it was last interned, whether or not a relationship refers to it. Leaves room for
+     * clock skew between instances, and for instances that cached ids before they were expired.
+     */
+    val UNUSED_ID_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(1)
+
+    private val log = LoggerFactory.getLogger(SqlInternedRelationships::class.java)
+  }
+
+  private val idTable = sqlNames.internTableName("ids")
+  private val relTypeTable = sqlNames.internTableName("rel_types")
+  private val relAgentTable = sqlNames.internTableName("rel_agents")
+  val migrationTable = sqlNames.internTableName("rel_migrations")
+
+  private val ids: Cache<String, Long> = CacheBuilder.newBuilder()
+    .maximumSize(maxCachedIds)
+    .expireAfterWrite(ID_CACHE_TTL_MILLIS, TimeUnit.MILLISECONDS)
+    .build()
+  private val relTypes: ConcurrentMap<String, Long> = ConcurrentHashMap()
+  private val relAgents: ConcurrentMap<String, Long> = ConcurrentHashMap()
+
+  @Volatile
+  private var createdSharedTables = false
+
+  private val legacyTables: Supplier<Set<String>> = Suppliers.memoizeWithExpiration(
+    { pendingLegacyTables() },
+    1,
+    TimeUnit.MINUTES
+  )
+
+  fun relTableName(type: String): String = sqlNames.relTableName(type, SqlSchemaVersion.V2)
+
+  fun createSharedTables() {
+    if (!createdSharedTables) {
+      createLike(idTable, "cats_v2_ids_template")
+      createLike(relTypeTable, "cats_v2_rel_types_template")
+      createLike(relAgentTable, "cats_v2_rel_agents_template")
+      createLike(migrationTable, "cats_v2_rel_migrations_template")
+      addLastInternedColumn()
+      createdSharedTables = true
+    }
+  }
+
+  fun createTables(type: String) {
+    createSharedTables()
+    createLike(relTableName(type), "cats_v2_rel_template")
+  }
+
+  fun createRelTable(relTableName: String) {
+    createLike(relTableName, "cats_v2_rel_template")
+  }
+
+  private fun createLike(tableName: String, template: String) {
+    jooq.execute("CREATE TABLE IF NOT EXISTS $tableName LIKE $template")
+  }
+
+  /**
+   * Adds `last_interned` to an ids table created before the template had it. Existing ids count as interned now, since
+   * they may still be cached by instances that don't record it.
+   */
+  private fun addLastInternedColumn() {
+    if (jooq.fetch("SHOW COLUMNS FROM $idTable LIKE 'last\\_interned'").isEmpty()) {
+      jooq.execute("ALTER TABLE $idTable ADD COLUMN last_interned bigint NOT NULL DEFAULT 0")
+      jooq.update(table(idTable)).set(field("last_interned"), clock.millis()).execute()
+    }
+  }
+
+  /**
+   * Whether reads of [type] still need to include its V1 relationship table.
+   */
+  fun hasLegacyRelationships(type: String): Boolean =
+    legacyTables.get().contains(sqlNames.relTableName(type, SqlSchemaVersion.V1))
+
+  /**
+   * V1 relationship tables that exist and haven't been completely copied to V2. Tables whose name was shortened
+   * without its `_rel` suffix aren't found.
+   */
+  fun pendingLegacyTables(): Set<String> {
+    return try {
+      val existing = jooq.fetch("show tables like '${sqlNames.relTableNamePattern(SqlSchemaVersion.V1)}'")
+        .getValues(0, String::class.java)
+        .toSet()
+
+      val completed = jooq.select(field("rel_table"))
+        .from(table(migrationTable))
+        .where(field("completed_at").isNotNull)
+        .fetch(field("rel_table"), String::class.java)
+        .toSet()
+
+      existing - completed
+    } catch (e: Exception) {
+      log.warn("Unable to determine pending V1 relationship tables", e)
+      emptySet()
+    }
+  }
+
+  /**
+   * Existing relationships of [type] written by [sourceAgent], optionally only those pointing at [origType]. The
+   * `uuid` of each returned [RelId] is an opaque row key understood by [delete].
+   *
+   * Only reads, so that it can be used with a read-only connection: an agent or type that was never interned has no
+   * relationships.
+   */
+  fun relationshipKeys(type: String, sourceAgent: String, origType: String? = null): List<RelId> {
+    val agentKey = lookup(relAgentTable, relAgents, sourceAgent) ?: return emptyList()
+
+    var where: Condition = field("rel.rel_agent").eq(agentKey)
+    if (origType != null) {
+      val relTypeKey = lookup(relTypeTable, relTypes, origType) ?: return emptyList()
+      where = where.and(field("rel.rel_type").eq(relTypeKey))
+    }
+
+    return jooq
+      .select(field("rel.id"), field("rel.rel_id"), field("owner.name"), field("target.name"))
+      .from(table(relTableName(type)).`as`("rel"))
+      .innerJoin(table(idTable).`as`("owner")).on(field("owner.key_id").eq(field("rel.id")))
+      .innerJoin(table(idTable).`as`("target")).on(field("target.key_id").eq(field("rel.rel_id")))
+      .where(where)
+      .fetch()
+      .map {
+        RelId(
+          "${it.get(0)}:${it.get(1)}:$agentKey",
+          it.get(2, String::class.java),
+          it.get(3, String::class.java),
+          sourceAgent
+        )
+      }
+  }
+
+  /**
+   * Builds a multi-row upsert of [pointers] into the relationship table of [type]; reverse relationships swap `id`
+   * and `rel_id`. Interns any keys that aren't known yet.
+   */
+  fun insert(type: String, pointers: List<RelPointer>, relType: String, reverse: Boolean, now: Long): Query {
+    val idKeys = intern(idTable, ids.asMap(), pointers.flatMap { listOf(it.id, it.rel_id) }, touch = true)
+    val agentKeys = intern(relAgentTable, relAgents, pointers.map { it.rel_type })
+    val relTypeKey = intern(relTypeTable, relTypes, listOf(relType)).getValue(relType)
+
+    val insert = jooq.insertInto(
+      table(relTableName(type)),
+      field("id"),
+      field("rel_id"),
+      field("rel_agent"),
+      field("rel_type"),
+      field("last_updated")
+    )
+
+    return insert.apply {
+      pointers.forEach {
+        val id = idKeys.getValue(it.id)
+        val relId = idKeys.getValue(it.rel_id)
+        if (reverse) {
+          values(relId, id, agentKeys.getValue(it.rel_type), relTypeKey, now)
+        } else {
+          values(id, relId, agentKeys.getValue(it.rel_type), relTypeKey, now)
+        }
+      }
+
+      onDuplicateKeyUpdate()
+        .set(field("last_updated"), MySQLDSL.values(field("last_updated")) as Any)
+    }
+  }
+
+  /**
+   * Builds a delete of the relationships of [type] identified by row keys from [relationshipKeys].
+   */
+  fun delete(type: String, rowKeys: List<String>): Query {
+    val rows = rowKeys.map { key ->
+      val (id, relId, agent) = key.split(":").map { it.toLong() }
+      row(id, relId, agent)
+    }
+
+    return jooq.deleteFrom(table(relTableName(type)))
+      .where(
+        row(field("id", Long::class.java), field("rel_id", Long::class.java), field("rel_agent", Long::class.java))
+          .`in`(rows)
+      )
+  }
+
+  /**
+   * Selects `(null as body, null as body_bin, id, rel_id, rel_type)` for the relationships of [type] whose type
+   * matches [relTypeWhere], restricted to those owned by [ids] if given. Reads the V1 table as well while it is being
+   * migrated.
+   */
+  fun select(
+    type: String,
+    relTypeWhere: (String) -> Condition,
+    ids: List<String>? = null
+  ): Select<Record5<Any, Any, Any, Any, Any>> {
+    var where = relTypeWhere("t.name")
+    if (ids != null) {
+      where = field("owner.name").`in`(*ids.toTypedArray()).and(where)
+    }
+
+    val select = jooq
+      .select(
+        field(sql("null")).`as`("body"),
+        field(sql("null")).`as`("body_bin"),
+        field("owner.name").`as`("id"),
+        field("target.name").`as`("rel_id"),
+        field("t.name").`as`("rel_type")
+      )
+      .from(table(relTableName(type)).`as`("rel"))
+      .innerJoin(table(idTable).`as`("owner")).on(field("owner.key_id").eq(field("rel.id")))
+      .innerJoin(table(idTable).`as`("target")).on(field("target.key_id").eq(field("rel.rel_id")))
+      .innerJoin(table(relTypeTable).`as`("t")).on(field("t.key_id").eq(field("rel.rel_type")))
+      .where(where)
+
+    if (!hasLegacyRelationships(type)) {
+      return select
+    }
+
+    var legacyWhere = relTypeWhere("rel_type")
+    if (ids != null) {
+      legacyWhere = field("id").`in`(*ids.toTypedArray()).and(legacyWhere)
+    }
+
+    return select.unionAll(
+      jooq
+        .select(
+          field(sql("null")).`as`("body"),
+          field(sql("null")).`as`("body_bin"),
+          field("id").`as`("id"),
+          field("rel_id").`as`("rel_id"),
+          field("rel_type").`as`("rel_type")
+        )
+        .from(table(sqlNames.relTableName(type, SqlSchemaVersion.V1)))
+        .where(legacyWhere)
+    )
+  }
+
+  /**
+   * Selects `(null as body, null as body_bin, id, rel_id, rel_type)` for the relationships of resources of [type]
+   * that belong to [application], see [select].
+   */
+  fun selectByApplication(
+    type: String,
+    application: String,
+    relTypeWhere: (String) -> Condition
+  ): Select<Record5<Any, Any, Any, Any, Any>> {
+    val select = jooq
+      .select(
+        field(sql("null")).`as`("body"),
+        field(sql("null")).`as`("body_bin"),
+        field("owner.name").`as`("id"),
+        field("target.name").`as`("rel_id"),
+        field("t.name").`as`("rel_type")
+      )
+      .from(table(sqlNames.resourceTableName(type)).`as`("r"))
+      .innerJoin(table(idTable).`as`("owner")).on(field("owner.name").eq(field("r.id")))
+      .innerJoin(table(relTableName(type)).`as`("rel")).on(field("rel.id").eq(field("owner.key_id")))
+      .innerJoin(table(idTable).`as`("target")).on(field("target.key_id").eq(field("rel.rel_id")))
+      .innerJoin(table(relTypeTable).`as`("t")).on(field("t.key_id").eq(field("rel.rel_type")))
+      .where(field("r.application").eq(application).and(relTypeWhere("t.name")))
+      .groupBy(field("owner.name"), field("target.name"), field("t.name"))
+
+    if (!hasLegacyRelationships(type)) {
+      return select
+    }
+
+    return select.unionAll(
+      jooq
+        .select(
+          field(sql("null")).`as`("body"),
+          field(sql("null")).`as`("body_bin"),
+          field("legacy.id").`as`("id"),
+          field("legacy.rel_id").`as`("rel_id"),
+          field("legacy.rel_type").`as`("rel_type")
+        )
+        .from(table(sqlNames.resourceTableName(type)).`as`("r"))
+        .innerJoin(table(sqlNames.relTableName(type, SqlSchemaVersion.V1)).`as`("legacy"))
+        .on(field("legacy.id").eq(field("r.id")))
+        .where(field("r.application").eq(application).and(relTypeWhere("legacy.rel_type")))
+        .groupBy(field("legacy.rel_id"), field("legacy.id"), field("legacy.rel_type"))
+    )
+  }
+
+  /**
+   * Copies V1 relationship rows into the V2 table [relTableName], ignoring rows that already exist there.
+   */
+  fun copyLegacyRows(relTableName: String, rows: List<LegacyRelationship>): Int {
+    if (rows.isEmpty()) {
+      return 0
+    }
+
+    val idKeys = intern(idTable, ids.asMap(), rows.flatMap { listOf(it.id, it.relId) }, touch = true)
+    val agentKeys = intern(relAgentTable, relAgents, rows.map { it.relAgent })
+    val relTypeKeys = intern(relTypeTable, relTypes, rows.map { it.relType })
+
+    val insert = jooq.insertInto(
+      table(relTableName),
+      field("id"),
+      field("rel_id"),
+      field("rel_agent"),
+      field("rel_type"),
+      field("last_updated")
+    )
+
+    return insert.apply {
+      rows.forEach {
+        values(
+          idKeys.getValue(it.id),
+          idKeys.getValue(it.relId),
+          agentKeys.getValue(it.relAgent),
+          relTypeKeys.getValue(it.relType),
+          it.lastUpdated
+        )
+      }
+      onDuplicateKeyIgnore()
+    }.execute()
+  }
+
+  /**
+   * Keys of the currently interned source agents, see [relationshipKeys].
+   */
+  fun relAgentKeys(): Map<String, Long> =
+    jooq.select(field("key_id"), field("name"))
+      .from(table(relAgentTable))
+      .fetch()
+      .associate { it.get(1, String::class.java) to it.get(0, Long::class.java) }
+
+  /**
+   * Deletes the ids that no V2 relationship table refers to, and that haven't been interned for
+   * [UNUSED_ID_RETENTION_MILLIS]. An id is only used for [ID_CACHE_TTL_MILLIS] after it was last interned, so every
+   * relationship written with an id that old already exists when the relationship tables are scanned.
+   *
+   * Relationship tables are scanned in pages of about [SCAN_ROWS] rows in owner id order, and the ids they refer to are
+   * kept in memory as a sorted array, which takes 8 bytes per id in use whatever the values of the keys.
+   *
+   * @return the number of deleted ids
+   */
+  fun deleteUnusedIds(): Int {
+    val cutoff = clock.millis() - UNUSED_ID_RETENTION_MILLIS
+    val maxKey = jooq.select(max(field("key_id", Long::class.java)))
+      .from(table(idTable))
+      .fetchOne(0, Long::class.javaObjectType)
+      ?: return 0
+
+    val used = KeySet()
+    for (relTable in relTables()) {
+      var after = Long.MIN_VALUE
+      while (true) {
+        // the last owner id of the next page, found on the primary key
+        val upTo = jooq.select(max(field("page.id", Long::class.java)))
+          .from(
+            jooq.select(field("id"))
+              .from(table(relTable))
+              .where(field("id", Long::class.java).gt(after))
+              .orderBy(field("id"))
+              .limit(SCAN_ROWS)
+              .asTable("page")
+          )
+          .fetchOne(0, Long::class.javaObjectType)
+          ?: break
+
+        jooq.select(field("id", Long::class.java), field("rel_id", Long::class.java))
+          .from(table(relTable))
+          .where(field("id", Long::class.java).gt(after), field("id", Long::class.java).le(upTo))
+          .fetch()
+          .forEach { row ->
+            used.add(row.value1())
+            used.add(row.value2())
+          }
+        after = upTo
+      }
+    }
+
+    var deleted = 0
+    var after = 0L
+    while (true) {
+      val candidates = jooq.select(field("key_id", Long::class.java))
+        .from(table(idTable))
+        .where(field("key_id", Long::class.java).gt(after), field("last_interned", Long::class.java).lt(cutoff))
+        .orderBy(field("key_id"))
+        .limit(INTERN_BATCH_SIZE)
+        .fetch(0, Long::class.java)
+      if (candidates.isEmpty()) {
+        return deleted
+      }
+      after = candidates.last()
+
+      val unused = candidates.filter { it <= maxKey && !used.contains(it) }
+      if (unused.isNotEmpty()) {
+        // an id interned again since it was selected is kept
+        deleted += jooq.deleteFrom(table(idTable))
+          .where(field("key_id", Long::class.java).`in`(unused), field("last_interned", Long::class.java).lt(cutoff))
+          .execute()
+      }
+    }
+  }
+
+  /**
+   * Existing V2 relationship tables.
+   */
+  private fun relTables(): List<String> =
+    jooq.fetch("show tables like '${sqlNames.relTableNamePattern(SqlSchemaVersion.V2)}'")
+      .getValues(0, String::class.java)
+
+  /**
+   * Gets the key of a [value] interned into [tableName], without interning it.
+   */
+  private fun lookup(tableName: String, cache: MutableMap<String, Long>, value: String): Long? {
+    cache[value]?.let { return it }
+
+    val key = jooq.select(field("key_id"))
+      .from(table(tableName))
+      .where(field("name").eq(value))
+      .fetchOne(0, Long::class.javaObjectType)
+      ?: return null
+    cache[value] = key
+    return key
+  }
+
+  /**
+   * Gets the keys of [values] interned into [tableName], interning the ones that aren't yet. Recording when the
+   * values were interned, if [touch], is what keeps ids from being deleted while they are cached.
+   *
+   * Only values that aren't found are inserted: InnoDB uses up an auto-increment key for every row of an `INSERT
+   * IGNORE` or `ON DUPLICATE KEY UPDATE`, so inserting values that exist would burn through keys each time the cache
+   * expires. Existing ids are touched before they are read, so that [deleteUnusedIds] can't delete them in between.
+   */
+  private fun intern(
+    tableName: String,
+    cache: MutableMap<String, Long>,
+    values: Collection<String>,
+    touch: Boolean = false
+  ): Map<String, Long> {
+    val result = mutableMapOf<String, Long>()
+    val misses = mutableSetOf<String>()
+
+    values.forEach {
+      val key = cache[it]
+      if (key != null) {
+        result[it] = key
+      } else {
+        misses.add(it)
+      }
+    }
+
+    misses.chunked(INTERN_BATCH_SIZE) { chunk ->
+      val now = clock.millis()
+      if (touch) {
+        jooq.update(table(tableName))
+          .set(field("last_interned"), now)
+          .where(field("name").`in`(*chunk.toTypedArray()))
+          .execute()
+      }
+      val found = selectKeys(tableName, chunk)
+
+      val missing = chunk.filter { !found.containsKey(it) }
+      if (missing.isNotEmpty()) {
+        // only duplicates interned concurrently by another instance are ignored
+        if (touch) {
+          jooq.insertInto(table(tableName), field("name"), field("last_interned"))
+            .apply { missing.forEach { values(it, now) } }
+            .onDuplicateKeyIgnore()
+            .execute()
+        } else {
+          jooq.insertInto(table(tableName), field("name"))
+            .apply { missing.forEach { values(it) } }
+            .onDuplicateKeyIgnore()
+            .execute()
+        }
+        found.putAll(selectKeys(tableName, missing))
+      }
+
+      found.forEach { (name, key) ->
+        cache[name] = key
+        result[name] = key
+      }
+    }
+
+    return result
+  }
+
+  private fun selectKeys(tableName: String, names: List<String>): MutableMap<String, Long> =
+    jooq.select(field("key_id"), field("name"))
+      .from(table(tableName))
+      .where(field("name").`in`(*names.toTypedArray()))
+      .fetch()
+      .associateTo(mutableMapOf()) { it.get(1, String::class.java) to it.get(0, Long::class.java) }
+
+  /**
+   * A set of distinct keys, held as a sorted array with an unsorted tail of recent additions that is merged in when
+   * the array fills up or the set is read.
+   */
+  private class KeySet {
+    private var keys = LongArray(1024)
+    private var size = 0
+    private var sorted = 0
+
+    fun add(key: Long) {
+      if (size == keys.size) {
+        compact()
+        if (size > keys.size / 2) {
+          keys = keys.copyOf(keys.size * 2)
+        }
+      }
+      keys[size++] = key
+    }
+
+    fun contains(key: Long): Boolean {
+      compact()
+      return Arrays.binarySearch(keys, 0, size, key) >= 0
+    }
+
+    private fun compact() {
+      if (sorted == size) {
+        return
+      }
+
+      Arrays.sort(keys, 0, size)
+      var distinct = 0
+      for (i in 0 until size) {
+        if (distinct == 0 || keys[distinct - 1] != keys[i]) {
+          keys[distinct++] = keys[i]
+        }
+      }
+      size = distinct
+      sorted = distinct
+    }
+  }
+
+  data class LegacyRelationship(
+    val uuid: String,
+    val id: String,
+    val relId: String,
+    val relAgent: String,
+    val relType: String,
+    val lastUpdated: Long
+  )
+}
@@ -20,7 +20,9 @@ class SqlNamedCacheFactory(
   private val prefix: String?,
   private val cacheMetrics: SqlCacheMetrics,
   private val dynamicConfigService: DynamicConfigService,
-  private val sqlConstraints: SqlConstraints
+  private val sqlConstraints: SqlConstraints,
+  private val bodyDictionaries: Map<String, ByteArray> = emptyMap(),
+  private val relationshipSchema: SqlSchemaVersion = SqlSchemaVersion.V1
 ) : NamedCacheFactory {
 
   @ExperimentalContracts
@@ -35,7 +37,9 @@ class SqlNamedCacheFactory(
       prefix,
       cacheMetrics,
       dynamicConfigService,
-      sqlConstraints
+      sqlConstraints,
+      bodyDictionaries,
+      relationshipSchema
     )
   }
 }
@@ -37,12 +37,61 @@ class SqlNames(
    * Get the relationship table name for a given agent type.
    */
   fun relTableName(type: String): String =
-    checkTableName("cats_v${schemaVersion}_", sanitizeType(type), "_rel")
+    checkTableName("cats_v${schemaVersion}_", sanitizeType(type), REL_SUFFIX)
+
+  /**
+   * Get the relationship table name for a given agent type in a given [SqlSchemaVersion].
+   */
+  fun relTableName(type: String, version: SqlSchemaVersion): String =
+    checkTableName("cats_v${version.version}_", sanitizeType(type), REL_SUFFIX)
+
+  /**
+   * Get a `LIKE` pattern matching every table name of the current schema version, resource tables among them.
+   */
+  fun resourceTableNamePattern(): String =
+    escapeLike(tablePrefix(SqlSchemaVersion.fromVersion(schemaVersion))) + "%"
+
+  /**
+   * Get a `LIKE` pattern matching the relationship table names of a given [SqlSchemaVersion]. Only the type is a
+   * wildcard: `_` and `%` in the prefix and suffix are escaped.
+   */
+  fun relTableNamePattern(version: SqlSchemaVersion): String =
+    escapeLike(tablePrefix(version)) + "%" + escapeLike(REL_SUFFIX)
+
+  /**
+   * Get the name in [to] of a relationship table named [relTableName] in [from], e.g. one matched by
+   * [relTableNamePattern]. Schema versions have prefixes of the same length, so a name shortened by [checkTableName]
+   * is shortened alike in both.
+   */
+  fun relTableName(relTableName: String, from: SqlSchemaVersion, to: SqlSchemaVersion): String {
+    val prefix = tablePrefix(from)
+    require(relTableName.startsWith(prefix)) { "$relTableName is not a V${from.version} table" }
+    return tablePrefix(to) + relTableName.removePrefix(prefix)
+  }
+
+  /**
+   * Get the name of a table shared by all [SqlSchemaVersion.V2] relationship tables, e.g. `ids` or `rel_types`.
+   */
+  fun internTableName(name: String): String =
+    checkTableName("cats_v${SqlSchemaVersion.V2.version}_", name, "")
 
   private fun sanitizeType(type: String): String {
     return type.replace(typeSanitization, "_")
   }
 
+  /**
+   * The start of every table name of [version], as [checkTableName] keeps it.
+   */
+  private fun tablePrefix(version: SqlSchemaVersion): String =
+    if (tableNamespace == null) {
+      "cats_v${version.version}_"
+    } else {
+      "cats_v${version.version}_${tableNamespace}_"
+    }
+
+  private fun escapeLike(value: String): String =
+    value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_")
+
   /**
    * Computes the actual name of the table less than MAX_TABLE_NAME_LENGTH characters long.
    * It always keeps prefix with tableNamespace but can shorten name and suffix in that order.
@@ -78,5 +127,6 @@ class SqlNames(
   companion object {
     private val schemaVersion = SqlSchemaVersion.current()
     private val typeSanitization = """[^A-Za-z0-9_]""".toRegex()
+    private const val REL_SUFFIX = "_rel"
   }
 }
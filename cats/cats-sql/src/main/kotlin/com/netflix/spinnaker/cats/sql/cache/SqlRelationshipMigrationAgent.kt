@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.cats.sql.cache
+
+import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.cats.agent.RunnableAgent
+import com.netflix.spinnaker.clouddriver.cache.CustomScheduledAgent
+import com.netflix.spinnaker.clouddriver.core.provider.CoreProvider
+import com.netflix.spinnaker.clouddriver.sql.SqlAgent
+import com.netflix.spinnaker.config.ConnectionPools
+import com.netflix.spinnaker.kork.sql.routing.withPool
+import java.time.Clock
+import java.util.concurrent.TimeUnit
+import kotlin.contracts.ExperimentalContracts
+import org.jooq.DSLContext
+import org.jooq.impl.DSL.field
+import org.jooq.impl.DSL.table
+import org.slf4j.LoggerFactory
+
+/**
+ * Copies V1 relationship tables into their [SqlSchemaVersion.V2] counterparts while clouddriver keeps serving reads
+ * and caching agents keep writing V2 rows.
+ *
+ * Rows are copied in `uuid` order, and the last copied `uuid` of each table is recorded so that a copy resumes where
+ * the previous run (on any instance) stopped. Once a table has been copied completely reads stop including it; the V1
+ * table itself is left in place to be dropped by an operator. Rows that were deleted from V1 but not yet from V2, or
+ * vice versa, are reconciled by the owning caching agent's next run.
+ */
+@ExperimentalContracts
+class SqlRelationshipMigrationAgent(
+  private val jooq: DSLContext,
+  private val sqlNames: SqlNames,
+  private val relationships: SqlInternedRelationships,
+  private val registry: Registry,
+  private val clock: Clock,
+  private val batchSize: Int = DEFAULT_BATCH_SIZE
+) : RunnableAgent, CustomScheduledAgent, SqlAgent {
+
+  companion object {
+    private const val DEFAULT_BATCH_SIZE = 1000
+    private val DEFAULT_POLL_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1)
+    private val DEFAULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5)
+
+    private val log = LoggerFactory.getLogger(SqlRelationshipMigrationAgent::class.java)
+  }
+
+  private val copiedId = registry.createId("cats.sqlCache.relationshipMigration.rowsCopied")
+  private val completedId = registry.createId("cats.sqlCache.relationshipMigration.tablesCompleted")
+
+  override fun run() {
+    val deadline = clock.millis() + DEFAULT_TIMEOUT_MILLIS / 2
+
+    withPool(ConnectionPools.CACHE_WRITER.value) {
+      relationships.createSharedTables()
+
+      val pending = relationships.pendingLegacyTables()
+      if (pending.isEmpty()) {
+        log.debug("No V1 relationship tables left to migrate")
+        return@withPool
+      }
+
+      log.info("Migrating {} V1 relationship tables", pending.size)
+      for (legacyTable in pending.sorted()) {
+        if (!migrate(legacyTable, deadline)) {
+          break
+        }
+      }
+    }
+  }
+
+  /**
+   * Copies [legacyTable] until it is done or [deadline] has passed.
+   *
+   * @return false if the deadline was reached
+   */
+  private fun migrate(legacyTable: String, deadline: Long): Boolean {
+    val targetTable = sqlNames.relTableName(legacyTable, SqlSchemaVersion.V1, SqlSchemaVersion.V2)
+    relationships.createRelTable(targetTable)
+
+    jooq.insertInto(table(relationships.migrationTable), field("rel_table"))
+      .values(legacyTable)
+      .onDuplicateKeyIgnore()
+      .execute()
+
+    var lastUuid = jooq.select(field("last_uuid"))
+      .from(table(relationships.migrationTable))
+      .where(field("rel_table").eq(legacyTable))
+      .fetchOne(field("last_uuid"), String::class.java)
+
+    while (clock.millis() < deadline) {
+      val rows = jooq
+        .select(
+          field("uuid"),
+          field("id"),
+          field("rel_id"),
+          field("rel_agent"),
+          field("rel_type"),
+          field("last_updated")
+        )
+        .from(table(legacyTable))
+        .where(if (lastUuid == null) field("uuid").isNotNull else field("uuid").gt(lastUuid))
+        .orderBy(field("uuid"))
+        .limit(batchSize)
+        .fetch()
+        .map {
+          val relAgent = it.get(3, String::class.java)
+          SqlInternedRelationships.LegacyRelationship(
+            uuid = it.get(0, String::class.java),
+            id = it.get(1, String::class.java),
+            relId = it.get(2, String::class.java),
+            relAgent = relAgent,
+            relType = it.get(4, String::class.java) ?: relAgent.substringBefore(":"),
+            lastUpdated = it.get(5, Long::class.javaObjectType) ?: clock.millis()
+          )
+        }
+
+      if (rows.isEmpty()) {
+        jooq.update(table(relationships.migrationTable))
+          .set(field("completed_at"), clock.millis())
+          .where(field("rel_table").eq(legacyTable))
+          .execute()
+
+        registry.counter(completedId).increment()
+        log.info("Finished migrating $legacyTable to $targetTable, $legacyTable can now be dropped")
+        return true
+      }
+
+      relationships.copyLegacyRows(targetTable, rows)
+      lastUuid = rows.last().uuid
+
+      jooq.update(table(relationships.migrationTable))
+        .set(field("last_uuid"), lastUuid)
+        .set(field("rows_copied", Long::class.java), field("rows_copied", Long::class.java).plus(rows.size))
+        .where(field("rel_table").eq(legacyTable))
+        .execute()
+
+      registry.counter(copiedId).increment(rows.size.toLong())
+    }
+
+    log.info("Paused migrating $legacyTable after ${lastUuid ?: "no rows"}, will resume on the next run")
+    return false
+  }
+
+  override fun getAgentType(): String = javaClass.simpleName
+  override fun getProviderName(): String = CoreProvider.PROVIDER_NAME
+  override fun getPollIntervalMillis(): Long = DEFAULT_POLL_INTERVAL_MILLIS
+  override fun getTimeoutMillis(): Long = DEFAULT_TIMEOUT_MILLIS
+}
@@ -1,9 +1,23 @@
 package com.netflix.spinnaker.cats.sql.cache
 
+/**
+ * Layouts of the cats tables.
+ *
+ * [V1] stores each relationship as a row of strings. [V2] keeps the V1 resource tables but interns resource ids,
+ * relationship types and source agents into numeric keys, so relationships become narrow rows of integers.
+ */
 enum class SqlSchemaVersion(val version: Int) {
-  V1(1);
+  V1(1),
+  V2(2);
 
   companion object {
+      /**
+       * The version resource tables are named after.
+       */
       fun current(): Int = V1.version
+
+      fun fromVersion(version: Int): SqlSchemaVersion =
+        values().firstOrNull { it.version == version }
+          ?: throw IllegalArgumentException("Unknown cats schema version: $version")
   }
 }
@@ -42,7 +42,8 @@ class SqlUnknownAgentCleanupAgent(
   private val providerRegistry: ObjectProvider<ProviderRegistry>,
   private val jooq: DSLContext,
   private val registry: Registry,
-  private val sqlNames: SqlNames
+  private val sqlNames: SqlNames,
+  private val relationshipSchema: SqlSchemaVersion = SqlSchemaVersion.V1
 ) : RunnableAgent, CustomScheduledAgent, SqlAgent {
 
   private val log by lazy { LoggerFactory.getLogger(javaClass) }
@@ -66,6 +67,9 @@ class SqlUnknownAgentCleanupAgent(
         try {
           registry.timer(timingId.withTag("dataType", dataType)).record {
             cleanTable(CacheTable.RELATIONSHIP, dataType, runState)
+            if (relationshipSchema == SqlSchemaVersion.V2) {
+              cleanInternedRelationships(dataType, runState)
+            }
             cleanTable(CacheTable.RESOURCE, dataType, runState)
           }
         } catch (e: SQLException) {
@@ -132,6 +136,49 @@ class SqlUnknownAgentCleanupAgent(
       .increment(idsToClean.size.toLong())
   }
 
+  /**
+   * [SqlSchemaVersion.V2] relationship rows reference their source agent by an interned key, so rather than scanning
+   * each table the unknown agents are looked up once per run and their rows deleted by key.
+   */
+  private fun cleanInternedRelationships(dataType: String, state: RunState) {
+    val tableName = sqlNames.relTableName(dataType, SqlSchemaVersion.V2)
+
+    if (state.touchedTables.contains(tableName)) {
+      return
+    }
+    state.touchedTables.add(tableName)
+
+    val tableExists = jooq.fetch("show tables like '$tableName'").intoResultSet()
+    if (!tableExists.next()) {
+      log.debug("Table '$tableName' not found")
+      return
+    }
+
+    val unknownAgentKeys = state.unknownRelAgentKeys ?: jooq.select(field("key_id"), field("name"))
+      .from(table(sqlNames.internTableName("rel_agents")))
+      .fetch()
+      .filter { !state.agentTypes.contains(processRelAgentTypeValue(it.get(1, String::class.java))) }
+      .map { it.get(0, Long::class.java) }
+      .also { state.unknownRelAgentKeys = it }
+
+    var deleted = 0
+    unknownAgentKeys.chunked(100) { chunk ->
+      deleted += jooq.deleteFrom(table(tableName))
+        .where(field("rel_agent").`in`(*chunk.toTypedArray()))
+        .execute()
+    }
+
+    if (deleted > 0) {
+      log.info(
+        "Deleted $deleted records from '$tableName' for data type '$dataType' generated by unknown caching agents"
+      )
+    }
+
+    registry
+      .counter(deletedId.withTags("dataType", dataType, "table", CacheTable.RELATIONSHIP.name))
+      .increment(deleted.toLong())
+  }
+
   /**
    * The "rel_agent" column value is a little wonky. It uses a format of `{dataType}:{agentName}`, but we only want the
    * agent name, so we'll split on the colon value, removing the first element.
@@ -185,7 +232,8 @@ class SqlUnknownAgentCleanupAgent(
    */
   private data class RunState(
     val agentTypes: Set<String>,
-    val touchedTables: MutableList<String> = mutableListOf()
+    val touchedTables: MutableList<String> = mutableListOf(),
+    var unknownRelAgentKeys: List<Long>? = null
   )
 
   /**
@@ -21,19 +21,24 @@ import com.netflix.spinnaker.cats.agent.AgentExecution
 import com.netflix.spinnaker.cats.agent.AgentLock
 import com.netflix.spinnaker.cats.agent.AgentScheduler
 import com.netflix.spinnaker.cats.agent.AgentSchedulerAware
+import com.netflix.spinnaker.cats.agent.AgentSchedulerTelemetry
 import com.netflix.spinnaker.cats.agent.ExecutionInstrumentation
+import com.netflix.spinnaker.cats.agent.SchedulerTelemetryStore
 import com.netflix.spinnaker.cats.cluster.AgentIntervalProvider
 import com.netflix.spinnaker.cats.cluster.NodeIdentity
 import com.netflix.spinnaker.cats.cluster.NodeStatusProvider
 import com.netflix.spinnaker.cats.module.CatsModuleAware
 import com.netflix.spinnaker.config.ConnectionPools
+import com.netflix.spinnaker.config.SqlAgentPriorityProperties
 import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService
 import com.netflix.spinnaker.kork.sql.routing.withPool
 import java.sql.SQLException
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
+import java.util.concurrent.ForkJoinPool
 import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ThreadPoolExecutor
 import java.util.concurrent.TimeUnit
 import java.util.regex.Pattern
 import java.util.regex.Pattern.CASE_INSENSITIVE
@@ -49,6 +54,9 @@ import org.springframework.dao.DataIntegrityViolationException
  * recommended for real workloads. Instead, use the Redis scheduler (`redis.scheduler.enabled=true` and
  * `sql.scheduler.enabled=false`) or implement a scheduler based on ZooKeeper, etcd, consul, and so-on.
  *
+ * With [priority] set (`sql.agent.scheduling-mode=priority`), the most overdue agents are locked first whenever
+ * `sql.agent.max-concurrent-agents` leaves room for only some of them, so that a backlog after a restart or a slow
+ * cloud provider delays the least stale data rather than arbitrary agents.
  */
 class SqlClusteredAgentScheduler(
   private val jooq: DSLContext,
@@ -60,9 +68,14 @@ class SqlClusteredAgentScheduler(
   private val disabledAgentsConfig: List<String>,
   agentLockAcquisitionIntervalSeconds: Long? = null,
   private val tableNamespace: String? = null,
-  private val agentExecutionPool: ExecutorService = Executors.newCachedThreadPool(
-    ThreadFactoryBuilder().setNameFormat(AgentExecutionAction::class.java.simpleName + "-%d").build()
-  ),
+  private val priority: SqlAgentPriorityProperties? = null,
+  private val agentExecutionPool: ExecutorService = if (priority == null) {
+    Executors.newCachedThreadPool(
+      ThreadFactoryBuilder().setNameFormat(AgentExecutionAction::class.java.simpleName + "-%d").build()
+    )
+  } else {
+    workStealingPool(dynamicConfigService)
+  },
   lockPollingScheduler: ScheduledExecutorService = Executors.newSingleThreadScheduledExecutor(
     ThreadFactoryBuilder().setNameFormat(SqlClusteredAgentScheduler::class.java.simpleName + "-%d").build()
   )
@@ -72,6 +85,18 @@ class SqlClusteredAgentScheduler(
 
   private val agents: MutableMap<String, AgentExecutionAction> = ConcurrentHashMap()
   private val activeAgents: MutableMap<String, NextAttempt> = ConcurrentHashMap()
+
+  /**
+   * When each agent last became due, as far as this node knows: the expiry of its lock, or the time this node released
+   * it. Forgotten whenever another node holds the lock.
+   */
+  private val dueTimes: MutableMap<String, Long> = ConcurrentHashMap()
+
+  /**
+   * When each agent last succeeded on this node. Like [dueTimes], forgotten whenever another node holds the lock.
+   */
+  private val lastSuccesses: MutableMap<String, Long> = ConcurrentHashMap()
+  private val telemetry: AgentSchedulerTelemetry = SchedulerTelemetryStore.getStore()
   private val enabledAgents: Pattern
 
   private val referenceTable = "cats_agent_locks"
@@ -125,9 +150,26 @@ class SqlClusteredAgentScheduler(
     acquiredAgents.forEach { agentType, nextAttempt ->
       val exec = agents[agentType]
       if (exec != null) {
-        agentExecutionPool.submit(AgentJob(nextAttempt, exec, this::agentCompleted))
+        val dueTime = dueTimes.remove(agentType) ?: nextAttempt.currentTime
+        agentExecutionPool.submit(AgentJob(nextAttempt, dueTime, exec, this::agentStarted, this::agentCompleted))
       }
     }
+
+    telemetry.saturation(
+      SCHEDULER_NAME,
+      activeAgents.size,
+      dynamicConfigService.getConfig(Int::class.java, "sql.agent.max-concurrent-agents", 100)
+    )
+  }
+
+  private fun agentStarted(agent: Agent, dueTime: Long) {
+    val waitMs = Math.max(0, System.currentTimeMillis() - dueTime)
+    telemetry.agentWaited(SCHEDULER_NAME, agent, waitMs)
+
+    val interval = intervalProvider.getInterval(agent).interval
+    if (interval > 0 && waitMs >= interval) {
+      telemetry.intervalsMissed(SCHEDULER_NAME, agent, waitMs / interval)
+    }
   }
 
   private fun tryAcquire(): Map<String, NextAttempt> {
@@ -138,7 +180,15 @@ class SqlClusteredAgentScheduler(
         val interval = intervalProvider.getInterval(agentExecution.agent)
 
         val currentTime = System.currentTimeMillis()
-        if (tryAcquireSingle(agentType, currentTime, interval.timeout)) {
+        val acquired = tryAcquireSingle(agentType, currentTime, interval.timeout)
+        telemetry.lockAttempted(
+          SCHEDULER_NAME,
+          agentExecution.agent,
+          System.currentTimeMillis() - currentTime,
+          acquired
+        )
+
+        if (acquired) {
           Pair(agentType, NextAttempt(currentTime, interval.interval, interval.errorInterval))
         } else {
           null
@@ -151,11 +201,14 @@ class SqlClusteredAgentScheduler(
   private fun findCandidateAgentLocks(): Map<String, AgentExecutionAction> {
     val skip = HashMap(activeAgents).entries
     val maxConcurrentAgents = dynamicConfigService.getConfig(Int::class.java, "sql.agent.max-concurrent-agents", 100)
-    val availableAgents = maxConcurrentAgents - skip.size
+    // the pool's size is fixed when it's created, so a raised limit mustn't lock agents that would only sit in its queue
+    val poolCapacity = poolCapacity()
+    val availableAgents = minOf(maxConcurrentAgents, poolCapacity ?: Int.MAX_VALUE) - skip.size
     if (availableAgents <= 0) {
       log.debug(
-        "Not acquiring more locks (maxConcurrentAgents: {}, activeAgents: {}, runningAgents: {})",
+        "Not acquiring more locks (maxConcurrentAgents: {}, poolCapacity: {}, activeAgents: {}, runningAgents: {})",
         maxConcurrentAgents,
+        poolCapacity,
         skip.size,
         skip.joinToString(",")
       )
@@ -175,7 +228,7 @@ class SqlClusteredAgentScheduler(
       .toMutableMap()
 
     withPool(POOL_NAME) {
-      val existingLocks = jooq.select(field("agent_name"), field("lock_expiry"))
+      val existingLocks = jooq.select(field("agent_name"), field("owner_id"), field("lock_expiry"))
         .from(table(lockTable))
         .fetch()
         .intoResultSet()
@@ -183,6 +236,7 @@ class SqlClusteredAgentScheduler(
       val now = System.currentTimeMillis()
       while (existingLocks.next()) {
         if (now > existingLocks.getLong("lock_expiry")) {
+          dueTimes[existingLocks.getString("agent_name")] = existingLocks.getLong("lock_expiry")
           try {
             jooq.deleteFrom(table(lockTable))
               .where(field("agent_name").eq(existingLocks.getString("agent_name"))
@@ -196,12 +250,22 @@ class SqlClusteredAgentScheduler(
           }
         } else {
           candidateAgentLocks.remove(existingLocks.getString("agent_name"))
+          dueTimes.remove(existingLocks.getString("agent_name"))
+          if (existingLocks.getString("owner_id") != nodeIdentity.nodeIdentity) {
+            lastSuccesses.remove(existingLocks.getString("agent_name"))
+          }
         }
       }
     }
 
+    val orderedCandidates = if (priority == null) {
+      candidateAgentLocks
+    } else {
+      prioritize(candidateAgentLocks)
+    }
+
     val trimmedCandidates = mutableMapOf<String, AgentExecutionAction>()
-    candidateAgentLocks
+    orderedCandidates
       .forEach { k, v ->
         if (trimmedCandidates.size >= availableAgents) {
           return@forEach
@@ -212,6 +276,55 @@ class SqlClusteredAgentScheduler(
     return trimmedCandidates
   }
 
+  /**
+   * How many agents [agentExecutionPool] can run at once, or null if it isn't bounded.
+   */
+  private fun poolCapacity(): Int? = when (agentExecutionPool) {
+    is ForkJoinPool -> agentExecutionPool.parallelism
+    is ThreadPoolExecutor -> agentExecutionPool.maximumPoolSize
+    else -> null
+  }
+
+  /**
+   * Orders candidates by how overdue they are, i.e. the time since their last success divided by their interval,
+   * multiplied by their provider's weight.
+   */
+  private fun prioritize(candidates: Map<String, AgentExecutionAction>): Map<String, AgentExecutionAction> {
+    val now = System.currentTimeMillis()
+    val unknownOverdueRatio = dynamicConfigService.getConfig(
+      Double::class.java,
+      "sql.agent.priority.unknown-overdue-ratio",
+      priority!!.unknownOverdueRatio
+    )
+    val weights = mutableMapOf<String, Double>()
+
+    return candidates.entries
+      .sortedByDescending { (agentType, action) ->
+        val providerName = action.agent.providerName
+        val weight = weights.computeIfAbsent(providerName) {
+          dynamicConfigService.getConfig(
+            Double::class.java,
+            "sql.agent.priority.provider-weights.$it",
+            priority.providerWeights[it] ?: 1.0
+          )
+        }
+        overdueRatio(agentType, action.agent, now, unknownOverdueRatio) * weight
+      }
+      .associateTo(LinkedHashMap()) { it.key to it.value }
+  }
+
+  private fun overdueRatio(agentType: String, agent: Agent, now: Long, unknownOverdueRatio: Double): Double {
+    val interval = intervalProvider.getInterval(agent).interval.coerceAtLeast(1)
+    val lastSuccess = lastSuccesses[agentType]
+    if (lastSuccess != null) {
+      return (now - lastSuccess).toDouble() / interval
+    }
+
+    // an expired lock was due one interval after the agent's last run
+    val dueTime = dueTimes[agentType] ?: return unknownOverdueRatio
+    return (now - dueTime + interval).toDouble() / interval
+  }
+
   private fun tryAcquireSingle(agentType: String, now: Long, timeout: Long): Boolean {
     try {
       withPool(POOL_NAME) {
@@ -247,6 +360,7 @@ class SqlClusteredAgentScheduler(
       if (newTtl < dynamicConfigService.getConfig(Long::class.java, "sql.agent.release-threshold-ms", 500)) {
         try {
           jooq.delete(table(lockTable)).where(field("agent_name").eq(agentType)).execute()
+          dueTimes[agentType] = nextExecutionTime
         } catch (e: SQLException) {
           log.error("Failed to immediately release lock for agent: $agentType", e)
         }
@@ -263,7 +377,10 @@ class SqlClusteredAgentScheduler(
     }
   }
 
-  private fun agentCompleted(agentType: String, nextExecutionTime: Long) {
+  private fun agentCompleted(agentType: String, nextExecutionTime: Long, success: Boolean) {
+    if (success) {
+      lastSuccesses[agentType] = System.currentTimeMillis()
+    }
     try {
       releaseLock(agentType, nextExecutionTime)
     } finally {
@@ -273,6 +390,21 @@ class SqlClusteredAgentScheduler(
 
   companion object {
     private val POOL_NAME = ConnectionPools.CACHE_WRITER.value
+    private val SCHEDULER_NAME = SqlClusteredAgentScheduler::class.java.simpleName
+
+    /**
+     * Agents block on cloud provider and database calls, so the pool gets a worker per concurrently running agent;
+     * idle workers steal queued agents from busy ones.
+     */
+    private fun workStealingPool(dynamicConfigService: DynamicConfigService): ExecutorService {
+      val parallelism = dynamicConfigService.getConfig(Int::class.java, "sql.agent.max-concurrent-agents", 100)
+      val threadFactory = ForkJoinPool.ForkJoinWorkerThreadFactory { pool ->
+        ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool).apply {
+          name = AgentExecutionAction::class.java.simpleName + "-" + poolIndex
+        }
+      }
+      return ForkJoinPool(parallelism, threadFactory, null, true)
+    }
   }
 }
 
@@ -302,16 +434,19 @@ private class AgentExecutionAction(
 
 private class AgentJob(
   private val lockReleaseTime: NextAttempt,
+  private val dueTime: Long,
   private val action: AgentExecutionAction,
-  private val schedulerCallback: (agentType: String, nextExecutionTime: Long) -> Unit
+  private val startedCallback: (agent: Agent, dueTime: Long) -> Unit,
+  private val schedulerCallback: (agentType: String, nextExecutionTime: Long, success: Boolean) -> Unit
 ) : Runnable {
 
   override fun run() {
     var status = Status.FAILURE
     try {
+      startedCallback(action.agent, dueTime)
       status = action.execute()
     } finally {
-      schedulerCallback(action.agent.agentType, lockReleaseTime.getNextTime(status))
+      schedulerCallback(action.agent.agentType, lockReleaseTime.getNextTime(status), status == Status.SUCCESS)
     }
   }
 }
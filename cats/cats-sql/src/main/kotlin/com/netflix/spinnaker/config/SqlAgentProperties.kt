@@ -29,6 +29,37 @@ class SqlAgentProperties {
   var maxConcurrentAgents: Int = 100
   var agentLockAcquisitionIntervalSeconds: Long = 1
   var poll: SqlPollProperties = SqlPollProperties()
+
+  /**
+   * How candidate agents are chosen when fewer than all of them can be locked.
+   */
+  var schedulingMode: SqlSchedulingMode = SqlSchedulingMode.DEFAULT
+  var priority: SqlAgentPriorityProperties = SqlAgentPriorityProperties()
+}
+
+enum class SqlSchedulingMode {
+  /**
+   * Candidates are locked in no particular order and run on an unbounded cached thread pool.
+   */
+  DEFAULT,
+
+  /**
+   * Candidates are locked most overdue first and run on a work-stealing pool sized to `max-concurrent-agents`.
+   */
+  PRIORITY
+}
+
+class SqlAgentPriorityProperties {
+  /**
+   * Multipliers of an agent's overdue ratio by provider name, e.g. `aws: 2.0`; providers without a weight use 1.0.
+   * Each can be overridden at runtime with `sql.agent.priority.provider-weights.<provider>`.
+   */
+  var providerWeights: Map<String, Double> = emptyMap()
+
+  /**
+   * The overdue ratio assumed for agents this node has no history for, e.g. right after a restart.
+   */
+  var unknownOverdueRatio: Double = 2.0
 }
 
 class SqlPollProperties {
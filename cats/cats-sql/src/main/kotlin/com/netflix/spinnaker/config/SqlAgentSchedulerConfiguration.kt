@@ -53,7 +53,12 @@ class SqlAgentSchedulerConfiguration {
       enabledAgentPattern = sqlAgentProperties.enabledPattern,
       disabledAgentsConfig = sqlAgentProperties.disabledAgents,
       tableNamespace = tableNamespace,
-      agentLockAcquisitionIntervalSeconds = sqlAgentProperties.agentLockAcquisitionIntervalSeconds
+      agentLockAcquisitionIntervalSeconds = sqlAgentProperties.agentLockAcquisitionIntervalSeconds,
+      priority = if (sqlAgentProperties.schedulingMode == SqlSchedulingMode.PRIORITY) {
+        sqlAgentProperties.priority
+      } else {
+        null
+      }
     )
   }
 }
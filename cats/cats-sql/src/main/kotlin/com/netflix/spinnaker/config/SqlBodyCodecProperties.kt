@@ -0,0 +1,32 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.config
+
+import org.springframework.boot.context.properties.ConfigurationProperties
+
+/**
+ * The body format itself is dynamic (`sql.cache.codec.format.default` / `sql.cache.codec.format.<type>`);
+ * only the deflate dictionaries are fixed at startup since every reader needs them to decode existing rows.
+ */
+@ConfigurationProperties("sql.cache.codec")
+class SqlBodyCodecProperties {
+  /**
+   * Preset deflate dictionaries keyed by cache type, as resource locations (e.g. `classpath:`, `file:`).
+   * A dictionary must stay configured for as long as rows compressed with it may exist.
+   */
+  var dictionaries: Map<String, String> = emptyMap()
+}
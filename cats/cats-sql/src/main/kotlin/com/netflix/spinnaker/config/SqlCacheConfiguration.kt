@@ -10,18 +10,25 @@ import com.netflix.spinnaker.cats.cluster.AgentIntervalProvider
 import com.netflix.spinnaker.cats.cluster.DefaultNodeStatusProvider
 import com.netflix.spinnaker.cats.cluster.NodeStatusProvider
 import com.netflix.spinnaker.cats.module.CatsModule
+import com.netflix.spinnaker.cats.near.NearCache
+import com.netflix.spinnaker.cats.near.NearCacheNamedCacheFactory
 import com.netflix.spinnaker.cats.provider.Provider
 import com.netflix.spinnaker.cats.provider.ProviderRegistry
 import com.netflix.spinnaker.cats.sql.SqlProviderRegistry
 import com.netflix.spinnaker.cats.sql.cache.SpectatorSqlCacheMetrics
 import com.netflix.spinnaker.cats.sql.cache.SqlCacheMetrics
 import com.netflix.spinnaker.cats.sql.cache.SqlCleanupStaleOnDemandCachesAgent
+import com.netflix.spinnaker.cats.sql.cache.SqlInternedIdCleanupAgent
+import com.netflix.spinnaker.cats.sql.cache.SqlInternedRelationships
 import com.netflix.spinnaker.cats.sql.cache.SqlNamedCacheFactory
 import com.netflix.spinnaker.cats.sql.cache.SqlNames
+import com.netflix.spinnaker.cats.sql.cache.SqlRelationshipMigrationAgent
+import com.netflix.spinnaker.cats.sql.cache.SqlSchemaVersion
 import com.netflix.spinnaker.cats.sql.cache.SqlTableMetricsAgent
 import com.netflix.spinnaker.cats.sql.cache.SqlUnknownAgentCleanupAgent
 import com.netflix.spinnaker.clouddriver.cache.CustomSchedulableAgentIntervalProvider
 import com.netflix.spinnaker.clouddriver.cache.EurekaStatusNodeStatusProvider
+import com.netflix.spinnaker.clouddriver.cache.NearCacheProperties
 import com.netflix.spinnaker.clouddriver.sql.SqlAgent
 import com.netflix.spinnaker.clouddriver.sql.SqlProvider
 import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService
@@ -46,6 +53,7 @@ import org.springframework.context.annotation.Bean
 import org.springframework.context.annotation.ComponentScan
 import org.springframework.context.annotation.Configuration
 import org.springframework.context.annotation.Import
+import org.springframework.core.io.ResourceLoader
 
 const val coroutineThreadPrefix = "catsSql"
 
@@ -53,7 +61,7 @@ const val coroutineThreadPrefix = "catsSql"
 @Configuration
 @ConditionalOnProperty("sql.cache.enabled")
 @Import(DefaultSqlConfiguration::class)
-@EnableConfigurationProperties(SqlAgentProperties::class, SqlConstraints::class)
+@EnableConfigurationProperties(SqlAgentProperties::class, SqlConstraints::class, SqlBodyCodecProperties::class)
 @ComponentScan("com.netflix.spinnaker.cats.sql.controllers")
 class SqlCacheConfiguration {
 
@@ -90,6 +98,10 @@ class SqlCacheConfiguration {
    * sql.tableNamespace: Name spaces data tables, as well as the agent lock table if using the SqlAgentScheduler.
    * Table namespacing allows flipping to new/empty data tables within the same master if necessary to rebuild
    * the cache from scratch, such as after disabling caching agents for an account/region.
+   *
+   * sql.cache.relationshipSchemaVersion: Set to 2 to store relationships as interned integer keys. Existing V1
+   * relationship tables are copied over in the background by the SqlRelationshipMigrationAgent, and interned ids that
+   * are no longer used are deleted by the SqlInternedIdCleanupAgent.
    */
   @ObsoleteCoroutinesApi
   @Bean
@@ -100,7 +112,12 @@ class SqlCacheConfiguration {
     cacheMetrics: SqlCacheMetrics,
     dynamicConfigService: DynamicConfigService,
     sqlConstraints: SqlConstraints,
+    sqlBodyCodecProperties: SqlBodyCodecProperties,
+    resourceLoader: ResourceLoader,
+    nearCacheProperties: NearCacheProperties,
+    nearCacheMetrics: NearCache.CacheMetrics,
     @Value("\${sql.cache.async-pool-size:0}") poolSize: Int,
+    @Value("\${sql.cache.relationship-schema-version:1}") relationshipSchemaVersion: Int,
     @Value("\${sql.table-namespace:#{null}}") tableNamespace: String?
   ): NamedCacheFactory {
     if (tableNamespace != null && !tableNamespace.matches("""^\w+$""".toRegex())) {
@@ -124,7 +141,7 @@ class SqlCacheConfiguration {
       log.info("Configured coroutine context with newFixedThreadPoolContext of $poolSize threads")
     }
 
-    return SqlNamedCacheFactory(
+    val cacheFactory = SqlNamedCacheFactory(
       jooq,
       ObjectMapper(),
       dispatcher,
@@ -133,8 +150,17 @@ class SqlCacheConfiguration {
       tableNamespace,
       cacheMetrics,
       dynamicConfigService,
-      sqlConstraints
+      sqlConstraints,
+      sqlBodyCodecProperties.dictionaries.mapValues { (_, location) ->
+        resourceLoader.getResource(location).inputStream.use { it.readBytes() }
+      },
+      SqlSchemaVersion.fromVersion(relationshipSchemaVersion)
     )
+
+    if (!nearCacheProperties.isEnabled) {
+      return cacheFactory
+    }
+    return NearCacheNamedCacheFactory(cacheFactory, nearCacheProperties.toOptions(), nearCacheMetrics)
   }
 
   @Bean
@@ -172,9 +198,48 @@ class SqlCacheConfiguration {
     jooq: DSLContext,
     registry: Registry,
     sqlConstraints: SqlConstraints,
+    @Value("\${sql.cache.relationship-schema-version:1}") relationshipSchemaVersion: Int,
     @Value("\${sql.table-namespace:#{null}}") tableNamespace: String?
   ): SqlUnknownAgentCleanupAgent =
-    SqlUnknownAgentCleanupAgent(providerRegistry, jooq, registry, SqlNames(tableNamespace, sqlConstraints))
+    SqlUnknownAgentCleanupAgent(
+      providerRegistry,
+      jooq,
+      registry,
+      SqlNames(tableNamespace, sqlConstraints),
+      SqlSchemaVersion.fromVersion(relationshipSchemaVersion)
+    )
+
+  @Bean
+  @ConditionalOnExpression("!\${sql.read-only:false} && \${sql.cache.relationship-schema-version:1} == 2")
+  fun sqlRelationshipMigrationAgent(
+    jooq: DSLContext,
+    registry: Registry,
+    clock: Clock,
+    sqlConstraints: SqlConstraints,
+    @Value("\${sql.table-namespace:#{null}}") tableNamespace: String?
+  ): SqlRelationshipMigrationAgent {
+    val sqlNames = SqlNames(tableNamespace, sqlConstraints)
+    return SqlRelationshipMigrationAgent(
+      jooq,
+      sqlNames,
+      SqlInternedRelationships(jooq, sqlNames),
+      registry,
+      clock
+    )
+  }
+
+  @Bean
+  @ConditionalOnExpression("!\${sql.read-only:false} && \${sql.cache.relationship-schema-version:1} == 2")
+  fun sqlInternedIdCleanupAgent(
+    jooq: DSLContext,
+    registry: Registry,
+    sqlConstraints: SqlConstraints,
+    @Value("\${sql.table-namespace:#{null}}") tableNamespace: String?
+  ): SqlInternedIdCleanupAgent =
+    SqlInternedIdCleanupAgent(
+      SqlInternedRelationships(jooq, SqlNames(tableNamespace, sqlConstraints)),
+      registry
+    )
 
   @Bean
   @ConditionalOnExpression("\${sql.read-only:false} == false")
@@ -6,6 +6,8 @@ import com.netflix.spinnaker.cats.cache.RelationshipCacheFilter
 import com.netflix.spinnaker.cats.cache.WriteableCacheSpec
 import com.netflix.spinnaker.cats.sql.cache.SqlCache
 import com.netflix.spinnaker.cats.sql.cache.SqlCacheMetrics
+import com.netflix.spinnaker.cats.sql.cache.SqlNames
+import com.netflix.spinnaker.cats.sql.cache.SqlSchemaVersion
 import com.netflix.spinnaker.config.SqlConstraints
 import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService
 import com.netflix.spinnaker.kork.sql.config.RetryProperties
@@ -30,6 +32,12 @@ class SqlCacheSpec extends WriteableCacheSpec {
   @AutoCleanup("close")
   HikariDataSource dataSource
 
+  String bodyFormat = "json"
+
+  SqlSchemaVersion getRelationshipSchema() {
+    return SqlSchemaVersion.V1
+  }
+
   def cleanup() {
     SqlTestUtil.cleanupDb(context)
   }
@@ -80,6 +88,80 @@ class SqlCacheSpec extends WriteableCacheSpec {
     retrieved.findAll { it.id == "fnord-5" }.size() == 1
   }
 
+  def 'reads rows written in different body formats side by side'() {
+    given: 'items written as smile'
+    bodyFormat = "smile-deflate"
+    ((SqlCache) cache).mergeAll('foo', 'agent', [
+      createData('smile', [a: 'b'], [bar: ['bar:1']]),
+      createData('rewritten', [c: 'd'])
+    ], true, false)
+
+    when: 'the format is switched back to json'
+    bodyFormat = "json"
+    ((SqlCache) cache).mergeAll('foo', 'agent', [
+      createData('json', [e: 'f']),
+      createData('rewritten', [c: 'd'])
+    ], true, false)
+
+    then: 'rows in both formats are read'
+    def retrieved = ((SqlCache) cache).getAll('foo').collectEntries { [(it.id): it] }
+    retrieved.keySet() == ['smile', 'rewritten', 'json'] as Set
+    retrieved.smile.attributes == [a: 'b']
+    retrieved.smile.relationships.bar == ['bar:1']
+    retrieved.json.attributes == [e: 'f']
+    retrieved.rewritten.attributes == [c: 'd']
+    ((SqlCache) cache).getAll('foo', ['smile', 'json']).size() == 2
+    ((SqlCache) cache).streamAll('foo', null).withCloseable { it.count() } == 3
+
+    and: 'binary bodies are stored unarmoured in body_bin, and rewritten rows in the current format'
+    def rows = context.fetch("select id, body, body_bin from ${new SqlNames("test").resourceTableName('foo')}")
+      .collectEntries { [(it.get(0)): it] }
+    rows.smile.get(1) == '2'
+    rows.smile.get(2) != null
+    rows.json.get(1).startsWith('{')
+    rows.json.get(2) == null
+    rows.rewritten.get(1).startsWith('{')
+    rows.rewritten.get(2) == null
+  }
+
+  def 'adds body_bin to existing resource tables on startup'() {
+    given: 'a table created from the template before it had body_bin'
+    def tableName = new SqlNames("test").resourceTableName('legacy')
+    createLegacyTable(tableName)
+
+    when:
+    def previousDataSource = dataSource
+    def restarted = getSubject()
+
+    then:
+    context.fetch("show columns from $tableName like 'body\\_bin'").size() == 1
+    restarted.getAll('legacy')*.attributes == [[a: 'b']]
+
+    cleanup:
+    previousDataSource.close()
+  }
+
+  def 'reads a table without body_bin until it has been altered'() {
+    given: 'a table this node has not altered yet'
+    def tableName = new SqlNames("test").resourceTableName('legacy')
+    createLegacyTable(tableName)
+
+    expect:
+    ((SqlCache) cache).getAll('legacy')*.attributes == [[a: 'b']]
+    ((SqlCache) cache).getAll('legacy', ['legacy'])*.attributes == [[a: 'b']]
+    ((SqlCache) cache).streamAll('legacy', null).withCloseable { it.count() } == 1
+  }
+
+  private void createLegacyTable(String tableName) {
+    context.execute("create table $tableName like cats_v1_resource_template")
+    context.execute("alter table $tableName drop column body_bin")
+    def body = new ObjectMapper().writeValueAsString(createData('legacy', [a: 'b']))
+    context.execute(
+      "insert into $tableName (id, agent, body_hash, body, last_updated) values ('legacy', 'agent', 'hash', ?, 0)",
+      body
+    )
+  }
+
   @Unroll
   def 'generates where clause based on cacheFilters'() {
     when:
@@ -105,7 +187,12 @@ class SqlCacheSpec extends WriteableCacheSpec {
     def sqlRetryProperties = new SqlRetryProperties(new RetryProperties(1, 10), new RetryProperties(1, 10))
 
     def dynamicConfigService = Mock(DynamicConfigService) {
-      getConfig(_ as Class, _ as String, _) >> 2
+      getConfig(_ as Class, _ as String, _) >> { Class type, String name, Object defaultValue ->
+        if (type == String) {
+          return name.startsWith("sql.cache.codec.format.") ? bodyFormat : defaultValue
+        }
+        return 2
+      }
     }
 
     SqlTestUtil.TestDatabase testDatabase = SqlTestUtil.initTcMysqlDatabase()
@@ -122,7 +209,9 @@ class SqlCacheSpec extends WriteableCacheSpec {
       "test",
       Mock(SqlCacheMetrics),
       dynamicConfigService,
-      new SqlConstraints()
+      new SqlConstraints(),
+      [:],
+      relationshipSchema
     )
   }
 
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.sql
+
+import com.netflix.spinnaker.cats.sql.cache.SqlCache
+import com.netflix.spinnaker.cats.sql.cache.SqlInternedRelationships
+import com.netflix.spinnaker.cats.sql.cache.SqlNames
+import com.netflix.spinnaker.cats.sql.cache.SqlSchemaVersion
+
+import java.time.Clock
+import java.time.Duration
+
+/**
+ * Runs every [SqlCacheSpec] feature against relationships stored in the interned V2 layout.
+ */
+class SqlCacheV2Spec extends SqlCacheSpec {
+
+  @Override
+  SqlSchemaVersion getRelationshipSchema() {
+    return SqlSchemaVersion.V2
+  }
+
+  def 'looks up existing relationships without interning anything'() {
+    given:
+    ((SqlCache) cache).mergeAll('foo', 'agent', [createData('foo:1', [a: 'b'], [bar: ['bar:1']])], true, false)
+    def relationships = new SqlInternedRelationships(context, new SqlNames("test"))
+
+    expect:
+    relationships.relationshipKeys('foo', 'unknown-agent').isEmpty()
+    relationships.relationshipKeys('foo', 'agent', 'unknown-type').isEmpty()
+    context.fetch("select name from cats_v2_test_rel_agents").getValues(0, String).every { it != 'unknown-agent' }
+    context.fetch("select name from cats_v2_test_rel_types").getValues(0, String).every { it != 'unknown-type' }
+  }
+
+  def 'deletes interned ids that are neither referred to nor recently interned'() {
+    given:
+    ((SqlCache) cache).mergeAll('foo', 'agent', [
+      createData('foo:1', [a: 'b'], [bar: ['bar:1', 'bar:2']]),
+      createData('foo:2', [c: 'd'], [bar: ['bar:2']])
+    ], true, false)
+
+    and: 'a clock past the retention of every id written so far'
+    def clock = Clock.offset(Clock.systemUTC(), Duration.ofDays(2))
+    context.execute("insert into cats_v2_test_ids (name, last_interned) values ('orphan', 0)")
+    context.execute("insert into cats_v2_test_ids (name, last_interned) values ('recent', ${clock.millis()})")
+
+    when:
+    def deleted = new SqlInternedRelationships(context, new SqlNames("test"), clock).deleteUnusedIds()
+
+    then:
+    deleted == 1
+    def names = context.fetch("select name from cats_v2_test_ids").getValues(0, String) as Set
+    !names.contains('orphan')
+    names.containsAll(['recent', 'foo:1', 'foo:2', 'bar:1', 'bar:2'])
+    ((SqlCache) cache).get('foo', 'foo:1').relationships.bar as Set == ['bar:1', 'bar:2'] as Set
+  }
+
+  def 'deletes unused ids whatever the size of their keys'() {
+    given:
+    ((SqlCache) cache).mergeAll('foo', 'agent', [createData('foo:1', [a: 'b'], [bar: ['bar:1']])], true, false)
+    context.execute("insert into cats_v2_test_ids (key_id, name, last_interned) values (3000000000, 'orphan', 0)")
+    def clock = Clock.offset(Clock.systemUTC(), Duration.ofDays(2))
+
+    when:
+    def deleted = new SqlInternedRelationships(context, new SqlNames("test"), clock).deleteUnusedIds()
+
+    then:
+    deleted == 1
+    context.fetch("select name from cats_v2_test_ids").getValues(0, String) as Set == ['foo:1', 'bar:1'] as Set
+  }
+
+  def 'interns existing ids again without using up keys'() {
+    given:
+    ((SqlCache) cache).mergeAll('foo', 'agent', [createData('foo:1', [a: 'b'], [bar: ['bar:1']])], true, false)
+    def maxKey = context.fetchValue("select max(key_id) from cats_v2_test_ids") as long
+
+    and: 'an instance whose id cache has expired'
+    def clock = Clock.offset(Clock.systemUTC(), Duration.ofHours(2))
+    def relationships = new SqlInternedRelationships(context, new SqlNames("test"), clock)
+
+    when:
+    relationships.insert('foo', [new SqlCache.RelPointer('foo:1', 'bar:1', 'agent')], 'bar', false, 0).execute()
+    relationships.insert('foo', [new SqlCache.RelPointer('foo:1', 'bar:2', 'agent')], 'bar', false, 0).execute()
+
+    then: 'existing ids are touched, and only the new one gets a key'
+    def rows = context.fetch("select name, key_id, last_interned from cats_v2_test_ids")
+      .collectEntries { [(it.get(0)): it] }
+    rows['bar:2'].get(1) == maxKey + 1
+    rows['foo:1'].get(2) >= clock.millis() - 1000
+    rows['bar:1'].get(2) >= clock.millis() - 1000
+  }
+}
@@ -1,7 +1,7 @@
 package com.netflix.spinnaker.cats.sql
 
 import com.fasterxml.jackson.databind.ObjectMapper
-import com.netflix.spectator.api.NoopRegistry
+import com.netflix.spectator.api.DefaultRegistry
 import com.netflix.spinnaker.cats.agent.DefaultCacheResult
 import com.netflix.spinnaker.cats.cache.Cache
 import com.netflix.spinnaker.cats.cache.CacheData
@@ -36,6 +36,8 @@ class SqlProviderCacheSpec extends ProviderCacheSpec {
 
   WriteableCache backingStore
 
+  DefaultRegistry registry = new DefaultRegistry()
+
   def cleanup() {
     SqlTestUtil.cleanupDb(context)
   }
@@ -50,9 +52,10 @@ class SqlProviderCacheSpec extends ProviderCacheSpec {
     def mapper = new ObjectMapper()
     def clock = new Clock.FixedClock(Instant.EPOCH, ZoneId.of("UTC"))
     def sqlRetryProperties = new SqlRetryProperties(new RetryProperties(1, 10), new RetryProperties(1, 10))
-    def sqlMetrics = new SpectatorSqlCacheMetrics(new NoopRegistry())
+    def sqlMetrics = new SpectatorSqlCacheMetrics(registry)
     def dynamicConfigService = Mock(DynamicConfigService) {
-      getConfig(_ as Class, _ as String, _) >> 10
+      getConfig(_ as Class, _ as String, _) >> { Class type, String name, Object defaultValue -> type == String ? defaultValue : 10 }
+      isEnabled(_ as String, _ as Boolean) >> { String name, Boolean defaultValue -> defaultValue }
     }
 
     SqlTestUtil.TestDatabase testDatabase = SqlTestUtil.initTcMysqlDatabase()
@@ -167,6 +170,21 @@ class SqlProviderCacheSpec extends ProviderCacheSpec {
     fooData["serverGroup"].collect { it.id }.sort() == sgIdsForAppFoo
   }
 
+  def 'stores every type of a cache result in one batched transaction'() {
+    when:
+    defaultProviderCache.putCacheResult('testAgent', ['serverGroup', 'instances'], new DefaultCacheResult(
+      serverGroup: [createData('sg1', [application: "foo"], [instances: ['i1']])],
+      instances: [createData('i1', [application: "foo"], [serverGroup: ['sg1']])],
+      loadBalancer: [createData('lb1', [canhaz: "attributes"], [serverGroup: ['sg1']])]
+    ))
+
+    then:
+    registry.counter('cats.sqlCache.batchedMerge.typeCount', 'prefix', 'test').count() == 3
+    registry.counter('cats.sqlCache.batchedMerge.transactions', 'prefix', 'test').count() == 1
+    cache.get('serverGroup', 'sg1').relationships.loadBalancer as Set == ['lb1'] as Set
+    cache.get('instances', 'i1').relationships.serverGroup as Set == ['sg1'] as Set
+  }
+
   void addInformative(String type, String id, CacheData cacheData = createData(id)) {
     defaultProviderCache.putCacheResult('testAgent', ['informative'], new DefaultCacheResult((type): [cacheData]))
   }
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.sql
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spectator.api.DefaultRegistry
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.cats.sql.cache.SqlCache
+import com.netflix.spinnaker.cats.sql.cache.SqlCacheMetrics
+import com.netflix.spinnaker.cats.sql.cache.SqlInternedRelationships
+import com.netflix.spinnaker.cats.sql.cache.SqlNames
+import com.netflix.spinnaker.cats.sql.cache.SqlRelationshipMigrationAgent
+import com.netflix.spinnaker.cats.sql.cache.SqlSchemaVersion
+import com.netflix.spinnaker.config.SqlConstraints
+import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService
+import com.netflix.spinnaker.kork.sql.config.RetryProperties
+import com.netflix.spinnaker.kork.sql.config.SqlRetryProperties
+import com.netflix.spinnaker.kork.sql.test.SqlTestUtil
+import com.zaxxer.hikari.HikariDataSource
+import org.jooq.DSLContext
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.time.Clock
+import java.time.Instant
+import java.time.ZoneId
+
+import static org.jooq.impl.DSL.table
+
+class SqlRelationshipMigrationAgentSpec extends Specification {
+
+  @Shared
+  DSLContext context
+
+  @AutoCleanup("close")
+  HikariDataSource dataSource
+
+  def sqlNames = new SqlNames("test")
+  def registry = new DefaultRegistry()
+
+  def setup() {
+    SqlTestUtil.TestDatabase testDatabase = SqlTestUtil.initTcMysqlDatabase()
+    context = testDatabase.context
+    dataSource = testDatabase.dataSource
+  }
+
+  def cleanup() {
+    SqlTestUtil.cleanupDb(context)
+  }
+
+  def 'copies V1 relationships to V2 and stops reading V1 once done'() {
+    given:
+    cache(SqlSchemaVersion.V1).mergeAll('foo', 'agent', items(), true, false)
+    new SqlInternedRelationships(context, sqlNames).createTables('foo')
+    def expected = relationships(cache(SqlSchemaVersion.V1))
+
+    expect: 'V2 reads include the V1 rows until they are copied'
+    relationships(cache(SqlSchemaVersion.V2)) == expected
+
+    when:
+    agent(fixedClock(), 2).run()
+
+    then: 'reverse relationships are stored, and copied, as relationships of bar'
+    context.fetchCount(table("cats_v2_test_foo_rel")) == 3
+    context.fetchCount(table("cats_v2_test_bar_rel")) == 3
+    def migration = context.fetchOne(
+      "select rows_copied, completed_at from cats_v2_test_rel_migrations where rel_table = 'cats_v1_test_foo_rel'"
+    )
+    migration.get(0, Long) == 3
+    migration.get(1) != null
+
+    when: 'the V1 tables are dropped'
+    context.execute("drop table cats_v1_test_foo_rel, cats_v1_test_bar_rel")
+
+    then:
+    relationships(cache(SqlSchemaVersion.V2)) == expected
+  }
+
+  def 'resumes a paused copy where it stopped'() {
+    given:
+    cache(SqlSchemaVersion.V1).mergeAll('foo', 'agent', items(), true, false)
+
+    when: 'the deadline passes after the first batch'
+    agent(new SteppingClock([0L, 0L, Long.MAX_VALUE]), 1).run()
+
+    then:
+    progress() == [1, 0]
+
+    when:
+    agent(fixedClock(), 1).run()
+
+    then:
+    progress() == [6, 2]
+    context.fetchCount(table("cats_v2_test_foo_rel")) == 3
+    context.fetchCount(table("cats_v2_test_bar_rel")) == 3
+  }
+
+  def 'ignores tables that only match the pattern through wildcards'() {
+    given:
+    def relationships = new SqlInternedRelationships(context, sqlNames)
+    relationships.createSharedTables()
+    context.execute("create table cats_v1_test_foo_rel like cats_v1_rel_template")
+    context.execute("create table cats_v1_testx_foo_rel like cats_v1_rel_template")
+    context.execute("create table cats_v1_test_foo_xrel like cats_v1_rel_template")
+
+    expect:
+    relationships.pendingLegacyTables() == ['cats_v1_test_foo_rel'] as Set
+  }
+
+  /**
+   * @return the rows copied and the tables completed so far
+   */
+  private List<Long> progress() {
+    def record = context.fetchOne(
+      "select coalesce(sum(rows_copied), 0), count(completed_at) from cats_v2_test_rel_migrations"
+    )
+    return [record.get(0, Long), record.get(1, Long)]
+  }
+
+  private SqlRelationshipMigrationAgent agent(Clock clock, int batchSize) {
+    return new SqlRelationshipMigrationAgent(
+      context,
+      sqlNames,
+      new SqlInternedRelationships(context, sqlNames),
+      registry,
+      clock,
+      batchSize
+    )
+  }
+
+  private SqlCache cache(SqlSchemaVersion relationshipSchema) {
+    def dynamicConfigService = Mock(DynamicConfigService) {
+      getConfig(_ as Class, _ as String, _) >> { Class type, String name, Object defaultValue ->
+        type == String ? defaultValue : 2
+      }
+    }
+
+    return new SqlCache(
+      "test",
+      context,
+      new ObjectMapper(),
+      null,
+      fixedClock(),
+      new SqlRetryProperties(new RetryProperties(1, 10), new RetryProperties(1, 10)),
+      "test",
+      Mock(SqlCacheMetrics),
+      dynamicConfigService,
+      new SqlConstraints(),
+      [:],
+      relationshipSchema
+    )
+  }
+
+  private static List items() {
+    return [
+      new DefaultCacheData('foo:1', [a: 'b'], [bar: ['bar:1', 'bar:2']]),
+      new DefaultCacheData('foo:2', [c: 'd'], [bar: ['bar:2']])
+    ]
+  }
+
+  private static Map relationships(SqlCache cache) {
+    return cache.getAll('foo').collectEntries { [(it.id): it.relationships.bar as Set] }
+  }
+
+  private static Clock fixedClock() {
+    return Clock.fixed(Instant.EPOCH, ZoneId.of("UTC"))
+  }
+
+  /**
+   * Returns the given times in turn, then the last one forever.
+   */
+  private static class SteppingClock extends Clock {
+    private final List<Long> times
+
+    SteppingClock(List<Long> times) {
+      this.times = new ArrayList<>(times)
+    }
+
+    @Override
+    long millis() {
+      return times.size() > 1 ? times.remove(0) : times[0]
+    }
+
+    @Override
+    Instant instant() {
+      return Instant.ofEpochMilli(millis())
+    }
+
+    @Override
+    ZoneId getZone() {
+      return ZoneId.of("UTC")
+    }
+
+    @Override
+    Clock withZone(ZoneId zone) {
+      return this
+    }
+  }
+}
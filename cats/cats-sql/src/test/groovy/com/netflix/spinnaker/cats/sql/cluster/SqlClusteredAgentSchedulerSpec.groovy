@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.sql.cluster
+
+import com.netflix.spinnaker.cats.agent.Agent
+import com.netflix.spinnaker.cats.agent.AgentExecution
+import com.netflix.spinnaker.cats.agent.ExecutionInstrumentation
+import com.netflix.spinnaker.cats.cluster.AgentIntervalProvider
+import com.netflix.spinnaker.cats.cluster.NodeIdentity
+import com.netflix.spinnaker.cats.cluster.NodeStatusProvider
+import com.netflix.spinnaker.config.SqlAgentPriorityProperties
+import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService
+import com.netflix.spinnaker.kork.sql.test.SqlTestUtil
+import com.zaxxer.hikari.HikariDataSource
+import org.jooq.DSLContext
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+import static org.jooq.impl.DSL.field
+import static org.jooq.impl.DSL.table
+
+class SqlClusteredAgentSchedulerSpec extends Specification {
+
+  static final long INTERVAL = TimeUnit.MINUTES.toMillis(1)
+
+  @Shared
+  DSLContext context
+
+  @AutoCleanup("close")
+  HikariDataSource dataSource
+
+  def setup() {
+    SqlTestUtil.TestDatabase testDatabase = SqlTestUtil.initTcMysqlDatabase()
+    context = testDatabase.context
+    dataSource = testDatabase.dataSource
+  }
+
+  def cleanup() {
+    SqlTestUtil.cleanupDb(context)
+  }
+
+  def 'locks no more agents than the execution pool can run'() {
+    given: 'a limit raised above the size the pool was created with'
+    def pool = new ForkJoinPool(2)
+    def running = new CountDownLatch(1)
+    def scheduler = scheduler(pool, 10, null)
+    (1..5).each { schedule(scheduler, agent("agent-$it", "aws"), running) }
+
+    when:
+    scheduler.run()
+    scheduler.run()
+
+    then:
+    lockedAgents().size() == 2
+
+    cleanup:
+    running.countDown()
+    pool.shutdown()
+    pool.awaitTermination(10, TimeUnit.SECONDS)
+  }
+
+  @Unroll
+  def 'locks the most overdue agents first when #description'() {
+    given: 'agents whose locks expired 10 minutes and 1 minute ago, and one this node has no history for'
+    def now = System.currentTimeMillis()
+    expiredLock("stale", now - TimeUnit.MINUTES.toMillis(10))
+    expiredLock("late", now - TimeUnit.MINUTES.toMillis(1))
+
+    def scheduler = scheduler(Mock(ExecutorService), 1, new SqlAgentPriorityProperties(
+      providerWeights: providerWeights,
+      unknownOverdueRatio: unknownOverdueRatio
+    ))
+    schedule(scheduler, agent("stale", "aws"), null)
+    schedule(scheduler, agent("late", "titus"), null)
+    schedule(scheduler, agent("unknown", "aws"), null)
+
+    when:
+    scheduler.run()
+
+    then:
+    lockedAgents() == [expected]
+
+    where:
+    description                               | providerWeights | unknownOverdueRatio || expected
+    'all providers weigh the same'            | [:]             | 2.0d                || "stale"
+    'a provider weighs enough to overtake'    | [titus: 10.0d]  | 2.0d                || "late"
+    'unknown agents are assumed very overdue' | [:]             | 20.0d               || "unknown"
+  }
+
+  def 'ignores the order of agents when priority is disabled but still honors the limit'() {
+    given:
+    def scheduler = scheduler(Mock(ExecutorService), 2, null)
+    (1..5).each { schedule(scheduler, agent("agent-$it", "aws"), null) }
+
+    when:
+    scheduler.run()
+
+    then:
+    lockedAgents().size() == 2
+  }
+
+  private SqlClusteredAgentScheduler scheduler(
+    ExecutorService pool,
+    int maxConcurrentAgents,
+    SqlAgentPriorityProperties priority
+  ) {
+    def dynamicConfigService = Mock(DynamicConfigService) {
+      getConfig(_ as Class, _ as String, _) >> { Class type, String name, Object defaultValue ->
+        name == "sql.agent.max-concurrent-agents" ? maxConcurrentAgents : defaultValue
+      }
+    }
+    def intervalProvider = Mock(AgentIntervalProvider) {
+      getInterval(_) >> new AgentIntervalProvider.Interval(INTERVAL, INTERVAL, TimeUnit.MINUTES.toMillis(5))
+    }
+
+    return new SqlClusteredAgentScheduler(
+      context,
+      Mock(NodeIdentity) { getNodeIdentity() >> "node" },
+      intervalProvider,
+      Mock(NodeStatusProvider) { isNodeEnabled() >> true },
+      dynamicConfigService,
+      ".*",
+      [],
+      1L,
+      null,
+      priority,
+      pool,
+      Mock(ScheduledExecutorService)
+    )
+  }
+
+  private void schedule(SqlClusteredAgentScheduler scheduler, Agent agent, CountDownLatch running) {
+    def execution = Mock(AgentExecution) {
+      executeAgent(_) >> { running?.await(10, TimeUnit.SECONDS) }
+    }
+    scheduler.schedule(agent, execution, Mock(ExecutionInstrumentation))
+  }
+
+  private Agent agent(String agentType, String providerName) {
+    return Mock(Agent) {
+      getAgentType() >> agentType
+      getProviderName() >> providerName
+    }
+  }
+
+  private void expiredLock(String agentType, long expiry) {
+    context.insertInto(table("cats_agent_locks"))
+      .columns(field("agent_name"), field("owner_id"), field("lock_acquired"), field("lock_expiry"))
+      .values(agentType, "other-node", expiry - TimeUnit.MINUTES.toMillis(5), expiry)
+      .execute()
+  }
+
+  private List<String> lockedAgents() {
+    return context.select(field("agent_name"))
+      .from(table("cats_agent_locks"))
+      .fetch()
+      .getValues(0, String)
+      .sort()
+  }
+}
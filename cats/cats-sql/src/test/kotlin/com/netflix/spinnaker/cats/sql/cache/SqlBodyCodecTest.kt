@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.cats.sql.cache
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.dataformat.smile.SmileFactory
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import dev.minutest.junit.JUnit5Minutests
+import dev.minutest.rootContext
+import java.security.MessageDigest
+import strikt.api.expectThat
+import strikt.api.expectThrows
+import strikt.assertions.isEqualTo
+import strikt.assertions.isLessThan
+import strikt.assertions.isNull
+import strikt.assertions.isNotEqualTo
+
+class SqlBodyCodecTest : JUnit5Minutests {
+
+  private val mapper = ObjectMapper()
+
+  private val cacheData = DefaultCacheData(
+    "aws:instances:test:us-east-1:i-1234",
+    mapOf<String, Any>(
+      "name" to "i-1234",
+      "launchTime" to 1580000000000L,
+      "tags" to listOf(mapOf("key" to "app", "value" to "clouddriver"))
+    ),
+    mapOf("serverGroups" to listOf("aws:serverGroups:clouddriver-main-v001:test:us-east-1"))
+  )
+
+  // a representative body of the same type makes a good dictionary
+  private val dictionary = ObjectMapper(SmileFactory()).writeValueAsBytes(
+    DefaultCacheData(
+      "aws:instances:prod:eu-west-1:i-5678",
+      mapOf<String, Any>(
+        "name" to "i-5678",
+        "launchTime" to 1570000000000L,
+        "tags" to listOf(mapOf("key" to "app", "value" to "orca"))
+      ),
+      mapOf("serverGroups" to listOf("aws:serverGroups:orca-main-v042:prod:eu-west-1"))
+    )
+  )
+
+  fun tests() = rootContext<SqlBodyCodec> {
+    fixture {
+      SqlBodyCodec(mapper, mapOf("instances" to dictionary))
+    }
+
+    SqlBodyFormat.values().forEach { format ->
+      test("round trips $format bodies") {
+        val encoded = encode("instances", cacheData, format)
+        val decoded = decode(encoded.body, encoded.binary)
+
+        expectThat(decoded.id).isEqualTo(cacheData.id)
+        expectThat(decoded.attributes).isEqualTo(cacheData.attributes)
+        expectThat(decoded.relationships).isEqualTo(cacheData.relationships)
+      }
+    }
+
+    test("json bodies and hashes are unchanged from the legacy encoding") {
+      val legacyBody = mapper.writeValueAsString(cacheData)
+      val legacyHash = MessageDigest.getInstance("SHA-256")
+        .digest(legacyBody.toByteArray())
+        .fold("") { str, it -> str + "%02x".format(it) }
+
+      expectThat(encode("instances", cacheData, SqlBodyFormat.JSON))
+        .isEqualTo(EncodedBody(legacyBody, legacyHash))
+    }
+
+    test("binary bodies are marked and hashed differently to json") {
+      val json = encode("instances", cacheData, SqlBodyFormat.JSON)
+      val smile = encode("instances", cacheData, SqlBodyFormat.SMILE)
+
+      expectThat(smile.body).isEqualTo("1")
+      expectThat(json.binary).isNull()
+      expectThat(smile.hash).isNotEqualTo(json.hash)
+      expectThat(SqlBodyFormat.fromBody(smile.body)).isEqualTo(SqlBodyFormat.SMILE)
+      expectThat(SqlBodyFormat.fromBody(json.body)).isEqualTo(SqlBodyFormat.JSON)
+    }
+
+    test("a preset dictionary shrinks deflated bodies") {
+      val withDictionary = encode("instances", cacheData, SqlBodyFormat.SMILE_DEFLATE)
+      val withoutDictionary = SqlBodyCodec(mapper).encode("instances", cacheData, SqlBodyFormat.SMILE_DEFLATE)
+
+      expectThat(withDictionary.binary!!.size).isLessThan(withoutDictionary.binary!!.size)
+    }
+
+    test("bodies deflated with an unknown dictionary fail to decode") {
+      val encoded = encode("instances", cacheData, SqlBodyFormat.SMILE_DEFLATE)
+
+      expectThrows<IllegalStateException> {
+        SqlBodyCodec(mapper).decode(encoded.body, encoded.binary)
+      }
+    }
+
+    test("binary bodies are stored unarmoured") {
+      val encoded = encode("instances", cacheData, SqlBodyFormat.SMILE)
+
+      expectThat(encoded.binary?.toList())
+        .isEqualTo(ObjectMapper(SmileFactory()).writeValueAsBytes(cacheData).toList())
+    }
+
+    test("binary bodies without their bytes fail to decode") {
+      expectThrows<IllegalStateException> {
+        decode("1", null)
+      }
+    }
+
+    test("unknown format names are rejected") {
+      expectThrows<IllegalArgumentException> {
+        SqlBodyFormat.fromConfigName("protobuf")
+      }
+    }
+  }
+}
@@ -18,6 +18,7 @@ package com.netflix.spinnaker.cats.sql.cache
 import dev.minutest.junit.JUnit5Minutests
 import dev.minutest.rootContext
 import strikt.api.expectThat
+import strikt.api.expectThrows
 import strikt.assertions.isEqualTo
 
 class SqlNamesTest : JUnit5Minutests {
@@ -39,6 +40,34 @@ class SqlNamesTest : JUnit5Minutests {
           .isEqualTo(table.expected)
       }
     }
+
+    test("relationship table names follow the schema version") {
+      expectThat(relTableName("hello", SqlSchemaVersion.V1)).isEqualTo("cats_v1_hello_rel")
+      expectThat(relTableName("hello", SqlSchemaVersion.V2)).isEqualTo("cats_v2_hello_rel")
+      expectThat(relTableName("hello")).isEqualTo(relTableName("hello", SqlSchemaVersion.V1))
+    }
+
+    test("relationship table name patterns only match the type") {
+      expectThat(relTableNamePattern(SqlSchemaVersion.V1)).isEqualTo("cats\\_v1\\_%\\_rel")
+      expectThat(SqlNames("my_ns").relTableNamePattern(SqlSchemaVersion.V2))
+        .isEqualTo("cats\\_v2\\_my\\_ns\\_%\\_rel")
+    }
+
+    test("relationship table names are mapped between schema versions") {
+      val long = "abcdefghij".repeat(10)
+      expectThat(relTableName(relTableName(long, SqlSchemaVersion.V1), SqlSchemaVersion.V1, SqlSchemaVersion.V2))
+        .isEqualTo(relTableName(long, SqlSchemaVersion.V2))
+      expectThat(
+        SqlNames("ns").relTableName("cats_v1_ns_hello_rel", SqlSchemaVersion.V1, SqlSchemaVersion.V2)
+      ).isEqualTo("cats_v2_ns_hello_rel")
+      expectThrows<IllegalArgumentException> {
+        relTableName("cats_v2_hello_rel", SqlSchemaVersion.V1, SqlSchemaVersion.V2)
+      }
+    }
+
+    test("intern table names are shared across resource types") {
+      expectThat(internTableName("ids")).isEqualTo("cats_v2_ids")
+    }
   }
 
   private inner class TableName(
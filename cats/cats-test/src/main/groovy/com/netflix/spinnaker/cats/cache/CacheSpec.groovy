@@ -101,6 +101,22 @@ abstract class CacheSpec extends Specification {
         identifiers = ['blaTEST', 'TESTbla', 'blaTESTbla', 'blaPest', 'blaFEST']
     }
 
+    def 'streamAll behaviour'() {
+        setup:
+        populateOne('foo', 'bar', createData('bar', [bar: "bar"], [rel1: ["rel1"], rel2: ["rel2"]]))
+        populateOne('foo', 'baz')
+
+        when:
+        def stream = cache.streamAll('foo', RelationshipCacheFilter.include('rel1'))
+        def results = stream.iterator().toList()
+        stream.close()
+
+        then:
+        results*.id.sort() == ['bar', 'baz']
+        results.find { it.id == 'bar' }.relationships.keySet() == ["rel1"] as Set
+        cache.streamAll('doesntexist').count() == 0
+    }
+
     def 'can getAll empty id collection'() {
         when:
         def results = cache.getAll('foo', [])
@@ -18,6 +18,7 @@ package com.netflix.spinnaker.cats.provider
 
 import com.netflix.spinnaker.cats.agent.CacheResult
 import com.netflix.spinnaker.cats.agent.DefaultCacheResult
+import com.netflix.spinnaker.cats.agent.DeltaCacheResult
 import com.netflix.spinnaker.cats.cache.*
 import com.netflix.spinnaker.cats.mem.InMemoryCache
 import com.netflix.spinnaker.cats.provider.DefaultProviderCache
@@ -124,6 +125,24 @@ abstract class ProviderCacheSpec extends CacheSpec {
         sg == null
     }
 
+    def 'deltas are applied on top of previous results and reconciled by the next full result'() {
+        setup:
+        String agent = 'agent'
+        defaultProviderCache.putCacheResult(agent, ['test'], DeltaCacheResult.full(1, [test: [createData('a'), createData('b')]]))
+
+        when:
+        defaultProviderCache.putCacheDelta(agent, ['test'], DeltaCacheResult.delta(1, 2, [test: [createData('c')]], [test: ['a']]))
+
+        then:
+        defaultProviderCache.getIdentifiers('test') as Set == ['b', 'c'] as Set
+
+        when:
+        defaultProviderCache.putCacheResult(agent, ['test'], DeltaCacheResult.full(3, [test: [createData('c')]]))
+
+        then:
+        defaultProviderCache.getIdentifiers('test') as Set == ['c'] as Set
+    }
+
     private CacheResult buildCacheResult(String account, String region, String sgVersion = 'v001') {
         String serverGroup = "$account/$region/testapp-test-$sgVersion"
         String cluster = "$account/testapp-test"
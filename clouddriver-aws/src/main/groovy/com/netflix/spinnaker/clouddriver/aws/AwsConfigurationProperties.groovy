@@ -31,6 +31,12 @@ class AwsConfigurationProperties {
     int maxConnectionsPerRoute = 20
     boolean useGzip = true
     boolean addSpinnakerUserToUserAgent = false
+    /**
+     * Identical describe/list calls for the same account and region share a response while one is in flight, and
+     * for coalescedResponseTtlMs after it completes.
+     */
+    boolean coalesceRequests = false
+    long coalescedResponseTtlMs = 2000
   }
 
   @Canonical
@@ -17,6 +17,7 @@
 package com.netflix.spinnaker.clouddriver.aws.provider.view
 
 import com.amazonaws.services.autoscaling.model.LifecycleState
+import com.google.common.collect.Iterators
 import com.netflix.frigga.ami.AppVersion
 import com.netflix.spinnaker.cats.cache.Cache
 import com.netflix.spinnaker.cats.cache.CacheData
@@ -33,11 +34,15 @@ import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.beans.factory.annotation.Value
 import org.springframework.stereotype.Component
 
+import java.util.stream.Stream
+
 import static com.netflix.spinnaker.clouddriver.core.provider.agent.Namespace.*
 
 @Component
 class AmazonClusterProvider implements ClusterProvider<AmazonCluster>, ServerGroupProvider {
 
+  private static final int CLUSTER_TRANSLATION_BATCH_SIZE = 500
+
   private final AmazonCloudProvider amazonCloudProvider
   private final Cache cacheView
   private final AwsProvider awsProvider
@@ -60,8 +65,16 @@ class AmazonClusterProvider implements ClusterProvider<AmazonCluster>, ServerGro
 
   @Override
   Map<String, Set<AmazonCluster>> getClusters() {
-    Collection<CacheData> clusterData = cacheView.getAll(CLUSTERS.ns)
-    Collection<AmazonCluster> clusters = translateClusters(clusterData, false)
+    // translate clusters a batch at a time rather than holding every cluster's CacheData at once
+    Collection<AmazonCluster> clusters = []
+    Stream<CacheData> clusterData = cacheView.streamAll(CLUSTERS.ns)
+    try {
+      Iterators.partition(clusterData.iterator(), CLUSTER_TRANSLATION_BATCH_SIZE).each { List<CacheData> batch ->
+        clusters.addAll(translateClusters(batch, false))
+      }
+    } finally {
+      clusterData.close()
+    }
     mapResponse(clusters)
   }
 
@@ -65,8 +65,11 @@ import com.netflix.awsobjectmapper.AmazonObjectMapperConfigurer;
 import com.netflix.spectator.api.NoopRegistry;
 import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.clouddriver.aws.security.sdkclient.*;
+import com.netflix.spinnaker.clouddriver.core.limits.AdaptiveRateLimitProperties;
+import com.netflix.spinnaker.clouddriver.core.limits.DistributedRateLimitProperties;
 import com.netflix.spinnaker.clouddriver.core.limits.ServiceLimitConfiguration;
 import com.netflix.spinnaker.clouddriver.core.limits.ServiceLimitConfigurationBuilder;
+import com.netflix.spinnaker.clouddriver.core.limits.TokenBucketStore;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -107,6 +110,10 @@ public class AmazonClientProvider {
     private ServiceLimitConfiguration serviceLimitConfiguration =
         new ServiceLimitConfigurationBuilder().build();
     private Registry registry = new NoopRegistry();
+    private TokenBucketStore tokenBucketStore;
+    private DistributedRateLimitProperties distributedRateLimitProperties;
+    private AdaptiveRateLimitProperties adaptiveRateLimitProperties;
+    private RequestCoalescingConfig requestCoalescingConfig = RequestCoalescingConfig.DISABLED;
 
     public Builder httpClient(HttpClient httpClient) {
       this.httpClient = httpClient;
@@ -178,6 +185,24 @@ public class AmazonClientProvider {
       return this;
     }
 
+    public Builder distributedRateLimits(
+        TokenBucketStore tokenBucketStore,
+        DistributedRateLimitProperties distributedRateLimitProperties) {
+      this.tokenBucketStore = tokenBucketStore;
+      this.distributedRateLimitProperties = distributedRateLimitProperties;
+      return this;
+    }
+
+    public Builder adaptiveRateLimits(AdaptiveRateLimitProperties adaptiveRateLimitProperties) {
+      this.adaptiveRateLimitProperties = adaptiveRateLimitProperties;
+      return this;
+    }
+
+    public Builder requestCoalescing(RequestCoalescingConfig requestCoalescingConfig) {
+      this.requestCoalescingConfig = requestCoalescingConfig;
+      return this;
+    }
+
     public Builder addSpinnakerUserToUserAgent(boolean addSpinnakerUserToUserAgent) {
       this.addSpinnakerUserToUserAgent = addSpinnakerUserToUserAgent;
       return this;
@@ -222,7 +247,11 @@ public class AmazonClientProvider {
           eddaTimeoutConfig,
           uzeGzip,
           serviceLimitConfiguration,
-          registry);
+          registry,
+          tokenBucketStore,
+          distributedRateLimitProperties,
+          adaptiveRateLimitProperties,
+          requestCoalescingConfig);
     }
 
     private RetryPolicy buildPolicy() {
@@ -286,8 +315,45 @@ public class AmazonClientProvider {
       boolean useGzip,
       ServiceLimitConfiguration serviceLimitConfiguration,
       Registry registry) {
+    this(
+        httpClient,
+        objectMapper,
+        eddaTemplater,
+        retryPolicy,
+        requestHandlers,
+        proxy,
+        eddaTimeoutConfig,
+        useGzip,
+        serviceLimitConfiguration,
+        registry,
+        null,
+        null,
+        null,
+        RequestCoalescingConfig.DISABLED);
+  }
+
+  public AmazonClientProvider(
+      HttpClient httpClient,
+      ObjectMapper objectMapper,
+      EddaTemplater eddaTemplater,
+      RetryPolicy retryPolicy,
+      List<RequestHandler2> requestHandlers,
+      AWSProxy proxy,
+      EddaTimeoutConfig eddaTimeoutConfig,
+      boolean useGzip,
+      ServiceLimitConfiguration serviceLimitConfiguration,
+      Registry registry,
+      TokenBucketStore tokenBucketStore,
+      DistributedRateLimitProperties distributedRateLimitProperties,
+      AdaptiveRateLimitProperties adaptiveRateLimitProperties,
+      RequestCoalescingConfig requestCoalescingConfig) {
     RateLimiterSupplier rateLimiterSupplier =
-        new RateLimiterSupplier(serviceLimitConfiguration, registry);
+        new RateLimiterSupplier(
+            serviceLimitConfiguration,
+            registry,
+            tokenBucketStore,
+            distributedRateLimitProperties,
+            adaptiveRateLimitProperties);
     this.awsSdkClientSupplier =
         new AwsSdkClientSupplier(
             rateLimiterSupplier, registry, retryPolicy, requestHandlers, proxy, useGzip);
@@ -298,7 +364,8 @@ public class AmazonClientProvider {
             objectMapper,
             eddaTemplater,
             eddaTimeoutConfig,
-            registry);
+            registry,
+            requestCoalescingConfig);
   }
 
   /**
@@ -30,11 +30,11 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
-import com.google.common.util.concurrent.RateLimiter;
 import com.netflix.spectator.api.Counter;
 import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.clouddriver.aws.security.AWSProxy;
 import com.netflix.spinnaker.clouddriver.aws.security.NetflixSTSAssumeRoleSessionCredentialsProvider;
+import com.netflix.spinnaker.clouddriver.core.limits.RequestRateLimiter;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -90,7 +90,8 @@ public class AwsSdkClientSupplier {
 
   private RequestHandler2 getRateLimiterHandler(
       Class<?> sdkInterface, String account, String region) {
-    final RateLimiter limiter = rateLimiterSupplier.getRateLimiter(sdkInterface, account, region);
+    final RequestRateLimiter limiter =
+        rateLimiterSupplier.getRateLimiter(sdkInterface, account, region);
     final Counter rateLimitCounter =
         registry.counter(
             "amazonClientProvider.rateLimitDelayMillis",
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.aws.security.sdkclient;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.netflix.spectator.api.Id;
+import com.netflix.spectator.api.Registry;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Coalesces identical {@code describe*} and {@code list*} calls made through a client, whether it
+ * talks to the SDK or to Edda.
+ *
+ * <p>Coalesced callers share one response object, which must therefore be treated as read-only.
+ * The Edda last-modified time of a shared response is propagated to every caller. Any other call,
+ * such as one that creates or deletes a resource, drops the responses kept by the coalescer.
+ */
+public class CoalescingInvocationHandler implements InvocationHandler {
+
+  private final Object delegate;
+  private final RequestCoalescer<CallKey> coalescer;
+  private final String backend;
+  private final Registry registry;
+  private final Id coalescedId;
+
+  /**
+   * @param coalescer the coalescer shared by the clients of one service, account and region
+   * @param backend what the delegate talks to, e.g. {@code edda} or {@code sdk}; responses are
+   *     only shared between clients with the same backend, since they may disagree
+   */
+  CoalescingInvocationHandler(
+      Object delegate,
+      RequestCoalescer<CallKey> coalescer,
+      String backend,
+      Registry registry,
+      Map<String, String> metricTags) {
+    this.delegate = Objects.requireNonNull(delegate);
+    this.coalescer = Objects.requireNonNull(coalescer);
+    this.backend = Objects.requireNonNull(backend);
+    this.registry = Objects.requireNonNull(registry);
+    this.coalescedId = registry.createId("awsClientProxy.coalesced", metricTags);
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (!isCoalescable(method)) {
+      try {
+        return invokeDelegate(method, args);
+      } finally {
+        coalescer.invalidateAll();
+      }
+    }
+
+    RequestCoalescer.Outcome outcome =
+        coalescer.execute(
+            new CallKey(backend, method, args),
+            () -> {
+              AmazonClientInvocationHandler.lastModified.remove();
+              Object response = invokeDelegate(method, args);
+              return new RequestCoalescer.Outcome(
+                  response,
+                  AmazonClientInvocationHandler.lastModified.get(),
+                  RequestCoalescer.Source.REQUEST);
+            });
+
+    if (outcome.source != RequestCoalescer.Source.REQUEST) {
+      registry
+          .counter(
+              coalescedId
+                  .withTag("method", method.getName())
+                  .withTag("source", outcome.source.name().toLowerCase()))
+          .increment();
+    }
+    if (outcome.lastModified == null) {
+      AmazonClientInvocationHandler.lastModified.remove();
+    } else {
+      AmazonClientInvocationHandler.lastModified.set(outcome.lastModified);
+    }
+    return outcome.response;
+  }
+
+  private Object invokeDelegate(Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(delegate, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  static boolean isCoalescable(Method method) {
+    String name = method.getName();
+    return (name.startsWith("describe") || name.startsWith("list"))
+        && method.getReturnType() != void.class
+        && Arrays.stream(method.getParameterTypes())
+            .allMatch(AmazonWebServiceRequest.class::isAssignableFrom);
+  }
+
+  /**
+   * A backend, a method and a snapshot of its request arguments.
+   *
+   * <p>Callers that page reuse and mutate their request, so the key holds its own copy.
+   */
+  static class CallKey {
+    private final String backend;
+    private final String method;
+    private final List<Object> args;
+
+    CallKey(String backend, Method method, Object[] args) {
+      this.backend = backend;
+      this.method = method.getName();
+      if (args == null || args.length == 0) {
+        this.args = Collections.emptyList();
+      } else {
+        Object[] copies = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+          copies[i] = args[i] == null ? null : ((AmazonWebServiceRequest) args[i]).clone();
+        }
+        this.args = Arrays.asList(copies);
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      CallKey that = (CallKey) o;
+      return backend.equals(that.backend) && method.equals(that.method) && args.equals(that.args);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(backend, method, args);
+    }
+  }
+}
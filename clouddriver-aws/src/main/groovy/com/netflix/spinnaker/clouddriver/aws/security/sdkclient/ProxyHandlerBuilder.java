@@ -27,11 +27,16 @@ import com.netflix.spinnaker.clouddriver.aws.security.EddaTimeoutConfig;
 import com.netflix.spinnaker.clouddriver.aws.security.NetflixAmazonCredentials;
 import java.lang.reflect.Proxy;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.apache.http.client.HttpClient;
 
 /**
  * Constructs a JDK dynamic proxy for an AWS service interface that (if enabled for an account) will
  * delegate read requests to Edda and otherwise fallback to the underlying SDK client.
+ *
+ * <p>If request coalescing is enabled, the resulting client is wrapped once more so that identical
+ * read calls for the same account and region share a response.
  */
 public class ProxyHandlerBuilder {
   private final AwsSdkClientSupplier awsSdkClientSupplier;
@@ -40,6 +45,9 @@ public class ProxyHandlerBuilder {
   private final EddaTemplater eddaTemplater;
   private final EddaTimeoutConfig eddaTimeoutConfig;
   private final Registry registry;
+  private final RequestCoalescingConfig requestCoalescingConfig;
+  private final ConcurrentMap<String, RequestCoalescer<CoalescingInvocationHandler.CallKey>>
+      coalescers = new ConcurrentHashMap<>();
 
   public ProxyHandlerBuilder(
       AwsSdkClientSupplier awsSdkClientSupplier,
@@ -48,12 +56,31 @@ public class ProxyHandlerBuilder {
       EddaTemplater eddaTemplater,
       EddaTimeoutConfig eddaTimeoutConfig,
       Registry registry) {
+    this(
+        awsSdkClientSupplier,
+        httpClient,
+        objectMapper,
+        eddaTemplater,
+        eddaTimeoutConfig,
+        registry,
+        RequestCoalescingConfig.DISABLED);
+  }
+
+  public ProxyHandlerBuilder(
+      AwsSdkClientSupplier awsSdkClientSupplier,
+      HttpClient httpClient,
+      ObjectMapper objectMapper,
+      EddaTemplater eddaTemplater,
+      EddaTimeoutConfig eddaTimeoutConfig,
+      Registry registry,
+      RequestCoalescingConfig requestCoalescingConfig) {
     this.awsSdkClientSupplier = requireNonNull(awsSdkClientSupplier);
     this.httpClient = requireNonNull(httpClient);
     this.objectMapper = requireNonNull(objectMapper);
     this.eddaTemplater = requireNonNull(eddaTemplater);
     this.eddaTimeoutConfig = eddaTimeoutConfig;
     this.registry = requireNonNull(registry);
+    this.requestCoalescingConfig = requireNonNull(requestCoalescingConfig);
   }
 
   public <T extends AwsClientBuilder<T, U>, U> U getProxyHandler(
@@ -79,17 +106,29 @@ public class ProxyHandlerBuilder {
               amazonCredentials.getName(),
               amazonCredentials.getCredentialsProvider(),
               region);
-      if (skipEdda
-          || !amazonCredentials.getEddaEnabled()
-          || eddaTimeoutConfig.getDisabledRegions().contains(region)) {
-        return delegate;
+      boolean useEdda =
+          !skipEdda
+              && amazonCredentials.getEddaEnabled()
+              && !eddaTimeoutConfig.getDisabledRegions().contains(region);
+      U client = delegate;
+      if (useEdda) {
+        client =
+            interfaceKlazz.cast(
+                Proxy.newProxyInstance(
+                    getClass().getClassLoader(),
+                    new Class[] {interfaceKlazz},
+                    getInvocationHandler(
+                        delegate, interfaceKlazz.getSimpleName(), region, amazonCredentials)));
+      }
+      if (!requestCoalescingConfig.isEnabled()) {
+        return client;
       }
       return interfaceKlazz.cast(
           Proxy.newProxyInstance(
               getClass().getClassLoader(),
               new Class[] {interfaceKlazz},
-              getInvocationHandler(
-                  delegate, interfaceKlazz.getSimpleName(), region, amazonCredentials)));
+              getCoalescingInvocationHandler(
+                  client, interfaceKlazz, region, amazonCredentials, useEdda)));
     } catch (RuntimeException re) {
       throw re;
     } catch (Exception e) {
@@ -97,6 +136,29 @@ public class ProxyHandlerBuilder {
     }
   }
 
+  private CoalescingInvocationHandler getCoalescingInvocationHandler(
+      Object client,
+      Class<?> interfaceKlazz,
+      String region,
+      NetflixAmazonCredentials amazonCredentials,
+      boolean useEdda) {
+    // Edda and SDK clients share a coalescer, so that a change made through the SDK drops the
+    // responses of both, but their responses are never shared with each other
+    String key =
+        String.join(
+            ":", interfaceKlazz.getName(), amazonCredentials.getName(), String.valueOf(region));
+    return new CoalescingInvocationHandler(
+        client,
+        coalescers.computeIfAbsent(
+            key, k -> new RequestCoalescer<>(requestCoalescingConfig.getResponseTtlMillis())),
+        useEdda ? "edda" : "sdk",
+        registry,
+        ImmutableMap.of(
+            "account", amazonCredentials.getName(),
+            "region", String.valueOf(region),
+            "serviceName", interfaceKlazz.getSimpleName()));
+  }
+
   protected AmazonClientInvocationHandler getInvocationHandler(
       Object client,
       String serviceName,
@@ -22,25 +22,55 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.util.concurrent.RateLimiter;
 import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.clouddriver.aws.AmazonCloudProvider;
+import com.netflix.spinnaker.clouddriver.core.limits.AdaptiveRateLimitProperties;
+import com.netflix.spinnaker.clouddriver.core.limits.AdaptiveRateLimiter;
+import com.netflix.spinnaker.clouddriver.core.limits.DistributedRateLimitProperties;
+import com.netflix.spinnaker.clouddriver.core.limits.DistributedRateLimiter;
+import com.netflix.spinnaker.clouddriver.core.limits.RequestRateLimiter;
 import com.netflix.spinnaker.clouddriver.core.limits.ServiceLimitConfiguration;
+import com.netflix.spinnaker.clouddriver.core.limits.TokenBucketStore;
+import java.time.Clock;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 
-/** Factory for shared RateLimiters by SDK client interface/account/region. */
+/**
+ * Factory for shared RateLimiters by SDK client interface/account/region.
+ *
+ * <p>When a {@link TokenBucketStore} is supplied and distributed rate limits are enabled, each
+ * limit is enforced across the cluster instead of per node. When adaptive rate limits are
+ * enabled, each limit is adjusted by an {@link AdaptiveRateLimiter} and its current rate is
+ * exported as the {@code amazonClientProvider.rateLimit.effectiveRate} gauge.
+ */
 public class RateLimiterSupplier {
 
-  private final LoadingCache<RateLimitKey, RateLimiter> rateLimiters;
+  private final LoadingCache<RateLimitKey, RequestRateLimiter> rateLimiters;
 
   public RateLimiterSupplier(
       ServiceLimitConfiguration serviceLimitConfiguration, Registry registry) {
+    this(serviceLimitConfiguration, registry, null, null, null);
+  }
+
+  public RateLimiterSupplier(
+      ServiceLimitConfiguration serviceLimitConfiguration,
+      Registry registry,
+      TokenBucketStore tokenBucketStore,
+      DistributedRateLimitProperties distributedRateLimitProperties,
+      AdaptiveRateLimitProperties adaptiveRateLimitProperties) {
     rateLimiters =
         CacheBuilder.newBuilder()
             .recordStats()
-            .build(new RateLimitCacheLoader(serviceLimitConfiguration));
+            .build(
+                new RateLimitCacheLoader(
+                    serviceLimitConfiguration,
+                    registry,
+                    tokenBucketStore,
+                    distributedRateLimitProperties,
+                    adaptiveRateLimitProperties));
     LoadingCacheMetrics.instrument("rateLimiterSupplier", registry, rateLimiters);
   }
 
-  public RateLimiter getRateLimiter(Class<?> implementation, String account, String region) {
+  public RequestRateLimiter getRateLimiter(
+      Class<?> implementation, String account, String region) {
     try {
       return rateLimiters.get(new RateLimitKey(implementation, account, region));
     } catch (ExecutionException executionException) {
@@ -51,33 +81,86 @@ public class RateLimiterSupplier {
     }
   }
 
-  private static class RateLimitCacheLoader extends CacheLoader<RateLimitKey, RateLimiter> {
+  private static class RateLimitCacheLoader
+      extends CacheLoader<RateLimitKey, RequestRateLimiter> {
     private static final double DEFAULT_LIMIT = 10.0d;
 
     private final ServiceLimitConfiguration serviceLimitConfiguration;
-    private final double defaultLimit;
-
-    public RateLimitCacheLoader(ServiceLimitConfiguration serviceLimitConfiguration) {
-      this(serviceLimitConfiguration, DEFAULT_LIMIT);
-    }
+    private final Registry registry;
+    private final TokenBucketStore tokenBucketStore;
+    private final DistributedRateLimitProperties distributedRateLimitProperties;
+    private final AdaptiveRateLimitProperties adaptiveRateLimitProperties;
 
     public RateLimitCacheLoader(
-        ServiceLimitConfiguration serviceLimitConfiguration, double defaultLimit) {
+        ServiceLimitConfiguration serviceLimitConfiguration,
+        Registry registry,
+        TokenBucketStore tokenBucketStore,
+        DistributedRateLimitProperties distributedRateLimitProperties,
+        AdaptiveRateLimitProperties adaptiveRateLimitProperties) {
       this.serviceLimitConfiguration = Objects.requireNonNull(serviceLimitConfiguration);
-      this.defaultLimit = defaultLimit;
+      this.registry = Objects.requireNonNull(registry);
+      this.tokenBucketStore = tokenBucketStore;
+      this.distributedRateLimitProperties = distributedRateLimitProperties;
+      this.adaptiveRateLimitProperties = adaptiveRateLimitProperties;
     }
 
     @Override
-    public RateLimiter load(RateLimitKey key) throws Exception {
+    public RequestRateLimiter load(RateLimitKey key) throws Exception {
+      String implementation = key.implementationClass.getSimpleName();
       double rateLimit =
           serviceLimitConfiguration.getLimit(
               ServiceLimitConfiguration.API_RATE_LIMIT,
-              key.implementationClass.getSimpleName(),
+              implementation,
+              key.account,
+              AmazonCloudProvider.ID,
+              DEFAULT_LIMIT);
+
+      RequestRateLimiter rateLimiter;
+      if (tokenBucketStore != null
+          && distributedRateLimitProperties != null
+          && distributedRateLimitProperties.isEnabled()) {
+        rateLimiter =
+            new DistributedRateLimiter(
+                String.join(":", AmazonCloudProvider.ID, implementation, key.account, region(key)),
+                rateLimit,
+                tokenBucketStore,
+                distributedRateLimitProperties,
+                registry,
+                Clock.systemDefaultZone());
+      } else {
+        rateLimiter = RequestRateLimiter.local(RateLimiter.create(rateLimit));
+      }
+
+      if (adaptiveRateLimitProperties == null || !adaptiveRateLimitProperties.isEnabled()) {
+        return rateLimiter;
+      }
+
+      double maxRateLimit =
+          serviceLimitConfiguration.getLimit(
+              ServiceLimitConfiguration.API_RATE_LIMIT_MAX,
+              implementation,
               key.account,
               AmazonCloudProvider.ID,
-              defaultLimit);
+              rateLimit * adaptiveRateLimitProperties.getMaxRateMultiplier());
+      AdaptiveRateLimiter adaptiveRateLimiter =
+          new AdaptiveRateLimiter(
+              rateLimiter, maxRateLimit, adaptiveRateLimitProperties, Clock.systemDefaultZone());
+      registry.gauge(
+          registry.createId(
+              "amazonClientProvider.rateLimit.effectiveRate",
+              "clientType",
+              implementation,
+              "account",
+              key.account,
+              "region",
+              region(key)),
+          adaptiveRateLimiter,
+          AdaptiveRateLimiter::getRate);
+      return adaptiveRateLimiter;
+    }
 
-      return RateLimiter.create(rateLimit);
+    private static String region(RateLimitKey key) {
+      return key.region == null ? "UNSPECIFIED" : key.region;
     }
   }
 
@@ -18,18 +18,29 @@ package com.netflix.spinnaker.clouddriver.aws.security.sdkclient;
 
 import static java.util.Objects.requireNonNull;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.Request;
+import com.amazonaws.handlers.HandlerAfterAttemptContext;
 import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.retry.RetryUtils;
 import com.google.common.util.concurrent.RateLimiter;
 import com.netflix.spectator.api.Counter;
+import com.netflix.spinnaker.clouddriver.core.limits.RequestRateLimiter;
 import java.util.Objects;
 
-/** A RequestHandler that will throttle requests via the supplied RateLimiter. */
+/**
+ * A RequestHandler that will throttle requests via the supplied RequestRateLimiter, which may be
+ * local to this node or shared across the cluster.
+ */
 public class RateLimitingRequestHandler extends RequestHandler2 {
   private final Counter counter;
-  private final RateLimiter rateLimiter;
+  private final RequestRateLimiter rateLimiter;
 
   public RateLimitingRequestHandler(Counter counter, RateLimiter rateLimiter) {
+    this(counter, RequestRateLimiter.local(rateLimiter));
+  }
+
+  public RateLimitingRequestHandler(Counter counter, RequestRateLimiter rateLimiter) {
     this.counter = requireNonNull(counter);
     this.rateLimiter = requireNonNull(rateLimiter);
   }
@@ -42,6 +53,19 @@ public class RateLimitingRequestHandler extends RequestHandler2 {
     super.beforeRequest(request);
   }
 
+  /** Feeds the outcome of each attempt, including retries, back to the rate limiter. */
+  @Override
+  public void afterAttempt(HandlerAfterAttemptContext context) {
+    Exception exception = context.getException();
+    if (exception == null) {
+      rateLimiter.recordSuccess();
+    } else if (exception instanceof AmazonServiceException
+        && RetryUtils.isThrottlingException((AmazonServiceException) exception)) {
+      rateLimiter.recordThrottle();
+    }
+    super.afterAttempt(context);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
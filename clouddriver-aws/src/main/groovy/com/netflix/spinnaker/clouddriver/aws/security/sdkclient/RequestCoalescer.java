@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.aws.security.sdkclient;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses identical calls into one: a call that arrives while an identical call is in flight
+ * waits for and shares its response (single flight), and a call that arrives shortly after an
+ * identical one completed gets the same response without a request being made at all.
+ *
+ * <p>Only successful responses are kept after a call completes; a failure is shared with the
+ * callers that were already waiting on it, but the next call will try again. Every kept response is
+ * dropped by {@link #invalidateAll()}, e.g. once a call that changes them has been made.
+ *
+ * @param <K> the call's key, which must identify everything that affects its response
+ */
+class RequestCoalescer<K> {
+
+  /** The outcome of a call, as seen by a caller. */
+  static class Outcome {
+    final Object response;
+    final Long lastModified;
+    final Source source;
+
+    Outcome(Object response, Long lastModified, Source source) {
+      this.response = response;
+      this.lastModified = lastModified;
+      this.source = source;
+    }
+
+    Outcome withSource(Source source) {
+      return new Outcome(response, lastModified, source);
+    }
+  }
+
+  enum Source {
+    REQUEST,
+    IN_FLIGHT,
+    MEMOIZED
+  }
+
+  @FunctionalInterface
+  interface Call {
+    Outcome execute() throws Throwable;
+  }
+
+  private final ConcurrentMap<K, CompletableFuture<Outcome>> inFlight = new ConcurrentHashMap<>();
+  private final Cache<K, Outcome> recent;
+  private final AtomicLong invalidations = new AtomicLong();
+
+  RequestCoalescer(long responseTtlMillis) {
+    this.recent =
+        responseTtlMillis > 0
+            ? CacheBuilder.newBuilder()
+                .expireAfterWrite(responseTtlMillis, TimeUnit.MILLISECONDS)
+                .build()
+            : null;
+  }
+
+  Outcome execute(K key, Call call) throws Throwable {
+    long invalidation = invalidations.get();
+    if (recent != null) {
+      Outcome memoized = recent.getIfPresent(key);
+      if (memoized != null) {
+        return memoized.withSource(Source.MEMOIZED);
+      }
+    }
+
+    CompletableFuture<Outcome> future = new CompletableFuture<>();
+    CompletableFuture<Outcome> existing = inFlight.putIfAbsent(key, future);
+    if (existing != null) {
+      return await(existing).withSource(Source.IN_FLIGHT);
+    }
+
+    try {
+      Outcome outcome = call.execute();
+      // a response may predate an invalidation made while it was requested, or while it is kept
+      if (recent != null && invalidations.get() == invalidation) {
+        recent.put(key, outcome);
+        if (invalidations.get() != invalidation) {
+          recent.asMap().remove(key, outcome);
+        }
+      }
+      future.complete(outcome);
+      return outcome;
+    } catch (Throwable t) {
+      future.completeExceptionally(t);
+      throw t;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  /**
+   * Drops every kept response. Calls already in flight are neither kept nor joined by later
+   * callers, though the callers already waiting on them still share their response.
+   */
+  void invalidateAll() {
+    invalidations.incrementAndGet();
+    inFlight.clear();
+    if (recent != null) {
+      recent.invalidateAll();
+    }
+  }
+
+  private static Outcome await(CompletableFuture<Outcome> future) throws Throwable {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return future.get();
+        } catch (InterruptedException e) {
+          // the caller that owns the call can't be interrupted on our behalf, so neither are we
+          interrupted = true;
+        } catch (ExecutionException e) {
+          throw e.getCause();
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
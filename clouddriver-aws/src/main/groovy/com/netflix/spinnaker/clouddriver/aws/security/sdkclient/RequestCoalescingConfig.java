@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.aws.security.sdkclient;
+
+/** Controls sharing of read responses between identical SDK calls, see {@link RequestCoalescer}. */
+public class RequestCoalescingConfig {
+  public static final RequestCoalescingConfig DISABLED = new RequestCoalescingConfig(false, 0);
+
+  private final boolean enabled;
+  private final long responseTtlMillis;
+
+  /**
+   * @param enabled whether identical in-flight calls share a single response
+   * @param responseTtlMillis how long a response is also handed to identical calls made after it
+   *     completed, or 0 to only share in-flight calls
+   */
+  public RequestCoalescingConfig(boolean enabled, long responseTtlMillis) {
+    this.enabled = enabled;
+    this.responseTtlMillis = Math.max(0, responseTtlMillis);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public long getResponseTtlMillis() {
+    return responseTtlMillis;
+  }
+}
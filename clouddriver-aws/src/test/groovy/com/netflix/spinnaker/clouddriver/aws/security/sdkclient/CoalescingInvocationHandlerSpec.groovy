@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.aws.security.sdkclient
+
+import com.amazonaws.services.ec2.AmazonEC2
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest
+import com.amazonaws.services.ec2.model.DescribeInstancesResult
+import com.amazonaws.services.ec2.model.TerminateInstancesRequest
+import com.amazonaws.services.ec2.model.TerminateInstancesResult
+import com.netflix.spectator.api.DefaultRegistry
+import spock.lang.Specification
+
+import java.lang.reflect.Proxy
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class CoalescingInvocationHandlerSpec extends Specification {
+
+  def delegate = Mock(AmazonEC2)
+  def registry = new DefaultRegistry()
+
+  AmazonEC2 coalescing(long responseTtlMillis) {
+    return coalescing(delegate, new RequestCoalescer<>(responseTtlMillis), "sdk")
+  }
+
+  AmazonEC2 coalescing(AmazonEC2 delegate, RequestCoalescer<CoalescingInvocationHandler.CallKey> coalescer, String backend) {
+    return (AmazonEC2) Proxy.newProxyInstance(
+      getClass().classLoader,
+      [AmazonEC2] as Class[],
+      new CoalescingInvocationHandler(
+        delegate,
+        coalescer,
+        backend,
+        registry,
+        [account: "test", region: "us-east-1", serviceName: "AmazonEC2"]
+      )
+    )
+  }
+
+  def "shares a recent response between identical calls"() {
+    given:
+    def client = coalescing(60000)
+    def result = new DescribeInstancesResult()
+
+    when:
+    def first = client.describeInstances(new DescribeInstancesRequest().withInstanceIds("i-1"))
+    def second = client.describeInstances(new DescribeInstancesRequest().withInstanceIds("i-1"))
+
+    then:
+    1 * delegate.describeInstances(new DescribeInstancesRequest().withInstanceIds("i-1")) >> result
+    first.is(result)
+    second.is(result)
+    registry.counter("awsClientProxy.coalesced",
+      "account", "test", "region", "us-east-1", "serviceName", "AmazonEC2",
+      "method", "describeInstances", "source", "memoized").count() == 1
+  }
+
+  def "keys on a copy of the request"() {
+    given:
+    def client = coalescing(60000)
+    def request = new DescribeInstancesRequest()
+
+    when: 'a caller pages by mutating its request'
+    client.describeInstances(request)
+    request.withNextToken("page2")
+    client.describeInstances(request)
+    client.describeInstances(new DescribeInstancesRequest())
+
+    then:
+    2 * delegate.describeInstances(_) >> new DescribeInstancesResult()
+  }
+
+  def "does not coalesce mutating calls"() {
+    given:
+    def client = coalescing(60000)
+    def request = new TerminateInstancesRequest().withInstanceIds("i-1")
+
+    when:
+    client.terminateInstances(request)
+    client.terminateInstances(request)
+
+    then:
+    2 * delegate.terminateInstances(request) >> new TerminateInstancesResult()
+  }
+
+  def "drops recent responses once a mutating call is made"() {
+    given:
+    def client = coalescing(60000)
+
+    when:
+    client.describeInstances()
+    client.terminateInstances(new TerminateInstancesRequest().withInstanceIds("i-1"))
+    client.describeInstances()
+
+    then:
+    2 * delegate.describeInstances() >> new DescribeInstancesResult()
+    1 * delegate.terminateInstances(_) >> new TerminateInstancesResult()
+  }
+
+  def "drops recent responses of other backends once a mutating call is made"() {
+    given:
+    def coalescer = new RequestCoalescer<CoalescingInvocationHandler.CallKey>(60000)
+    def eddaDelegate = Mock(AmazonEC2)
+    def edda = coalescing(eddaDelegate, coalescer, "edda")
+    def sdk = coalescing(delegate, coalescer, "sdk")
+
+    when:
+    edda.describeInstances()
+    sdk.describeInstances()
+    edda.describeInstances()
+    sdk.describeInstances()
+
+    then: 'responses are never shared between backends'
+    1 * eddaDelegate.describeInstances() >> new DescribeInstancesResult()
+    1 * delegate.describeInstances() >> new DescribeInstancesResult()
+
+    when:
+    sdk.terminateInstances(new TerminateInstancesRequest().withInstanceIds("i-1"))
+    edda.describeInstances()
+
+    then:
+    1 * delegate.terminateInstances(_) >> new TerminateInstancesResult()
+    1 * eddaDelegate.describeInstances() >> new DescribeInstancesResult()
+  }
+
+  def "does not keep a response requested while a mutating call is made"() {
+    given:
+    def client = coalescing(60000)
+    def started = new CountDownLatch(1)
+    def release = new CountDownLatch(1)
+    def executor = Executors.newSingleThreadExecutor()
+
+    when:
+    def pending = executor.submit({ client.describeInstances() } as java.util.concurrent.Callable)
+    started.await(5, TimeUnit.SECONDS)
+    client.terminateInstances(new TerminateInstancesRequest().withInstanceIds("i-1"))
+    release.countDown()
+    pending.get(5, TimeUnit.SECONDS)
+    client.describeInstances()
+
+    then:
+    1 * delegate.terminateInstances(_) >> new TerminateInstancesResult()
+    2 * delegate.describeInstances() >> {
+      started.countDown()
+      release.await(5, TimeUnit.SECONDS)
+      new DescribeInstancesResult()
+    }
+
+    cleanup:
+    executor.shutdownNow()
+  }
+
+  def "does not keep failed responses"() {
+    given:
+    def client = coalescing(60000)
+
+    when:
+    client.describeInstances()
+
+    then:
+    1 * delegate.describeInstances() >> { throw new IllegalStateException("boom") }
+    thrown(IllegalStateException)
+
+    when:
+    client.describeInstances()
+
+    then:
+    1 * delegate.describeInstances() >> new DescribeInstancesResult()
+  }
+
+  def "shares an in-flight response with concurrent callers"() {
+    given:
+    def client = coalescing(0)
+    def started = new CountDownLatch(1)
+    def release = new CountDownLatch(1)
+    def executor = Executors.newFixedThreadPool(4)
+
+    when:
+    def first = executor.submit({ client.describeInstances() } as java.util.concurrent.Callable)
+    started.await(5, TimeUnit.SECONDS)
+    def others = (1..3).collect { executor.submit({ client.describeInstances() } as java.util.concurrent.Callable) }
+    // give the other callers a chance to join the in-flight call
+    Thread.sleep(200)
+    release.countDown()
+    def results = ([first] + others).collect { it.get(5, TimeUnit.SECONDS) }
+
+    then:
+    1 * delegate.describeInstances() >> {
+      started.countDown()
+      release.await(5, TimeUnit.SECONDS)
+      new DescribeInstancesResult()
+    }
+    results.every { it.is(results[0]) }
+
+    cleanup:
+    executor.shutdownNow()
+  }
+}
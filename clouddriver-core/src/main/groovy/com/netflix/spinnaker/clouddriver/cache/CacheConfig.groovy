@@ -22,10 +22,13 @@ import com.netflix.spinnaker.cats.agent.AgentExecution
 import com.netflix.spinnaker.cats.agent.AgentScheduler
 import com.netflix.spinnaker.cats.agent.DefaultAgentScheduler
 import com.netflix.spinnaker.cats.agent.ExecutionInstrumentation
+import com.netflix.spinnaker.cats.agent.SchedulerTelemetryStore
 import com.netflix.spinnaker.cats.cache.Cache
 import com.netflix.spinnaker.cats.cache.NamedCacheFactory
+import com.netflix.spinnaker.cats.mem.CompactInMemoryNamedCacheFactory
 import com.netflix.spinnaker.cats.mem.InMemoryNamedCacheFactory
 import com.netflix.spinnaker.cats.module.CatsModule
+import com.netflix.spinnaker.cats.near.NearCache
 import com.netflix.spinnaker.cats.provider.Provider
 import com.netflix.spinnaker.cats.provider.ProviderRegistry
 import com.netflix.spinnaker.clouddriver.search.SearchProvider
@@ -43,14 +46,26 @@ import java.util.concurrent.TimeUnit
 @ComponentScan([
   'com.netflix.spinnaker.clouddriver.cache',
 ])
-@EnableConfigurationProperties(CatsInMemorySearchProperties)
+@EnableConfigurationProperties([CatsInMemorySearchProperties, NearCacheProperties])
 class CacheConfig {
   @Bean
   @ConditionalOnMissingBean(NamedCacheFactory)
+  @ConditionalOnProperty(value = 'caching.in-memory.engine', havingValue = 'default', matchIfMissing = true)
   NamedCacheFactory namedCacheFactory() {
     new InMemoryNamedCacheFactory()
   }
 
+  /**
+   * Immutable, structurally shared in-memory storage; holds considerably more items per heap than the
+   * default engine and never blocks readers on a merging agent.
+   */
+  @Bean
+  @ConditionalOnMissingBean(NamedCacheFactory)
+  @ConditionalOnProperty(value = 'caching.in-memory.engine', havingValue = 'compact')
+  NamedCacheFactory compactNamedCacheFactory() {
+    new CompactInMemoryNamedCacheFactory()
+  }
+
   @Bean
   @ConditionalOnMissingBean(AgentScheduler)
   @ConditionalOnProperty(value = 'caching.write-enabled', matchIfMissing = true)
@@ -76,6 +91,18 @@ class CacheConfig {
     new CatsModule.Builder().cacheFactory(cacheFactory).scheduler(agentScheduler).instrumentation(executionInstrumentation).build(providers)
   }
 
+  @Bean
+  SpectatorAgentSchedulerTelemetry agentSchedulerTelemetry(Registry registry) {
+    def telemetry = new SpectatorAgentSchedulerTelemetry(registry)
+    SchedulerTelemetryStore.getStore().addListener(telemetry)
+    telemetry
+  }
+
+  @Bean
+  NearCache.CacheMetrics nearCacheMetrics(Registry registry) {
+    new SpectatorNearCacheMetrics(registry)
+  }
+
   @Bean
   Cache cacheView(CatsModule catsModule) {
     catsModule.view
@@ -30,10 +30,10 @@ import org.springframework.security.core.Authentication
 import org.springframework.security.core.context.SecurityContextHolder
 
 import javax.annotation.PostConstruct
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executors
 import java.util.concurrent.ScheduledExecutorService
 import java.util.concurrent.TimeUnit
-import java.util.concurrent.atomic.AtomicReference
 
 import static com.netflix.spinnaker.clouddriver.cache.SearchableProvider.SearchableResource
 
@@ -52,9 +52,7 @@ class CatsSearchProvider implements SearchProvider, Runnable {
 
 
 
-  private final AtomicReference<Map<String, Collection<String>>> cachedIdentifiersByType = new AtomicReference(
-    [:]
-  )
+  private final Map<String, TrigramIndex> searchIndexes = new ConcurrentHashMap<>()
 
   private final FiatPermissionEvaluator permissionEvaluator
   private final List<KeyParser> keyParsers
@@ -113,33 +111,45 @@ class CatsSearchProvider implements SearchProvider, Runnable {
   }
 
   /**
-   * Periodically refresh cache identifiers that can then be searched over in-memory vs. in-redis.
+   * Periodically refresh an index of the identifiers of each searchable type, so that they can be searched in-memory
+   * vs. with a scan of every key in redis (or sql).
    *
-   * This is beneficial for sets (like instances) that may have hundreds of thousands of keys.
+   * Only identifiers that were added or removed since the last refresh are (re-)indexed.
    */
   @Override
   void run() {
-    try {
-      log.info("Refreshing Cached Identifiers (instances)")
-      def instanceIdentifiers = providers.findAll { provider ->
-        provider.supportsSearch('instances', Collections.emptyMap())
-      }.collect { provider ->
-        def cache = providerRegistry.getProviderCache(provider.getProviderName())
-        return cache.getIdentifiers("instances").findResults { key ->
-          // Even though we don't need the parsed Map, we should still allow the provider to reject invalid keys
-          if (provider.parseKey(key))
-            return key?.toLowerCase()
-        }
-      }.flatten()
-
-      if (instanceIdentifiers) {
-        cachedIdentifiersByType.set(["instances": instanceIdentifiers])
+    for (String type : new LinkedHashSet<>(defaultCaches)) {
+      try {
+        refreshSearchIndex(type)
+      } catch (Exception e) {
+        log.error("Unable to refresh search index (${type})", e)
       }
+    }
+  }
+
+  private void refreshSearchIndex(String type) {
+    def searchableProviders = providers.findAll { provider ->
+      provider.supportsSearch(type, Collections.emptyMap())
+    }
 
-      log.info("Refreshed Cached Identifiers (found ${instanceIdentifiers.size()} instances)")
-    } catch (Exception e) {
-      log.error("Unable to refresh cached identifiers (instances)", e)
+    Set<String> identifiers = new HashSet<>()
+    searchableProviders.each { provider ->
+      identifiers.addAll(providerRegistry.getProviderCache(provider.getProviderName()).getIdentifiers(type))
     }
+    TrigramIndex index = searchIndexes.get(type)
+    if (!identifiers && index == null) {
+      return
+    }
+
+    // an existing index is updated even when every identifier of the type is gone, so it stops serving them
+    index = index ?: new TrigramIndex()
+    int changes = index.update(identifiers) { String key ->
+      // Even though we don't need the parsed Map, we should still allow the provider to reject invalid keys
+      return searchableProviders.any { it.parseKey(key) }
+    }
+    searchIndexes.putIfAbsent(type, index)
+
+    log.info("Refreshed search index (${type}: ${index.size()} identifiers, ${changes} changed)")
   }
 
   @Override
@@ -284,18 +294,18 @@ class CatsSearchProvider implements SearchProvider, Runnable {
       }
 
       def identifiers
-      def cached = cachedIdentifiersByType.get()
-      if (cached.containsKey(cache)) {
-        /**
-         * Attempt an exact match of the query against any attribute of an instance key (account, region, etc.).
-         *
-         * This is not 100% consistent with doing `*:${cache}:*${normalizedWord}*` in redis _but_ for instances it
-         * should be sufficient.
-         */
-        def identifiersForCache = cached.get(cache)
-        identifiers = identifiersForCache.findAll { it.contains(normalizedWord) }
+      List<SearchableProvider> validProviders = providers.findAll { it.supportsSearch(cache, filters) }
+      TrigramIndex index = searchIndexes.get(cache)
+      if (index != null) {
+        // equivalent to matching each valid provider's `${cloudProvider}:${cache}:*${normalizedWord}*` search term
+        List<String> prefixes = validProviders.collect { sp ->
+          sp.keyParser.map { it.cloudProvider + ':' }.orElse('')
+        }
+        identifiers = index.search(normalizedWord).findAll { String key ->
+          int start = key.indexOf(':') + cache.length() + 2
+          prefixes.any { key.startsWith(it) } && key.toLowerCase().indexOf(normalizedWord, start) >= 0
+        }
       } else {
-        List<SearchableProvider> validProviders = providers.findAll { it.supportsSearch(cache, filters) }
         identifiers = new HashSet<>()
         for (SearchableProvider sp : validProviders) {
           def providerCache = providerRegistry.getProviderCache(sp.getProviderName())
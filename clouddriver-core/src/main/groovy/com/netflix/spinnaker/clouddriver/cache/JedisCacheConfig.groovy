@@ -17,6 +17,8 @@ package com.netflix.spinnaker.clouddriver.cache
 
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.netflix.spinnaker.cats.cache.NamedCacheFactory
+import com.netflix.spinnaker.cats.near.NearCache
+import com.netflix.spinnaker.cats.near.NearCacheNamedCacheFactory
 import com.netflix.spinnaker.cats.redis.cache.RedisCache.CacheMetrics
 import com.netflix.spinnaker.cats.redis.cache.RedisCacheOptions
 import com.netflix.spinnaker.cats.redis.cache.RedisNamedCacheFactory
@@ -44,7 +46,13 @@ class JedisCacheConfig {
     RedisClientDelegate redisClientDelegate,
     ObjectMapper objectMapper,
     RedisCacheOptions redisCacheOptions,
-    CacheMetrics cacheMetrics) {
-    new RedisNamedCacheFactory(redisClientDelegate, objectMapper, redisCacheOptions, cacheMetrics)
+    CacheMetrics cacheMetrics,
+    NearCacheProperties nearCacheProperties,
+    NearCache.CacheMetrics nearCacheMetrics) {
+    def cacheFactory = new RedisNamedCacheFactory(redisClientDelegate, objectMapper, redisCacheOptions, cacheMetrics)
+    if (!nearCacheProperties.enabled) {
+      return cacheFactory
+    }
+    new NearCacheNamedCacheFactory(cacheFactory, nearCacheProperties.toOptions(), nearCacheMetrics)
   }
 }
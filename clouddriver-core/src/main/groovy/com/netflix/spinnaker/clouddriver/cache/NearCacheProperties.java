@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache;
+
+import com.netflix.spinnaker.cats.near.NearCacheOptions;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("caching.near-cache")
+public class NearCacheProperties {
+  private boolean enabled = false;
+  private long maxItems = NearCacheOptions.Builder.DEFAULT_MAX_ITEMS;
+  private long maxIdentifierQueries = NearCacheOptions.Builder.DEFAULT_MAX_IDENTIFIER_QUERIES;
+  private long defaultTtlMs = NearCacheOptions.Builder.DEFAULT_TTL_MILLIS;
+
+  /** TTL overrides by cache type, 0 to never near cache a type. */
+  private Map<String, Long> ttlMs = new HashMap<>();
+
+  private long versionCheckIntervalMs =
+      NearCacheOptions.Builder.DEFAULT_VERSION_CHECK_INTERVAL_MILLIS;
+
+  public NearCacheOptions toOptions() {
+    NearCacheOptions.Builder builder =
+        NearCacheOptions.builder()
+            .maxItems(maxItems)
+            .maxIdentifierQueries(maxIdentifierQueries)
+            .defaultTtl(defaultTtlMs)
+            .versionCheckInterval(versionCheckIntervalMs);
+    ttlMs.forEach(builder::ttl);
+    return builder.build();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public long getMaxItems() {
+    return maxItems;
+  }
+
+  public void setMaxItems(long maxItems) {
+    this.maxItems = maxItems;
+  }
+
+  public long getMaxIdentifierQueries() {
+    return maxIdentifierQueries;
+  }
+
+  public void setMaxIdentifierQueries(long maxIdentifierQueries) {
+    this.maxIdentifierQueries = maxIdentifierQueries;
+  }
+
+  public long getDefaultTtlMs() {
+    return defaultTtlMs;
+  }
+
+  public void setDefaultTtlMs(long defaultTtlMs) {
+    this.defaultTtlMs = defaultTtlMs;
+  }
+
+  public Map<String, Long> getTtlMs() {
+    return ttlMs;
+  }
+
+  public void setTtlMs(Map<String, Long> ttlMs) {
+    this.ttlMs = ttlMs;
+  }
+
+  public long getVersionCheckIntervalMs() {
+    return versionCheckIntervalMs;
+  }
+
+  public void setVersionCheckIntervalMs(long versionCheckIntervalMs) {
+    this.versionCheckIntervalMs = versionCheckIntervalMs;
+  }
+}
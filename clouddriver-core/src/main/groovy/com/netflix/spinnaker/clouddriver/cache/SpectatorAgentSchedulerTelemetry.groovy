@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+import com.netflix.spectator.api.Id
+import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.cats.agent.Agent
+import com.netflix.spinnaker.cats.agent.AgentSchedulerTelemetry
+
+import java.util.concurrent.TimeUnit
+
+/**
+ * Reports scheduling telemetry under cats.scheduler.*, tagged by agent the same way as
+ * {@link MetricInstrumentation}.
+ */
+class SpectatorAgentSchedulerTelemetry implements AgentSchedulerTelemetry {
+  private final Registry registry
+
+  private final Id queueWaitId
+  private final Id lockAcquisitionId
+  private final Id executionPhaseId
+  private final Id missedIntervalsId
+  private final Id runningId
+  private final Id saturationId
+
+  SpectatorAgentSchedulerTelemetry(Registry registry) {
+    this.registry = registry
+    queueWaitId = registry.createId('cats.scheduler.queueWait')
+    lockAcquisitionId = registry.createId('cats.scheduler.lockAcquisition')
+    executionPhaseId = registry.createId('cats.scheduler.executionPhase')
+    missedIntervalsId = registry.createId('cats.scheduler.missedIntervals')
+    runningId = registry.createId('cats.scheduler.running')
+    saturationId = registry.createId('cats.scheduler.saturation')
+  }
+
+  private static String agentName(Agent agent) {
+    String providerName = agent.providerName
+    String simpleProviderName = providerName?.substring(providerName.lastIndexOf(".") + 1)
+    "$simpleProviderName/$agent.agentType"
+  }
+
+  @Override
+  void agentWaited(String scheduler, Agent agent, long waitMs) {
+    registry.timer(queueWaitId.withTags('scheduler', scheduler, 'agent', agentName(agent)))
+      .record(waitMs, TimeUnit.MILLISECONDS)
+  }
+
+  @Override
+  void lockAttempted(String scheduler, Agent agent, long elapsedMs, boolean acquired) {
+    registry.timer(lockAcquisitionId.withTags(
+      'scheduler', scheduler, 'agent', agentName(agent), 'acquired', String.valueOf(acquired)
+    )).record(elapsedMs, TimeUnit.MILLISECONDS)
+  }
+
+  @Override
+  void phaseCompleted(Agent agent, AgentSchedulerTelemetry.Phase phase, long elapsedMs, boolean success) {
+    registry.timer(executionPhaseId.withTags(
+      'agent', agentName(agent), 'phase', phase.name().toLowerCase(), 'success', String.valueOf(success)
+    )).record(elapsedMs, TimeUnit.MILLISECONDS)
+  }
+
+  @Override
+  void intervalsMissed(String scheduler, Agent agent, long count) {
+    registry.counter(missedIntervalsId.withTags('scheduler', scheduler, 'agent', agentName(agent))).increment(count)
+  }
+
+  @Override
+  void saturation(String scheduler, int running, int capacity) {
+    registry.gauge(runningId.withTag('scheduler', scheduler)).set(running)
+    if (capacity > 0) {
+      registry.gauge(saturationId.withTag('scheduler', scheduler)).set(running / (double) capacity)
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+import com.netflix.spectator.api.BasicTag
+import com.netflix.spectator.api.Id
+import com.netflix.spectator.api.Registry
+import com.netflix.spectator.api.Tag
+import com.netflix.spinnaker.cats.near.NearCache.CacheMetrics
+
+class SpectatorNearCacheMetrics implements CacheMetrics {
+  private final Registry registry
+
+  SpectatorNearCacheMetrics(Registry registry) {
+    this.registry = registry
+  }
+
+  @Override
+  void hits(String name, String type, int count) {
+    registry.counter(id("hits", name, type)).increment(count)
+  }
+
+  @Override
+  void misses(String name, String type, int count) {
+    registry.counter(id("misses", name, type)).increment(count)
+  }
+
+  @Override
+  void evictions(String name, String type, int count) {
+    registry.counter(id("evictions", name, type)).increment(count)
+  }
+
+  @Override
+  void invalidations(String name, String type, int count) {
+    registry.counter(id("invalidations", name, type)).increment(count)
+  }
+
+  private Id id(String metric, String name, String type) {
+    return registry.createId("cats.nearCache." + metric, [new BasicTag("prefix", name), new BasicTag("type", type)] as Iterable<Tag>)
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * An in-memory, case-insensitive substring index over a set of keys.
+ *
+ * <p>Each key is split into overlapping three character sequences (trigrams), and each trigram
+ * maps to the ids of the keys that contain it. A query is answered by intersecting the lists of
+ * its trigrams and checking the few remaining candidates, so its cost depends on how many keys
+ * share the query's trigrams rather than on how many keys there are. Queries shorter than a
+ * trigram fall back to checking every key.
+ *
+ * <p>Ids are handed out in increasing order, so every list is sorted and lists are intersected by
+ * merging them. Removed keys are only marked as such until enough have accumulated to be worth
+ * rebuilding the lists.
+ */
+class TrigramIndex {
+  private static final int MIN_REMOVED_FOR_REBUILD = 1024;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final Map<String, Integer> ids = new HashMap<>();
+  private final List<String> keys = new ArrayList<>();
+  private final List<String> lowerCaseKeys = new ArrayList<>();
+  private final Map<Long, IntList> postings = new HashMap<>();
+  private final BitSet removed = new BitSet();
+
+  int size() {
+    lock.readLock().lock();
+    try {
+      return ids.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Brings the index in line with {@code current}, only indexing keys that were not already.
+   *
+   * @param accept decides whether a key that is not yet indexed should be
+   * @return the number of keys added or removed
+   */
+  int update(Set<String> current, Predicate<String> accept) {
+    List<String> toAdd = new ArrayList<>();
+    List<String> toRemove = new ArrayList<>();
+
+    lock.readLock().lock();
+    try {
+      for (String key : current) {
+        if (!ids.containsKey(key) && accept.test(key)) {
+          toAdd.add(key);
+        }
+      }
+      for (String key : ids.keySet()) {
+        if (!current.contains(key)) {
+          toRemove.add(key);
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    if (toAdd.isEmpty() && toRemove.isEmpty()) {
+      return 0;
+    }
+
+    lock.writeLock().lock();
+    try {
+      toRemove.forEach(this::remove);
+      toAdd.forEach(this::add);
+      if (removed.cardinality() >= MIN_REMOVED_FOR_REBUILD
+          && removed.cardinality() > keys.size() / 2) {
+        rebuild();
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+    return toAdd.size() + toRemove.size();
+  }
+
+  /** @return the keys that contain {@code query}, ignoring case, in no particular order */
+  List<String> search(String query) {
+    String lowerCaseQuery = query.toLowerCase();
+    List<String> matches = new ArrayList<>();
+
+    lock.readLock().lock();
+    try {
+      if (lowerCaseQuery.length() < 3) {
+        for (int id = 0; id < keys.size(); id++) {
+          addIfMatches(matches, id, lowerCaseQuery);
+        }
+        return matches;
+      }
+
+      long[] trigrams = trigrams(lowerCaseQuery);
+      IntList[] lists = new IntList[trigrams.length];
+      for (int i = 0; i < trigrams.length; i++) {
+        lists[i] = postings.get(trigrams[i]);
+        if (lists[i] == null) {
+          return matches;
+        }
+      }
+      Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+
+      IntList candidates = lists[0];
+      for (int i = 1; i < lists.length && candidates.size > 0; i++) {
+        candidates = candidates.intersect(lists[i]);
+      }
+      for (int i = 0; i < candidates.size; i++) {
+        addIfMatches(matches, candidates.values[i], lowerCaseQuery);
+      }
+      return matches;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void addIfMatches(List<String> matches, int id, String lowerCaseQuery) {
+    String lowerCaseKey = lowerCaseKeys.get(id);
+    // a trigram match does not guarantee that the trigrams are adjacent
+    if (lowerCaseKey != null && lowerCaseKey.contains(lowerCaseQuery)) {
+      matches.add(keys.get(id));
+    }
+  }
+
+  private void add(String key) {
+    int id = keys.size();
+    // toLowerCase() returns the same instance for keys that are already lower case
+    String lowerCaseKey = key.toLowerCase();
+    ids.put(key, id);
+    keys.add(key);
+    lowerCaseKeys.add(lowerCaseKey);
+    for (long trigram : trigrams(lowerCaseKey)) {
+      postings.computeIfAbsent(trigram, t -> new IntList()).add(id);
+    }
+  }
+
+  private void remove(String key) {
+    Integer id = ids.remove(key);
+    if (id != null) {
+      keys.set(id, null);
+      lowerCaseKeys.set(id, null);
+      removed.set(id);
+    }
+  }
+
+  private void rebuild() {
+    List<String> live = new ArrayList<>(ids.keySet());
+    ids.clear();
+    keys.clear();
+    lowerCaseKeys.clear();
+    postings.clear();
+    removed.clear();
+    live.forEach(this::add);
+  }
+
+  /** @return the distinct trigrams of {@code value}, each packed into a long */
+  private static long[] trigrams(String value) {
+    if (value.length() < 3) {
+      return new long[0];
+    }
+    return IntStream.rangeClosed(0, value.length() - 3)
+        .mapToLong(
+            i ->
+                ((long) value.charAt(i) << 32)
+                    | ((long) value.charAt(i + 1) << 16)
+                    | value.charAt(i + 2))
+        .distinct()
+        .toArray();
+  }
+
+  /** A growable, sorted list of ids. */
+  private static final class IntList {
+    private int[] values = new int[4];
+    private int size;
+
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    IntList intersect(IntList other) {
+      IntList result = new IntList();
+      int i = 0;
+      int j = 0;
+      while (i < size && j < other.size) {
+        if (values[i] < other.values[j]) {
+          i++;
+        } else if (values[i] > other.values[j]) {
+          j++;
+        } else {
+          result.add(values[i]);
+          i++;
+          j++;
+        }
+      }
+      return result;
+    }
+  }
+}
@@ -21,6 +21,7 @@ import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
 import com.fasterxml.jackson.module.kotlin.KotlinModule
+import com.google.common.util.concurrent.ThreadFactoryBuilder
 import com.netflix.spectator.api.Registry
 import com.netflix.spinnaker.cats.agent.Agent
 import com.netflix.spinnaker.cats.agent.ExecutionInstrumentation
@@ -36,10 +37,16 @@ import com.netflix.spinnaker.clouddriver.core.ProjectClustersService
 import com.netflix.spinnaker.clouddriver.core.RedisConfig
 import com.netflix.spinnaker.clouddriver.core.agent.CleanupPendingOnDemandCachesAgent
 import com.netflix.spinnaker.clouddriver.core.agent.ProjectClustersCachingAgent
+import com.netflix.spinnaker.clouddriver.core.limits.AdaptiveRateLimitProperties
+import com.netflix.spinnaker.clouddriver.core.limits.DistributedRateLimitProperties
 import com.netflix.spinnaker.clouddriver.core.limits.ServiceLimitConfiguration
 import com.netflix.spinnaker.clouddriver.core.limits.ServiceLimitConfigurationBuilder
 import com.netflix.spinnaker.clouddriver.core.provider.CoreProvider
 import com.netflix.spinnaker.clouddriver.core.services.Front50Service
+import com.netflix.spinnaker.clouddriver.data.task.LocalTaskChangeFeed
+import com.netflix.spinnaker.clouddriver.data.task.TaskChangeFanout
+import com.netflix.spinnaker.clouddriver.data.task.TaskChangeFeed
+import com.netflix.spinnaker.clouddriver.data.task.TaskChangeFeedProperties
 import com.netflix.spinnaker.clouddriver.deploy.DescriptionAuthorizer
 import com.netflix.spinnaker.clouddriver.model.ApplicationProvider
 import com.netflix.spinnaker.clouddriver.model.CloudMetricProvider
@@ -110,6 +117,8 @@ import org.springframework.web.client.RestTemplate
 
 import javax.inject.Provider
 import java.time.Clock
+import java.time.Duration
+import java.util.concurrent.Executors
 
 @Configuration
 @Import([
@@ -119,7 +128,13 @@ import java.time.Clock
   PluginsAutoConfiguration
 ])
 @PropertySource(value = "classpath:META-INF/clouddriver-core.properties", ignoreResourceNotFound = true)
-@EnableConfigurationProperties([ProjectClustersCachingAgentProperties, ExceptionClassifierConfigurationProperties])
+@EnableConfigurationProperties([
+  ProjectClustersCachingAgentProperties,
+  ExceptionClassifierConfigurationProperties,
+  DistributedRateLimitProperties,
+  AdaptiveRateLimitProperties,
+  TaskChangeFeedProperties
+])
 class CloudDriverConfig {
 
   @Bean
@@ -128,6 +143,17 @@ class CloudDriverConfig {
     Clock.systemDefaultZone()
   }
 
+  @Bean
+  TaskChangeFeed taskChangeFeed(Clock clock,
+                                Optional<TaskChangeFanout> taskChangeFanout,
+                                TaskChangeFeedProperties taskChangeFeedProperties) {
+    new LocalTaskChangeFeed(
+      clock,
+      taskChangeFanout.orElse(null),
+      Duration.ofMinutes(taskChangeFeedProperties.retentionMinutes)
+    )
+  }
+
   @Bean
   Jackson2ObjectMapperBuilderCustomizer defaultObjectMapperCustomizer() {
     return new Jackson2ObjectMapperBuilderCustomizer() {
@@ -304,8 +330,23 @@ class CloudDriverConfig {
   @Bean
   ProjectClustersService projectClustersService(Front50Service front50Service,
                                                 ObjectMapper objectMapper,
-                                                Provider<List<ClusterProvider>> clusterProviders) {
-    return new ProjectClustersService(front50Service, objectMapper, clusterProviders)
+                                                Provider<List<ClusterProvider>> clusterProviders,
+                                                Registry registry,
+                                                ProjectClustersCachingAgentProperties projectClustersCachingAgentProperties) {
+    return new ProjectClustersService(
+      front50Service,
+      objectMapper,
+      clusterProviders,
+      registry,
+      Executors.newFixedThreadPool(
+        projectClustersCachingAgentProperties.parallelism,
+        new ThreadFactoryBuilder()
+          .setNameFormat(ProjectClustersService.class.getSimpleName() + "-%d")
+          .setDaemon(true)
+          .build()
+      ),
+      Duration.ofSeconds(projectClustersCachingAgentProperties.timeoutSeconds)
+    )
   }
 
   @Bean
@@ -16,6 +16,7 @@
 
 package com.netflix.spinnaker.clouddriver.config;
 
+import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.clouddriver.jobs.JobExecutor;
 import com.netflix.spinnaker.clouddriver.jobs.local.JobExecutorLocal;
 import org.springframework.beans.factory.annotation.Value;
@@ -28,7 +29,9 @@ public class LocalJobConfig {
   @Bean
   @ConditionalOnMissingBean(JobExecutor.class)
   public JobExecutor jobExecutorLocal(
-      @Value("${jobs.local.timeout-minutes:10}") long timeoutMinutes) {
-    return new JobExecutorLocal(timeoutMinutes);
+      @Value("${jobs.local.timeout-minutes:10}") long timeoutMinutes,
+      @Value("${jobs.local.max-concurrent-jobs-per-key:0}") int maxConcurrentJobsPerKey,
+      Registry registry) {
+    return new JobExecutorLocal(timeoutMinutes, maxConcurrentJobsPerKey, registry);
   }
 }
@@ -27,6 +27,15 @@ public class ProjectClustersCachingAgentProperties {
   /** A list of allowed project names that will be cached. */
   List<String> allowList = new ArrayList<>();
 
+  /** How many applications' clusters to retrieve from cluster providers at once. */
+  int parallelism = 4;
+
+  /**
+   * How long retrieving the clusters of projects may take. Clusters that were not retrieved in
+   * time are left out, and the project is reported as incomplete.
+   */
+  long timeoutSeconds = 600;
+
   public List<String> getAllowList() {
     return allowList;
   }
@@ -35,6 +44,22 @@ public class ProjectClustersCachingAgentProperties {
     this.allowList = allowList;
   }
 
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  public long getTimeoutSeconds() {
+    return timeoutSeconds;
+  }
+
+  public void setTimeoutSeconds(long timeoutSeconds) {
+    this.timeoutSeconds = timeoutSeconds;
+  }
+
   public List<String> getNormalizedAllowList() {
     return allowList.stream()
         .filter(p -> !Strings.isNullOrEmpty(p))
@@ -18,13 +18,26 @@ package com.netflix.spinnaker.clouddriver.core;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.netflix.frigga.Names;
+import com.netflix.spectator.api.Id;
+import com.netflix.spectator.api.NoopRegistry;
+import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.clouddriver.core.services.Front50Service;
 import com.netflix.spinnaker.clouddriver.model.Cluster;
 import com.netflix.spinnaker.clouddriver.model.ClusterProvider;
 import com.netflix.spinnaker.clouddriver.model.ServerGroup;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.inject.Provider;
@@ -35,22 +48,61 @@ public class ProjectClustersService {
 
   private static final Logger log = LoggerFactory.getLogger(ProjectClustersService.class);
 
+  private static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(5);
+
   private final Front50Service front50Service;
   private final ObjectMapper objectMapper;
   private final Provider<List<ClusterProvider>> clusterProviders;
+  private final Registry registry;
+  private final Executor executor;
+  private final Duration timeout;
 
   public ProjectClustersService(
       Front50Service front50Service,
       ObjectMapper objectMapper,
       Provider<List<ClusterProvider>> clusterProviders) {
+    this(
+        front50Service,
+        objectMapper,
+        clusterProviders,
+        new NoopRegistry(),
+        MoreExecutors.directExecutor(),
+        DEFAULT_TIMEOUT);
+  }
+
+  /**
+   * @param executor runs the retrieval of each application's clusters from each provider
+   * @param timeout how long retrieving the clusters of a project, or of a list of projects, may
+   *     take; whatever has not been retrieved by then is left out
+   */
+  public ProjectClustersService(
+      Front50Service front50Service,
+      ObjectMapper objectMapper,
+      Provider<List<ClusterProvider>> clusterProviders,
+      Registry registry,
+      Executor executor,
+      Duration timeout) {
     this.front50Service = front50Service;
     this.objectMapper =
         objectMapper.copy().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
     this.clusterProviders = clusterProviders;
+    this.registry = registry;
+    this.executor = executor;
+    this.timeout = timeout;
   }
 
   public Map<String, List<ClusterModel>> getProjectClusters(List<String> projectNames) {
-    Map<String, List<ProjectClustersService.ClusterModel>> projectClusters = new HashMap<>();
+    return retrieveProjectClusters(projectNames).clusters;
+  }
+
+  /**
+   * Retrieves the clusters of all {@code projectNames} at once, so that projects that share
+   * applications only retrieve their clusters once.
+   */
+  public ProjectClustersResult retrieveProjectClusters(List<String> projectNames) {
+    ClusterRetrieval retrieval = new ClusterRetrieval();
+    Map<String, Project> projects = new LinkedHashMap<>();
+    ProjectClustersResult result = new ProjectClustersResult();
 
     for (String projectName : projectNames) {
       try {
@@ -65,18 +117,30 @@ public class ProjectClustersService {
         }
 
         if (project.config.clusters.isEmpty()) {
-          projectClusters.put(project.name, Collections.emptyList());
+          result.clusters.put(project.name, Collections.emptyList());
           log.debug("Project '{}' does not have any clusters", projectName);
           continue;
         }
 
-        projectClusters.put(project.name, getProjectClusters(project));
+        retrieval.start(project);
+        projects.put(project.name, project);
       } catch (Exception e) {
         log.error("Unable to fetch clusters for project '{}'", projectName, e);
       }
     }
 
-    return projectClusters;
+    for (Project project : projects.values()) {
+      try {
+        result.clusters.put(project.name, getProjectClusters(project, retrieval));
+        if (!retrieval.isComplete(project)) {
+          result.incompleteProjects.add(project.name);
+        }
+      } catch (Exception e) {
+        log.error("Unable to fetch clusters for project '{}'", project.name, e);
+      }
+    }
+
+    return result;
   }
 
   public List<ClusterModel> getProjectClusters(String projectName) {
@@ -98,9 +162,13 @@ public class ProjectClustersService {
   }
 
   public List<ClusterModel> getProjectClusters(Project project) {
-    List<String> applicationsToRetrieve =
-        Optional.ofNullable(project.config.applications).orElse(Collections.emptyList());
-    Map<String, Set<Cluster>> allClusters = retrieveClusters(applicationsToRetrieve, project);
+    ClusterRetrieval retrieval = new ClusterRetrieval();
+    retrieval.start(project);
+    return getProjectClusters(project, retrieval);
+  }
+
+  private List<ClusterModel> getProjectClusters(Project project, ClusterRetrieval retrieval) {
+    Map<String, Set<Cluster>> allClusters = retrieval.await(project);
 
     return project.config.clusters.stream()
         .map(
@@ -128,20 +196,6 @@ public class ProjectClustersService {
         .collect(Collectors.toList());
   }
 
-  private Map<String, Set<Cluster>> retrieveClusters(List<String> applications, Project project) {
-    Map<String, Set<Cluster>> allClusters = new HashMap<>();
-
-    for (String application : applications) {
-      for (RetrievedClusters clusters : retrieveClusters(application, project)) {
-        allClusters
-            .computeIfAbsent(clusters.application, s -> new HashSet<>())
-            .addAll(clusters.clusters);
-      }
-    }
-
-    return allClusters;
-  }
-
   private Set<Cluster> findClustersForProject(
       Set<Cluster> appClusters, ProjectCluster projectCluster) {
     if (appClusters == null || appClusters.isEmpty()) {
@@ -159,39 +213,227 @@ public class ProjectClustersService {
         .collect(Collectors.toSet());
   }
 
-  private List<RetrievedClusters> retrieveClusters(String application, Project project) {
-    return clusterProviders.get().stream()
-        .map(
-            clusterProvider -> {
-              Map<String, Set<Cluster>> clusterSummariesByAccount =
-                  clusterProvider.getClusterSummaries(application);
-              if (clusterSummariesByAccount == null) {
-                return null;
-              }
-
-              Set<Cluster> allClusterSummaries =
-                  clusterSummariesByAccount.values().stream()
-                      .flatMap(Collection::stream)
-                      .collect(Collectors.toSet());
-
-              Set<Cluster> matchingClusterSummaries = new HashSet<>();
-              for (ProjectCluster projectCluster : project.config.clusters) {
-                matchingClusterSummaries.addAll(
-                    findClustersForProject(allClusterSummaries, projectCluster));
-              }
-
-              Set<Cluster> expandedClusters =
-                  matchingClusterSummaries.stream()
-                      .map(
-                          c ->
-                              clusterProvider.getCluster(
-                                  c.getMoniker().getApp(), c.getAccountName(), c.getName()))
-                      .collect(Collectors.toSet());
+  /**
+   * Retrieves the clusters of projects from every provider in parallel, with one deadline for all
+   * of them.
+   *
+   * <p>Cluster summaries and clusters are retrieved at most once per provider, so projects that
+   * share applications share the work. A retrieval that fails or is not done by the deadline is
+   * left out, and its project is reported as incomplete.
+   */
+  private class ClusterRetrieval {
+    private final long deadlineNanos = System.nanoTime() + timeout.toNanos();
+    private final List<ClusterProvider> providers = clusterProviders.get();
+
+    private final ConcurrentMap<RetrievalKey, CompletableFuture<Set<Cluster>>> summaries =
+        new ConcurrentHashMap<>();
+    private final ConcurrentMap<RetrievalKey, CompletableFuture<Cluster>> clusters =
+        new ConcurrentHashMap<>();
+    private final Map<String, List<CompletableFuture<RetrievedClusters>>> projectRetrievals =
+        new HashMap<>();
+    private final Set<String> incompleteProjects = new HashSet<>();
+
+    void start(Project project) {
+      List<String> applications =
+          Optional.ofNullable(project.config.applications).orElse(Collections.emptyList());
+
+      List<CompletableFuture<RetrievedClusters>> retrievals = new ArrayList<>();
+      for (String application : applications) {
+        for (int i = 0; i < providers.size(); i++) {
+          retrievals.add(retrieve(project, application, i));
+        }
+      }
+      projectRetrievals.put(project.name, retrievals);
+    }
 
-              return new RetrievedClusters(application, expandedClusters);
-            })
-        .filter(Objects::nonNull)
-        .collect(Collectors.toList());
+    /** Waits for the clusters of the project until the deadline, then returns those retrieved. */
+    Map<String, Set<Cluster>> await(Project project) {
+      long startTime = System.nanoTime();
+      Map<String, Set<Cluster>> allClusters = new HashMap<>();
+
+      for (CompletableFuture<RetrievedClusters> retrieval :
+          projectRetrievals.getOrDefault(project.name, Collections.emptyList())) {
+        RetrievedClusters retrieved;
+        try {
+          retrieved =
+              retrieval.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+          incompleteProjects.add(project.name);
+          continue;
+        } catch (ExecutionException e) {
+          log.warn("Unable to retrieve clusters for project '{}'", project.name, e.getCause());
+          incompleteProjects.add(project.name);
+          continue;
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException(e);
+        }
+
+        if (retrieved != null) {
+          allClusters
+              .computeIfAbsent(retrieved.application, s -> new HashSet<>())
+              .addAll(retrieved.clusters);
+        }
+      }
+
+      boolean complete = isComplete(project);
+      if (!complete) {
+        log.warn("Not all clusters of project '{}' were retrieved in {}", project.name, timeout);
+      }
+      Id id = registry.createId("projectClusters.await", "complete", Boolean.toString(complete));
+      registry.timer(id).record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+
+      return allClusters;
+    }
+
+    boolean isComplete(Project project) {
+      return !incompleteProjects.contains(project.name);
+    }
+
+    /** @return the project's clusters of an application in a provider, or null if it has none */
+    private CompletableFuture<RetrievedClusters> retrieve(
+        Project project, String application, int providerIndex) {
+      ClusterProvider clusterProvider = providers.get(providerIndex);
+      return summaries(application, providerIndex)
+          .thenCompose(
+              allClusterSummaries -> {
+                if (allClusterSummaries == null) {
+                  return CompletableFuture.completedFuture(null);
+                }
+
+                Set<Cluster> matchingClusterSummaries = new HashSet<>();
+                for (ProjectCluster projectCluster : project.config.clusters) {
+                  matchingClusterSummaries.addAll(
+                      findClustersForProject(allClusterSummaries, projectCluster));
+                }
+
+                List<CompletableFuture<Cluster>> expandedClusters =
+                    matchingClusterSummaries.stream()
+                        .map(
+                            c ->
+                                memoize(
+                                    clusters,
+                                    new RetrievalKey(
+                                        providerIndex,
+                                        c.getMoniker().getApp(),
+                                        c.getAccountName(),
+                                        c.getName()),
+                                    "cluster",
+                                    clusterProvider,
+                                    () ->
+                                        clusterProvider.getCluster(
+                                            c.getMoniker().getApp(),
+                                            c.getAccountName(),
+                                            c.getName())))
+                        .collect(Collectors.toList());
+
+                return CompletableFuture.allOf(expandedClusters.toArray(new CompletableFuture[0]))
+                    .thenApply(
+                        v ->
+                            new RetrievedClusters(
+                                application,
+                                expandedClusters.stream()
+                                    .map(CompletableFuture::join)
+                                    .filter(Objects::nonNull)
+                                    .collect(Collectors.toSet())));
+              });
+    }
+
+    private CompletableFuture<Set<Cluster>> summaries(String application, int providerIndex) {
+      ClusterProvider clusterProvider = providers.get(providerIndex);
+      return memoize(
+          summaries,
+          new RetrievalKey(providerIndex, application),
+          "clusterSummaries",
+          clusterProvider,
+          () -> {
+            Map<String, Set<Cluster>> clusterSummariesByAccount =
+                clusterProvider.getClusterSummaries(application);
+            if (clusterSummariesByAccount == null) {
+              return null;
+            }
+
+            return clusterSummariesByAccount.values().stream()
+                .flatMap(Collection::stream)
+                .collect(Collectors.toSet());
+          });
+    }
+
+    private <T> CompletableFuture<T> memoize(
+        ConcurrentMap<RetrievalKey, CompletableFuture<T>> results,
+        RetrievalKey key,
+        String stage,
+        ClusterProvider clusterProvider,
+        Supplier<T> retrieval) {
+      CompletableFuture<T> existing = results.get(key);
+      if (existing != null) {
+        registry.counter("projectClusters.memoized", "stage", stage).increment();
+        return existing;
+      }
+
+      CompletableFuture<T> result = new CompletableFuture<>();
+      existing = results.putIfAbsent(key, result);
+      if (existing != null) {
+        registry.counter("projectClusters.memoized", "stage", stage).increment();
+        return existing;
+      }
+
+      Id id =
+          registry.createId(
+              "projectClusters.retrieve",
+              "stage",
+              stage,
+              "provider",
+              clusterProvider.getClass().getSimpleName());
+      executor.execute(
+          () -> {
+            if (System.nanoTime() > deadlineNanos) {
+              result.completeExceptionally(new TimeoutException("Deadline passed before start"));
+              return;
+            }
+
+            long startTime = System.nanoTime();
+            try {
+              result.complete(retrieval.get());
+              registry
+                  .timer(id.withTag("success", "true"))
+                  .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            } catch (Exception e) {
+              result.completeExceptionally(e);
+              registry
+                  .timer(id.withTag("success", "false"))
+                  .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            }
+          });
+      return result;
+    }
+  }
+
+  private static class RetrievalKey {
+    private final int providerIndex;
+    private final List<String> names;
+
+    RetrievalKey(int providerIndex, String... names) {
+      this.providerIndex = providerIndex;
+      this.names = Arrays.asList(names);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      RetrievalKey that = (RetrievalKey) o;
+      return providerIndex == that.providerIndex && names.equals(that.names);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(providerIndex, names);
+    }
   }
 
   static boolean nameMatches(String clusterNameValue, String projectClusterValue) {
@@ -204,6 +446,12 @@ public class ProjectClustersService {
     return false;
   }
 
+  /** The clusters of a list of projects, and the projects whose clusters may be incomplete. */
+  public static class ProjectClustersResult {
+    public final Map<String, List<ClusterModel>> clusters = new HashMap<>();
+    public final Set<String> incompleteProjects = new HashSet<>();
+  }
+
   public static class Project {
     public String name;
     public ProjectConfig config;
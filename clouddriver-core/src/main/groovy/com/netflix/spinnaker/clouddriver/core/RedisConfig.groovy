@@ -17,7 +17,12 @@
 package com.netflix.spinnaker.clouddriver.core
 
 import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.clouddriver.core.limits.RedisTokenBucketStore
+import com.netflix.spinnaker.clouddriver.core.limits.TokenBucketStore
+import com.netflix.spinnaker.clouddriver.data.task.TaskChangeFanout
+import com.netflix.spinnaker.clouddriver.data.task.TaskChangeFeed
 import com.netflix.spinnaker.clouddriver.data.task.TaskRepository
+import com.netflix.spinnaker.clouddriver.data.task.jedis.RedisTaskChangeFanout
 import com.netflix.spinnaker.clouddriver.data.task.jedis.RedisTaskRepository
 import com.netflix.spinnaker.kork.jedis.JedisClientDelegate
 import com.netflix.spinnaker.kork.jedis.RedisClientDelegate
@@ -39,6 +44,8 @@ import redis.clients.jedis.Jedis
 import redis.clients.jedis.JedisPool
 import redis.clients.jedis.Protocol
 
+import java.time.Clock
+
 @Configuration
 @ConditionalOnProperty(value = 'redis.enabled', matchIfMissing = true)
 @EnableConfigurationProperties(RedisConfigurationProperties)
@@ -51,8 +58,26 @@ class RedisConfig {
 
   @Bean
   @ConditionalOnExpression('${redis.task-repository.enabled:true}')
-  TaskRepository taskRepository(RedisClientDelegate redisClientDelegate, Optional<RedisClientDelegate> redisClientDelegatePrevious) {
-    new RedisTaskRepository(redisClientDelegate, redisClientDelegatePrevious)
+  TaskRepository taskRepository(RedisClientDelegate redisClientDelegate,
+                                Optional<RedisClientDelegate> redisClientDelegatePrevious,
+                                TaskChangeFeed taskChangeFeed) {
+    new RedisTaskRepository(redisClientDelegate, redisClientDelegatePrevious, taskChangeFeed)
+  }
+
+  /**
+   * Tasks are shared through redis unless they are stored in sql, in which case the sql fanout
+   * polls for them instead.
+   */
+  @Bean
+  @ConditionalOnExpression('\'${tasks.change-feed.fanout:auto}\' == \'redis\' || (\'${tasks.change-feed.fanout:auto}\' == \'auto\' && ${redis.task-repository.enabled:true} && !${sql.task-repository.enabled:false})')
+  TaskChangeFanout redisTaskChangeFanout(RedisClientDelegate redisClientDelegate) {
+    new RedisTaskChangeFanout(redisClientDelegate)
+  }
+
+  @Bean
+  @ConditionalOnExpression('${rate-limits.distributed.enabled:false} && \'${rate-limits.distributed.backend:redis}\' == \'redis\'')
+  TokenBucketStore redisTokenBucketStore(RedisClientDelegate redisClientDelegate, Clock clock) {
+    new RedisTokenBucketStore(redisClientDelegate, clock)
   }
 
   @Bean
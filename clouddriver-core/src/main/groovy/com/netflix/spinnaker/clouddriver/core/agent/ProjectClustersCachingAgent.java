@@ -34,9 +34,13 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class ProjectClustersCachingAgent implements CachingAgent, CustomScheduledAgent {
 
+  private static final Logger log = LoggerFactory.getLogger(ProjectClustersCachingAgent.class);
+
   private static final long DEFAULT_POLL_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
   private static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
 
@@ -60,16 +64,29 @@ public class ProjectClustersCachingAgent implements CachingAgent, CustomSchedule
 
   @Override
   public CacheResult loadData(ProviderCache providerCache) {
+    ProjectClustersService.ProjectClustersResult result =
+        projectClustersService.retrieveProjectClusters(properties.getNormalizedAllowList());
+    Map<String, Object> projectClusters = new HashMap<>(result.clusters);
+
+    // rather than replace what was cached with a partial result, keep it until the next run
+    if (!result.incompleteProjects.isEmpty()) {
+      CacheData previous = providerCache.get(PROJECT_CLUSTERS.ns, "v1");
+      if (previous != null) {
+        for (String project : result.incompleteProjects) {
+          Object previousClusters = previous.getAttributes().get(project);
+          if (previousClusters != null) {
+            log.warn("Keeping previously cached clusters for incomplete project '{}'", project);
+            projectClusters.put(project, previousClusters);
+          }
+        }
+      }
+    }
+
     return new DefaultCacheResult(
         Collections.singletonMap(
             PROJECT_CLUSTERS.ns,
             Collections.singletonList(
-                new MutableCacheData(
-                    "v1",
-                    new HashMap<>(
-                        projectClustersService.getProjectClusters(
-                            properties.getNormalizedAllowList())),
-                    Collections.emptyMap()))));
+                new MutableCacheData("v1", projectClusters, Collections.emptyMap()))));
   }
 
   static class MutableCacheData implements CacheData {
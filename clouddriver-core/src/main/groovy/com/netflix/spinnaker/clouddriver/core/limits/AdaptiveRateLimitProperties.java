@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.core.limits;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * When enabled, rate limits from {@link ServiceLimitConfiguration} are only a starting point, and
+ * are adjusted by an {@link AdaptiveRateLimiter} according to throttling by the cloud provider.
+ */
+@Data
+@ConfigurationProperties("rate-limits.adaptive")
+public class AdaptiveRateLimitProperties {
+
+  private boolean enabled = false;
+
+  /** Permits per second added after each increase interval without throttling. */
+  private double additiveIncrease = 1.0d;
+
+  private long increaseIntervalMillis = 1000;
+
+  /** The rate is multiplied by this when the provider throttles a request. */
+  private double decreaseFactor = 0.5d;
+
+  /**
+   * Throttles within this time of a decrease are attributed to requests made at the old rate, and
+   * do not decrease it again.
+   */
+  private long decreaseCooldownMillis = 1000;
+
+  private double minRate = 1.0d;
+
+  /**
+   * The highest rate as a multiple of the configured one, unless the {@code rateLimitMax} service
+   * limit is set.
+   */
+  private double maxRateMultiplier = 4.0d;
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.core.limits;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Clock;
+
+/**
+ * Adjusts the rate of another limiter with additive increase, multiplicative decrease.
+ *
+ * <p>Each throttle response from the provider cuts the rate by {@link
+ * AdaptiveRateLimitProperties#getDecreaseFactor()}, and every increase interval that passes
+ * without one adds {@link AdaptiveRateLimitProperties#getAdditiveIncrease()}. The rate is only
+ * increased while callers are actually waiting on the limiter, so an idle account does not drift
+ * up to its maximum and then get throttled the moment it gets busy.
+ */
+public class AdaptiveRateLimiter implements RequestRateLimiter {
+  private final RequestRateLimiter delegate;
+  private final double minRate;
+  private final double maxRate;
+  private final AdaptiveRateLimitProperties properties;
+  private final Clock clock;
+
+  // guarded by this
+  private double rate;
+  private long lastIncrease;
+  private long lastDecrease;
+  private boolean saturated;
+
+  public AdaptiveRateLimiter(
+      RequestRateLimiter delegate,
+      double maxRate,
+      AdaptiveRateLimitProperties properties,
+      Clock clock) {
+    this.delegate = requireNonNull(delegate);
+    this.properties = requireNonNull(properties);
+    this.clock = requireNonNull(clock);
+    this.rate = delegate.getRate();
+    this.minRate = Math.min(rate, properties.getMinRate());
+    this.maxRate = Math.max(rate, maxRate);
+    this.lastIncrease = clock.millis();
+    this.lastDecrease = Long.MIN_VALUE / 2;
+  }
+
+  @Override
+  public double acquire() {
+    double waited = delegate.acquire();
+    if (waited > 0) {
+      synchronized (this) {
+        saturated = true;
+      }
+    }
+    return waited;
+  }
+
+  @Override
+  public synchronized double getRate() {
+    return rate;
+  }
+
+  @Override
+  public synchronized void setRate(double permitsPerSecond) {
+    rate = Math.max(minRate, Math.min(maxRate, permitsPerSecond));
+    delegate.setRate(rate);
+  }
+
+  @Override
+  public synchronized void recordSuccess() {
+    long now = clock.millis();
+    long sinceLastChange = now - Math.max(lastIncrease, lastDecrease);
+    if (sinceLastChange < properties.getIncreaseIntervalMillis()) {
+      return;
+    }
+
+    lastIncrease = now;
+    if (saturated && rate < maxRate) {
+      setRate(rate + properties.getAdditiveIncrease());
+    }
+    saturated = false;
+  }
+
+  @Override
+  public synchronized void recordThrottle() {
+    long now = clock.millis();
+    if (now - lastDecrease < properties.getDecreaseCooldownMillis()) {
+      return;
+    }
+
+    lastDecrease = now;
+    setRate(rate * properties.getDecreaseFactor());
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.core.limits;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * When enabled, rate limits from {@link ServiceLimitConfiguration} apply to the whole cluster
+ * rather than to each node.
+ */
+@Data
+@ConfigurationProperties("rate-limits.distributed")
+public class DistributedRateLimitProperties {
+
+  private boolean enabled = false;
+
+  /** The {@link TokenBucketStore} to use: {@code redis} or {@code sql}. */
+  private String backend = "redis";
+
+  /**
+   * Each trip to the store takes enough permits for this many milliseconds of the cluster-wide
+   * rate, so that most requests are granted from the local prefetch.
+   */
+  private long prefetchMillis = 100;
+
+  /** Prefetched permits that have not been used within this time are discarded. */
+  private long prefetchTtlMillis = 1000;
+
+  /**
+   * Used to derive a per-node limit while the store is unreachable, at which point each node falls
+   * back to throttling itself at {@code rateLimit / expectedReplicas}.
+   */
+  private int expectedReplicas = 1;
+
+  /** How long to stay on the local fallback after the store fails. */
+  private long storeRetryMillis = 10_000;
+}
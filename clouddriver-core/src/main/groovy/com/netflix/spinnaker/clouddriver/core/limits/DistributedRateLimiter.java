@@ -0,0 +1,202 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.core.limits;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.netflix.spectator.api.Counter;
+import com.netflix.spectator.api.Registry;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A token bucket shared by every clouddriver replica through a {@link TokenBucketStore}.
+ *
+ * <p>Permits are taken from the store in batches and handed out locally, so that only one request
+ * per batch leaves the node. If the store fails, the limiter fails open to a local {@link
+ * RateLimiter} at the node's share of the rate until the store is retried.
+ */
+public class DistributedRateLimiter implements RequestRateLimiter {
+  private static final Logger log = LoggerFactory.getLogger(DistributedRateLimiter.class);
+
+  private static final long MIN_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long MAX_PAUSE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final String bucket;
+  private final TokenBucketStore store;
+  private final RateLimiter fallback;
+  private final DistributedRateLimitProperties properties;
+  private final Clock clock;
+  private final Counter storeFailures;
+
+  // guarded by this
+  private double permitsPerSecond;
+  private long capacity;
+  private long prefetch;
+  private long pauseNanos;
+  private long localPermits;
+  private long localPermitsExpiry;
+  private long storeRetryAt;
+  private boolean refilling;
+
+  public DistributedRateLimiter(
+      String bucket,
+      double permitsPerSecond,
+      TokenBucketStore store,
+      DistributedRateLimitProperties properties,
+      Registry registry,
+      Clock clock) {
+    this.bucket = requireNonNull(bucket);
+    this.store = requireNonNull(store);
+    this.properties = requireNonNull(properties);
+    this.clock = requireNonNull(clock);
+
+    this.fallback = RateLimiter.create(fallbackRate(permitsPerSecond));
+    this.storeFailures = registry.counter("rateLimiter.distributed.storeFailures");
+    setRate(permitsPerSecond);
+  }
+
+  @Override
+  public synchronized double getRate() {
+    return permitsPerSecond;
+  }
+
+  /**
+   * Changes the rate at which this node refills the shared bucket. Every node passes its own rate
+   * with each take, so nodes that disagree about the rate converge on the most recent one.
+   */
+  @Override
+  public synchronized void setRate(double permitsPerSecond) {
+    this.permitsPerSecond = permitsPerSecond;
+    this.prefetch =
+        Math.max(1, Math.round(permitsPerSecond * properties.getPrefetchMillis() / 1000d));
+    // a second's worth of burst, like the local RateLimiter
+    this.capacity = Math.max(prefetch, (long) Math.ceil(permitsPerSecond));
+    // a starved node waits for the bucket to refill a whole batch rather than for each permit
+    long refillNanos = (long) (prefetch * TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    this.pauseNanos = Math.min(MAX_PAUSE_NANOS, Math.max(MIN_PAUSE_NANOS, refillNanos));
+    fallback.setRate(fallbackRate(permitsPerSecond));
+  }
+
+  private double fallbackRate(double permitsPerSecond) {
+    return permitsPerSecond / Math.max(1, properties.getExpectedReplicas());
+  }
+
+  /**
+   * Like {@link RateLimiter#acquire()}, returns exactly 0 if a permit was granted without pausing,
+   * so that callers such as {@link AdaptiveRateLimiter} can tell a saturated limiter from the time
+   * it takes to ask the store.
+   */
+  @Override
+  public double acquire() {
+    long start = System.nanoTime();
+    double waited = 0;
+    while (true) {
+      if (tryAcquire()) {
+        return waited;
+      }
+      if (isStoreUnavailable()) {
+        return fallback.acquire() + waited;
+      }
+      Uninterruptibles.sleepUninterruptibly(getPauseNanos(), TimeUnit.NANOSECONDS);
+      waited = (System.nanoTime() - start) / 1e9;
+    }
+  }
+
+  /**
+   * Takes a local permit, or refills them from the store when they have run out. The store is
+   * called outside of the lock by a single thread at a time, while the others wait for it to
+   * finish rather than queue up behind it on the lock.
+   */
+  private boolean tryAcquire() {
+    long now = clock.millis();
+    double rate;
+    long bucketCapacity;
+    long batch;
+    synchronized (this) {
+      boolean interrupted = false;
+      try {
+        while (true) {
+          if (localPermits > 0 && now < localPermitsExpiry) {
+            localPermits--;
+            return true;
+          }
+          if (now < storeRetryAt) {
+            return false;
+          }
+          if (!refilling) {
+            break;
+          }
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+          now = clock.millis();
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      refilling = true;
+      rate = permitsPerSecond;
+      bucketCapacity = capacity;
+      batch = prefetch;
+    }
+
+    long taken = 0;
+    try {
+      taken = store.take(bucket, rate, bucketCapacity, batch);
+    } catch (RuntimeException e) {
+      log.warn(
+          "Unable to take permits for {}, throttling locally for {}ms",
+          bucket,
+          properties.getStoreRetryMillis(),
+          e);
+      storeFailures.increment();
+      synchronized (this) {
+        storeRetryAt = now + properties.getStoreRetryMillis();
+      }
+      return false;
+    } finally {
+      synchronized (this) {
+        refilling = false;
+        if (taken > 0) {
+          localPermits = taken - 1;
+          localPermitsExpiry = now + properties.getPrefetchTtlMillis();
+        }
+        notifyAll();
+      }
+    }
+
+    return taken > 0;
+  }
+
+  private synchronized long getPauseNanos() {
+    return pauseNanos;
+  }
+
+  private synchronized boolean isStoreUnavailable() {
+    return clock.millis() < storeRetryAt;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.core.limits;
+
+import static java.util.Objects.requireNonNull;
+
+import com.netflix.spinnaker.kork.jedis.RedisClientDelegate;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Keeps each bucket in a Redis hash of its remaining tokens and the time it was last refilled.
+ *
+ * <p>Refill times come from the callers' clocks; a bucket is never refilled for time that has
+ * already been accounted for, so skew between nodes can only slow refills down.
+ */
+public class RedisTokenBucketStore implements TokenBucketStore {
+  private static final String KEY_PREFIX = "rateLimit:";
+
+  private static final String TAKE_SCRIPT =
+      "local bucket = redis.call('hmget', KEYS[1], 'tokens', 'ts')\n"
+          + "local rate = tonumber(ARGV[1])\n"
+          + "local capacity = tonumber(ARGV[2])\n"
+          + "local now = tonumber(ARGV[4])\n"
+          + "local tokens = tonumber(bucket[1]) or capacity\n"
+          + "local ts = tonumber(bucket[2]) or now\n"
+          + "if now > ts then\n"
+          + "  tokens = math.min(capacity, tokens + (now - ts) * rate / 1000)\n"
+          + "  ts = now\n"
+          + "end\n"
+          + "local taken = math.min(tonumber(ARGV[3]), math.floor(tokens))\n"
+          + "redis.call('hmset', KEYS[1], 'tokens', tostring(tokens - taken), 'ts', tostring(ts))\n"
+          + "redis.call('pexpire', KEYS[1], math.ceil(capacity / rate * 1000) + 1000)\n"
+          + "return taken";
+
+  private final RedisClientDelegate redisClientDelegate;
+  private final Clock clock;
+
+  public RedisTokenBucketStore(RedisClientDelegate redisClientDelegate, Clock clock) {
+    this.redisClientDelegate = requireNonNull(redisClientDelegate);
+    this.clock = requireNonNull(clock);
+  }
+
+  @Override
+  public long take(String bucket, double permitsPerSecond, long capacity, long permits) {
+    return redisClientDelegate.withScriptingClient(
+        client -> {
+          Object taken =
+              client.eval(
+                  TAKE_SCRIPT,
+                  Collections.singletonList(KEY_PREFIX + bucket),
+                  Arrays.asList(
+                      Double.toString(permitsPerSecond),
+                      Long.toString(capacity),
+                      Long.toString(permits),
+                      Long.toString(clock.millis())));
+          return ((Number) taken).longValue();
+        });
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.core.limits;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/** Throttles outgoing requests by blocking callers until they may proceed. */
+public interface RequestRateLimiter {
+
+  /**
+   * Blocks until a single permit is available.
+   *
+   * @return the time spent waiting, in seconds, or exactly 0 if a permit was available right away
+   */
+  double acquire();
+
+  /** @return the number of permits granted per second */
+  double getRate();
+
+  void setRate(double permitsPerSecond);
+
+  /** Called after a throttled request completed without being throttled by the service. */
+  default void recordSuccess() {}
+
+  /** Called after the service rejected a throttled request for exceeding its rate limit. */
+  default void recordThrottle() {}
+
+  /** A limiter that only throttles requests made by this node. */
+  static RequestRateLimiter local(RateLimiter rateLimiter) {
+    return new RequestRateLimiter() {
+      @Override
+      public double acquire() {
+        return rateLimiter.acquire();
+      }
+
+      @Override
+      public double getRate() {
+        return rateLimiter.getRate();
+      }
+
+      @Override
+      public void setRate(double permitsPerSecond) {
+        rateLimiter.setRate(permitsPerSecond);
+      }
+    };
+  }
+}
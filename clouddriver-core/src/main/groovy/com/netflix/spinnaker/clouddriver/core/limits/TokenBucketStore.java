@@ -0,0 +1,34 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.core.limits;
+
+/**
+ * Shared storage for token buckets, used to enforce a rate limit across every clouddriver replica.
+ *
+ * <p>Implementations must refill and take from a bucket atomically, and should throw rather than
+ * block when the backing store is unavailable.
+ */
+public interface TokenBucketStore {
+
+  /**
+   * Refills {@code bucket} at {@code permitsPerSecond}, up to {@code capacity}, and takes up to
+   * {@code permits} from it. A bucket that does not exist yet starts out full.
+   *
+   * @return the number of permits taken, between 0 and {@code permits}
+   */
+  long take(String bucket, double permitsPerSecond, long capacity, long permits);
+}
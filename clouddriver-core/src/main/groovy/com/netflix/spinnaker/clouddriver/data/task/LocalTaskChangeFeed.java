@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.data.task;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps task versions and waiters in memory, optionally sharing versions with other instances
+ * through a {@link TaskChangeFanout}.
+ *
+ * <p>A local change moves a task to {@code max(version + 1, now)}, so versions published by
+ * different instances stay ordered as long as their clocks are roughly in sync, and a task never
+ * goes backwards when a stale version arrives from another instance.
+ */
+public class LocalTaskChangeFeed implements TaskChangeFeed {
+  private static final Logger log = LoggerFactory.getLogger(LocalTaskChangeFeed.class);
+
+  private final Clock clock;
+  private final TaskChangeFanout fanout;
+  private final Cache<String, Entry> entries;
+
+  public LocalTaskChangeFeed(Clock clock, @Nullable TaskChangeFanout fanout, Duration retention) {
+    this.clock = clock;
+    this.fanout = fanout;
+    this.entries =
+        CacheBuilder.newBuilder()
+            .expireAfterAccess(retention.toMillis(), TimeUnit.MILLISECONDS)
+            .build();
+
+    if (fanout != null) {
+      fanout.subscribe(this::advance);
+    } else {
+      log.info(
+          "No task change fanout, waits on tasks changed by other instances end at their timeout");
+    }
+  }
+
+  @Override
+  public long getVersion(String taskId) {
+    Entry entry = entries.getIfPresent(taskId);
+    return entry == null ? 0 : entry.getVersion();
+  }
+
+  @Override
+  public void publish(String taskId) {
+    long version = entry(taskId).next(clock.millis());
+    if (fanout != null) {
+      try {
+        fanout.broadcast(taskId, version);
+      } catch (Exception e) {
+        // other instances will still pick the change up on their next read or timeout
+        log.warn("Failed to broadcast version {} of task {}", version, taskId, e);
+      }
+    }
+  }
+
+  /** Moves a task to {@code version} if it is newer than the version already known. */
+  public void advance(String taskId, long version) {
+    entry(taskId).advanceTo(version);
+  }
+
+  @Override
+  public CompletableFuture<Long> awaitChange(String taskId, long sinceVersion) {
+    return entry(taskId).await(sinceVersion);
+  }
+
+  private Entry entry(String taskId) {
+    return entries.asMap().computeIfAbsent(taskId, id -> new Entry());
+  }
+
+  private static class Entry {
+    private long version;
+    private List<CompletableFuture<Long>> waiters = new ArrayList<>();
+
+    synchronized long getVersion() {
+      return version;
+    }
+
+    long next(long now) {
+      List<CompletableFuture<Long>> toComplete;
+      long next;
+      synchronized (this) {
+        next = Math.max(version + 1, now);
+        toComplete = swap(next);
+      }
+      complete(toComplete, next);
+      return next;
+    }
+
+    void advanceTo(long newVersion) {
+      List<CompletableFuture<Long>> toComplete;
+      synchronized (this) {
+        if (newVersion <= version) {
+          return;
+        }
+        toComplete = swap(newVersion);
+      }
+      complete(toComplete, newVersion);
+    }
+
+    private List<CompletableFuture<Long>> swap(long newVersion) {
+      List<CompletableFuture<Long>> previous = waiters;
+      version = newVersion;
+      waiters = new ArrayList<>();
+      return previous;
+    }
+
+    /** Called outside of the lock, as dependent stages run on the completing thread. */
+    private static void complete(List<CompletableFuture<Long>> toComplete, long newVersion) {
+      toComplete.forEach(waiter -> waiter.complete(newVersion));
+    }
+
+    synchronized CompletableFuture<Long> await(long sinceVersion) {
+      if (version > sinceVersion) {
+        return CompletableFuture.completedFuture(version);
+      }
+
+      // drop waiters that were abandoned by a timed out request
+      waiters.removeIf(CompletableFuture::isDone);
+      CompletableFuture<Long> waiter = new CompletableFuture<>();
+      waiters.add(waiter);
+      return waiter;
+    }
+  }
+}
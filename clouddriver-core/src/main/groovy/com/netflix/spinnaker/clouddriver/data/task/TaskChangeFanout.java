@@ -0,0 +1,28 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.data.task;
+
+import java.util.function.BiConsumer;
+
+/** Carries task versions published on one clouddriver instance to every other instance. */
+public interface TaskChangeFanout {
+
+  /** Tells other instances that {@code taskId} is now at {@code version}. */
+  void broadcast(String taskId, long version);
+
+  /** Registers a listener for (taskId, version) pairs published by other instances. */
+  void subscribe(BiConsumer<String, Long> listener);
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.data.task;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tracks a monotonically increasing version per task so that callers can wait for a task to change
+ * instead of polling {@link TaskRepository#get}.
+ *
+ * <p>Versions are only meaningful to compare with other versions of the same task; a task that
+ * this feed knows nothing about is at version 0.
+ */
+public interface TaskChangeFeed {
+
+  /** A feed that never reports a change, used when no feed has been configured. */
+  TaskChangeFeed NONE =
+      new TaskChangeFeed() {
+        @Override
+        public long getVersion(String taskId) {
+          return 0;
+        }
+
+        @Override
+        public void publish(String taskId) {}
+
+        @Override
+        public CompletableFuture<Long> awaitChange(String taskId, long sinceVersion) {
+          return new CompletableFuture<>();
+        }
+      };
+
+  long getVersion(String taskId);
+
+  /** Records that a task was changed by this instance. */
+  void publish(String taskId);
+
+  /**
+   * @return a future that completes with the task's version as soon as it is greater than {@code
+   *     sinceVersion}; callers are expected to bound the wait themselves
+   */
+  CompletableFuture<Long> awaitChange(String taskId, long sinceVersion);
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.data.task;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("tasks.change-feed")
+public class TaskChangeFeedProperties {
+
+  /**
+   * How versions reach other instances: {@code redis} (pub/sub), {@code sql} (polling {@code
+   * task_states}) or {@code none}. The default, {@code auto}, uses the fanout of the task
+   * repository: {@code sql} when tasks are stored in sql, otherwise {@code redis}. With {@code
+   * none}, a wait on a task that is changed by another instance only ends when it times out.
+   */
+  private String fanout = "auto";
+
+  /** Upper bound for how long a single long-poll request may wait. */
+  private long maxWaitMillis = 30_000;
+
+  /** Versions of tasks that have not been changed or watched for this long are forgotten. */
+  private long retentionMinutes = 60;
+
+  /** How often the {@code sql} fanout looks for new task states. */
+  private long pollIntervalMillis = 1000;
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.data.task.jedis;
+
+import com.netflix.spinnaker.clouddriver.data.task.TaskChangeFanout;
+import com.netflix.spinnaker.kork.jedis.RedisClientDelegate;
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.JedisPubSub;
+
+/**
+ * Shares task versions over a Redis pub/sub channel.
+ *
+ * <p>A single daemon thread holds the subscription and re-subscribes after connection failures.
+ * Messages published while it is disconnected are lost, which only delays waiters until their
+ * timeout.
+ */
+public class RedisTaskChangeFanout implements TaskChangeFanout, Closeable {
+  private static final Logger log = LoggerFactory.getLogger(RedisTaskChangeFanout.class);
+
+  static final String CHANNEL = "kato:taskChanges";
+  private static final long RESUBSCRIBE_DELAY_MS = TimeUnit.SECONDS.toMillis(1);
+
+  private final RedisClientDelegate redisClientDelegate;
+  private final List<BiConsumer<String, Long>> listeners = new CopyOnWriteArrayList<>();
+
+  private volatile boolean running = true;
+  private volatile JedisPubSub pubSub;
+  private Thread subscriber;
+
+  public RedisTaskChangeFanout(RedisClientDelegate redisClientDelegate) {
+    this.redisClientDelegate = redisClientDelegate;
+  }
+
+  @Override
+  public void broadcast(String taskId, long version) {
+    redisClientDelegate.withMultiClient(
+        client -> {
+          return client.publish(CHANNEL, taskId + ":" + version);
+        });
+  }
+
+  @Override
+  public synchronized void subscribe(BiConsumer<String, Long> listener) {
+    listeners.add(listener);
+    if (subscriber == null) {
+      subscriber = new Thread(this::listen, "RedisTaskChangeFanout");
+      subscriber.setDaemon(true);
+      subscriber.start();
+    }
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    JedisPubSub current = pubSub;
+    if (current != null && current.isSubscribed()) {
+      current.unsubscribe();
+    }
+  }
+
+  private void listen() {
+    while (running) {
+      pubSub = new Listener();
+      try {
+        redisClientDelegate.withMultiClient(
+            client -> {
+              client.subscribe(pubSub, CHANNEL);
+            });
+      } catch (Exception e) {
+        if (running) {
+          log.warn("Lost subscription to {}, re-subscribing", CHANNEL, e);
+        }
+      }
+
+      if (running) {
+        try {
+          Thread.sleep(RESUBSCRIBE_DELAY_MS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  private class Listener extends JedisPubSub {
+    @Override
+    public void onMessage(String channel, String message) {
+      int separator = message.lastIndexOf(':');
+      if (separator <= 0) {
+        log.warn("Ignoring malformed task change message '{}'", message);
+        return;
+      }
+
+      String taskId = message.substring(0, separator);
+      long version;
+      try {
+        version = Long.parseLong(message.substring(separator + 1));
+      } catch (NumberFormatException e) {
+        log.warn("Ignoring malformed task change message '{}'", message);
+        return;
+      }
+
+      for (BiConsumer<String, Long> listener : listeners) {
+        listener.accept(taskId, version);
+      }
+    }
+  }
+}
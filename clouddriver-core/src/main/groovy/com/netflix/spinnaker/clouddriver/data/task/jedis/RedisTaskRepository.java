@@ -25,6 +25,7 @@ import com.netflix.spinnaker.clouddriver.data.task.DefaultTaskStatus;
 import com.netflix.spinnaker.clouddriver.data.task.SagaId;
 import com.netflix.spinnaker.clouddriver.data.task.Status;
 import com.netflix.spinnaker.clouddriver.data.task.Task;
+import com.netflix.spinnaker.clouddriver.data.task.TaskChangeFeed;
 import com.netflix.spinnaker.clouddriver.data.task.TaskDisplayStatus;
 import com.netflix.spinnaker.clouddriver.data.task.TaskRepository;
 import com.netflix.spinnaker.clouddriver.data.task.TaskState;
@@ -68,13 +69,22 @@ public class RedisTaskRepository implements TaskRepository {
 
   private final RedisClientDelegate redisClientDelegate;
   private final Optional<RedisClientDelegate> redisClientDelegatePrevious;
+  private final TaskChangeFeed changeFeed;
   private final ObjectMapper mapper = new ObjectMapper();
 
   public RedisTaskRepository(
       RedisClientDelegate redisClientDelegate,
       Optional<RedisClientDelegate> redisClientDelegatePrevious) {
+    this(redisClientDelegate, redisClientDelegatePrevious, TaskChangeFeed.NONE);
+  }
+
+  public RedisTaskRepository(
+      RedisClientDelegate redisClientDelegate,
+      Optional<RedisClientDelegate> redisClientDelegatePrevious,
+      TaskChangeFeed changeFeed) {
     this.redisClientDelegate = redisClientDelegate;
     this.redisClientDelegatePrevious = redisClientDelegatePrevious;
+    this.changeFeed = changeFeed;
   }
 
   @Override
@@ -239,6 +249,7 @@ public class RedisTaskRepository implements TaskRepository {
                   client.sadd(RUNNING_TASK_KEY, id);
                 }),
         format("Writing task %s", id));
+    changeFeed.publish(task.getId());
   }
 
   public void addToHistory(DefaultTaskStatus status, JedisTask task) {
@@ -267,6 +278,7 @@ public class RedisTaskRepository implements TaskRepository {
                   }
                 }),
         format("Adding status history to task %s: %s", task.getId(), status));
+    changeFeed.publish(task.getId());
   }
 
   public List<Status> getHistory(JedisTask task) {
@@ -345,6 +357,7 @@ public class RedisTaskRepository implements TaskRepository {
                   client.expire(resultId, TASK_TTL);
                 }),
         format("Adding results to task %s", task.getId()));
+    changeFeed.publish(task.getId());
   }
 
   public List<Object> getResultObjects(JedisTask task) {
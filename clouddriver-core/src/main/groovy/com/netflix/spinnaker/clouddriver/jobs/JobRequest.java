@@ -19,6 +19,7 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 import lombok.Getter;
 import org.apache.commons.exec.CommandLine;
 
@@ -29,6 +30,12 @@ public class JobRequest {
   private final Map<String, String> environment;
   private final InputStream inputStream;
 
+  /**
+   * Jobs that share a concurrency key, typically the account they run against, are subject to a
+   * shared concurrency limit.
+   */
+  @Nullable private final String concurrencyKey;
+
   public JobRequest(List<String> tokenizedCommand) {
     this(tokenizedCommand, System.getenv(), new ByteArrayInputStream(new byte[0]));
   }
@@ -39,10 +46,19 @@ public class JobRequest {
 
   public JobRequest(
       List<String> tokenizedCommand, Map<String, String> environment, InputStream inputStream) {
+    this(tokenizedCommand, environment, inputStream, null);
+  }
+
+  public JobRequest(
+      List<String> tokenizedCommand,
+      Map<String, String> environment,
+      InputStream inputStream,
+      @Nullable String concurrencyKey) {
     this.tokenizedCommand = tokenizedCommand;
     this.commandLine = createCommandLine(tokenizedCommand);
     this.environment = environment;
     this.inputStream = inputStream;
+    this.concurrencyKey = concurrencyKey;
   }
 
   private CommandLine createCommandLine(List<String> tokenizedCommand) {
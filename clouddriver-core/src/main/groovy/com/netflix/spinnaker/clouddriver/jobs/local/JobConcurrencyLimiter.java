@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.jobs.local;
+
+import com.netflix.spectator.api.Id;
+import com.netflix.spectator.api.Registry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Bounds the number of jobs that run at the same time for each concurrency key, queueing the rest
+ * in arrival order. Jobs without a key are not limited.
+ */
+class JobConcurrencyLimiter {
+  private final Registry registry;
+  private final int maxConcurrentJobsPerKey;
+  private final ConcurrentMap<String, Slots> slots = new ConcurrentHashMap<>();
+
+  private final Id queuedId;
+  private final Id runningId;
+  private final Id queueTimeId;
+
+  JobConcurrencyLimiter(Registry registry, int maxConcurrentJobsPerKey) {
+    this.registry = registry;
+    this.maxConcurrentJobsPerKey = maxConcurrentJobsPerKey;
+    this.queuedId = registry.createId("jobs.local.queued");
+    this.runningId = registry.createId("jobs.local.running");
+    this.queueTimeId = registry.createId("jobs.local.queueTime");
+  }
+
+  /**
+   * Blocks until a job with {@code key} may run; each call must be paired with a call to {@link
+   * #release}.
+   */
+  void acquire(@Nullable String key) throws InterruptedException {
+    if (key == null || maxConcurrentJobsPerKey <= 0) {
+      return;
+    }
+
+    Slots keySlots = slots.computeIfAbsent(key, this::createSlots);
+    long start = registry.clock().monotonicTime();
+    keySlots.queued.incrementAndGet();
+    try {
+      keySlots.semaphore.acquire();
+    } finally {
+      keySlots.queued.decrementAndGet();
+    }
+    keySlots.running.incrementAndGet();
+    registry
+        .timer(queueTimeId.withTag("key", key))
+        .record(registry.clock().monotonicTime() - start, TimeUnit.NANOSECONDS);
+  }
+
+  void release(@Nullable String key) {
+    if (key == null || maxConcurrentJobsPerKey <= 0) {
+      return;
+    }
+
+    Slots keySlots = slots.get(key);
+    keySlots.running.decrementAndGet();
+    keySlots.semaphore.release();
+  }
+
+  private Slots createSlots(String key) {
+    Slots keySlots = new Slots(maxConcurrentJobsPerKey);
+    registry.gauge(queuedId.withTag("key", key), keySlots.queued);
+    registry.gauge(runningId.withTag("key", key), keySlots.running);
+    return keySlots;
+  }
+
+  private static class Slots {
+    private final Semaphore semaphore;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+
+    Slots(int permits) {
+      this.semaphore = new Semaphore(permits, true);
+    }
+  }
+}
@@ -15,21 +15,39 @@
  */
 package com.netflix.spinnaker.clouddriver.jobs.local;
 
+import com.netflix.spectator.api.NoopRegistry;
+import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.clouddriver.jobs.JobExecutionException;
 import com.netflix.spinnaker.clouddriver.jobs.JobExecutor;
 import com.netflix.spinnaker.clouddriver.jobs.JobRequest;
 import com.netflix.spinnaker.clouddriver.jobs.JobResult;
 import java.io.*;
+import java.time.Duration;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.exec.*;
 
 @Slf4j
 public class JobExecutorLocal implements JobExecutor {
-  private final long timeoutMinutes;
+  private final long timeoutMillis;
+  private final JobConcurrencyLimiter concurrencyLimiter;
 
   public JobExecutorLocal(long timeoutMinutes) {
-    this.timeoutMinutes = timeoutMinutes;
+    this(timeoutMinutes, 0, new NoopRegistry());
+  }
+
+  /**
+   * @param maxConcurrentJobsPerKey how many jobs with the same {@link
+   *     JobRequest#getConcurrencyKey()} may run at once; 0 for no limit
+   */
+  public JobExecutorLocal(long timeoutMinutes, int maxConcurrentJobsPerKey, Registry registry) {
+    this(Duration.ofMinutes(timeoutMinutes), maxConcurrentJobsPerKey, registry);
+  }
+
+  JobExecutorLocal(Duration timeout, int maxConcurrentJobsPerKey, Registry registry) {
+    this.timeoutMillis = timeout.toMillis();
+    this.concurrencyLimiter = new JobConcurrencyLimiter(registry, maxConcurrentJobsPerKey);
   }
 
   @Override
@@ -47,16 +65,30 @@ public class JobExecutorLocal implements JobExecutor {
     log.debug(String.format("Starting job: '%s'...", jobRequest.toString()));
     final String jobId = UUID.randomUUID().toString();
 
+    try {
+      concurrencyLimiter.acquire(jobRequest.getConcurrencyKey());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new JobExecutionException(
+          String.format("Interrupted while waiting to execute job: %s", jobRequest.toString()), e);
+    }
+
     JobResult<T> jobResult;
     try {
       jobResult = requestExecutor.execute(jobRequest);
     } catch (IOException e) {
       throw new JobExecutionException(
           String.format("Error executing job: %s", jobRequest.toString()), e);
+    } finally {
+      concurrencyLimiter.release(jobRequest.getConcurrencyKey());
     }
 
     if (jobResult.isKilled()) {
-      log.warn(String.format("Job %s timed out (after %d minutes)", jobId, timeoutMinutes));
+      log.warn(
+          String.format(
+              "Job %s timed out (after %d minutes)",
+              jobId,
+              TimeUnit.MILLISECONDS.toMinutes(timeoutMillis)));
     }
 
     return jobResult;
@@ -80,21 +112,35 @@ public class JobExecutorLocal implements JobExecutor {
 
   private <T> JobResult<T> executeStreaming(JobRequest jobRequest, ReaderConsumer<T> consumer)
       throws IOException {
-    PipedOutputStream stdOut = new PipedOutputStream();
     ByteArrayOutputStream stdErr = new ByteArrayOutputStream();
-
-    Executor executor =
-        buildExecutor(new PumpStreamHandler(stdOut, stdErr, jobRequest.getInputStream()));
-    DefaultExecuteResultHandler resultHandler = new DefaultExecuteResultHandler();
+    StreamingStdoutHandler streamHandler =
+        new StreamingStdoutHandler(stdErr, jobRequest.getInputStream());
+
+    Executor executor = buildExecutor(streamHandler);
+    DefaultExecuteResultHandler resultHandler =
+        new DefaultExecuteResultHandler() {
+          @Override
+          public void onProcessFailed(ExecuteException e) {
+            streamHandler.failed(e);
+            super.onProcessFailed(e);
+          }
+        };
     executor.execute(jobRequest.getCommandLine(), jobRequest.getEnvironment(), resultHandler);
 
     T result;
-    try {
-      result =
-          consumer.consume(new BufferedReader(new InputStreamReader(new PipedInputStream(stdOut))));
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(streamHandler.awaitStdOut()))) {
+      result = consumer.consume(reader);
     } catch (IOException e) {
       throw new JobExecutionException(
           String.format("Error parsing output of job: %s", jobRequest.toString()), e);
+    } catch (InterruptedException e) {
+      executor.getWatchdog().destroyProcess();
+      Thread.currentThread().interrupt();
+      throw new JobExecutionException(
+          String.format("Interrupted while executing job: %s", jobRequest.toString()), e);
+    } finally {
+      streamHandler.consumed();
     }
 
     try {
@@ -118,7 +164,7 @@ public class JobExecutorLocal implements JobExecutor {
   private Executor buildExecutor(ExecuteStreamHandler streamHandler) {
     Executor executor = new DefaultExecutor();
     executor.setStreamHandler(streamHandler);
-    executor.setWatchdog(new ExecuteWatchdog(timeoutMinutes * 60 * 1000));
+    executor.setWatchdog(new ExecuteWatchdog(timeoutMillis));
     // Setting this to null causes the executor to skip verifying exit codes; we'll handle checking
     // the exit status instead of having the executor throw an exception for non-zero exit codes.
     executor.setExitValues(null);
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.jobs.local;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import org.apache.commons.exec.ExecuteStreamHandler;
+import org.apache.commons.exec.StreamPumper;
+
+/**
+ * Hands a process's standard output directly to the thread that consumes it, rather than pumping
+ * it through a pipe on another thread. Standard error and input are pumped as usual.
+ *
+ * <p>The executor closes the process streams once {@link #stop} returns, so {@link #stop} waits
+ * until the consumer has called {@link #consumed}.
+ */
+class StreamingStdoutHandler implements ExecuteStreamHandler {
+  private final OutputStream stdErr;
+  private final InputStream stdIn;
+
+  private final CompletableFuture<InputStream> stdOut = new CompletableFuture<>();
+  private final CountDownLatch consumed = new CountDownLatch(1);
+
+  private InputStream processStdOut;
+  private Thread stdErrPumper;
+  private Thread stdInPumper;
+
+  StreamingStdoutHandler(OutputStream stdErr, InputStream stdIn) {
+    this.stdErr = stdErr;
+    this.stdIn = stdIn;
+  }
+
+  @Override
+  public void setProcessInputStream(OutputStream os) {
+    if (stdIn != null) {
+      stdInPumper = pumper(new StreamPumper(stdIn, os, true));
+    } else {
+      closeQuietly(os);
+    }
+  }
+
+  @Override
+  public void setProcessErrorStream(InputStream is) {
+    stdErrPumper = pumper(new StreamPumper(is, stdErr));
+  }
+
+  @Override
+  public void setProcessOutputStream(InputStream is) {
+    processStdOut = is;
+  }
+
+  @Override
+  public void start() {
+    if (stdInPumper != null) {
+      stdInPumper.start();
+    }
+    stdErrPumper.start();
+    stdOut.complete(new DrainingInputStream(processStdOut));
+  }
+
+  @Override
+  public void stop() throws IOException {
+    try {
+      consumed.await();
+      if (stdInPumper != null) {
+        stdInPumper.join();
+      }
+      stdErrPumper.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    stdErr.flush();
+  }
+
+  /** Called if the process could not be started, releasing a consumer waiting on its output. */
+  void failed(Exception e) {
+    stdOut.completeExceptionally(e);
+  }
+
+  /**
+   * Blocks until the process has started.
+   *
+   * @return the process's standard output, which is drained of any unread output when closed
+   */
+  InputStream awaitStdOut() throws IOException, InterruptedException {
+    try {
+      return stdOut.get();
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to start process", e.getCause());
+    }
+  }
+
+  /** Called once the consumer is done with standard output, whether or not it read all of it. */
+  void consumed() {
+    consumed.countDown();
+  }
+
+  private static Thread pumper(Runnable pump) {
+    Thread thread = new Thread(pump, "Exec Stream Pumper");
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  private static void closeQuietly(OutputStream os) {
+    try {
+      os.close();
+    } catch (IOException e) {
+      // the process will see its input closed either way
+    }
+  }
+
+  /**
+   * Reads any output the consumer left behind before closing, so that the process is never blocked
+   * writing to a full pipe that nobody reads.
+   */
+  private static class DrainingInputStream extends FilterInputStream {
+    private final byte[] discard = new byte[8192];
+    private boolean closed;
+
+    DrainingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        while (in.read(discard) != -1) {}
+      } finally {
+        super.close();
+      }
+    }
+  }
+}
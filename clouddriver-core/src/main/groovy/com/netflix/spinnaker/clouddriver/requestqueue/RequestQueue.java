@@ -18,6 +18,7 @@ package com.netflix.spinnaker.clouddriver.requestqueue;
 
 import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.clouddriver.requestqueue.pooled.PooledRequestQueue;
+import com.netflix.spinnaker.clouddriver.requestqueue.pooled.WeightedFairRequestQueue;
 import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
@@ -36,6 +37,10 @@ public interface RequestQueue {
       return noop();
     }
 
+    if (config.getScheduling() == RequestQueueConfiguration.Scheduling.WEIGHTED_FAIR) {
+      return new WeightedFairRequestQueue(dynamicConfigService, registry, config);
+    }
+
     return pooled(
         dynamicConfigService,
         registry,
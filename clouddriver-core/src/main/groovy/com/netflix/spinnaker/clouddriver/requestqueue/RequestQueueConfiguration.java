@@ -16,6 +16,8 @@
 
 package com.netflix.spinnaker.clouddriver.requestqueue;
 
+import java.util.HashMap;
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @ConfigurationProperties("request-queue")
@@ -24,6 +26,24 @@ public class RequestQueueConfiguration {
   private long startWorkTimeoutMillis = RequestQueue.DEFAULT_START_WORK_TIMEOUT_MILLIS;
   private long timeoutMillis = RequestQueue.DEFAULT_TIMEOUT_MILLIS;
   private int poolSize = 10;
+  private Scheduling scheduling = Scheduling.ROUND_ROBIN;
+
+  // only used by Scheduling.WEIGHTED_FAIR
+  private int maxQueueSizePerPartition = 100;
+  private Map<String, Integer> partitionWeights = new HashMap<>();
+  private int minPoolSize = 2;
+  private int maxPoolSize = 50;
+
+  /** How many times slower than usual requests may get before fewer of them are run at once. */
+  private double latencyTolerance = 2.0;
+
+  public enum Scheduling {
+    /** One request from each partition in turn, see PooledRequestQueue. */
+    ROUND_ROBIN,
+
+    /** Partitions share workers by weight, see WeightedFairRequestQueue. */
+    WEIGHTED_FAIR
+  }
 
   public boolean isEnabled() {
     return enabled;
@@ -56,4 +76,52 @@ public class RequestQueueConfiguration {
   public void setPoolSize(int poolSize) {
     this.poolSize = poolSize;
   }
+
+  public Scheduling getScheduling() {
+    return scheduling;
+  }
+
+  public void setScheduling(Scheduling scheduling) {
+    this.scheduling = scheduling;
+  }
+
+  public int getMaxQueueSizePerPartition() {
+    return maxQueueSizePerPartition;
+  }
+
+  public void setMaxQueueSizePerPartition(int maxQueueSizePerPartition) {
+    this.maxQueueSizePerPartition = maxQueueSizePerPartition;
+  }
+
+  public Map<String, Integer> getPartitionWeights() {
+    return partitionWeights;
+  }
+
+  public void setPartitionWeights(Map<String, Integer> partitionWeights) {
+    this.partitionWeights = partitionWeights;
+  }
+
+  public int getMinPoolSize() {
+    return minPoolSize;
+  }
+
+  public void setMinPoolSize(int minPoolSize) {
+    this.minPoolSize = minPoolSize;
+  }
+
+  public int getMaxPoolSize() {
+    return maxPoolSize;
+  }
+
+  public void setMaxPoolSize(int maxPoolSize) {
+    this.maxPoolSize = maxPoolSize;
+  }
+
+  public double getLatencyTolerance() {
+    return latencyTolerance;
+  }
+
+  public void setLatencyTolerance(double latencyTolerance) {
+    this.latencyTolerance = latencyTolerance;
+  }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.requestqueue.pooled;
+
+/**
+ * Adjusts how many requests may run at once based on how long they take.
+ *
+ * <p>Latencies are averaged over windows of {@code windowSize} requests and compared with a
+ * slowly moving long-term average. If a window is slower than {@code tolerance} times the long-term
+ * average, whatever the requests contend on is saturated, so the limit shrinks in proportion. If
+ * not, and requests were left waiting, the limit grows by one.
+ */
+class AdaptiveConcurrencyLimit {
+  private static final double BASELINE_SMOOTHING = 0.1;
+  private static final double MAX_DECREASE = 0.5;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final double tolerance;
+  private final int windowSize;
+
+  private volatile int limit;
+
+  private double baselineNanos;
+  private long windowTotalNanos;
+  private int windowCount;
+  private boolean windowSaturated;
+
+  AdaptiveConcurrencyLimit(
+      int initialLimit, int minLimit, int maxLimit, double tolerance, int windowSize) {
+    if (minLimit < 1 || maxLimit < minLimit) {
+      throw new IllegalArgumentException("minLimit/maxLimit");
+    }
+    if (tolerance < 1) {
+      throw new IllegalArgumentException("tolerance");
+    }
+    if (windowSize < 1) {
+      throw new IllegalArgumentException("windowSize");
+    }
+
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.tolerance = tolerance;
+    this.windowSize = windowSize;
+    this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+  }
+
+  int get() {
+    return limit;
+  }
+
+  /**
+   * @param latencyNanos how long a request took to run
+   * @param saturated whether other requests were waiting for a slot when it completed
+   */
+  synchronized void onSample(long latencyNanos, boolean saturated) {
+    windowTotalNanos += latencyNanos;
+    windowSaturated |= saturated;
+    if (++windowCount < windowSize) {
+      return;
+    }
+
+    double recentNanos = windowTotalNanos / (double) windowCount;
+    boolean wasSaturated = windowSaturated;
+    windowTotalNanos = 0;
+    windowCount = 0;
+    windowSaturated = false;
+
+    if (baselineNanos == 0) {
+      baselineNanos = recentNanos;
+      return;
+    }
+
+    double gradient = baselineNanos * tolerance / recentNanos;
+    if (gradient < 1) {
+      limit = Math.max(minLimit, (int) (limit * Math.max(MAX_DECREASE, gradient)));
+    } else if (wasSaturated) {
+      limit = Math.min(maxLimit, limit + 1);
+    }
+    baselineNanos += BASELINE_SMOOTHING * (recentNanos - baselineNanos);
+  }
+}
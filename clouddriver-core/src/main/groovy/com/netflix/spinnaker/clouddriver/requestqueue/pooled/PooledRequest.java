@@ -45,15 +45,22 @@ class PooledRequest<T> implements Runnable {
 
   @Override
   public void run() {
+    execute();
+  }
+
+  /** @return false if the caller had already given up on this request, so it was not started */
+  boolean execute() {
     timer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
     // request may have expired with a timeout prior to this point, lets not
     // issue the work if that is the case as the caller has already moved on
-    if (result.shouldStart()) {
-      try {
-        result.complete(work.call());
-      } catch (Throwable t) {
-        result.completeWithException(t);
-      }
+    if (!result.shouldStart()) {
+      return false;
+    }
+    try {
+      result.complete(work.call());
+    } catch (Throwable t) {
+      result.completeWithException(t);
     }
+    return true;
   }
 }
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.requestqueue.pooled;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.spectator.api.Counter;
+import com.netflix.spectator.api.Id;
+import com.netflix.spectator.api.Registry;
+import com.netflix.spectator.api.histogram.PercentileTimer;
+import com.netflix.spinnaker.clouddriver.requestqueue.RequestQueue;
+import com.netflix.spinnaker.clouddriver.requestqueue.RequestQueueConfiguration;
+import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.PreDestroy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * A RequestQueue that shares its workers between partitions by weight, using deficit round robin.
+ *
+ * <p>Unlike {@link PooledRequestQueue}, requests stay in their partition's queue until a worker is
+ * free, so a busy partition cannot crowd out the others by filling the executor's queue. Each
+ * partition's queue is bounded, and a request is rejected up front if, going by the partition's
+ * recent latency and share of the workers, it would not start before its start work timeout.
+ *
+ * <p>The number of requests that run at once adapts to their latency, see {@link
+ * AdaptiveConcurrencyLimit}.
+ */
+public class WeightedFairRequestQueue implements RequestQueue {
+  private static final int LATENCY_WINDOW_SIZE = 20;
+  private static final double LATENCY_SMOOTHING = 0.2;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition dispatchable = lock.newCondition();
+
+  // guarded by lock
+  private final Deque<Partition> activePartitions = new ArrayDeque<>();
+  private int activeWeight;
+  private int inFlight;
+
+  private final ConcurrentMap<String, Partition> partitions = new ConcurrentHashMap<>();
+
+  private final long defaultStartWorkTimeout;
+  private final long defaultTimeout;
+  private final int maxQueueSizePerPartition;
+  private final Map<String, Integer> partitionWeights;
+  private final AdaptiveConcurrencyLimit concurrencyLimit;
+  private final ThreadPoolExecutor executorService;
+
+  private final DynamicConfigService dynamicConfigService;
+  private final Registry registry;
+  private final Counter submissionCounter;
+
+  private final AtomicBoolean isEnabled = new AtomicBoolean(true);
+  private volatile boolean running = true;
+
+  public WeightedFairRequestQueue(
+      DynamicConfigService dynamicConfigService,
+      Registry registry,
+      RequestQueueConfiguration config) {
+    if (config.getStartWorkTimeoutMillis() <= 0) {
+      throw new IllegalArgumentException("startWorkTimeoutMillis");
+    }
+
+    if (config.getTimeoutMillis() <= 0) {
+      throw new IllegalArgumentException("timeoutMillis");
+    }
+
+    if (config.getMaxQueueSizePerPartition() < 1) {
+      throw new IllegalArgumentException("maxQueueSizePerPartition");
+    }
+
+    this.dynamicConfigService = dynamicConfigService;
+    this.registry = registry;
+
+    this.defaultStartWorkTimeout = config.getStartWorkTimeoutMillis();
+    this.defaultTimeout = config.getTimeoutMillis();
+    this.maxQueueSizePerPartition = config.getMaxQueueSizePerPartition();
+    this.partitionWeights = config.getPartitionWeights();
+    this.concurrencyLimit =
+        new AdaptiveConcurrencyLimit(
+            config.getPoolSize(),
+            config.getMinPoolSize(),
+            config.getMaxPoolSize(),
+            config.getLatencyTolerance(),
+            LATENCY_WINDOW_SIZE);
+    this.submissionCounter = registry.counter("pooledRequestQueue.submitted");
+
+    // one more thread than requests may run at once, for the dispatcher
+    final int actualThreads = config.getMaxPoolSize() + 1;
+    this.executorService =
+        new ThreadPoolExecutor(
+            actualThreads,
+            actualThreads,
+            0,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder()
+                .setNameFormat(WeightedFairRequestQueue.class.getSimpleName() + "-%d")
+                .build());
+    registry.gauge(
+        "pooledRequestQueue.corePoolSize", concurrencyLimit, AdaptiveConcurrencyLimit::get);
+    executorService.submit(this::dispatch);
+
+    registry.gauge("pooledRequestQueue.enabled", isEnabled, value -> value.get() ? 1.0 : 0.0);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    executorService.shutdownNow();
+    lock.lock();
+    try {
+      for (Partition partition : activePartitions) {
+        PooledRequest<?> req;
+        while ((req = partition.requests.pollFirst()) != null) {
+          req.cancel();
+        }
+      }
+      activePartitions.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public long getDefaultTimeoutMillis() {
+    return defaultTimeout;
+  }
+
+  @Override
+  public long getDefaultStartWorkTimeoutMillis() {
+    return defaultStartWorkTimeout;
+  }
+
+  @Override
+  public <T> T execute(
+      String partition, Callable<T> operation, long startWorkTimeout, long timeout, TimeUnit unit)
+      throws Throwable {
+    if (!isEnabled.get()) {
+      return operation.call();
+    }
+
+    final long startTime = System.nanoTime();
+    final Partition queue = partitions.computeIfAbsent(partition, this::createPartition);
+    final PooledRequest<T> request = new PooledRequest<>(registry, partition, operation);
+
+    Id id = registry.createId("pooledRequestQueue.totalTime", "partition", partition);
+    try {
+      enqueue(queue, request, startWorkTimeout, unit);
+      T result = request.getPromise().blockingGetOrThrow(startWorkTimeout, timeout, unit);
+      id = id.withTag("success", "true");
+      return result;
+    } catch (Throwable t) {
+      id = id.withTags("success", "false", "cause", t.getClass().getSimpleName());
+      throw t;
+    } finally {
+      registry.timer(id).record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${request-queue.core-pool-size-refresh-ms:120000}")
+  public void refreshEnabled() {
+    isEnabled.set(dynamicConfigService.isEnabled("request-queue", true));
+  }
+
+  private Partition createPartition(String name) {
+    Partition partition = new Partition(name, Math.max(1, partitionWeights.getOrDefault(name, 1)));
+    registry.gauge(
+        registry.createId("pooledRequestQueue.partition.size", "partition", name),
+        partition,
+        Partition::size);
+    return partition;
+  }
+
+  private void enqueue(
+      Partition partition, PooledRequest<?> request, long startWorkTimeout, TimeUnit unit) {
+    lock.lock();
+    try {
+      if (partition.requests.size() >= maxQueueSizePerPartition) {
+        throw reject(partition, "queueFull");
+      }
+      if (estimatedWaitNanos(partition) > unit.toNanos(startWorkTimeout)) {
+        throw reject(partition, "estimatedWait");
+      }
+
+      partition.requests.addLast(request);
+      if (!partition.active) {
+        partition.active = true;
+        partition.deficit = partition.weight;
+        activeWeight += partition.weight;
+        activePartitions.addLast(partition);
+      }
+      dispatchable.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private PromiseRejectedException reject(Partition partition, String reason) {
+    registry
+        .counter(
+            registry.createId(
+                "pooledRequestQueue.rejected", "partition", partition.name, "reason", reason))
+        .increment();
+    return new PromiseRejectedException();
+  }
+
+  /**
+   * Estimates how long a request added to {@code partition} now would wait before it starts: the
+   * requests ahead of it divided by the rate at which the partition's share of the workers gets
+   * through them. Requires the lock to be held.
+   */
+  private long estimatedWaitNanos(Partition partition) {
+    if (partition.latencyNanos == 0 || inFlight < concurrencyLimit.get()) {
+      return 0;
+    }
+
+    int weight = partition.active ? activeWeight : activeWeight + partition.weight;
+    double workers = concurrencyLimit.get() * (partition.weight / (double) weight);
+    return (long) ((partition.requests.size() + 1) * partition.latencyNanos / workers);
+  }
+
+  private void dispatch() {
+    lock.lock();
+    try {
+      while (running) {
+        Partition partition = activePartitions.peekFirst();
+        if (partition == null || inFlight >= concurrencyLimit.get()) {
+          dispatchable.await();
+          continue;
+        }
+
+        PooledRequest<?> request = partition.requests.pollFirst();
+        if (partition.requests.isEmpty()) {
+          partition.active = false;
+          activeWeight -= partition.weight;
+          activePartitions.pollFirst();
+        } else if (--partition.deficit == 0) {
+          // this partition has used up its turn, move it to the back of the line
+          partition.deficit = partition.weight;
+          activePartitions.addLast(activePartitions.pollFirst());
+        }
+
+        inFlight++;
+        try {
+          executorService.execute(() -> run(partition, request));
+          submissionCounter.increment();
+        } catch (RejectedExecutionException e) {
+          inFlight--;
+          request.cancel();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void run(Partition partition, PooledRequest<?> request) {
+    final long startTime = System.nanoTime();
+    final boolean started = request.execute();
+    final long latencyNanos = System.nanoTime() - startTime;
+    if (started) {
+      partition.latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    lock.lock();
+    try {
+      inFlight--;
+      if (started) {
+        partition.latencyNanos =
+            partition.latencyNanos == 0
+                ? latencyNanos
+                : partition.latencyNanos
+                    + LATENCY_SMOOTHING * (latencyNanos - partition.latencyNanos);
+        concurrencyLimit.onSample(latencyNanos, !activePartitions.isEmpty());
+      }
+      dispatchable.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private class Partition {
+    private final String name;
+    private final int weight;
+    private final PercentileTimer latency;
+
+    // guarded by lock
+    private final Deque<PooledRequest<?>> requests = new ArrayDeque<>();
+    private boolean active;
+    private int deficit;
+    private double latencyNanos;
+
+    Partition(String name, int weight) {
+      this.name = name;
+      this.weight = weight;
+      this.latency =
+          PercentileTimer.get(
+              registry,
+              registry.createId("pooledRequestQueue.partition.latency", "partition", name));
+    }
+
+    /** Read without the lock, for reporting only. */
+    double size() {
+      return requests.size();
+    }
+  }
+}
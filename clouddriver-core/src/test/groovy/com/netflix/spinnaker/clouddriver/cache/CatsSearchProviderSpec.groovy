@@ -33,11 +33,13 @@ class CatsSearchProviderSpec extends Specification {
 
   def providers = [
     Stub(SearchableProvider) {
+      getDefaultCaches() >> (["instances"] as Set)
       supportsSearch('instances', _) >> true
       getAgents() >> [ instanceAgent ]
       parseKey(_) >> { String k -> return null }
     },
     Stub(SearchableProvider) {
+      getDefaultCaches() >> (["instances"] as Set)
       supportsSearch('instances', _) >> true
       getAgents() >> [ instanceAgent ]
       parseKey(_) >> { String k -> return ["originalKey": k] }
@@ -70,9 +72,29 @@ class CatsSearchProviderSpec extends Specification {
     catsSearchProvider.run()
 
     then:
-    catsSearchProvider.cachedIdentifiersByType.get() == [
-      "instances": instanceIdentifiers.collect { it.toLowerCase() }
-    ]
+    catsSearchProvider.searchIndexes.keySet() == ["instances"] as Set
+    catsSearchProvider.searchIndexes["instances"].size() == instanceIdentifiers.size()
+    catsSearchProvider.searchIndexes["instances"].search("i-1234") == ["aws:instances:prod:us-west-2:I-1234"]
+  }
+
+  def "should stop serving identifiers once none are left"() {
+    given:
+    def identifiers = instanceIdentifiers
+    cache.getIdentifiers("instances") >> { return identifiers }
+
+    when:
+    catsSearchProvider.run()
+
+    then:
+    catsSearchProvider.searchIndexes["instances"].search("i-1234") == ["aws:instances:prod:us-west-2:I-1234"]
+
+    when:
+    identifiers = []
+    catsSearchProvider.run()
+
+    then:
+    catsSearchProvider.searchIndexes["instances"].size() == 0
+    catsSearchProvider.searchIndexes["instances"].search("i-1234").isEmpty()
   }
 
   def "should handle unparseable instance identifiers"() {
@@ -83,7 +105,7 @@ class CatsSearchProviderSpec extends Specification {
     catsSearchProvider.run()
 
     then:
-    catsSearchProvider.cachedIdentifiersByType.get() == [:]
+    catsSearchProvider.searchIndexes.isEmpty()
 
     when:
     providers.add(
@@ -93,6 +115,6 @@ class CatsSearchProviderSpec extends Specification {
     )
 
     then:
-    catsSearchProvider.cachedIdentifiersByType.get() == [:]
+    catsSearchProvider.searchIndexes.isEmpty()
   }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class TrigramIndexSpec extends Specification {
+  def index = new TrigramIndex()
+
+  def keys = [
+    "aws:clusters:myapp:prod:myapp-main",
+    "aws:clusters:myapp:test:myapp-canary",
+    "aws:clusters:otherapp:prod:otherapp-Main",
+  ] as Set
+
+  def setup() {
+    index.update(keys, { true })
+  }
+
+  @Unroll
+  def "should find keys containing '#query'"() {
+    expect:
+    index.search(query) as Set == expected as Set
+
+    where:
+    query         || expected
+    "myapp-main"  || ["aws:clusters:myapp:prod:myapp-main"]
+    "MAIN"        || ["aws:clusters:myapp:prod:myapp-main", "aws:clusters:otherapp:prod:otherapp-Main"]
+    "prod"        || ["aws:clusters:myapp:prod:myapp-main", "aws:clusters:otherapp:prod:otherapp-Main"]
+    "te"          || ["aws:clusters:myapp:test:myapp-canary"]
+    "canary-main" || []
+    "zzz"         || []
+  }
+
+  def "should only require trigrams to match as a whole"() {
+    given: "a key that contains every trigram of the query, but not the query itself"
+    index.update(["abcd-bcde"] as Set, { true })
+
+    expect:
+    index.search("abcde").isEmpty()
+  }
+
+  def "should apply additions and removals"() {
+    when:
+    def changes = index.update([
+      "aws:clusters:myapp:prod:myapp-main",
+      "aws:clusters:newapp:prod:newapp-main"
+    ] as Set, { true })
+
+    then:
+    changes == 3
+    index.size() == 2
+    index.search("main") as Set == [
+      "aws:clusters:myapp:prod:myapp-main",
+      "aws:clusters:newapp:prod:newapp-main"
+    ] as Set
+  }
+
+  def "should not index rejected keys"() {
+    when:
+    index.update(keys + ["aws:clusters:invalid"], { String key -> key != "aws:clusters:invalid" })
+
+    then:
+    index.size() == 3
+    index.search("invalid").isEmpty()
+  }
+
+  def "should rebuild once most keys have been removed"() {
+    given:
+    def many = (0..<5000).collect { "aws:instances:i-${it}".toString() } as Set
+    index.update(many, { true })
+
+    when:
+    index.update(["aws:instances:i-42"] as Set, { true })
+
+    then:
+    index.size() == 1
+    index.search("i-4") == ["aws:instances:i-42"]
+  }
+}
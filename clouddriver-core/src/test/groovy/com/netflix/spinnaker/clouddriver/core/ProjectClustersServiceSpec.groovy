@@ -444,6 +444,82 @@ class ProjectClustersServiceSpec extends Specification {
       ])
   }
 
+  void "retrieves the clusters of applications shared by several projects only once"() {
+    given:
+    projectConfig.config.clusters = [
+      [account: "prod", stack: "main"]
+    ]
+    def otherProjectConfig = [
+      name  : "Other",
+      config: [
+        applications: ["orca"],
+        clusters    : [[account: "prod", stack: "main"]]
+      ]
+    ]
+
+    when:
+    def result = subject.retrieveProjectClusters(["Spinnaker", "Other"])
+
+    then:
+    result.clusters.keySet() == ["Spinnaker", "Other"] as Set
+    result.incompleteProjects.isEmpty()
+    result.clusters["Spinnaker"][0].applications[0].clusters[0].region == "us-east-1"
+    result.clusters["Other"][0].applications[0].clusters[0].region == "us-east-1"
+
+    1 * front50Service.getProject("Spinnaker") >> { projectConfig }
+    1 * front50Service.getProject("Other") >> { otherProjectConfig }
+    1 * clusterProvider.getClusterSummaries("orca") >> [
+      prod: [new TestCluster(
+        name: "orca-main",
+        accountName: "prod",
+        serverGroups: []
+      )] as Set
+    ]
+    1 * clusterProvider.getCluster("orca", "prod", "orca-main") >> new TestCluster(
+      name: "orca-main",
+      accountName: "prod",
+      serverGroups: [
+        makeServerGroup("prod", "orca-main-v001", "us-east-1", 3, 2L, new ServerGroup.InstanceCounts(total: 1, up: 1))
+      ]
+    )
+    1 * clusterProvider.getClusterSummaries("deck") >> [:]
+    0 * clusterProvider._
+  }
+
+  void "returns the clusters that could be retrieved and reports the project as incomplete"() {
+    given:
+    projectConfig.config.clusters = [
+      [account: "prod", stack: "main"]
+    ]
+
+    when:
+    def result = subject.retrieveProjectClusters(allowList)
+
+    then:
+    result.incompleteProjects == ["Spinnaker"] as Set
+    result.clusters["Spinnaker"][0].applications.application == ["orca", "deck"]
+    result.clusters["Spinnaker"][0].applications[0].clusters[0].region == "us-east-1"
+    result.clusters["Spinnaker"][0].applications[1].clusters.isEmpty()
+
+    1 * front50Service.getProject(_) >> { projectConfig }
+    1 * clusterProvider.getClusterSummaries("orca") >> [
+      prod: [new TestCluster(
+        name: "orca-main",
+        accountName: "prod",
+        serverGroups: []
+      )] as Set
+    ]
+    1 * clusterProvider.getCluster("orca", "prod", "orca-main") >> new TestCluster(
+      name: "orca-main",
+      accountName: "prod",
+      serverGroups: [
+        makeServerGroup("prod", "orca-main-v001", "us-east-1", 3, 2L, new ServerGroup.InstanceCounts(total: 1, up: 1))
+      ]
+    )
+    1 * clusterProvider.getClusterSummaries("deck") >> { throw new RuntimeException("unavailable") }
+    0 * clusterProvider._
+  }
+
   private static List<ClusterModel> cachedClusters(Map<String, List<ClusterModel>> result, String projectName) {
     return result[projectName]
   }
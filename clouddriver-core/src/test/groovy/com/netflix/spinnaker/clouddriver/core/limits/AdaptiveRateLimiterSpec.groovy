@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.core.limits
+
+import com.google.common.util.concurrent.RateLimiter
+import com.netflix.spectator.api.DefaultRegistry
+import spock.lang.Specification
+
+import java.time.Clock
+
+class AdaptiveRateLimiterSpec extends Specification {
+
+  def now = 0L
+  def clock = Mock(Clock) {
+    millis() >> { now }
+  }
+  def properties = new AdaptiveRateLimitProperties(
+    enabled: true,
+    additiveIncrease: 1.0d,
+    increaseIntervalMillis: 1000,
+    decreaseFactor: 0.5d,
+    decreaseCooldownMillis: 1000,
+    minRate: 1.0d
+  )
+  def delegate = RequestRateLimiter.local(RateLimiter.create(10.0d))
+
+  def "halves the rate on throttling, at most once per cooldown"() {
+    given:
+    def limiter = new AdaptiveRateLimiter(delegate, 40.0d, properties, clock)
+
+    when:
+    limiter.recordThrottle()
+    limiter.recordThrottle()
+
+    then:
+    limiter.rate == 5.0d
+    delegate.rate == 5.0d
+
+    when:
+    now = 1000
+    limiter.recordThrottle()
+
+    then:
+    limiter.rate == 2.5d
+  }
+
+  def "never goes below the minimum rate"() {
+    given:
+    def limiter = new AdaptiveRateLimiter(delegate, 40.0d, properties, clock)
+
+    when:
+    10.times {
+      now += 1000
+      limiter.recordThrottle()
+    }
+
+    then:
+    limiter.rate == 1.0d
+  }
+
+  def "only increases the rate while callers are waiting"() {
+    given:
+    def waiting = Mock(RequestRateLimiter) {
+      getRate() >> 10.0d
+    }
+    def limiter = new AdaptiveRateLimiter(waiting, 11.0d, properties, clock)
+
+    when: 'nobody waited'
+    now = 1000
+    limiter.recordSuccess()
+
+    then:
+    limiter.rate == 10.0d
+    0 * waiting.setRate(_)
+
+    when: 'a caller waited'
+    limiter.acquire()
+    now = 2000
+    limiter.recordSuccess()
+
+    then:
+    1 * waiting.acquire() >> 0.1d
+    1 * waiting.setRate(11.0d)
+    limiter.rate == 11.0d
+
+    when: 'at the maximum'
+    limiter.acquire()
+    now = 3000
+    limiter.recordSuccess()
+
+    then:
+    1 * waiting.acquire() >> 0.1d
+    0 * waiting.setRate(_)
+    limiter.rate == 11.0d
+  }
+
+  def "does not increase the rate of a distributed limiter that grants permits right away"() {
+    given:
+    def store = Mock(TokenBucketStore)
+    def distributed = new DistributedRateLimiter(
+      "aws:AmazonEC2:test:us-east-1",
+      10.0d,
+      store,
+      new DistributedRateLimitProperties(enabled: true, prefetchMillis: 100, prefetchTtlMillis: 1000),
+      new DefaultRegistry(),
+      clock
+    )
+    def limiter = new AdaptiveRateLimiter(distributed, 20.0d, properties, clock)
+
+    when: 'every permit is granted by the store'
+    5.times { limiter.acquire() }
+    now = 1000
+    limiter.recordSuccess()
+
+    then:
+    5 * store.take(_, _, _, _) >> 1
+    limiter.rate == 10.0d
+    distributed.rate == 10.0d
+
+    when: 'a caller waits for the store to grant a permit'
+    limiter.acquire()
+    now = 2000
+    limiter.recordSuccess()
+
+    then:
+    2 * store.take(_, _, _, _) >>> [0, 1]
+    limiter.rate == 11.0d
+    distributed.rate == 11.0d
+  }
+}
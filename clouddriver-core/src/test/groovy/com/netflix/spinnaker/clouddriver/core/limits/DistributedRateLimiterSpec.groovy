@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.core.limits
+
+import com.netflix.spectator.api.DefaultRegistry
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.Clock
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class DistributedRateLimiterSpec extends Specification {
+
+  def store = Mock(TokenBucketStore)
+  def registry = new DefaultRegistry()
+  def clock = Mock(Clock)
+  def properties = new DistributedRateLimitProperties(
+    enabled: true,
+    prefetchMillis: 100,
+    prefetchTtlMillis: 1000,
+    expectedReplicas: 4,
+    storeRetryMillis: 10000
+  )
+
+  @Subject
+  def limiter = new DistributedRateLimiter("aws:AmazonEC2:test:us-east-1", 100, store, properties, registry, clock)
+
+  def "hands out prefetched permits without going back to the store"() {
+    given:
+    clock.millis() >> 0
+
+    when:
+    10.times { limiter.acquire() }
+
+    then:
+    1 * store.take("aws:AmazonEC2:test:us-east-1", 100, 100, 10) >> 10
+  }
+
+  def "discards prefetched permits once they expire"() {
+    given:
+    def now = 0L
+    clock.millis() >> { now }
+
+    when:
+    limiter.acquire()
+    now = 1000
+    limiter.acquire()
+
+    then:
+    2 * store.take(_, _, _, _) >> 10
+  }
+
+  def "waits until the store grants a permit"() {
+    given:
+    clock.millis() >> 0
+
+    when:
+    limiter.acquire()
+
+    then:
+    2 * store.take(_, _, _, _) >>> [0, 1]
+  }
+
+  def "waits for the bucket to refill a batch before asking the store again"() {
+    given:
+    clock.millis() >> 0
+
+    when:
+    def waited = limiter.acquire()
+
+    then: 'a batch of 10 permits takes 100ms to refill at 100 permits per second'
+    2 * store.take(_, _, _, _) >>> [0, 1]
+    waited >= 0.1
+  }
+
+  def "falls back to throttling locally while the store is unavailable"() {
+    given:
+    def now = 0L
+    clock.millis() >> { now }
+
+    when:
+    limiter.acquire()
+    limiter.acquire()
+
+    then:
+    1 * store.take(_, _, _, _) >> { throw new RuntimeException("connection refused") }
+    registry.counter("rateLimiter.distributed.storeFailures").count() == 1
+
+    when:
+    now = 10000
+    limiter.acquire()
+
+    then:
+    1 * store.take(_, _, _, _) >> 10
+  }
+
+  def "asks the store outside of the lock, while other threads wait for its permits"() {
+    given:
+    clock.millis() >> 0
+    def takes = new AtomicInteger()
+    def taking = new CountDownLatch(1)
+    def release = new CountDownLatch(1)
+    def slowStore = { String bucket, double permitsPerSecond, long capacity, long permits ->
+      takes.incrementAndGet()
+      taking.countDown()
+      release.await(5, TimeUnit.SECONDS)
+      return 10L
+    } as TokenBucketStore
+    def concurrentLimiter = new DistributedRateLimiter("test", 100, slowStore, properties, registry, clock)
+
+    when:
+    def first = Thread.start { concurrentLimiter.acquire() }
+    taking.await(5, TimeUnit.SECONDS)
+    def second = Thread.start { concurrentLimiter.acquire() }
+
+    then: 'the limiter can still be used while the store is being asked'
+    CompletableFuture.supplyAsync { concurrentLimiter.getRate() }.get(1, TimeUnit.SECONDS) == 100
+
+    when:
+    release.countDown()
+    first.join(5000)
+    second.join(5000)
+
+    then: 'the second thread used a permit from the batch taken by the first'
+    !first.alive
+    !second.alive
+    takes.get() == 1
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.core.limits
+
+import com.netflix.spinnaker.kork.jedis.EmbeddedRedis
+import com.netflix.spinnaker.kork.jedis.JedisClientDelegate
+import redis.clients.jedis.Jedis
+import redis.clients.jedis.JedisPool
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.Clock
+
+class RedisTokenBucketStoreSpec extends Specification {
+
+  @Shared
+  @AutoCleanup("destroy")
+  EmbeddedRedis embeddedRedis = EmbeddedRedis.embed()
+
+  def now = 1000L
+  def clock = Mock(Clock) {
+    millis() >> { now }
+  }
+
+  @Subject
+  def store = new RedisTokenBucketStore(new JedisClientDelegate(embeddedRedis.pool as JedisPool), clock)
+
+  def setup() {
+    embeddedRedis.pool.resource.withCloseable { Jedis jedis -> jedis.flushDB() }
+  }
+
+  def "a new bucket starts out full"() {
+    expect:
+    store.take("bucket", 10, 20, 5) == 5
+    store.take("bucket", 10, 20, 100) == 15
+    store.take("bucket", 10, 20, 1) == 0
+  }
+
+  def "refills at the rate, up to the capacity"() {
+    given:
+    store.take("bucket", 10, 20, 20)
+
+    when:
+    now += 500
+
+    then:
+    store.take("bucket", 10, 20, 10) == 5
+
+    when:
+    now += 10000
+
+    then:
+    store.take("bucket", 10, 20, 100) == 20
+  }
+
+  def "keeps fractions of a permit for the next take"() {
+    given:
+    store.take("bucket", 10, 20, 20)
+
+    when:
+    now += 50
+
+    then:
+    store.take("bucket", 10, 20, 1) == 0
+
+    when:
+    now += 50
+
+    then:
+    store.take("bucket", 10, 20, 1) == 1
+  }
+
+  def "never refills for time that has already been accounted for"() {
+    given:
+    store.take("bucket", 10, 20, 20)
+
+    when: 'a node whose clock is behind takes from the bucket'
+    now -= 500
+
+    then:
+    store.take("bucket", 10, 20, 1) == 0
+
+    when:
+    now += 600
+
+    then: 'only the time since the latest refill counts'
+    store.take("bucket", 10, 20, 100) == 1
+  }
+
+  def "expires buckets once they would have refilled"() {
+    when:
+    store.take("bucket", 10, 20, 1)
+
+    then:
+    def ttl = embeddedRedis.pool.resource.withCloseable { Jedis jedis -> jedis.pttl("rateLimit:bucket") }
+    ttl > 2000
+    ttl <= 3000
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.data.task
+
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.ZoneOffset
+import java.util.function.BiConsumer
+
+class LocalTaskChangeFeedSpec extends Specification {
+
+  Clock clock = Clock.fixed(Instant.ofEpochMilli(1000), ZoneOffset.UTC)
+  TaskChangeFanout fanout = Mock()
+
+  @Subject
+  LocalTaskChangeFeed feed
+
+  BiConsumer<String, Long> remote
+
+  def setup() {
+    fanout.subscribe(_) >> { BiConsumer<String, Long> listener -> remote = listener }
+    feed = new LocalTaskChangeFeed(clock, fanout, Duration.ofMinutes(1))
+  }
+
+  def "unknown tasks are at version zero"() {
+    expect:
+    feed.getVersion("1") == 0
+  }
+
+  def "local changes advance the version and are broadcast"() {
+    when:
+    feed.publish("1")
+    feed.publish("1")
+
+    then:
+    feed.getVersion("1") == 1001
+    1 * fanout.broadcast("1", 1000)
+    1 * fanout.broadcast("1", 1001)
+  }
+
+  def "waiters complete once the version passes the one they have seen"() {
+    given:
+    def waiter = feed.awaitChange("1", 0)
+
+    expect:
+    !waiter.isDone()
+
+    when:
+    feed.publish("1")
+
+    then:
+    waiter.getNow(null) == 1000
+    feed.awaitChange("1", 999).getNow(null) == 1000
+    !feed.awaitChange("1", 1000).isDone()
+  }
+
+  def "versions from other instances only move tasks forward"() {
+    given:
+    def waiter = feed.awaitChange("1", 0)
+
+    when:
+    remote.accept("1", 5000L)
+    remote.accept("1", 2000L)
+
+    then:
+    waiter.getNow(null) == 5000
+    feed.getVersion("1") == 5000
+
+    when:
+    feed.publish("1")
+
+    then:
+    feed.getVersion("1") == 5001
+  }
+
+  def "a failed broadcast does not fail the local change"() {
+    given:
+    def waiter = feed.awaitChange("1", 0)
+
+    when:
+    feed.publish("1")
+
+    then:
+    1 * fanout.broadcast("1", 1000) >> { throw new RuntimeException("unavailable") }
+    waiter.getNow(null) == 1000
+  }
+}
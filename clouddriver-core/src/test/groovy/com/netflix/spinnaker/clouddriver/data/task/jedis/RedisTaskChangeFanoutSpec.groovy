@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.data.task.jedis
+
+import com.netflix.spinnaker.kork.jedis.EmbeddedRedis
+import com.netflix.spinnaker.kork.jedis.JedisClientDelegate
+import redis.clients.jedis.Jedis
+import redis.clients.jedis.JedisPool
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+class RedisTaskChangeFanoutSpec extends Specification {
+
+  @Shared
+  @AutoCleanup("destroy")
+  EmbeddedRedis embeddedRedis = EmbeddedRedis.embed()
+
+  @AutoCleanup
+  RedisTaskChangeFanout publisher = fanout()
+
+  @AutoCleanup
+  RedisTaskChangeFanout subscriber = fanout()
+
+  def received = new LinkedBlockingQueue<List>()
+
+  def setup() {
+    subscriber.subscribe { taskId, version -> received.add([taskId, version]) }
+    new PollingConditions(timeout: 5).eventually {
+      assert subscriptions() == 1
+    }
+  }
+
+  def "delivers versions broadcast by another instance"() {
+    when:
+    publisher.broadcast("1", 1000)
+    publisher.broadcast("2", 1001)
+
+    then:
+    received.poll(5, TimeUnit.SECONDS) == ["1", 1000L]
+    received.poll(5, TimeUnit.SECONDS) == ["2", 1001L]
+  }
+
+  def "keeps task ids that contain the separator"() {
+    when:
+    publisher.broadcast("a:b", 1000)
+
+    then:
+    received.poll(5, TimeUnit.SECONDS) == ["a:b", 1000L]
+  }
+
+  def "ignores malformed messages"() {
+    when:
+    publish("no-version")
+    publish("1:not-a-number")
+    publisher.broadcast("1", 1000)
+
+    then:
+    received.poll(5, TimeUnit.SECONDS) == ["1", 1000L]
+    received.isEmpty()
+  }
+
+  def "stops listening once closed"() {
+    when:
+    subscriber.close()
+
+    then:
+    new PollingConditions(timeout: 5).eventually {
+      assert subscriptions() == 0
+    }
+  }
+
+  private RedisTaskChangeFanout fanout() {
+    new RedisTaskChangeFanout(new JedisClientDelegate(embeddedRedis.pool as JedisPool))
+  }
+
+  private void publish(String message) {
+    embeddedRedis.pool.resource.withCloseable { Jedis jedis ->
+      jedis.publish(RedisTaskChangeFanout.CHANNEL, message)
+    }
+  }
+
+  private int subscriptions() {
+    embeddedRedis.pool.resource.withCloseable { Jedis jedis ->
+      jedis.pubsubNumSub(RedisTaskChangeFanout.CHANNEL)[RedisTaskChangeFanout.CHANNEL].toInteger()
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.requestqueue.pooled
+
+import com.netflix.spectator.api.NoopRegistry
+import com.netflix.spinnaker.clouddriver.requestqueue.RequestQueueConfiguration
+import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class WeightedFairRequestQueueSpec extends Specification {
+  def dynamicConfigService = Mock(DynamicConfigService)
+
+  def "should execute requests"() {
+    given:
+    def queue = new WeightedFairRequestQueue(dynamicConfigService, new NoopRegistry(), config(1))
+
+    when:
+    Long result = queue.execute("foo", { return 12345L })
+
+    then:
+    result == 12345L
+
+    cleanup:
+    queue.shutdown()
+  }
+
+  def "should reject requests once a partition's queue is full"() {
+    given: "a queue with one worker and room for one waiting request per partition"
+    def config = config(1)
+    config.maxQueueSizePerPartition = 1
+    def queue = new WeightedFairRequestQueue(dynamicConfigService, new NoopRegistry(), config)
+
+    and: "a request that blocks the worker"
+    def started = new CountDownLatch(1)
+    def release = new CountDownLatch(1)
+    Callable<Void> blocker = {
+      started.countDown()
+      release.await()
+      return null
+    }
+    Thread.start { queue.execute("foo", blocker) }
+    started.await()
+
+    and: "another that waits for it"
+    Thread.start { queue.execute("foo", { return null }) }
+    Thread.sleep(50)
+
+    when:
+    queue.execute("foo", { return null })
+
+    then:
+    thrown(PromiseRejectedException)
+
+    when: "another partition still has room"
+    def other = Thread.start { queue.execute("bar", { return null }) }
+    release.countDown()
+    other.join(1000)
+
+    then:
+    !other.isAlive()
+
+    cleanup:
+    release.countDown()
+    queue.shutdown()
+  }
+
+  def "should shrink the limit when latency rises and grow it while saturated"() {
+    given:
+    def limit = new AdaptiveConcurrencyLimit(10, 2, 20, 2.0, 1)
+
+    when: "a baseline is established"
+    limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), true)
+
+    then:
+    limit.get() == 10
+
+    when: "requests stay fast while others wait"
+    limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), true)
+
+    then:
+    limit.get() == 11
+
+    when: "requests stay fast and nothing waits"
+    limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), false)
+
+    then:
+    limit.get() == 11
+
+    when: "requests get much slower"
+    limit.onSample(TimeUnit.MILLISECONDS.toNanos(200), true)
+
+    then:
+    limit.get() == 5
+  }
+
+  private static RequestQueueConfiguration config(int poolSize) {
+    def config = new RequestQueueConfiguration()
+    config.scheduling = RequestQueueConfiguration.Scheduling.WEIGHTED_FAIR
+    config.poolSize = poolSize
+    config.minPoolSize = poolSize
+    config.maxPoolSize = poolSize
+    return config
+  }
+}
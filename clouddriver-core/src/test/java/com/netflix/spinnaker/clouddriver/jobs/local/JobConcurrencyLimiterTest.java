@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.jobs.local;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.netflix.spectator.api.DefaultRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+final class JobConcurrencyLimiterTest {
+  private final JobConcurrencyLimiter limiter = new JobConcurrencyLimiter(new DefaultRegistry(), 2);
+
+  @Test
+  void queuesJobsBeyondTheLimitUntilASlotIsReleased() throws Exception {
+    limiter.acquire("account");
+    limiter.acquire("account");
+
+    CompletableFuture<Void> queued = acquireAsync("account");
+    Thread.sleep(100);
+    assertThat(queued).isNotDone();
+
+    limiter.release("account");
+    queued.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void limitsEachKeySeparately() throws Exception {
+    limiter.acquire("account:read");
+    limiter.acquire("account:read");
+
+    acquireAsync("account:write").get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void doesNotLimitJobsWithoutAKey() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      limiter.acquire(null);
+    }
+  }
+
+  @Test
+  void doesNotLimitJobsWithoutAMaximum() throws Exception {
+    JobConcurrencyLimiter unlimited = new JobConcurrencyLimiter(new DefaultRegistry(), 0);
+    for (int i = 0; i < 10; i++) {
+      unlimited.acquire("account");
+    }
+  }
+
+  private CompletableFuture<Void> acquireAsync(String key) {
+    return CompletableFuture.runAsync(
+        () -> {
+          try {
+            limiter.acquire(key);
+          } catch (InterruptedException e) {
+            throw new CompletionException(e);
+          }
+        });
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.jobs.local;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import com.google.common.collect.ImmutableList;
+import com.netflix.spectator.api.NoopRegistry;
+import com.netflix.spinnaker.clouddriver.jobs.JobExecutionException;
+import com.netflix.spinnaker.clouddriver.jobs.JobRequest;
+import com.netflix.spinnaker.clouddriver.jobs.JobResult;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/** Runs real processes through {@code sh}, with at most one job per concurrency key at a time. */
+final class JobExecutorLocalTest {
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  private final JobExecutorLocal executor =
+      new JobExecutorLocal(Duration.ofSeconds(2), 1, new NoopRegistry());
+
+  @Test
+  void streamsOutputEndingInAPartialLine() {
+    JobResult<List<String>> result =
+        executor.runJob(
+            job("printf 'one\\ntwo\\nthree'"), r -> r.lines().collect(Collectors.toList()));
+
+    assertThat(result.getResult()).isEqualTo(JobResult.Result.SUCCESS);
+    assertThat(result.getOutput()).containsExactly("one", "two", "three");
+  }
+
+  @Test
+  void drainsOutputTheConsumerLeavesUnread() {
+    JobResult<String> result =
+        assertTimeoutPreemptively(
+            TIMEOUT, () -> executor.runJob(job("seq 1 200000"), r -> r.readLine()));
+
+    assertThat(result.getResult()).isEqualTo(JobResult.Result.SUCCESS);
+    assertThat(result.isKilled()).isFalse();
+    assertThat(result.getOutput()).isEqualTo("1");
+  }
+
+  @Test
+  void returnsTheErrorOfAFailedStreamingJob() {
+    JobResult<String> result =
+        executor.runJob(job("echo oops >&2; exit 3"), r -> String.valueOf(r.readLine()));
+
+    assertThat(result.getResult()).isEqualTo(JobResult.Result.FAILURE);
+    assertThat(result.getError()).contains("oops");
+  }
+
+  @Test
+  void releasesTheSlotOfAJobThatFails() {
+    assertThat(executor.runJob(job("exit 3")).getResult()).isEqualTo(JobResult.Result.FAILURE);
+
+    assertNextJobRuns();
+  }
+
+  @Test
+  void releasesTheSlotOfAJobWhoseConsumerFails() {
+    assertThatThrownBy(
+            () ->
+                executor.runJob(
+                    job("echo one"),
+                    r -> {
+                      throw new IOException("unparseable");
+                    }))
+        .isInstanceOf(JobExecutionException.class);
+
+    assertNextJobRuns();
+  }
+
+  @Test
+  void releasesTheSlotOfAJobThatTimesOut() {
+    JobResult<String> result =
+        assertTimeoutPreemptively(TIMEOUT, () -> executor.runJob(job("exec sleep 30")));
+
+    assertThat(result.isKilled()).isTrue();
+    assertNextJobRuns();
+  }
+
+  @Test
+  void releasesTheSlotOfAStreamingJobThatTimesOut() {
+    JobResult<String> result =
+        assertTimeoutPreemptively(
+            TIMEOUT, () -> executor.runJob(job("echo one; exec sleep 30"), r -> r.readLine()));
+
+    assertThat(result.isKilled()).isTrue();
+    assertNextJobRuns();
+  }
+
+  @Test
+  void reportsAJobThatCannotStart() {
+    JobRequest request =
+        new JobRequest(
+            ImmutableList.of("/nonexistent/command"),
+            System.getenv(),
+            new ByteArrayInputStream(new byte[0]),
+            "account");
+
+    assertThatThrownBy(
+            () ->
+                assertTimeoutPreemptively(
+                    TIMEOUT, () -> executor.runJob(request, r -> r.readLine())))
+        .isInstanceOf(JobExecutionException.class);
+
+    assertNextJobRuns();
+  }
+
+  private void assertNextJobRuns() {
+    JobResult<String> result =
+        assertTimeoutPreemptively(TIMEOUT, () -> executor.runJob(job("echo next")));
+    assertThat(result.getOutput()).isEqualTo("next\n");
+  }
+
+  private static JobRequest job(String script) {
+    return new JobRequest(
+        ImmutableList.of("sh", "-c", script),
+        System.getenv(),
+        new ByteArrayInputStream(new byte[0]),
+        "account");
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.event
+
+/**
+ * A copy of the state of an [Aggregate] as of a point in its event log.
+ *
+ * The state is a domain-specific model that is serialized like any event, so that snapshots can be
+ * stored by any [com.netflix.spinnaker.clouddriver.event.persistence.EventRepository] without
+ * knowing the domain. Readers rebuild the aggregate from [state] and the events logged after [sequence].
+ *
+ * @param aggregateType The type of aggregate the snapshot is for
+ * @param aggregateId The id of the aggregate the snapshot is for
+ * @param sequence The sequence of the last logged event covered by the snapshot
+ * @param state The state of the aggregate, which is never logged as one of its events
+ */
+class AggregateSnapshot(
+  val aggregateType: String,
+  val aggregateId: String,
+  val sequence: Long,
+  val state: SpinnakerEvent
+)
@@ -16,6 +16,7 @@
 package com.netflix.spinnaker.clouddriver.event.persistence
 
 import com.netflix.spinnaker.clouddriver.event.Aggregate
+import com.netflix.spinnaker.clouddriver.event.AggregateSnapshot
 import com.netflix.spinnaker.clouddriver.event.SpinnakerEvent
 import javax.validation.constraints.Max
 import javax.validation.constraints.Positive
@@ -48,6 +49,31 @@ interface EventRepository {
    */
   fun list(aggregateType: String, aggregateId: String): List<SpinnakerEvent>
 
+  /**
+   * List the events for a given [Aggregate] that were logged after [afterSequence].
+   *
+   * @param aggregateType The aggregate collection name
+   * @param aggregateId The unique identifier of the event aggregate within the [aggregateType]
+   * @param afterSequence Only events with a greater sequence are returned
+   * @return An ordered list of events, oldest to newest
+   */
+  fun list(aggregateType: String, aggregateId: String, afterSequence: Long): List<SpinnakerEvent> =
+    list(aggregateType, aggregateId).filter { it.getMetadata().sequence > afterSequence }
+
+  /**
+   * Save a snapshot of an [Aggregate], replacing any older snapshot of it.
+   *
+   * Snapshots are an optimization: implementations that do not support them may ignore this call.
+   */
+  fun saveSnapshot(snapshot: AggregateSnapshot) {}
+
+  /**
+   * Get the latest snapshot of an [Aggregate].
+   *
+   * @return The latest snapshot, or null if there is none
+   */
+  fun getSnapshot(aggregateType: String, aggregateId: String): AggregateSnapshot? = null
+
   /**
    * List all aggregates for a given type.
    *
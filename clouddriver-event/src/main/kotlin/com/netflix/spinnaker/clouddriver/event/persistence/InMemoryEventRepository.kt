@@ -17,6 +17,7 @@ package com.netflix.spinnaker.clouddriver.event.persistence
 
 import com.netflix.spectator.api.Registry
 import com.netflix.spinnaker.clouddriver.event.Aggregate
+import com.netflix.spinnaker.clouddriver.event.AggregateSnapshot
 import com.netflix.spinnaker.clouddriver.event.EventMetadata
 import com.netflix.spinnaker.clouddriver.event.SpinnakerEvent
 import com.netflix.spinnaker.clouddriver.event.config.MemoryEventRepositoryConfigProperties
@@ -50,6 +51,7 @@ class InMemoryEventRepository(
   private val eventReadCountId = registry.createId("eventing.events.reads")
 
   private val events: MutableMap<Aggregate, MutableList<SpinnakerEvent>> = ConcurrentHashMap()
+  private val snapshots: MutableMap<Aggregate, AggregateSnapshot> = ConcurrentHashMap()
 
   override fun save(
     aggregateType: String,
@@ -102,6 +104,20 @@ class InMemoryEventRepository(
       ?: throw MissingAggregateEventsException(aggregateType, aggregateId)
   }
 
+  override fun list(aggregateType: String, aggregateId: String, afterSequence: Long): List<SpinnakerEvent> {
+    return list(aggregateType, aggregateId).filter { it.getMetadata().sequence > afterSequence }
+  }
+
+  override fun saveSnapshot(snapshot: AggregateSnapshot) {
+    snapshots.merge(Aggregate(snapshot.aggregateType, snapshot.aggregateId, 0L), snapshot) { existing, new ->
+      if (new.sequence > existing.sequence) new else existing
+    }
+  }
+
+  override fun getSnapshot(aggregateType: String, aggregateId: String): AggregateSnapshot? {
+    return snapshots[Aggregate(aggregateType, aggregateId, 0L)]
+  }
+
   override fun listAggregates(criteria: EventRepository.ListAggregatesCriteria): EventRepository.ListAggregatesResult {
     val aggregates = events.keys
 
@@ -156,6 +172,7 @@ class InMemoryEventRepository(
           .forEach {
             log.trace("Cleaning up $it")
             events.remove(it)
+            snapshots.remove(it)
           }
       }
 
@@ -172,6 +189,7 @@ class InMemoryEventRepository(
           .forEach {
             log.trace("Cleaning up ${it.first}")
             events.remove(it.first)
+            snapshots.remove(it.first)
           }
       }
   }
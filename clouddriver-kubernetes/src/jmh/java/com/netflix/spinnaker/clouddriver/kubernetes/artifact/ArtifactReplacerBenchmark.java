@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.artifact;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.netflix.spinnaker.clouddriver.artifacts.kubernetes.KubernetesArtifactType;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifest;
+import com.netflix.spinnaker.kork.artifacts.model.Artifact;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Replaces the artifacts of a multi-document render, such as a Helm chart, made of {@code
+ * manifestCount} deployments of {@code containersPerManifest} containers each, which reference
+ * {@code artifactCount} images, config maps and secrets between them. Sizes can be overridden on
+ * the command line, e.g. {@code -p manifestCount=500}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ArtifactReplacerBenchmark {
+  private static final String NAMESPACE = "default";
+  private static final String ACCOUNT = "my-account";
+
+  @Param({"10", "100"})
+  public int manifestCount;
+
+  @Param({"2", "8"})
+  public int containersPerManifest;
+
+  @Param({"3", "30"})
+  public int artifactCount;
+
+  private final ArtifactReplacer artifactReplacer =
+      new ArtifactReplacer(
+          ImmutableList.of(
+              Replacer.dockerImage(),
+              Replacer.configMapVolume(),
+              Replacer.secretVolume(),
+              Replacer.configMapEnv(),
+              Replacer.secretEnv(),
+              Replacer.configMapKeyValue(),
+              Replacer.secretKeyValue()));
+
+  private List<KubernetesManifest> manifests;
+  private List<Artifact> artifacts;
+
+  @Setup
+  public void setUp() {
+    manifests = new ArrayList<>(manifestCount);
+    for (int i = 0; i < manifestCount; i++) {
+      manifests.add(deployment(i));
+    }
+
+    artifacts = new ArrayList<>(artifactCount);
+    KubernetesArtifactType[] types = {
+      KubernetesArtifactType.DockerImage,
+      KubernetesArtifactType.ConfigMap,
+      KubernetesArtifactType.Secret
+    };
+    for (int i = 0; i < artifactCount; i++) {
+      KubernetesArtifactType type = types[i % types.length];
+      artifacts.add(
+          Artifact.builder()
+              .type(type.getType())
+              .name(name(type, i / types.length))
+              .reference(name(type, i / types.length) + "-v001")
+              .location(NAMESPACE)
+              .build());
+    }
+  }
+
+  @Benchmark
+  public void singlePass(Blackhole blackhole) {
+    for (KubernetesManifest manifest : manifests) {
+      blackhole.consume(artifactReplacer.replaceAll(manifest, artifacts, NAMESPACE, ACCOUNT));
+    }
+  }
+
+  @Benchmark
+  public void jsonPath(Blackhole blackhole) {
+    for (KubernetesManifest manifest : manifests) {
+      blackhole.consume(JsonPathArtifactReplacer.replaceAll(manifest, artifacts));
+    }
+  }
+
+  private static String name(KubernetesArtifactType type, int index) {
+    switch (type) {
+      case DockerImage:
+        return "gcr.io/project/image-" + index;
+      case ConfigMap:
+        return "config-" + index;
+      default:
+        return "secret-" + index;
+    }
+  }
+
+  /**
+   * A deployment whose containers reference artifacts by name, cycling through the names the
+   * artifacts may have so that some, but not all, of its references are replaced.
+   */
+  private KubernetesManifest deployment(int index) {
+    List<Object> containers = new ArrayList<>();
+    List<Object> volumes = new ArrayList<>();
+    for (int i = 0; i < containersPerManifest; i++) {
+      int reference = (index + i) % Math.max(artifactCount, 1);
+      String configMap = name(KubernetesArtifactType.ConfigMap, reference);
+      String secret = name(KubernetesArtifactType.Secret, reference);
+      containers.add(
+          ImmutableMap.of(
+              "name",
+              "container-" + i,
+              "image",
+              name(KubernetesArtifactType.DockerImage, reference),
+              "envFrom",
+              ImmutableList.of(ImmutableMap.of("configMapRef", ImmutableMap.of("name", configMap))),
+              "env",
+              ImmutableList.of(
+                  ImmutableMap.of(
+                      "name",
+                      "SECRET",
+                      "valueFrom",
+                      ImmutableMap.of(
+                          "secretKeyRef", ImmutableMap.of("name", secret, "key", "value")))),
+              "ports",
+              ImmutableList.of(ImmutableMap.of("containerPort", 8080))));
+      volumes.add(
+          ImmutableMap.of("name", "config-" + i, "configMap", ImmutableMap.of("name", configMap)));
+    }
+
+    ImmutableMap<String, String> labels = ImmutableMap.of("app", "app-" + index);
+    KubernetesManifest manifest = new KubernetesManifest();
+    manifest.put("apiVersion", "apps/v1");
+    manifest.put("kind", "Deployment");
+    manifest.put(
+        "metadata", new HashMap<>(ImmutableMap.of("name", "app-" + index, "namespace", NAMESPACE)));
+    manifest.put(
+        "spec",
+        ImmutableMap.of(
+            "replicas",
+            3,
+            "selector",
+            ImmutableMap.of("matchLabels", labels),
+            "template",
+            ImmutableMap.of(
+                "metadata",
+                ImmutableMap.of("labels", labels),
+                "spec",
+                ImmutableMap.of("containers", containers, "volumes", volumes))));
+    return manifest;
+  }
+}
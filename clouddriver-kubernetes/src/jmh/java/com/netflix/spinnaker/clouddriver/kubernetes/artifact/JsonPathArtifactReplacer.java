@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.artifact;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.PathNotFoundException;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import com.netflix.spinnaker.clouddriver.artifacts.kubernetes.KubernetesArtifactType;
+import com.netflix.spinnaker.clouddriver.kubernetes.artifact.ArtifactReplacer.ReplaceResult;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifest;
+import com.netflix.spinnaker.kork.artifacts.model.Artifact;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * The artifact replacement that {@link ArtifactReplacer} used to do, kept as the baseline it is
+ * benchmarked against: the manifest is parsed into a JsonPath document, the replace path of each
+ * replacer is evaluated for each artifact, and the document is parsed back into a manifest.
+ *
+ * <p>It holds the replacers of a deployment, and does not filter artifacts by namespace or account.
+ */
+final class JsonPathArtifactReplacer {
+  private static final ObjectMapper mapper = new ObjectMapper();
+  private static final Configuration configuration =
+      Configuration.builder()
+          .jsonProvider(new JacksonJsonNodeJsonProvider())
+          .mappingProvider(new JacksonMappingProvider())
+          .build();
+
+  private static final String TEMPLATE_CONTAINERS =
+      "$..spec.template.spec['containers', 'initContainers']";
+
+  private static final ImmutableList<JsonPathReplacer> DEPLOYMENT_REPLACERS =
+      ImmutableList.of(
+          new JsonPathReplacer(
+              TEMPLATE_CONTAINERS + ".[?( @.image == \"{%name%}\" )].image",
+              KubernetesArtifactType.DockerImage),
+          new JsonPathReplacer(
+              "$..spec.template.spec.volumes.[?( @.configMap.name == \"{%name%}\" )]"
+                  + ".configMap.name",
+              KubernetesArtifactType.ConfigMap),
+          new JsonPathReplacer(
+              "$..spec.template.spec.volumes.[?( @.secret.secretName == \"{%name%}\" )]"
+                  + ".secret.secretName",
+              KubernetesArtifactType.Secret),
+          new JsonPathReplacer(
+              TEMPLATE_CONTAINERS
+                  + ".*.envFrom.[?( @.configMapRef.name == \"{%name%}\" )].configMapRef.name",
+              KubernetesArtifactType.ConfigMap),
+          new JsonPathReplacer(
+              TEMPLATE_CONTAINERS
+                  + ".*.envFrom.[?( @.secretRef.name == \"{%name%}\" )].secretRef.name",
+              KubernetesArtifactType.Secret),
+          new JsonPathReplacer(
+              TEMPLATE_CONTAINERS
+                  + ".*.env.[?( @.valueFrom.configMapKeyRef.name == \"{%name%}\" )]"
+                  + ".valueFrom.configMapKeyRef.name",
+              KubernetesArtifactType.ConfigMap),
+          new JsonPathReplacer(
+              TEMPLATE_CONTAINERS
+                  + ".*.env.[?( @.valueFrom.secretKeyRef.name == \"{%name%}\" )]"
+                  + ".valueFrom.secretKeyRef.name",
+              KubernetesArtifactType.Secret));
+
+  private JsonPathArtifactReplacer() {}
+
+  static ReplaceResult replaceAll(KubernetesManifest input, List<Artifact> artifacts) {
+    try {
+      DocumentContext document =
+          JsonPath.using(configuration).parse(mapper.writeValueAsString(input));
+      ImmutableSet.Builder<Artifact> replacedArtifacts = new ImmutableSet.Builder<>();
+      for (JsonPathReplacer replacer : DEPLOYMENT_REPLACERS) {
+        for (Artifact artifact : artifacts) {
+          if (replacer.replaceIfPossible(document, artifact)) {
+            replacedArtifacts.add(artifact);
+          }
+        }
+      }
+      return new ReplaceResult(
+          mapper.readValue(document.jsonString(), KubernetesManifest.class),
+          replacedArtifacts.build());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static final class JsonPathReplacer {
+    private final String replacePath;
+    private final KubernetesArtifactType type;
+
+    private JsonPathReplacer(String replacePath, KubernetesArtifactType type) {
+      this.replacePath = replacePath;
+      this.type = type;
+    }
+
+    boolean replaceIfPossible(DocumentContext document, Artifact artifact) {
+      if (!artifact.getType().equals(type.getType())) {
+        return false;
+      }
+
+      String jsonPath = replacePath.replace("{%name%}", artifact.getName());
+      Object get;
+      try {
+        get = document.read(jsonPath);
+      } catch (PathNotFoundException e) {
+        return false;
+      }
+      if (get == null || (get instanceof ArrayNode && ((ArrayNode) get).size() == 0)) {
+        return false;
+      }
+
+      document.set(jsonPath, artifact.getReference());
+      return true;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.artifact;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.stream.Collectors;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import lombok.Value;
+
+/**
+ * The path from the root of a manifest to the values that may reference an artifact, such as
+ * {@code ..spec.template.spec[containers,initContainers][*].image}. Paths are followed step by step
+ * while a manifest is walked, so that all the replacers of a handler are applied in a single walk.
+ */
+@ParametersAreNonnullByDefault
+final class ArtifactPath {
+  private enum StepType {
+    /** A field with one of the names anywhere below the current value. */
+    ANYWHERE,
+    /** A field of the current value with one of the names. */
+    FIELD,
+    /** Every element of the current list, or every value of the current map. */
+    EACH
+  }
+
+  @Value
+  private static class Step {
+    StepType type;
+    ImmutableSet<String> names;
+
+    @Override
+    public String toString() {
+      switch (type) {
+        case ANYWHERE:
+          return ".." + String.join(",", names);
+        case FIELD:
+          return names.size() == 1
+              ? "." + names.iterator().next()
+              : names.stream().collect(Collectors.joining(",", "[", "]"));
+        default:
+          return "[*]";
+      }
+    }
+  }
+
+  private final ImmutableList<Step> steps;
+
+  private ArtifactPath(ImmutableList<Step> steps) {
+    this.steps = steps;
+  }
+
+  static ArtifactPath root() {
+    return new ArtifactPath(ImmutableList.of());
+  }
+
+  @Nonnull
+  ArtifactPath anywhere(String name) {
+    return append(StepType.ANYWHERE, ImmutableSet.of(name));
+  }
+
+  @Nonnull
+  ArtifactPath field(String... names) {
+    return append(StepType.FIELD, ImmutableSet.copyOf(names));
+  }
+
+  @Nonnull
+  ArtifactPath each() {
+    return append(StepType.EACH, ImmutableSet.of());
+  }
+
+  private ArtifactPath append(StepType type, ImmutableSet<String> names) {
+    return new ArtifactPath(
+        new ImmutableList.Builder<Step>().addAll(steps).add(new Step(type, names)).build());
+  }
+
+  /** @return the number of steps; a value reached after taking them all is a target of the path */
+  int length() {
+    return steps.size();
+  }
+
+  /** @return whether a walk at the given step is still at that step in every child */
+  boolean staysAt(int step) {
+    return steps.get(step).type == StepType.ANYWHERE;
+  }
+
+  /**
+   * @return whether a walk at the given step takes it on entering the child with the given key,
+   *     which is null for the elements of a list
+   */
+  boolean takes(int step, @Nullable Object key) {
+    Step current = steps.get(step);
+    if (current.type == StepType.EACH) {
+      return true;
+    }
+    return key != null && current.names.contains(key);
+  }
+
+  @Override
+  public String toString() {
+    return steps.stream().map(Step::toString).collect(Collectors.joining("", "$", ""));
+  }
+}
@@ -18,38 +18,31 @@
 package com.netflix.spinnaker.clouddriver.kubernetes.artifact;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static com.google.common.collect.ImmutableSet.toImmutableSet;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.jayway.jsonpath.Configuration;
-import com.jayway.jsonpath.DocumentContext;
-import com.jayway.jsonpath.JsonPath;
-import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
-import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
 import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifest;
 import com.netflix.spinnaker.kork.artifacts.model.Artifact;
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Finds and replaces the artifacts referenced by a manifest. Rather than evaluating the path of
+ * each replacer in turn, the paths of all replacers are followed together in a single walk of the
+ * manifest, which visits each value at most once.
+ */
 @ParametersAreNonnullByDefault
 @Slf4j
 public class ArtifactReplacer {
-  private static final ObjectMapper mapper = new ObjectMapper();
-  private static final Configuration configuration =
-      Configuration.builder()
-          .jsonProvider(new JacksonJsonNodeJsonProvider())
-          .mappingProvider(new JacksonMappingProvider())
-          .build();
-
   private final ImmutableList<Replacer> replacers;
 
   public ArtifactReplacer(Collection<Replacer> replacers) {
@@ -103,56 +96,141 @@ public class ArtifactReplacer {
     log.debug("Doing replacement on {} using {}", input, artifacts);
     ImmutableList<Artifact> filteredArtifacts =
         filterKubernetesArtifactsByNamespaceAndAccount(namespace, account, artifacts);
-    DocumentContext document;
-    try {
-      document = JsonPath.using(configuration).parse(mapper.writeValueAsString(input));
-    } catch (JsonProcessingException e) {
-      log.error("Malformed manifest", e);
-      throw new RuntimeException(e);
-    }
 
     ImmutableSet.Builder<Artifact> replacedArtifacts = new ImmutableSet.Builder<>();
-    replacers.forEach(
-        replacer ->
-            replacedArtifacts.addAll(replacer.replaceArtifacts(document, filteredArtifacts)));
-
-    try {
-      return new ReplaceResult(
-          mapper.readValue(document.jsonString(), KubernetesManifest.class),
-          replacedArtifacts.build());
-    } catch (IOException e) {
-      log.error("Malformed Document Context", e);
-      throw new RuntimeException(e);
-    }
+    KubernetesManifest result = new KubernetesManifest();
+    walkMap(
+        input,
+        result,
+        startingCursors(input),
+        (replacer, value) ->
+            replacer.replaceArtifacts(value, filteredArtifacts, replacedArtifacts));
+    return new ReplaceResult(result, replacedArtifacts.build());
   }
 
   @Nonnull
   public ImmutableSet<Artifact> findAll(KubernetesManifest input) {
-    DocumentContext document;
-    try {
-      document = JsonPath.using(configuration).parse(mapper.writeValueAsString(input));
-    } catch (JsonProcessingException e) {
-      throw new RuntimeException("Malformed manifest", e);
-    }
+    ImmutableSet.Builder<Artifact> artifacts = new ImmutableSet.Builder<>();
+    walkMap(
+        input,
+        null,
+        startingCursors(input),
+        (replacer, value) -> {
+          if (value instanceof String) {
+            artifacts.add(replacer.artifactFromReference((String) value));
+          }
+          return value;
+        });
+    return artifacts.build();
+  }
 
+  private ImmutableList<Cursor> startingCursors(KubernetesManifest input) {
     return replacers.stream()
-        .map(
-            r -> {
-              try {
-                return r.getArtifacts(document);
-              } catch (Exception e) {
-                // This happens when a manifest isn't fully defined (e.g. not all properties are
-                // there)
-                log.debug(
-                    "Failure converting artifacts for {} using {} (skipping)",
-                    input.getFullResourceName(),
-                    r,
-                    e);
-                return ImmutableList.<Artifact>of();
-              }
-            })
-        .flatMap(Collection::stream)
-        .collect(toImmutableSet());
+        .filter(replacer -> replacer.appliesTo(input))
+        .map(replacer -> new Cursor(replacer, 0))
+        .collect(toImmutableList());
+  }
+
+  /** Handles a value reached at the end of the path of a replacer, returning its replacement. */
+  @FunctionalInterface
+  private interface Visitor {
+    @Nullable
+    Object visit(Replacer replacer, @Nullable Object value);
+  }
+
+  /** How far along the path of a replacer the walk is at a value. */
+  @Value
+  private static class Cursor {
+    Replacer replacer;
+    int step;
+
+    boolean atTarget() {
+      return step == replacer.getPath().length();
+    }
+  }
+
+  /**
+   * Walks the entries of source; if copy is non-null, it receives a copy of each entry with any
+   * replacements made, and source is left as it is.
+   */
+  private static <K> void walkMap(
+      Map<K, ?> source, @Nullable Map<K, Object> copy, List<Cursor> cursors, Visitor visitor) {
+    for (Map.Entry<K, ?> entry : source.entrySet()) {
+      Object value = walkChild(entry.getValue(), entry.getKey(), copy != null, cursors, visitor);
+      if (copy != null) {
+        copy.put(entry.getKey(), value);
+      }
+    }
+  }
+
+  private static void walkList(
+      List<?> source, @Nullable List<Object> copy, List<Cursor> cursors, Visitor visitor) {
+    for (Object element : source) {
+      Object value = walkChild(element, null, copy != null, cursors, visitor);
+      if (copy != null) {
+        copy.add(value);
+      }
+    }
+  }
+
+  /**
+   * @param key the key of the child in its map, or null if it is an element of a list
+   * @return the child, or a copy of it with any replacements made if copying
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  private static Object walkChild(
+      @Nullable Object child,
+      @Nullable Object key,
+      boolean copying,
+      List<Cursor> cursors,
+      Visitor visitor) {
+    List<Cursor> next = ImmutableList.of();
+    List<Replacer> targets = ImmutableList.of();
+    if (!cursors.isEmpty()) {
+      next = new ArrayList<>(cursors.size());
+      targets = new ArrayList<>(1);
+      for (Cursor cursor : cursors) {
+        ArtifactPath path = cursor.getReplacer().getPath();
+        if (path.staysAt(cursor.getStep())) {
+          addCursor(next, targets, cursor);
+        }
+        if (path.takes(cursor.getStep(), key)) {
+          addCursor(next, targets, new Cursor(cursor.getReplacer(), cursor.getStep() + 1));
+        }
+      }
+    }
+
+    // Unless copying, there is no need to walk below a child that no path leads through
+    Object result = child;
+    if (child instanceof Map && (copying || !next.isEmpty())) {
+      Map<Object, Object> copy = copying ? new LinkedHashMap<>() : null;
+      walkMap((Map<Object, ?>) child, copy, next, visitor);
+      result = copying ? copy : child;
+    } else if (child instanceof List && (copying || !next.isEmpty())) {
+      List<Object> copy = copying ? new ArrayList<>(((List<?>) child).size()) : null;
+      walkList((List<?>) child, copy, next, visitor);
+      result = copying ? copy : child;
+    }
+
+    for (Replacer replacer : targets) {
+      result = visitor.visit(replacer, result);
+    }
+    return result;
+  }
+
+  /**
+   * Adds a cursor to those following the child, or its replacer to the targets of the child if the
+   * cursor is at the end of the path. Each is added once, however many paths lead to it.
+   */
+  private static void addCursor(List<Cursor> next, List<Replacer> targets, Cursor cursor) {
+    if (cursor.atTarget()) {
+      if (!targets.contains(cursor.getReplacer())) {
+        targets.add(cursor.getReplacer());
+      }
+    } else if (!next.contains(cursor)) {
+      next.add(cursor);
+    }
   }
 
   @Value
@@ -17,58 +17,43 @@
 
 package com.netflix.spinnaker.clouddriver.kubernetes.artifact;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
-
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.google.common.base.Strings;
-import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableSet;
-import com.jayway.jsonpath.DocumentContext;
-import com.jayway.jsonpath.PathNotFoundException;
 import com.netflix.spinnaker.clouddriver.artifacts.kubernetes.KubernetesArtifactType;
 import com.netflix.spinnaker.kork.artifacts.model.Artifact;
 import java.util.Collection;
-import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import lombok.AccessLevel;
 import lombok.Builder;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 @Builder(access = AccessLevel.PRIVATE)
 @ParametersAreNonnullByDefault
 @Slf4j
 public class Replacer {
-  private static final ObjectMapper mapper = new ObjectMapper();
+  /** The path to the values that reference an artifact. */
+  @Getter(AccessLevel.PACKAGE)
+  @Nonnull
+  private final ArtifactPath path;
+
+  /** If set, only manifests matching this filter reference artifacts. */
+  @Nullable private final Predicate<Map<String, Object>> filter;
 
-  @Nonnull private final String replacePath;
-  @Nonnull private final String findPath;
   @Nullable private final Function<String, String> nameFromReference;
   @Nonnull private final KubernetesArtifactType type;
 
-  private static String substituteField(String result, String fieldName, @Nullable String field) {
-    return result.replace("{%" + fieldName + "%}", Optional.ofNullable(field).orElse(""));
-  }
-
-  private static String processPath(String path, Artifact artifact) {
-    String result = substituteField(path, "name", artifact.getName());
-    result = substituteField(result, "type", artifact.getType());
-    result = substituteField(result, "version", artifact.getVersion());
-    result = substituteField(result, "reference", artifact.getReference());
-    return result;
-  }
-
-  private ArrayNode findAll(DocumentContext obj) {
-    return obj.read(findPath);
+  boolean appliesTo(Map<String, Object> manifest) {
+    return filter == null || filter.test(manifest);
   }
 
   @Nonnull
-  private Artifact artifactFromReference(String s) {
+  Artifact artifactFromReference(String s) {
     return Artifact.builder().type(type.getType()).reference(s).name(nameFromReference(s)).build();
   }
 
@@ -81,61 +66,59 @@ public class Replacer {
     }
   }
 
-  @Nonnull
-  ImmutableCollection<Artifact> getArtifacts(DocumentContext document) {
-    return mapper.convertValue(findAll(document), new TypeReference<List<String>>() {}).stream()
-        .map(this::artifactFromReference)
-        .collect(toImmutableList());
-  }
-
-  @Nonnull
-  ImmutableCollection<Artifact> replaceArtifacts(
-      DocumentContext obj, Collection<Artifact> artifacts) {
-    ImmutableSet.Builder<Artifact> replacedArtifacts = new ImmutableSet.Builder<>();
-    artifacts.forEach(
-        artifact -> {
-          boolean wasReplaced = replaceIfPossible(obj, artifact);
-          if (wasReplaced) {
-            replacedArtifacts.add(artifact);
-          }
-        });
-    return replacedArtifacts.build();
-  }
-
-  private boolean replaceIfPossible(DocumentContext obj, @Nullable Artifact artifact) {
-    if (artifact == null || Strings.isNullOrEmpty(artifact.getType())) {
-      throw new IllegalArgumentException("Artifact and artifact type must be set.");
-    }
-
-    if (!artifact.getType().equals(type.getType())) {
-      return false;
+  /**
+   * Replaces a value found at the end of the path with the reference of each artifact of this
+   * replacer's type that it names, in turn.
+   *
+   * @return the value, after replacement
+   */
+  @Nullable
+  Object replaceArtifacts(
+      @Nullable Object value,
+      Collection<Artifact> artifacts,
+      ImmutableSet.Builder<Artifact> replacedArtifacts) {
+    for (Artifact artifact : artifacts) {
+      if (artifact == null || Strings.isNullOrEmpty(artifact.getType())) {
+        throw new IllegalArgumentException("Artifact and artifact type must be set.");
+      }
+
+      if (!type.getType().equals(artifact.getType())) {
+        continue;
+      }
+      if (Strings.nullToEmpty(artifact.getName()).equals(value)) {
+        log.info("Found valid swap for " + artifact + " using " + path + ": " + value);
+        value = artifact.getReference();
+        replacedArtifacts.add(artifact);
+      }
     }
+    return value;
+  }
 
-    String jsonPath = processPath(replacePath, artifact);
-
-    log.debug("Processed jsonPath == {}", jsonPath);
-
-    Object get;
-    try {
-      get = obj.read(jsonPath);
-    } catch (PathNotFoundException e) {
-      return false;
-    }
-    if (get == null || (get instanceof ArrayNode && ((ArrayNode) get).size() == 0)) {
-      return false;
-    }
-
-    log.info("Found valid swap for " + artifact + " using " + jsonPath + ": " + get);
-    obj.set(jsonPath, artifact.getReference());
-
-    return true;
+  private static Predicate<Map<String, Object>> scaleTargetKind(String... kinds) {
+    ImmutableSet<String> scaleTargetKinds = ImmutableSet.copyOf(kinds);
+    return manifest -> {
+      Object spec = manifest.get("spec");
+      if (!(spec instanceof Map)) {
+        return false;
+      }
+      Object scaleTargetRef = ((Map<?, ?>) spec).get("scaleTargetRef");
+      if (!(scaleTargetRef instanceof Map)) {
+        return false;
+      }
+      return scaleTargetKinds.contains(((Map<?, ?>) scaleTargetRef).get("kind"));
+    };
   }
 
   private static final Replacer DOCKER_IMAGE =
       builder()
-          .replacePath(
-              "$..spec.template.spec['containers', 'initContainers'].[?( @.image == \"{%name%}\" )].image")
-          .findPath("$..spec.template.spec['containers', 'initContainers'].*.image")
+          .path(
+              ArtifactPath.root()
+                  .anywhere("spec")
+                  .field("template")
+                  .field("spec")
+                  .field("containers", "initContainers")
+                  .each()
+                  .field("image"))
           .nameFromReference(
               ref -> {
                 int atIndex = ref.indexOf('@');
@@ -163,70 +146,107 @@ public class Replacer {
           .build();
   private static final Replacer POD_DOCKER_IMAGE =
       builder()
-          .replacePath("$.spec.containers.[?( @.image == \"{%name%}\" )].image")
-          .findPath("$.spec.containers.*.image")
+          .path(ArtifactPath.root().field("spec").field("containers").each().field("image"))
           .type(KubernetesArtifactType.DockerImage)
           .build();
   private static final Replacer CONFIG_MAP_VOLUME =
       builder()
-          .replacePath(
-              "$..spec.template.spec.volumes.[?( @.configMap.name == \"{%name%}\" )].configMap.name")
-          .findPath("$..spec.template.spec.volumes.*.configMap.name")
+          .path(
+              ArtifactPath.root()
+                  .anywhere("spec")
+                  .field("template")
+                  .field("spec")
+                  .field("volumes")
+                  .each()
+                  .field("configMap")
+                  .field("name"))
           .type(KubernetesArtifactType.ConfigMap)
           .build();
   private static final Replacer SECRET_VOLUME =
       builder()
-          .replacePath(
-              "$..spec.template.spec.volumes.[?( @.secret.secretName == \"{%name%}\" )].secret.secretName")
-          .findPath("$..spec.template.spec.volumes.*.secret.secretName")
+          .path(
+              ArtifactPath.root()
+                  .anywhere("spec")
+                  .field("template")
+                  .field("spec")
+                  .field("volumes")
+                  .each()
+                  .field("secret")
+                  .field("secretName"))
           .type(KubernetesArtifactType.Secret)
           .build();
   private static final Replacer CONFIG_MAP_KEY_VALUE =
       builder()
-          .replacePath(
-              "$..spec.template.spec['containers', 'initContainers'].*.env.[?( @.valueFrom.configMapKeyRef.name == \"{%name%}\" )].valueFrom.configMapKeyRef.name")
-          .findPath(
-              "$..spec.template.spec['containers', 'initContainers'].*.env.*.valueFrom.configMapKeyRef.name")
+          .path(
+              ArtifactPath.root()
+                  .anywhere("spec")
+                  .field("template")
+                  .field("spec")
+                  .field("containers", "initContainers")
+                  .each()
+                  .field("env")
+                  .each()
+                  .field("valueFrom")
+                  .field("configMapKeyRef")
+                  .field("name"))
           .type(KubernetesArtifactType.ConfigMap)
           .build();
   private static final Replacer SECRET_KEY_VALUE =
       builder()
-          .replacePath(
-              "$..spec.template.spec['containers', 'initContainers'].*.env.[?( @.valueFrom.secretKeyRef.name == \"{%name%}\" )].valueFrom.secretKeyRef.name")
-          .findPath(
-              "$..spec.template.spec['containers', 'initContainers'].*.env.*.valueFrom.secretKeyRef.name")
+          .path(
+              ArtifactPath.root()
+                  .anywhere("spec")
+                  .field("template")
+                  .field("spec")
+                  .field("containers", "initContainers")
+                  .each()
+                  .field("env")
+                  .each()
+                  .field("valueFrom")
+                  .field("secretKeyRef")
+                  .field("name"))
           .type(KubernetesArtifactType.Secret)
           .build();
   private static final Replacer CONFIG_MAP_ENV =
       builder()
-          .replacePath(
-              "$..spec.template.spec['containers', 'initContainers'].*.envFrom.[?( @.configMapRef.name == \"{%name%}\" )].configMapRef.name")
-          .findPath(
-              "$..spec.template.spec['containers', 'initContainers'].*.envFrom.*.configMapRef.name")
+          .path(
+              ArtifactPath.root()
+                  .anywhere("spec")
+                  .field("template")
+                  .field("spec")
+                  .field("containers", "initContainers")
+                  .each()
+                  .field("envFrom")
+                  .each()
+                  .field("configMapRef")
+                  .field("name"))
           .type(KubernetesArtifactType.ConfigMap)
           .build();
   private static final Replacer SECRET_ENV =
       builder()
-          .replacePath(
-              "$..spec.template.spec['containers', 'initContainers'].*.envFrom.[?( @.secretRef.name == \"{%name%}\" )].secretRef.name")
-          .findPath(
-              "$..spec.template.spec['containers', 'initContainers'].*.envFrom.*.secretRef.name")
+          .path(
+              ArtifactPath.root()
+                  .anywhere("spec")
+                  .field("template")
+                  .field("spec")
+                  .field("containers", "initContainers")
+                  .each()
+                  .field("envFrom")
+                  .each()
+                  .field("secretRef")
+                  .field("name"))
           .type(KubernetesArtifactType.Secret)
           .build();
   private static final Replacer HPA_DEPLOYMENT =
       builder()
-          .replacePath(
-              "$[?( (@.spec.scaleTargetRef.kind == \"Deployment\" || @.spec.scaleTargetRef.kind == \"deployment\") && @.spec.scaleTargetRef.name == \"{%name%}\" )].spec.scaleTargetRef.name")
-          .findPath(
-              "$[?( @.spec.scaleTargetRef.kind == \"Deployment\" || @.spec.scaleTargetRef.kind == \"deployment\" )].spec.scaleTargetRef.name")
+          .path(ArtifactPath.root().field("spec").field("scaleTargetRef").field("name"))
+          .filter(scaleTargetKind("Deployment", "deployment"))
           .type(KubernetesArtifactType.Deployment)
           .build();
   private static final Replacer HPA_REPLICA_SET =
       builder()
-          .replacePath(
-              "$[?( (@.spec.scaleTargetRef.kind == \"ReplicaSet\" || @.spec.scaleTargetRef.kind == \"replicaSet\") && @.spec.scaleTargetRef.name == \"{%name%}\" )].spec.scaleTargetRef.name")
-          .findPath(
-              "$[?( @.spec.scaleTargetRef.kind == \"ReplicaSet\" || @.spec.scaleTargetRef.kind == \"replicaSet\" )].spec.scaleTargetRef.name")
+          .path(ArtifactPath.root().field("spec").field("scaleTargetRef").field("name"))
+          .filter(scaleTargetKind("ReplicaSet", "replicaSet"))
           .type(KubernetesArtifactType.ReplicaSet)
           .build();
 
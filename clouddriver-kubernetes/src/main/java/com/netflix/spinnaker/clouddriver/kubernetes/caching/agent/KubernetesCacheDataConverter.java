@@ -25,6 +25,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.cats.cache.DefaultCacheData;
 import com.netflix.spinnaker.clouddriver.kubernetes.KubernetesCloudProvider;
@@ -219,8 +220,20 @@ public class KubernetesCacheDataConverter {
         new TypeReference<List<KubernetesPodMetric.ContainerMetric>>() {});
   }
 
+  /**
+   * Reads the manifest of a cache entry without copying it. Nested values are shared with the
+   * entry; see {@link KubernetesManifest#wrap}.
+   */
+  @SuppressWarnings("unchecked")
   public static KubernetesManifest getManifest(CacheData cacheData) {
-    return mapper.convertValue(cacheData.getAttributes().get("manifest"), KubernetesManifest.class);
+    Object manifest = cacheData.getAttributes().get("manifest");
+    if (manifest == null) {
+      return null;
+    }
+    if (manifest instanceof Map) {
+      return KubernetesManifest.wrap((Map<String, Object>) manifest);
+    }
+    return mapper.convertValue(manifest, KubernetesManifest.class);
   }
 
   public static KubernetesManifest convertToManifest(Object o) {
@@ -228,8 +241,10 @@ public class KubernetesCacheDataConverter {
   }
 
   public static <T> T getResource(Object manifest, Class<T> clazz) {
-    // A little hacky, but the only way to deserialize any timestamps using string constructors
-    return json.deserialize(json.serialize(manifest), clazz);
+    // Converting through a JSON tree, rather than through Jackson, deserializes any timestamps
+    // with the adapters of the Kubernetes client, and spares writing and parsing a JSON string
+    Gson gson = json.getGson();
+    return gson.fromJson(gson.toJsonTree(manifest), clazz);
   }
 
   private static CacheData defaultCacheData(
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.caching.agent;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesApiResource;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesKind;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifest;
+import com.netflix.spinnaker.clouddriver.kubernetes.op.job.KubectlJobExecutor.KubectlException;
+import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesV2Credentials;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The {@link KubernetesResourceInformer}s of an account in watch mode, shared by all of its caching
+ * agents.
+ *
+ * <p>Each kind is watched once across all namespaces and the snapshot of an agent keeps only the
+ * resources in its own namespaces, so that an account needs a watch per kind rather than per kind
+ * and namespace. Accounts configured with an explicit list of namespaces may not be allowed to read
+ * the whole cluster, so their kinds are watched in each of those namespaces instead.
+ *
+ * <p>The collection path of each kind is looked up in the discovery documents of the API server.
+ * Kinds that can't be found there are left for the agents to list. Informers that no agent reads
+ * anymore stop after their idle timeout.
+ */
+class KubernetesInformers {
+  /**
+   * Weak values, so that the informers of an account are dropped along with its agents; weak keys
+   * compare credentials by identity.
+   */
+  private static final Cache<KubernetesV2Credentials, KubernetesInformers> ACCOUNTS =
+      CacheBuilder.newBuilder().weakKeys().weakValues().build();
+
+  private final KubernetesV2Credentials credentials;
+  private final long idleTimeoutMillis;
+  private final ExecutorService executor;
+  private final Map<InformerKey, KubernetesResourceInformer> informers = new ConcurrentHashMap<>();
+
+  KubernetesInformers(KubernetesV2Credentials credentials, long idleTimeoutMillis) {
+    this.credentials = credentials;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    // one thread per informer, whose number is bounded by the kinds (and configured namespaces)
+    this.executor =
+        Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                .setNameFormat("kubernetes-watch-" + credentials.getAccountName() + "-%d")
+                .setDaemon(true)
+                .build());
+  }
+
+  /**
+   * @return the informers of the account, created with the given idle timeout if the account has
+   *     none yet
+   */
+  static KubernetesInformers forAccount(
+      KubernetesV2Credentials credentials, long idleTimeoutMillis) {
+    try {
+      return ACCOUNTS.get(
+          credentials, () -> new KubernetesInformers(credentials, idleTimeoutMillis));
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Makes sure that the given kinds are being watched.
+   *
+   * @param clusterKinds cluster-scoped kinds to watch
+   * @param namespacedKinds namespace-scoped kinds to watch in each of the namespaces
+   * @return the kinds that can't be watched, which the caller has to list itself
+   */
+  synchronized ImmutableSet<KubernetesKind> watch(
+      Collection<KubernetesKind> clusterKinds,
+      Collection<KubernetesKind> namespacedKinds,
+      Collection<String> namespaces) {
+    Set<KubernetesKind> unwatched = new HashSet<>();
+    Map<InformerKey, String> paths = new HashMap<>();
+    for (KubernetesKind kind : clusterKinds) {
+      Optional<KubernetesApiResource> resource = credentials.getApiResource(kind);
+      if (!resource.isPresent() || resource.get().isNamespaced()) {
+        unwatched.add(kind);
+      } else {
+        paths.put(new InformerKey(kind, null), resource.get().collectionPath(null));
+      }
+    }
+    for (KubernetesKind kind : namespacedKinds) {
+      Optional<KubernetesApiResource> resource = credentials.getApiResource(kind);
+      if (!resource.isPresent() || !resource.get().isNamespaced()) {
+        unwatched.add(kind);
+      } else if (!watchesEachNamespace()) {
+        paths.put(new InformerKey(kind, null), resource.get().collectionPath(null));
+      } else {
+        for (String namespace : namespaces) {
+          paths.put(new InformerKey(kind, namespace), resource.get().collectionPath(namespace));
+        }
+      }
+    }
+
+    informers.values().removeIf(KubernetesResourceInformer::isStopped);
+    paths.forEach(
+        (key, path) ->
+            informers.computeIfAbsent(
+                key,
+                k -> {
+                  KubernetesResourceInformer informer =
+                      new KubernetesResourceInformer(
+                          credentials, k.kind, k.namespace, path, idleTimeoutMillis);
+                  executor.execute(informer);
+                  return informer;
+                }));
+
+    return ImmutableSet.copyOf(unwatched);
+  }
+
+  /**
+   * @return the resources of the given kinds that are being watched, keeping only those in the
+   *     given namespaces for namespace-scoped kinds
+   * @throws KubectlException if some kind has not been listed yet within the timeout
+   */
+  ImmutableList<KubernetesManifest> snapshot(
+      Collection<KubernetesKind> clusterKinds,
+      Collection<KubernetesKind> namespacedKinds,
+      Collection<String> namespaces,
+      long timeout,
+      TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    ImmutableList.Builder<KubernetesManifest> result = ImmutableList.builder();
+    for (KubernetesKind kind : clusterKinds) {
+      snapshot(new InformerKey(kind, null), null, deadline, result);
+    }
+    ImmutableSet<String> namespaceSet = ImmutableSet.copyOf(namespaces);
+    for (KubernetesKind kind : namespacedKinds) {
+      if (!watchesEachNamespace()) {
+        snapshot(new InformerKey(kind, null), namespaceSet, deadline, result);
+        continue;
+      }
+      for (String namespace : namespaceSet) {
+        snapshot(new InformerKey(kind, namespace), null, deadline, result);
+      }
+    }
+    return result.build();
+  }
+
+  private void snapshot(
+      InformerKey key,
+      @Nullable Set<String> namespaces,
+      long deadline,
+      ImmutableList.Builder<KubernetesManifest> result) {
+    KubernetesResourceInformer informer = informers.get(key);
+    if (informer == null) {
+      return;
+    }
+    try {
+      if (!informer.awaitSynced(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+        throw new KubectlException(
+            "Timed out waiting for the list of "
+                + informer.getKind()
+                + " in "
+                + informer.getNamespace());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new KubectlException("Interrupted waiting for the list of " + informer.getKind(), e);
+    }
+    result.addAll(informer.snapshot(namespaces));
+  }
+
+  private boolean watchesEachNamespace() {
+    return !credentials.getNamespaces().isEmpty();
+  }
+
+  @EqualsAndHashCode
+  @RequiredArgsConstructor
+  private static class InformerKey {
+    private final KubernetesKind kind;
+    @Nullable private final String namespace;
+  }
+}
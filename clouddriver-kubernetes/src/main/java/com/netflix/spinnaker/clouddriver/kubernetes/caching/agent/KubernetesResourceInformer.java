@@ -0,0 +1,208 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.caching.agent;
+
+import com.google.common.collect.ImmutableList;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesKind;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifest;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifestList;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesWatchEvent;
+import com.netflix.spinnaker.clouddriver.kubernetes.op.job.KubectlJobExecutor.KubectlException;
+import com.netflix.spinnaker.clouddriver.kubernetes.op.job.KubectlJobExecutor.KubectlExpiredException;
+import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesV2Credentials;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps an in-memory copy of the resources of one kind, in one namespace or across the cluster, by
+ * listing them once and then watching them from the resourceVersion of the list.
+ *
+ * <p>A watch that ends is resumed from the last resourceVersion seen, so the resources are only
+ * listed again if that version has expired. The informer stops once nobody has read it for its
+ * idle timeout, so that informers of an agent that now runs elsewhere don't watch forever.
+ */
+@Slf4j
+class KubernetesResourceInformer implements Runnable {
+  private static final int WATCH_TIMEOUT_SECONDS = 300;
+  private static final long MIN_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(1);
+  private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private final KubernetesV2Credentials credentials;
+  @Getter private final KubernetesKind kind;
+  @Getter @Nullable private final String namespace;
+  private final String path;
+  private final long idleTimeoutMillis;
+  private final CountDownLatch synced = new CountDownLatch(1);
+
+  private volatile Map<String, KubernetesManifest> resources = new ConcurrentHashMap<>();
+  @Nullable private volatile String resourceVersion;
+  private volatile long lastReadMillis = System.currentTimeMillis();
+  private volatile boolean stopped;
+
+  /**
+   * @param namespace the namespace being watched, or null if path holds the resources of every
+   *     namespace
+   * @param path the collection of the Kubernetes API holding the resources, such as {@code
+   *     /apis/apps/v1/namespaces/default/deployments}
+   */
+  KubernetesResourceInformer(
+      KubernetesV2Credentials credentials,
+      KubernetesKind kind,
+      @Nullable String namespace,
+      String path,
+      long idleTimeoutMillis) {
+    this.credentials = credentials;
+    this.kind = kind;
+    this.namespace = namespace;
+    this.path = path;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+  }
+
+  @Override
+  public void run() {
+    long backoffMillis = MIN_BACKOFF_MILLIS;
+    while (!stopped) {
+      if (System.currentTimeMillis() - lastReadMillis > idleTimeoutMillis) {
+        log.info("{}: Stopping idle watch of {} in {}", accountName(), kind, namespace);
+        break;
+      }
+
+      try {
+        if (resourceVersion == null) {
+          list();
+        }
+        credentials.watch(
+            kind, namespace, path, resourceVersion, WATCH_TIMEOUT_SECONDS, this::handle);
+        backoffMillis = MIN_BACKOFF_MILLIS;
+      } catch (KubectlExpiredException e) {
+        log.info(
+            "{}: Watch of {} in {} expired, listing it again", accountName(), kind, namespace);
+        resourceVersion = null;
+      } catch (Exception e) {
+        log.warn(
+            "{}: Failed to watch {} in {}, retrying in {}ms",
+            accountName(),
+            kind,
+            namespace,
+            backoffMillis,
+            e);
+        try {
+          Thread.sleep(backoffMillis);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+        backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+      }
+    }
+    stopped = true;
+  }
+
+  private void list() {
+    KubernetesManifestList list = credentials.listRaw(kind, namespace, path);
+    if (list.getResourceVersion() == null) {
+      throw new KubectlException("No resourceVersion in list of " + path);
+    }
+
+    Map<String, KubernetesManifest> listed = new ConcurrentHashMap<>();
+    for (KubernetesManifest manifest : list.getItems()) {
+      listed.put(key(manifest), manifest);
+    }
+    resources = listed;
+    resourceVersion = list.getResourceVersion();
+    synced.countDown();
+  }
+
+  private void handle(KubernetesWatchEvent event) {
+    KubernetesManifest object = event.getObject();
+    switch (event.getType()) {
+      case KubernetesWatchEvent.ADDED:
+      case KubernetesWatchEvent.MODIFIED:
+        resources.put(key(object), object);
+        break;
+      case KubernetesWatchEvent.DELETED:
+        resources.remove(key(object));
+        break;
+      case KubernetesWatchEvent.BOOKMARK:
+        break;
+      case KubernetesWatchEvent.ERROR:
+        Object code = object.get("code");
+        if (code instanceof Number && ((Number) code).intValue() == 410) {
+          throw new KubectlExpiredException(
+              "Watch of " + path + " expired: " + object.get("message"));
+        }
+        throw new KubectlException("Watch of " + path + " failed: " + object.get("message"));
+      default:
+        log.warn("{}: Ignoring watch event of type {}", accountName(), event.getType());
+        return;
+    }
+
+    String version = resourceVersion(object);
+    if (version != null) {
+      resourceVersion = version;
+    }
+  }
+
+  private static String key(KubernetesManifest manifest) {
+    return manifest.getNamespace() + "/" + manifest.getName();
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked")
+  private static String resourceVersion(KubernetesManifest object) {
+    Map<String, Object> metadata = (Map<String, Object>) object.get("metadata");
+    return metadata == null ? null : (String) metadata.get("resourceVersion");
+  }
+
+  private String accountName() {
+    return credentials.getAccountName();
+  }
+
+  /** @return whether the resources have been listed within the timeout */
+  boolean awaitSynced(long timeout, TimeUnit unit) throws InterruptedException {
+    return synced.await(timeout, unit);
+  }
+
+  /**
+   * @param namespaces the namespaces to keep the resources of, or null to keep all of them
+   * @return a copy of each resource, which the caller may modify at the top level (e.g. to remove
+   *     sensitive keys)
+   */
+  ImmutableList<KubernetesManifest> snapshot(@Nullable Set<String> namespaces) {
+    lastReadMillis = System.currentTimeMillis();
+    return resources.values().stream()
+        .filter(manifest -> namespaces == null || namespaces.contains(manifest.getNamespace()))
+        .map(KubernetesManifest::clone)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /** Stops the informer once its current watch ends. */
+  void stop() {
+    stopped = true;
+  }
+
+  boolean isStopped() {
+    return stopped;
+  }
+}
@@ -20,11 +20,16 @@ package com.netflix.spinnaker.clouddriver.kubernetes.caching.agent;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Sets;
 import com.netflix.spectator.api.Registry;
+import com.netflix.spinnaker.cats.agent.AgentDataType;
 import com.netflix.spinnaker.cats.agent.AgentIntervalAware;
 import com.netflix.spinnaker.cats.agent.CacheResult;
 import com.netflix.spinnaker.cats.agent.DefaultCacheResult;
+import com.netflix.spinnaker.cats.agent.DeltaCacheResult;
+import com.netflix.spinnaker.cats.agent.DeltaCachingAgent;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.cats.provider.ProviderCache;
 import com.netflix.spinnaker.clouddriver.kubernetes.KubernetesCloudProvider;
@@ -38,27 +43,51 @@ import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.Kuberne
 import com.netflix.spinnaker.clouddriver.kubernetes.op.job.KubectlJobExecutor;
 import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesNamedAccountCredentials;
 import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesV2Credentials;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Caches the resources of some kinds in some namespaces of an account.
+ *
+ * <p>For an account in watch mode, the resources are kept up to date by {@link
+ * KubernetesInformers} rather than listed on every run, and each run returns a {@link
+ * DeltaCacheResult} with only the items that changed since the previous run.
+ */
 @Slf4j
 public abstract class KubernetesV2CachingAgent
-    extends KubernetesCachingAgent<KubernetesV2Credentials> implements AgentIntervalAware {
+    extends KubernetesCachingAgent<KubernetesV2Credentials>
+    implements AgentIntervalAware, DeltaCachingAgent {
+  private static final long INFORMER_SYNC_TIMEOUT_MINUTES = 5;
+  private static final long MIN_INFORMER_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
   protected KubectlJobExecutor jobExecutor;
 
   @Getter protected String providerName = KubernetesCloudProvider.ID;
 
   @Getter protected final Long agentInterval;
 
+  private KubernetesInformers informers;
+
+  private final AtomicBoolean fullResyncRequested = new AtomicBoolean(true);
+  private long generation;
+  private Map<String, Map<String, CacheData>> previousResult;
+
   protected KubernetesV2CachingAgent(
       KubernetesNamedAccountCredentials<KubernetesV2Credentials> namedAccountCredentials,
       ObjectMapper objectMapper,
@@ -79,29 +108,27 @@ public abstract class KubernetesV2CachingAgent
 
   protected abstract List<KubernetesKind> primaryKinds();
 
-  private ImmutableList<KubernetesManifest> loadResources(
-      @Nonnull Iterable<KubernetesKind> kubernetesKinds, Optional<String> optionalNamespace) {
+  private void loadResources(
+      @Nonnull Collection<KubernetesKind> kubernetesKinds,
+      Optional<String> optionalNamespace,
+      Consumer<ImmutableList<KubernetesManifest>> pageConsumer) {
     String namespace = optionalNamespace.orElse(null);
-    return credentials.list(ImmutableList.copyOf(kubernetesKinds), namespace);
+    credentials.listInPages(ImmutableList.copyOf(kubernetesKinds), namespace, pageConsumer);
   }
 
-  @Nonnull
-  private ImmutableList<KubernetesManifest> loadNamespaceScopedResources(
-      @Nonnull Iterable<KubernetesKind> kubernetesKinds) {
-    return getNamespaces()
+  private void loadNamespaceScopedResources(
+      @Nonnull Collection<KubernetesKind> kubernetesKinds,
+      Consumer<ImmutableList<KubernetesManifest>> pageConsumer) {
+    getNamespaces()
         .parallelStream()
-        .map(n -> loadResources(kubernetesKinds, Optional.of(n)))
-        .flatMap(Collection::stream)
-        .collect(ImmutableList.toImmutableList());
+        .forEach(n -> loadResources(kubernetesKinds, Optional.of(n), pageConsumer));
   }
 
-  @Nonnull
-  private ImmutableList<KubernetesManifest> loadClusterScopedResources(
-      @Nonnull Iterable<KubernetesKind> kubernetesKinds) {
+  private void loadClusterScopedResources(
+      @Nonnull Collection<KubernetesKind> kubernetesKinds,
+      Consumer<ImmutableList<KubernetesManifest>> pageConsumer) {
     if (handleClusterScopedResources()) {
-      return loadResources(kubernetesKinds, Optional.empty());
-    } else {
-      return ImmutableList.of();
+      loadResources(kubernetesKinds, Optional.empty(), pageConsumer);
     }
   }
 
@@ -112,42 +139,107 @@ public abstract class KubernetesV2CachingAgent
                 k -> credentials.getKindProperties(k).getResourceScope(), Function.identity()));
   }
 
-  protected Map<KubernetesKind, List<KubernetesManifest>> loadPrimaryResourceList() {
+  /** @return the kinds whose resources the relationships of the primary resources are built from */
+  private ImmutableSet<KubernetesKind> relationshipKinds() {
+    return primaryKinds().stream()
+        .flatMap(
+            k ->
+                RegistryUtils.relationshipKinds(credentials.getResourcePropertyRegistry(), k)
+                    .stream())
+        .collect(ImmutableSet.toImmutableSet());
+  }
+
+  /**
+   * Lists the primary resources a page at a time. Resources of kinds that relationships are built
+   * from are returned, as relationships are built from all of them at once; all others are handed
+   * to pageConsumer page by page as they are listed, so that they need not be held in memory
+   * beyond what the consumer keeps of them. Pages are handed over one at a time.
+   */
+  protected Map<KubernetesKind, List<KubernetesManifest>> loadPrimaryResourceList(
+      Consumer<List<KubernetesManifest>> pageConsumer) {
     ImmutableSetMultimap<ResourceScope, KubernetesKind> kindsByScope = primaryKindsByScope();
+    ImmutableSet<KubernetesKind> clusterKinds =
+        kindsByScope.get(KubernetesKindProperties.ResourceScope.CLUSTER);
+    ImmutableSet<KubernetesKind> namespacedKinds =
+        kindsByScope.get(KubernetesKindProperties.ResourceScope.NAMESPACE);
 
-    Map<KubernetesKind, List<KubernetesManifest>> result =
-        Stream.concat(
-                loadClusterScopedResources(
-                    kindsByScope.get(KubernetesKindProperties.ResourceScope.CLUSTER))
-                    .stream(),
-                loadNamespaceScopedResources(
-                    kindsByScope.get(KubernetesKindProperties.ResourceScope.NAMESPACE))
-                    .stream())
-            .collect(Collectors.groupingBy(KubernetesManifest::getKind));
+    PrimaryResourcePages pages = new PrimaryResourcePages(relationshipKinds(), pageConsumer);
+    if (credentials.isWatchResources()) {
+      ImmutableSet<KubernetesKind> watchedClusterKinds =
+          handleClusterScopedResources() ? clusterKinds : ImmutableSet.of();
+      ImmutableList<String> namespaces = getNamespaces();
+      ImmutableSet<KubernetesKind> unwatched =
+          getInformers().watch(watchedClusterKinds, namespacedKinds, namespaces);
+      pages.accept(
+          getInformers()
+              .snapshot(
+                  watchedClusterKinds,
+                  namespacedKinds,
+                  namespaces,
+                  INFORMER_SYNC_TIMEOUT_MINUTES,
+                  TimeUnit.MINUTES));
+      clusterKinds = Sets.intersection(clusterKinds, unwatched).immutableCopy();
+      namespacedKinds = Sets.intersection(namespacedKinds, unwatched).immutableCopy();
+    }
 
-    for (KubernetesCachingPolicy policy : credentials.getCachingPolicies()) {
-      KubernetesKind policyKind = KubernetesKind.fromString(policy.getKubernetesKind());
-      if (!result.containsKey(policyKind)) {
-        continue;
-      }
+    loadClusterScopedResources(clusterKinds, pages);
+    loadNamespaceScopedResources(namespacedKinds, pages);
+    return pages.finish();
+  }
 
-      List<KubernetesManifest> entries = result.get(policyKind);
-      if (entries == null) {
-        continue;
+  /**
+   * Sorts the pages of primary resources into those held for building relationships and those
+   * handed on, pruning each kind to the maximum number of entries of its caching policy.
+   */
+  private class PrimaryResourcePages implements Consumer<ImmutableList<KubernetesManifest>> {
+    private final ImmutableSet<KubernetesKind> heldKinds;
+    private final Consumer<List<KubernetesManifest>> pageConsumer;
+    private final Map<KubernetesKind, Integer> maxEntries = new HashMap<>();
+    private final Map<KubernetesKind, Integer> counts = new HashMap<>();
+    private final Map<KubernetesKind, List<KubernetesManifest>> held = new HashMap<>();
+
+    PrimaryResourcePages(
+        ImmutableSet<KubernetesKind> heldKinds, Consumer<List<KubernetesManifest>> pageConsumer) {
+      this.heldKinds = heldKinds;
+      this.pageConsumer = pageConsumer;
+      for (KubernetesCachingPolicy policy : credentials.getCachingPolicies()) {
+        maxEntries.put(
+            KubernetesKind.fromString(policy.getKubernetesKind()), policy.getMaxEntriesPerAgent());
       }
+    }
 
-      if (entries.size() > policy.getMaxEntriesPerAgent()) {
-        log.warn(
-            "{}: Pruning {} entries from kind {}",
-            getAgentType(),
-            entries.size() - policy.getMaxEntriesPerAgent(),
-            policyKind);
-        entries = entries.subList(0, policy.getMaxEntriesPerAgent());
-        result.put(policyKind, entries);
+    /** Namespaces are listed in parallel, so pages may arrive from several threads. */
+    @Override
+    public synchronized void accept(ImmutableList<KubernetesManifest> page) {
+      List<KubernetesManifest> handedOn = new ArrayList<>(page.size());
+      for (KubernetesManifest manifest : page) {
+        KubernetesKind kind = manifest.getKind();
+        int count = counts.merge(kind, 1, Integer::sum);
+        if (count > maxEntries.getOrDefault(kind, Integer.MAX_VALUE)) {
+          continue;
+        }
+        if (heldKinds.contains(kind)) {
+          held.computeIfAbsent(kind, k -> new ArrayList<>()).add(manifest);
+        } else {
+          handedOn.add(manifest);
+        }
+      }
+      if (!handedOn.isEmpty()) {
+        pageConsumer.accept(handedOn);
       }
     }
 
-    return result;
+    /** @return the held resources by kind */
+    synchronized Map<KubernetesKind, List<KubernetesManifest>> finish() {
+      counts.forEach(
+          (kind, count) -> {
+            int max = maxEntries.getOrDefault(kind, Integer.MAX_VALUE);
+            if (count > max) {
+              log.warn("{}: Pruning {} entries from kind {}", getAgentType(), count - max, kind);
+            }
+          });
+      return held;
+    }
   }
 
   protected KubernetesManifest loadPrimaryResource(
@@ -161,9 +253,138 @@ public abstract class KubernetesV2CachingAgent
     Map<String, Object> details = defaultIntrospectionDetails();
 
     long start = System.currentTimeMillis();
-    Map<KubernetesKind, List<KubernetesManifest>> primaryResourceList = loadPrimaryResourceList();
+    KubernetesCacheData kubernetesCacheData = new KubernetesCacheData();
+    Map<KubernetesKind, List<KubernetesManifest>> primaryResourceList =
+        loadPrimaryResourceList(
+            page -> convertResources(kubernetesCacheData, page, Collections.emptyMap()));
     details.put("timeSpentInKubectlMs", System.currentTimeMillis() - start);
-    return buildCacheResult(primaryResourceList);
+    return toStoredResult(buildCacheResult(kubernetesCacheData, primaryResourceList));
+  }
+
+  private KubernetesInformers getInformers() {
+    if (informers == null) {
+      long idleTimeoutMillis =
+          Math.max(
+              MIN_INFORMER_IDLE_TIMEOUT_MILLIS,
+              3 * Optional.ofNullable(agentInterval).orElse(0L));
+      informers = KubernetesInformers.forAccount(credentials, idleTimeoutMillis);
+    }
+    return informers;
+  }
+
+  /**
+   * Returns the complete result of a run as it should be stored. In watch mode, that is a delta
+   * against the result of the previous run, unless a full resync was requested.
+   */
+  protected CacheResult toStoredResult(CacheResult result) {
+    if (!credentials.isWatchResources()) {
+      return result;
+    }
+
+    Map<String, Map<String, CacheData>> current = new HashMap<>();
+    result
+        .getCacheResults()
+        .forEach(
+            (type, items) -> {
+              Map<String, CacheData> byId = new HashMap<>();
+              items.forEach(item -> byId.put(item.getId(), item));
+              current.put(type, byId);
+            });
+
+    Map<String, Map<String, CacheData>> previous = previousResult;
+    long baseGeneration = generation++;
+    previousResult = current;
+
+    DeltaCacheResult stored;
+    if (previous == null || fullResyncRequested.getAndSet(false)) {
+      stored = DeltaCacheResult.full(generation, result.getCacheResults());
+      stored.getEvictions().putAll(result.getEvictions());
+    } else {
+      stored =
+          DeltaCacheResult.delta(
+              baseGeneration,
+              generation,
+              changedItems(previous, current),
+              deletedItems(previous, current, result.getEvictions()));
+    }
+    stored.getIntrospectionDetails().putAll(result.getIntrospectionDetails());
+    return stored;
+  }
+
+  private static Map<String, Collection<CacheData>> changedItems(
+      Map<String, Map<String, CacheData>> previous, Map<String, Map<String, CacheData>> current) {
+    Map<String, Collection<CacheData>> changed = new HashMap<>();
+    current.forEach(
+        (type, items) -> {
+          Map<String, CacheData> before = previous.getOrDefault(type, Collections.emptyMap());
+          List<CacheData> changedOfType =
+              items.values().stream()
+                  .filter(item -> !sameCacheData(before.get(item.getId()), item))
+                  .collect(Collectors.toList());
+          if (!changedOfType.isEmpty()) {
+            changed.put(type, changedOfType);
+          }
+        });
+    return changed;
+  }
+
+  /**
+   * Items of an authoritative type that are no longer in the result are deleted, as they would be
+   * by storing the complete result; explicit evictions are kept for any type.
+   */
+  private Map<String, Collection<String>> deletedItems(
+      Map<String, Map<String, CacheData>> previous,
+      Map<String, Map<String, CacheData>> current,
+      Map<String, Collection<String>> evictions) {
+    Set<String> authoritativeTypes =
+        getProvidedDataTypes().stream()
+            .filter(t -> t.getAuthority() == AgentDataType.Authority.AUTHORITATIVE)
+            .map(AgentDataType::getTypeName)
+            .collect(Collectors.toSet());
+
+    Map<String, Collection<String>> deleted = new HashMap<>();
+    previous.forEach(
+        (type, items) -> {
+          if (!authoritativeTypes.contains(type)) {
+            return;
+          }
+          Map<String, CacheData> after = current.getOrDefault(type, Collections.emptyMap());
+          List<String> deletedOfType =
+              items.keySet().stream()
+                  .filter(id -> !after.containsKey(id))
+                  .collect(Collectors.toList());
+          if (!deletedOfType.isEmpty()) {
+            deleted.put(type, deletedOfType);
+          }
+        });
+    evictions.forEach(
+        (type, ids) -> {
+          if (!ids.isEmpty()) {
+            deleted.computeIfAbsent(type, t -> new ArrayList<>()).addAll(ids);
+          }
+        });
+    return deleted;
+  }
+
+  private static boolean sameCacheData(@Nullable CacheData previous, CacheData current) {
+    if (previous == null || !previous.getAttributes().equals(current.getAttributes())) {
+      return false;
+    }
+
+    Map<String, Collection<String>> before = previous.getRelationships();
+    Map<String, Collection<String>> after = current.getRelationships();
+    if (!before.keySet().equals(after.keySet())) {
+      return false;
+    }
+    // relationships are unordered, and may be built in a different order on each run
+    return before.entrySet().stream()
+        .allMatch(
+            e -> new HashSet<>(e.getValue()).equals(new HashSet<>(after.get(e.getKey()))));
+  }
+
+  @Override
+  public void requestFullResync() {
+    fullResyncRequested.set(true);
   }
 
   protected CacheResult buildCacheResult(KubernetesManifest resource) {
@@ -171,27 +392,22 @@ public abstract class KubernetesV2CachingAgent
   }
 
   protected CacheResult buildCacheResult(Map<KubernetesKind, List<KubernetesManifest>> resources) {
-    KubernetesCacheData kubernetesCacheData = new KubernetesCacheData();
+    return buildCacheResult(new KubernetesCacheData(), resources);
+  }
+
+  /**
+   * Adds the given resources, with their relationships, to cache data that may already hold
+   * converted resources, and builds the result from all of it.
+   */
+  protected CacheResult buildCacheResult(
+      KubernetesCacheData kubernetesCacheData,
+      Map<KubernetesKind, List<KubernetesManifest>> resources) {
     Map<KubernetesManifest, List<KubernetesManifest>> relationships =
         loadSecondaryResourceRelationships(resources);
-
-    resources.values().stream()
-        .flatMap(Collection::stream)
-        .peek(m -> RegistryUtils.removeSensitiveKeys(credentials.getResourcePropertyRegistry(), m))
-        .forEach(
-            rs -> {
-              try {
-                KubernetesCacheDataConverter.convertAsResource(
-                    kubernetesCacheData,
-                    accountName,
-                    credentials.getKindProperties(rs.getKind()),
-                    rs,
-                    relationships.get(rs),
-                    credentials.isOnlySpinnakerManaged());
-              } catch (Exception e) {
-                log.warn("{}: Failure converting {}", getAgentType(), rs, e);
-              }
-            });
+    convertResources(
+        kubernetesCacheData,
+        resources.values().stream().flatMap(Collection::stream).collect(Collectors.toList()),
+        relationships);
 
     Map<String, Collection<CacheData>> entries = kubernetesCacheData.toStratifiedCacheData();
     KubernetesCacheDataConverter.logStratifiedCacheData(getAgentType(), entries);
@@ -199,6 +415,26 @@ public abstract class KubernetesV2CachingAgent
     return new DefaultCacheResult(entries);
   }
 
+  protected void convertResources(
+      KubernetesCacheData kubernetesCacheData,
+      Collection<KubernetesManifest> resources,
+      Map<KubernetesManifest, List<KubernetesManifest>> relationships) {
+    for (KubernetesManifest rs : resources) {
+      RegistryUtils.removeSensitiveKeys(credentials.getResourcePropertyRegistry(), rs);
+      try {
+        KubernetesCacheDataConverter.convertAsResource(
+            kubernetesCacheData,
+            accountName,
+            credentials.getKindProperties(rs.getKind()),
+            rs,
+            relationships.get(rs),
+            credentials.isOnlySpinnakerManaged());
+      } catch (Exception e) {
+        log.warn("{}: Failure converting {}", getAgentType(), rs, e);
+      }
+    }
+  }
+
   protected Map<KubernetesManifest, List<KubernetesManifest>> loadSecondaryResourceRelationships(
       Map<KubernetesKind, List<KubernetesManifest>> allResources) {
     Map<KubernetesManifest, List<KubernetesManifest>> result = new HashMap<>();
@@ -41,6 +41,8 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class KubernetesV2CachingAgentDispatcher
     implements KubernetesCachingAgentDispatcher<KubernetesV2Credentials> {
+  private static final long DEFAULT_WATCH_CACHE_INTERVAL_SECONDS = 15;
+
   private final ObjectMapper objectMapper;
   private final Registry registry;
 
@@ -59,6 +61,11 @@ public class KubernetesV2CachingAgentDispatcher
         Optional.ofNullable(credentials.getCacheIntervalSeconds())
             .map(TimeUnit.SECONDS::toMillis)
             .orElse(null);
+    // watched resources are in memory already, so they can be flushed much more often
+    Long resourceAgentInterval =
+        agentInterval == null && v2Credentials.isWatchResources()
+            ? TimeUnit.SECONDS.toMillis(DEFAULT_WATCH_CACHE_INTERVAL_SECONDS)
+            : agentInterval;
 
     ResourcePropertyRegistry propertyRegistry = v2Credentials.getResourcePropertyRegistry();
 
@@ -76,7 +83,7 @@ public class KubernetesV2CachingAgentDispatcher
                                 registry,
                                 i,
                                 credentials.getCacheThreads(),
-                                agentInterval))
+                                resourceAgentInterval))
                     .filter(Objects::nonNull)
                     .forEach(result::add));
 
@@ -86,18 +86,18 @@ public abstract class KubernetesV2OnDemandCachingAgent extends KubernetesV2Cachi
     Map<String, Object> details = defaultIntrospectionDetails();
 
     Long start = System.currentTimeMillis();
-    Map<KubernetesKind, List<KubernetesManifest>> primaryResource;
-    primaryResource = loadPrimaryResourceList();
+    KubernetesCacheData kubernetesCacheData = new KubernetesCacheData();
+    List<String> primaryKeys = new ArrayList<>();
+    Map<KubernetesKind, List<KubernetesManifest>> primaryResource =
+        loadPrimaryResourceList(
+            page -> {
+              addPrimaryKeys(primaryKeys, page);
+              convertResources(kubernetesCacheData, page, Collections.emptyMap());
+            });
+    primaryResource.values().forEach(resources -> addPrimaryKeys(primaryKeys, resources));
 
     details.put("timeSpentInKubectlMs", System.currentTimeMillis() - start);
 
-    List<String> primaryKeys =
-        primaryResource.values().stream()
-            .flatMap(Collection::stream)
-            .map(rs -> objectMapper.convertValue(rs, KubernetesManifest.class))
-            .map(mf -> Keys.InfrastructureCacheKey.createKey(mf, accountName))
-            .collect(Collectors.toList());
-
     List<CacheData> keepInOnDemand = new ArrayList<>();
     List<CacheData> evictFromOnDemand = new ArrayList<>();
 
@@ -121,7 +121,7 @@ public abstract class KubernetesV2OnDemandCachingAgent extends KubernetesV2Cachi
     keepInOnDemand.sort(Comparator.comparing(a -> ((Long) a.getAttributes().get(CACHE_TIME_KEY))));
 
     // first build the cache result, then decide which entries to overwrite with on demand data
-    CacheResult result = buildCacheResult(primaryResource);
+    CacheResult result = buildCacheResult(kubernetesCacheData, primaryResource);
     Map<String, Collection<CacheData>> cacheResults = result.getCacheResults();
 
     for (CacheData onDemandData : keepInOnDemand) {
@@ -160,7 +160,13 @@ public abstract class KubernetesV2OnDemandCachingAgent extends KubernetesV2Cachi
                 evictFromOnDemand.stream().map(CacheData::getId).collect(Collectors.toList()))
             .build();
 
-    return new DefaultCacheResult(cacheResults, evictionResults, details);
+    return toStoredResult(new DefaultCacheResult(cacheResults, evictionResults, details));
+  }
+
+  private void addPrimaryKeys(List<String> primaryKeys, List<KubernetesManifest> resources) {
+    for (KubernetesManifest resource : resources) {
+      primaryKeys.add(Keys.InfrastructureCacheKey.createKey(resource, accountName));
+    }
   }
 
   protected void mergeCacheResults(
@@ -61,5 +61,7 @@ public class KubernetesConfigurationProperties {
     private boolean onlySpinnakerManaged = false;
     private boolean liveManifestCalls = false;
     private Long cacheIntervalSeconds;
+    private boolean watchResources = false;
+    private boolean apiClientReads = false;
   }
 }
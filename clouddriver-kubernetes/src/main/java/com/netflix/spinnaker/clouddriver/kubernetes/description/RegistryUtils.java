@@ -17,6 +17,7 @@
 
 package com.netflix.spinnaker.clouddriver.kubernetes.description;
 
+import com.google.common.collect.ImmutableSet;
 import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesKind;
 import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifest;
 import com.netflix.spinnaker.clouddriver.kubernetes.op.handler.KubernetesHandler;
@@ -50,6 +51,14 @@ public class RegistryUtils {
         .ifPresent(h -> h.removeSensitiveKeys(manifest));
   }
 
+  /** @return the kinds the relationships of resources of the given kind are built from */
+  public static ImmutableSet<KubernetesKind> relationshipKinds(
+      ResourcePropertyRegistry propertyRegistry, KubernetesKind kind) {
+    return lookupHandler(propertyRegistry, kind)
+        .map(KubernetesHandler::relationshipKinds)
+        .orElse(ImmutableSet.of());
+  }
+
   public static void addRelationships(
       ResourcePropertyRegistry propertyRegistry,
       KubernetesKind kind,
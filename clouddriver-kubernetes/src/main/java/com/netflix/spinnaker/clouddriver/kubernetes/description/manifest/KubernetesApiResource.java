@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.description.manifest;
+
+import com.google.common.base.Strings;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import lombok.Value;
+
+/** Where the Kubernetes API serves the resources of a kind, as read from its discovery documents. */
+@Value
+public class KubernetesApiResource {
+  /** The path of the group version serving the kind, such as {@code /apis/apps/v1}. */
+  @Nonnull String prefix;
+
+  /** The plural name of the kind in paths, such as {@code deployments}. */
+  @Nonnull String name;
+
+  boolean namespaced;
+
+  /**
+   * @return the path of the collection holding the resources in the given namespace, or in all
+   *     namespaces if it is empty; the namespace is ignored if the kind is cluster-scoped
+   */
+  @Nonnull
+  public String collectionPath(@Nullable String namespace) {
+    if (!namespaced || Strings.isNullOrEmpty(namespace)) {
+      return prefix + "/" + name;
+    }
+    return prefix + "/namespaces/" + namespace + "/" + name;
+  }
+
+  @Nonnull
+  public String resourcePath(@Nullable String namespace, @Nonnull String resourceName) {
+    return collectionPath(namespace) + "/" + resourceName;
+  }
+}
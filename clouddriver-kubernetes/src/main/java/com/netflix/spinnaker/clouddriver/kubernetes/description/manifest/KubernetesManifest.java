@@ -21,7 +21,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
-import java.util.ArrayList;
+import com.google.common.collect.ImmutableList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +37,51 @@ public class KubernetesManifest extends HashMap<String, Object> {
 
   @Nullable private KubernetesKind computedKind;
 
+  // The owner references last decoded, paired with the raw value they were decoded from, so that
+  // they are decoded again only if that value is replaced.
+  @Nullable private transient Pair<Object, ImmutableList<OwnerReference>> decodedOwnerReferences;
+
+  /**
+   * Wraps the manifest held in a cache entry, or any other map read from JSON, without deep copying
+   * it. Only the maps that the accessors of this class write to are copied: the metadata with its
+   * labels and annotations, and the spec down to the metadata of its template. Other nested values,
+   * such as containers or the status, are shared with the source and must not be modified.
+   */
+  public static KubernetesManifest wrap(Map<String, Object> source) {
+    KubernetesManifest result = new KubernetesManifest();
+    result.putAll(source);
+    copyMetadata(result);
+
+    Map<String, Object> spec = copyChild(result, "spec");
+    if (spec != null) {
+      Map<String, Object> template = copyChild(spec, "template");
+      if (template != null) {
+        copyMetadata(template);
+      }
+    }
+    return result;
+  }
+
+  private static void copyMetadata(Map<String, Object> parent) {
+    Map<String, Object> metadata = copyChild(parent, "metadata");
+    if (metadata != null) {
+      copyChild(metadata, "labels");
+      copyChild(metadata, "annotations");
+    }
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> copyChild(Map<String, Object> parent, String key) {
+    Object child = parent.get(key);
+    if (!(child instanceof Map)) {
+      return null;
+    }
+    Map<String, Object> copy = new HashMap<>((Map<String, Object>) child);
+    parent.put(key, copy);
+    return copy;
+  }
+
   @Override
   public KubernetesManifest clone() {
     return (KubernetesManifest) super.clone();
@@ -145,14 +190,21 @@ public class KubernetesManifest extends HashMap<String, Object> {
   }
 
   @JsonIgnore
-  public List<OwnerReference> getOwnerReferences() {
+  public ImmutableList<OwnerReference> getOwnerReferences() {
     Map<String, Object> metadata = getMetadata();
     Object ownerReferences = metadata.get("ownerReferences");
     if (ownerReferences == null) {
-      return new ArrayList<>();
+      return ImmutableList.of();
     }
 
-    return mapper.convertValue(ownerReferences, new TypeReference<List<OwnerReference>>() {});
+    Pair<Object, ImmutableList<OwnerReference>> decoded = decodedOwnerReferences;
+    if (decoded == null || decoded.getLeft() != ownerReferences) {
+      List<OwnerReference> references =
+          mapper.convertValue(ownerReferences, new TypeReference<List<OwnerReference>>() {});
+      decoded = new ImmutablePair<>(ownerReferences, ImmutableList.copyOf(references));
+      decodedOwnerReferences = decoded;
+    }
+    return decoded.getRight();
   }
 
   @JsonIgnore
@@ -18,9 +18,16 @@
 package com.netflix.spinnaker.clouddriver.kubernetes.description.manifest;
 
 import java.util.List;
+import javax.annotation.Nullable;
 import lombok.Data;
 
 @Data
 public class KubernetesManifestList {
   private List<KubernetesManifest> items;
+
+  /** The version of the collection the items were read at, from which it can be watched. */
+  @Nullable private String resourceVersion;
+
+  /** Set if the list was read a page at a time and there are more pages to read. */
+  @Nullable private String continueToken;
 }
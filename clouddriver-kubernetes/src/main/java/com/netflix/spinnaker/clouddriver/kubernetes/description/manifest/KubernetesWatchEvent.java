@@ -0,0 +1,36 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.description.manifest;
+
+import lombok.Data;
+
+/**
+ * An event of a Kubernetes watch. For an ERROR event the object is a Status rather than a
+ * resource; for a BOOKMARK event it only carries the resourceVersion the watch has reached.
+ */
+@Data
+public class KubernetesWatchEvent {
+  public static final String ADDED = "ADDED";
+  public static final String MODIFIED = "MODIFIED";
+  public static final String DELETED = "DELETED";
+  public static final String BOOKMARK = "BOOKMARK";
+  public static final String ERROR = "ERROR";
+
+  private String type;
+  private KubernetesManifest object;
+}
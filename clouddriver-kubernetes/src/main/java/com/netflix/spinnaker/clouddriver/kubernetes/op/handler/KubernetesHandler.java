@@ -124,6 +124,14 @@ public abstract class KubernetesHandler implements CanDeploy, CanDelete, CanPatc
       Map<KubernetesKind, List<KubernetesManifest>> allResources,
       Map<KubernetesManifest, List<KubernetesManifest>> relationshipMap) {}
 
+  /**
+   * The kinds whose resources {@link #addRelationships} reads. A caching agent holds every resource
+   * of these kinds until it has added the relationships; it converts the others as they are listed.
+   */
+  public ImmutableSet<KubernetesKind> relationshipKinds() {
+    return ImmutableSet.of();
+  }
+
   // lower "value" is deployed before higher "value"
   public enum DeployPriority {
     LOWEST_PRIORITY(1000),
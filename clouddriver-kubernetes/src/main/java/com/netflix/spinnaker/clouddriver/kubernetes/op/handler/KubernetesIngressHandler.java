@@ -88,6 +88,11 @@ public class KubernetesIngressHandler extends KubernetesHandler {
     return KubernetesCoreCachingAgent::new;
   }
 
+  @Override
+  public ImmutableSet<KubernetesKind> relationshipKinds() {
+    return ImmutableSet.of(INGRESS, SERVICE);
+  }
+
   @Override
   public void addRelationships(
       Map<KubernetesKind, List<KubernetesManifest>> allResources,
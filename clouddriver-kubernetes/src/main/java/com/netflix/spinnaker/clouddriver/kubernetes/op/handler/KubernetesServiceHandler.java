@@ -24,6 +24,7 @@ import static com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.
 import static com.netflix.spinnaker.clouddriver.kubernetes.op.handler.KubernetesHandler.DeployPriority.NETWORK_RESOURCE_PRIORITY;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.netflix.spinnaker.clouddriver.kubernetes.caching.Keys.InfrastructureCacheKey;
 import com.netflix.spinnaker.clouddriver.kubernetes.caching.agent.KubernetesCacheDataConverter;
 import com.netflix.spinnaker.clouddriver.kubernetes.caching.agent.KubernetesCoreCachingAgent;
@@ -88,6 +89,11 @@ public class KubernetesServiceHandler extends KubernetesHandler implements CanLo
     return result;
   }
 
+  @Override
+  public ImmutableSet<KubernetesKind> relationshipKinds() {
+    return ImmutableSet.of(SERVICE, REPLICA_SET);
+  }
+
   @Override
   public void addRelationships(
       Map<KubernetesKind, List<KubernetesManifest>> allResources,
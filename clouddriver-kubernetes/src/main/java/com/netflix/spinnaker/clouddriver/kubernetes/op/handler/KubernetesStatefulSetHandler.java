@@ -21,6 +21,7 @@ import static com.netflix.spinnaker.clouddriver.kubernetes.op.handler.Kubernetes
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.netflix.spinnaker.clouddriver.kubernetes.artifact.Replacer;
 import com.netflix.spinnaker.clouddriver.kubernetes.caching.Keys.InfrastructureCacheKey;
 import com.netflix.spinnaker.clouddriver.kubernetes.caching.agent.KubernetesCacheDataConverter;
@@ -182,6 +183,11 @@ public class KubernetesStatefulSetHandler extends KubernetesHandler
     return input == null ? 0 : input;
   }
 
+  @Override
+  public ImmutableSet<KubernetesKind> relationshipKinds() {
+    return ImmutableSet.of(KubernetesKind.STATEFUL_SET, KubernetesKind.SERVICE);
+  }
+
   @Override
   public void addRelationships(
       Map<KubernetesKind, List<KubernetesManifest>> allResources,
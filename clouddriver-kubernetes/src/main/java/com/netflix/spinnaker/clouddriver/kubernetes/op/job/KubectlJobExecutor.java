@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableSetMultimap;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.netflix.spinnaker.clouddriver.jobs.JobExecutor;
 import com.netflix.spinnaker.clouddriver.jobs.JobRequest;
 import com.netflix.spinnaker.clouddriver.jobs.JobResult;
@@ -32,13 +33,17 @@ import com.netflix.spinnaker.clouddriver.kubernetes.description.KubernetesPatchO
 import com.netflix.spinnaker.clouddriver.kubernetes.description.KubernetesPodMetric;
 import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesKind;
 import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifest;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifestList;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesWatchEvent;
 import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesSelectorList;
 import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesV2Credentials;
 import io.kubernetes.client.openapi.models.V1DeleteOptions;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.EOFException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.annotation.WillClose;
@@ -50,8 +55,9 @@ import org.springframework.stereotype.Component;
 
 @Component
 @Slf4j
-public class KubectlJobExecutor {
+public class KubectlJobExecutor implements KubernetesResourceReader {
   private static final String NOT_FOUND_STRING = "(NotFound)";
+  private static final int LIST_CHUNK_SIZE = 500;
   private final JobExecutor jobExecutor;
   private final String executable;
   private final String oAuthExecutable;
@@ -75,7 +81,7 @@ public class KubectlJobExecutor {
     command.add(podName);
     command.add("-c=" + containerName);
 
-    JobResult<String> status = jobExecutor.runJob(new JobRequest(command));
+    JobResult<String> status = jobExecutor.runJob(readRequest(credentials, command));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       throw new KubectlException(
@@ -99,7 +105,7 @@ public class KubectlJobExecutor {
     command.add("job/" + jobName);
     command.add("-c=" + containerName);
 
-    JobResult<String> status = jobExecutor.runJob(new JobRequest(command));
+    JobResult<String> status = jobExecutor.runJob(readRequest(credentials, command));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       throw new KubectlException(
@@ -138,7 +144,7 @@ public class KubectlJobExecutor {
           "Propagation policy is not yet supported as a delete option");
     }
 
-    JobResult<String> status = jobExecutor.runJob(new JobRequest(command));
+    JobResult<String> status = jobExecutor.runJob(writeRequest(credentials, command));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       String id;
@@ -175,7 +181,7 @@ public class KubectlJobExecutor {
     command = kubectlLookupInfo(command, kind, name, null);
     command.add("--replicas=" + replicas);
 
-    JobResult<String> status = jobExecutor.runJob(new JobRequest(command));
+    JobResult<String> status = jobExecutor.runJob(writeRequest(credentials, command));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       throw new KubectlException(
@@ -193,7 +199,7 @@ public class KubectlJobExecutor {
     command.add("history");
     command.add(kind.toString() + "/" + name);
 
-    JobResult<String> status = jobExecutor.runJob(new JobRequest(command));
+    JobResult<String> status = jobExecutor.runJob(readRequest(credentials, command));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       throw new KubectlException(
@@ -247,7 +253,7 @@ public class KubectlJobExecutor {
     command.add(kind.toString() + "/" + name);
     command.add("--to-revision=" + revision);
 
-    JobResult<String> status = jobExecutor.runJob(new JobRequest(command));
+    JobResult<String> status = jobExecutor.runJob(writeRequest(credentials, command));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       throw new KubectlException(
@@ -272,7 +278,7 @@ public class KubectlJobExecutor {
     command.add("pause");
     command.add(kind.toString() + "/" + name);
 
-    JobResult<String> status = jobExecutor.runJob(new JobRequest(command));
+    JobResult<String> status = jobExecutor.runJob(writeRequest(credentials, command));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       throw new KubectlException(
@@ -297,7 +303,7 @@ public class KubectlJobExecutor {
     command.add("resume");
     command.add(kind.toString() + "/" + name);
 
-    JobResult<String> status = jobExecutor.runJob(new JobRequest(command));
+    JobResult<String> status = jobExecutor.runJob(writeRequest(credentials, command));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       throw new KubectlException(
@@ -322,7 +328,7 @@ public class KubectlJobExecutor {
     command.add("restart");
     command.add(kind.toString() + "/" + name);
 
-    JobResult<String> status = jobExecutor.runJob(new JobRequest(command));
+    JobResult<String> status = jobExecutor.runJob(writeRequest(credentials, command));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       throw new KubectlException(
@@ -339,12 +345,13 @@ public class KubectlJobExecutor {
     return null;
   }
 
+  @Override
   public KubernetesManifest get(
       KubernetesV2Credentials credentials, KubernetesKind kind, String namespace, String name) {
     List<String> command = kubectlNamespacedGet(credentials, ImmutableList.of(kind), namespace);
     command.add(name);
 
-    JobResult<String> status = jobExecutor.runJob(new JobRequest(command));
+    JobResult<String> status = jobExecutor.runJob(readRequest(credentials, command));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       if (status.getError().contains(NOT_FOUND_STRING)) {
@@ -374,7 +381,7 @@ public class KubectlJobExecutor {
             name, StringUtils.capitalize(kind.toString())));
 
     JobResult<ImmutableList<KubernetesManifest>> status =
-        jobExecutor.runJob(new JobRequest(command), parseManifestList());
+        jobExecutor.runJob(readRequest(credentials, command), parseManifestList());
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       throw new KubectlException(
@@ -388,6 +395,7 @@ public class KubectlJobExecutor {
     return status.getOutput();
   }
 
+  @Override
   @Nonnull
   public ImmutableList<KubernetesManifest> list(
       KubernetesV2Credentials credentials,
@@ -400,7 +408,7 @@ public class KubectlJobExecutor {
     }
 
     JobResult<ImmutableList<KubernetesManifest>> status =
-        jobExecutor.runJob(new JobRequest(command), parseManifestList());
+        jobExecutor.runJob(readRequest(credentials, command), parseManifestList());
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       throw new KubectlException(
@@ -414,6 +422,106 @@ public class KubectlJobExecutor {
     return status.getOutput();
   }
 
+  @Override
+  public void listInPages(
+      KubernetesV2Credentials credentials,
+      List<KubernetesKind> kinds,
+      String namespace,
+      KubernetesSelectorList selectors,
+      Consumer<ImmutableList<KubernetesManifest>> pageConsumer) {
+    List<String> command = kubectlNamespacedGet(credentials, kinds, namespace);
+    command.add("--chunk-size=" + LIST_CHUNK_SIZE);
+    if (selectors.isNotEmpty()) {
+      command.add("-l=" + selectors.toString());
+    }
+
+    JobResult<Void> status =
+        jobExecutor.runJob(readRequest(credentials, command), parseManifestPages(pageConsumer));
+
+    if (status.getResult() != JobResult.Result.SUCCESS) {
+      throw new KubectlException(
+          "Failed to read " + kinds + " from " + namespace + ": " + status.getError());
+    }
+  }
+
+  @Override
+  public <T> T getRaw(KubernetesV2Credentials credentials, String path, Class<T> type) {
+    List<String> command = kubectlAuthPrefix(credentials);
+    command.add("get");
+    command.add("--raw");
+    command.add(path);
+
+    JobResult<String> status = jobExecutor.runJob(readRequest(credentials, command));
+
+    if (status.getResult() != JobResult.Result.SUCCESS) {
+      throw new KubectlException("Failed to read " + path + ": " + status.getError());
+    }
+
+    try {
+      return gson.fromJson(status.getOutput(), type);
+    } catch (JsonSyntaxException e) {
+      throw new KubectlException("Failed to parse kubectl output: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  @Nonnull
+  public KubernetesManifestList listRaw(KubernetesV2Credentials credentials, String path) {
+    List<String> command = kubectlAuthPrefix(credentials);
+    command.add("get");
+    command.add("--raw");
+    command.add(path);
+
+    JobResult<KubernetesManifestList> status =
+        jobExecutor.runJob(readRequest(credentials, command), parseRawManifestList());
+
+    if (status.getResult() != JobResult.Result.SUCCESS) {
+      throw new KubectlException("Failed to read " + path + ": " + status.getError());
+    }
+
+    return status.getOutput();
+  }
+
+  /**
+   * Watches a collection of the Kubernetes API from a resourceVersion, handing each event to the
+   * consumer as it arrives. Returns once the API server ends the watch, which it does after
+   * timeoutSeconds at the latest.
+   *
+   * @throws KubectlExpiredException if the resourceVersion is too old to watch from, in which case
+   *     the collection has to be listed again
+   */
+  public void watch(
+      KubernetesV2Credentials credentials,
+      String path,
+      String resourceVersion,
+      int timeoutSeconds,
+      Consumer<KubernetesWatchEvent> consumer) {
+    List<String> command = kubectlAuthPrefix(credentials);
+    if (credentials.getKubectlRequestTimeoutSeconds() != null) {
+      // the request timeout applies to the whole stream, so it would cut every watch short
+      command.add("--request-timeout=0");
+    }
+    command.add("get");
+    command.add("--raw");
+    command.add(
+        String.format(
+            "%s?watch=1&allowWatchBookmarks=true&resourceVersion=%s&timeoutSeconds=%d",
+            path, resourceVersion, timeoutSeconds));
+
+    // a watch runs for minutes, so it doesn't count against the account's concurrency limit
+    JobRequest jobRequest =
+        new JobRequest(command, System.getenv(), new ByteArrayInputStream(new byte[0]), null);
+    JobResult<Void> status = jobExecutor.runJob(jobRequest, parseWatchEvents(consumer));
+
+    if (status.getResult() != JobResult.Result.SUCCESS && !status.isKilled()) {
+      if (status.getError().contains("(Expired)") || status.getError().contains("(Gone)")) {
+        throw new KubectlExpiredException(
+            "Failed to watch " + path + " from " + resourceVersion + ": " + status.getError());
+      }
+      throw new KubectlException("Failed to watch " + path + ": " + status.getError());
+    }
+  }
+
   public KubernetesManifest deploy(
       KubernetesV2Credentials credentials, KubernetesManifest manifest) {
     List<String> command = kubectlAuthPrefix(credentials);
@@ -429,7 +537,8 @@ public class KubectlJobExecutor {
 
     JobResult<String> status =
         jobExecutor.runJob(
-            new JobRequest(command, new ByteArrayInputStream(manifestAsJson.getBytes())));
+            writeRequest(
+                credentials, command, new ByteArrayInputStream(manifestAsJson.getBytes())));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       throw new KubectlException("Deploy failed: " + status.getError());
@@ -457,7 +566,8 @@ public class KubectlJobExecutor {
 
     JobResult<String> status =
         jobExecutor.runJob(
-            new JobRequest(command, new ByteArrayInputStream(manifestAsJson.getBytes())));
+            writeRequest(
+                credentials, command, new ByteArrayInputStream(manifestAsJson.getBytes())));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       if (status.getError().contains(NOT_FOUND_STRING)) {
@@ -488,7 +598,8 @@ public class KubectlJobExecutor {
 
     JobResult<String> status =
         jobExecutor.runJob(
-            new JobRequest(command, new ByteArrayInputStream(manifestAsJson.getBytes())));
+            writeRequest(
+                credentials, command, new ByteArrayInputStream(manifestAsJson.getBytes())));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       throw new KubectlException("Create failed: " + status.getError());
@@ -587,7 +698,7 @@ public class KubectlJobExecutor {
     command.add(credentials.getOAuthServiceAccount());
     command.addAll(credentials.getOAuthScopes());
 
-    JobResult<String> status = jobExecutor.runJob(new JobRequest(command));
+    JobResult<String> status = jobExecutor.runJob(readRequest(credentials, command));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       throw new KubectlException("Could not fetch OAuth token: " + status.getError());
@@ -605,7 +716,7 @@ public class KubectlJobExecutor {
     }
     command.add("--containers");
 
-    JobResult<String> status = jobExecutor.runJob(new JobRequest(command));
+    JobResult<String> status = jobExecutor.runJob(readRequest(credentials, command));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       if (status.getError().contains("not available")) {
@@ -677,7 +788,7 @@ public class KubectlJobExecutor {
     command.add("--patch");
     command.add(patchBody);
 
-    JobResult<String> status = jobExecutor.runJob(new JobRequest(command));
+    JobResult<String> status = jobExecutor.runJob(writeRequest(credentials, command));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       String errMsg = status.getError();
@@ -695,22 +806,64 @@ public class KubectlJobExecutor {
     return null;
   }
 
+  /**
+   * Reads against the same account share that account's read concurrency limit, so that a burst of
+   * caching reads can't hold up operations that change the account's resources.
+   */
+  private JobRequest readRequest(KubernetesV2Credentials credentials, List<String> command) {
+    return new JobRequest(
+        command,
+        System.getenv(),
+        new ByteArrayInputStream(new byte[0]),
+        credentials.getAccountName() + ":read");
+  }
+
+  private JobRequest writeRequest(KubernetesV2Credentials credentials, List<String> command) {
+    return writeRequest(credentials, command, new ByteArrayInputStream(new byte[0]));
+  }
+
+  /** Writes against the same account share that account's write concurrency limit. */
+  private JobRequest writeRequest(
+      KubernetesV2Credentials credentials, List<String> command, InputStream inputStream) {
+    return new JobRequest(
+        command, System.getenv(), inputStream, credentials.getAccountName() + ":write");
+  }
+
   private ReaderConsumer<ImmutableList<KubernetesManifest>> parseManifestList() {
+    return (@WillClose BufferedReader r) -> {
+      ImmutableList.Builder<KubernetesManifest> manifestList = new ImmutableList.Builder<>();
+      parseManifestPages(manifestList::addAll).consume(r);
+      return manifestList.build();
+    };
+  }
+
+  /**
+   * Parses the items of a list as they stream in, handing them to pageConsumer {@link
+   * #LIST_CHUNK_SIZE} at a time.
+   */
+  private ReaderConsumer<Void> parseManifestPages(
+      Consumer<ImmutableList<KubernetesManifest>> pageConsumer) {
     return (@WillClose BufferedReader r) -> {
       try (JsonReader reader = new JsonReader(r)) {
         try {
           reader.beginObject();
         } catch (EOFException e) {
-          // If the stream we're parsing is empty, just return an empty list
-          return ImmutableList.of();
+          // If the stream we're parsing is empty, there are no items
+          return null;
         }
-        ImmutableList.Builder<KubernetesManifest> manifestList = new ImmutableList.Builder<>();
         while (reader.hasNext()) {
           if (reader.nextName().equals("items")) {
             reader.beginArray();
+            List<KubernetesManifest> page = new ArrayList<>(LIST_CHUNK_SIZE);
             while (reader.hasNext()) {
-              KubernetesManifest manifest = gson.fromJson(reader, KubernetesManifest.class);
-              manifestList.add(manifest);
+              page.add(gson.fromJson(reader, KubernetesManifest.class));
+              if (page.size() == LIST_CHUNK_SIZE) {
+                pageConsumer.accept(ImmutableList.copyOf(page));
+                page.clear();
+              }
+            }
+            if (!page.isEmpty()) {
+              pageConsumer.accept(ImmutableList.copyOf(page));
             }
             reader.endArray();
           } else {
@@ -718,7 +871,7 @@ public class KubectlJobExecutor {
           }
         }
         reader.endObject();
-        return manifestList.build();
+        return null;
       } catch (IllegalStateException | JsonSyntaxException e) {
         // An IllegalStageException is thrown when we call beginObject, nextName(), etc. and the
         // next token is not what we are asserting it to be. A JsonSyntaxException is thrown when
@@ -731,6 +884,30 @@ public class KubectlJobExecutor {
     };
   }
 
+  private ReaderConsumer<KubernetesManifestList> parseRawManifestList() {
+    return (@WillClose BufferedReader r) -> RawManifestListParser.parse(gson, r);
+  }
+
+  /** Parses the stream of events of a watch, one JSON object per event. */
+  private ReaderConsumer<Void> parseWatchEvents(Consumer<KubernetesWatchEvent> consumer) {
+    return (@WillClose BufferedReader r) -> {
+      try (JsonReader reader = new JsonReader(r)) {
+        reader.setLenient(true);
+        while (reader.peek() != JsonToken.END_DOCUMENT) {
+          KubernetesWatchEvent event = gson.fromJson(reader, KubernetesWatchEvent.class);
+          if (event != null) {
+            consumer.accept(event);
+          }
+        }
+      } catch (EOFException e) {
+        // the watch ended, possibly in the middle of an event that will be seen again on resume
+      } catch (IllegalStateException | JsonSyntaxException e) {
+        throw new KubectlException("Failed to parse kubectl output: " + e.getMessage(), e);
+      }
+      return null;
+    };
+  }
+
   public static class KubectlException extends RuntimeException {
     public KubectlException(String message) {
       super(message);
@@ -746,4 +923,10 @@ public class KubectlJobExecutor {
       super(message);
     }
   }
+
+  public static class KubectlExpiredException extends KubectlException {
+    public KubectlExpiredException(String message) {
+      super(message);
+    }
+  }
 }
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.op.job;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesApiResource;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesKind;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifest;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifestList;
+import com.netflix.spinnaker.clouddriver.kubernetes.op.job.KubectlJobExecutor.KubectlException;
+import com.netflix.spinnaker.clouddriver.kubernetes.op.job.KubectlJobExecutor.KubectlExpiredException;
+import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesSelectorList;
+import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesV2Credentials;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.auth.ApiKeyAuth;
+import io.kubernetes.client.openapi.auth.Authentication;
+import io.kubernetes.client.util.ClientBuilder;
+import io.kubernetes.client.util.KubeConfig;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Reads resources by calling the Kubernetes API directly instead of running kubectl, which saves
+ * starting a process, loading the kubeconfig and setting up a TLS connection on every read. The
+ * HTTP client keeps its connections alive in a pool and negotiates HTTP/2 with API servers that
+ * support it, so concurrent reads of an account share a single connection.
+ *
+ * <p>Lists are read a page of {@link #PAGE_SIZE} items at a time and decoded as they stream in.
+ * Reads that need kubectl's own resolution are delegated to it: kinds missing from the discovery
+ * documents, and namespaced reads with no namespace, which kubectl resolves from the context.
+ */
+@Slf4j
+public class KubernetesApiClientReader implements KubernetesResourceReader {
+  static final int PAGE_SIZE = 500;
+  private static final String BEARER_TOKEN = "BearerToken";
+
+  private final KubectlJobExecutor kubectl;
+  private final Supplier<ApiClient> clientFactory;
+  private final Gson gson = new Gson();
+
+  private volatile ApiClient client;
+
+  /**
+   * @param kubectl reads anything this can't
+   * @param clientFactory builds a client for the account; called again to pick up new credentials
+   *     if the API server rejects the current ones
+   */
+  public KubernetesApiClientReader(KubectlJobExecutor kubectl, Supplier<ApiClient> clientFactory) {
+    this.kubectl = kubectl;
+    this.clientFactory = clientFactory;
+  }
+
+  /**
+   * Reads with the same kubeconfig and context as kubectl does for the account, or with the pod's
+   * service account.
+   */
+  public static KubernetesApiClientReader create(
+      KubectlJobExecutor kubectl,
+      @Nullable String kubeconfigFile,
+      @Nullable String context,
+      boolean serviceAccount,
+      @Nullable Integer requestTimeoutSeconds) {
+    return new KubernetesApiClientReader(
+        kubectl,
+        () -> {
+          try {
+            ApiClient client =
+                serviceAccount
+                    ? ClientBuilder.cluster().build()
+                    : ClientBuilder.kubeconfig(loadKubeConfig(kubeconfigFile, context)).build();
+            if (requestTimeoutSeconds != null && requestTimeoutSeconds > 0) {
+              client.setHttpClient(
+                  client
+                      .getHttpClient()
+                      .newBuilder()
+                      .readTimeout(requestTimeoutSeconds, TimeUnit.SECONDS)
+                      .build());
+            }
+            return client;
+          } catch (IOException e) {
+            throw new UncheckedIOException("Failed to configure the Kubernetes API client", e);
+          }
+        });
+  }
+
+  private static KubeConfig loadKubeConfig(
+      @Nullable String kubeconfigFile, @Nullable String context) throws IOException {
+    String path =
+        Strings.isNullOrEmpty(kubeconfigFile)
+            ? Paths.get(System.getProperty("user.home"), ".kube", "config").toString()
+            : kubeconfigFile;
+    try (Reader reader = new FileReader(path)) {
+      KubeConfig kubeConfig = KubeConfig.loadKubeConfig(reader);
+      if (!Strings.isNullOrEmpty(context)) {
+        kubeConfig.setContext(context);
+      }
+      return kubeConfig;
+    }
+  }
+
+  @Override
+  public KubernetesManifest get(
+      KubernetesV2Credentials credentials, KubernetesKind kind, String namespace, String name) {
+    Optional<KubernetesApiResource> resource = credentials.getApiResource(kind);
+    if (!resource.isPresent() || needsDefaultNamespace(resource.get(), namespace)) {
+      return kubectl.get(credentials, kind, namespace, name);
+    }
+
+    return read(
+        resource.get().resourcePath(namespace, name),
+        ImmutableMap.of(),
+        response -> {
+          if (response.code() == 404) {
+            return null;
+          }
+          checkSuccess(response, "Failed to read " + kind + " from " + namespace);
+          try {
+            return gson.fromJson(response.body().charStream(), KubernetesManifest.class);
+          } catch (JsonSyntaxException e) {
+            throw new KubectlException("Failed to parse " + kind + ": " + e.getMessage(), e);
+          }
+        });
+  }
+
+  @Override
+  @Nonnull
+  public ImmutableList<KubernetesManifest> list(
+      KubernetesV2Credentials credentials,
+      List<KubernetesKind> kinds,
+      String namespace,
+      KubernetesSelectorList selectors) {
+    Optional<List<KubernetesApiResource>> resources = apiResources(credentials, kinds, namespace);
+    if (!resources.isPresent()) {
+      return kubectl.list(credentials, kinds, namespace, selectors);
+    }
+
+    ImmutableList.Builder<KubernetesManifest> result = ImmutableList.builder();
+    readCollections(resources.get(), namespace, selectors, page -> result.addAll(page.getItems()));
+    return result.build();
+  }
+
+  @Override
+  public void listInPages(
+      KubernetesV2Credentials credentials,
+      List<KubernetesKind> kinds,
+      String namespace,
+      KubernetesSelectorList selectors,
+      Consumer<ImmutableList<KubernetesManifest>> pageConsumer) {
+    Optional<List<KubernetesApiResource>> resources = apiResources(credentials, kinds, namespace);
+    if (!resources.isPresent()) {
+      kubectl.listInPages(credentials, kinds, namespace, selectors, pageConsumer);
+      return;
+    }
+
+    readCollections(
+        resources.get(),
+        namespace,
+        selectors,
+        page -> pageConsumer.accept(ImmutableList.copyOf(page.getItems())));
+  }
+
+  /** @return the API resources of the kinds, or nothing if kubectl has to read some of them */
+  private static Optional<List<KubernetesApiResource>> apiResources(
+      KubernetesV2Credentials credentials, List<KubernetesKind> kinds, String namespace) {
+    List<KubernetesApiResource> resources = new ArrayList<>();
+    for (KubernetesKind kind : kinds) {
+      Optional<KubernetesApiResource> resource = credentials.getApiResource(kind);
+      if (!resource.isPresent() || needsDefaultNamespace(resource.get(), namespace)) {
+        return Optional.empty();
+      }
+      resources.add(resource.get());
+    }
+    return Optional.of(resources);
+  }
+
+  private void readCollections(
+      List<KubernetesApiResource> resources,
+      String namespace,
+      KubernetesSelectorList selectors,
+      Consumer<KubernetesManifestList> pageConsumer) {
+    String labelSelector = selectors.isNotEmpty() ? selectors.toString() : null;
+    for (KubernetesApiResource resource : resources) {
+      readPages(resource.collectionPath(namespace), labelSelector, pageConsumer);
+    }
+  }
+
+  @Override
+  public <T> T getRaw(KubernetesV2Credentials credentials, String path, Class<T> type) {
+    return read(
+        path,
+        ImmutableMap.of(),
+        response -> {
+          checkSuccess(response, "Failed to read " + path);
+          try {
+            return gson.fromJson(response.body().charStream(), type);
+          } catch (JsonSyntaxException e) {
+            throw new KubectlException("Failed to parse " + path + ": " + e.getMessage(), e);
+          }
+        });
+  }
+
+  @Override
+  @Nonnull
+  public KubernetesManifestList listRaw(KubernetesV2Credentials credentials, String path) {
+    return listPages(path, null);
+  }
+
+  /**
+   * Reads every page of a collection. The resourceVersion of the result is that of the first page,
+   * which is the version the API server serves the remaining pages at.
+   */
+  private KubernetesManifestList listPages(String path, @Nullable String labelSelector) {
+    KubernetesManifestList result = new KubernetesManifestList();
+    List<KubernetesManifest> items = new ArrayList<>();
+    readPages(
+        path,
+        labelSelector,
+        page -> {
+          if (result.getResourceVersion() == null) {
+            result.setResourceVersion(page.getResourceVersion());
+          }
+          items.addAll(page.getItems());
+        });
+    result.setItems(items);
+    return result;
+  }
+
+  /** Reads a collection a page at a time, handing each page to pageConsumer as it is read. */
+  private void readPages(
+      String path, @Nullable String labelSelector, Consumer<KubernetesManifestList> pageConsumer) {
+    String continueToken = null;
+    do {
+      Map<String, String> query = new LinkedHashMap<>();
+      query.put("limit", Integer.toString(PAGE_SIZE));
+      if (continueToken != null) {
+        query.put("continue", continueToken);
+      }
+      if (labelSelector != null) {
+        query.put("labelSelector", labelSelector);
+      }
+
+      KubernetesManifestList page =
+          read(
+              path,
+              query,
+              response -> {
+                if (response.code() == 410) {
+                  // the continue token expired, so the pages read so far are no longer consistent
+                  throw new KubectlExpiredException("List of " + path + " expired");
+                }
+                checkSuccess(response, "Failed to read " + path);
+                return RawManifestListParser.parse(gson, response.body().charStream());
+              });
+      continueToken = Strings.emptyToNull(page.getContinueToken());
+      pageConsumer.accept(page);
+    } while (continueToken != null);
+  }
+
+  /**
+   * Sends a GET request, trying once more with a newly built client if the credentials of the
+   * current one have been rejected (e.g. because a token expired).
+   */
+  private <T> T read(String path, Map<String, String> query, ResponseHandler<T> handler) {
+    ApiClient current = getClient();
+    try {
+      Response response = execute(current, path, query);
+      if (response.code() == 401) {
+        response.close();
+        current = refreshClient(current);
+        response = execute(current, path, query);
+      }
+      try (Response r = response) {
+        return handler.handle(r);
+      }
+    } catch (IOException | UncheckedIOException e) {
+      throw new KubectlException("Failed to read " + path + ": " + e.getMessage(), e);
+    }
+  }
+
+  private static Response execute(ApiClient client, String path, Map<String, String> query)
+      throws IOException {
+    HttpUrl base = HttpUrl.parse(client.getBasePath() + path);
+    if (base == null) {
+      throw new KubectlException("Invalid path of the Kubernetes API: " + path);
+    }
+    HttpUrl.Builder url = base.newBuilder();
+    query.forEach(url::addQueryParameter);
+
+    Request.Builder request = new Request.Builder().url(url.build()).get();
+    request.header("Accept", "application/json");
+    Authentication authentication = client.getAuthentication(BEARER_TOKEN);
+    if (authentication instanceof ApiKeyAuth) {
+      ApiKeyAuth bearer = (ApiKeyAuth) authentication;
+      if (bearer.getApiKey() != null) {
+        request.header(
+            "Authorization",
+            bearer.getApiKeyPrefix() == null
+                ? bearer.getApiKey()
+                : bearer.getApiKeyPrefix() + " " + bearer.getApiKey());
+      }
+    }
+    return client.getHttpClient().newCall(request.build()).execute();
+  }
+
+  private static void checkSuccess(Response response, String message) throws IOException {
+    if (!response.isSuccessful()) {
+      ResponseBody body = response.body();
+      throw new KubectlException(
+          message + ": " + response.code() + " " + (body == null ? "" : body.string()));
+    }
+  }
+
+  /** kubectl reads a namespaced kind from the namespace of the context if none is given. */
+  private static boolean needsDefaultNamespace(KubernetesApiResource resource, String namespace) {
+    return resource.isNamespaced() && Strings.isNullOrEmpty(namespace);
+  }
+
+  private ApiClient getClient() {
+    ApiClient current = client;
+    if (current == null) {
+      synchronized (this) {
+        if (client == null) {
+          client = clientFactory.get();
+        }
+        current = client;
+      }
+    }
+    return current;
+  }
+
+  private synchronized ApiClient refreshClient(ApiClient rejected) {
+    if (client == rejected) {
+      log.info("Kubernetes API rejected the credentials of the client, building a new one");
+      client = clientFactory.get();
+      rejected.getHttpClient().connectionPool().evictAll();
+    }
+    return client;
+  }
+
+  @FunctionalInterface
+  private interface ResponseHandler<T> {
+    T handle(Response response) throws IOException;
+  }
+}
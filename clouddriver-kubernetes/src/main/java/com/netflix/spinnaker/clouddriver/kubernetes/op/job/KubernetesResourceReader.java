@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.op.job;
+
+import com.google.common.collect.ImmutableList;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesKind;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifest;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifestList;
+import com.netflix.spinnaker.clouddriver.kubernetes.op.job.KubectlJobExecutor.KubectlException;
+import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesSelectorList;
+import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesV2Credentials;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+
+/**
+ * Reads resources from the Kubernetes API of an account. Failures are reported as {@link
+ * KubectlException}s whichever way the API is reached.
+ */
+public interface KubernetesResourceReader {
+  /** @return the resource, or null if it does not exist */
+  KubernetesManifest get(
+      KubernetesV2Credentials credentials, KubernetesKind kind, String namespace, String name);
+
+  @Nonnull
+  ImmutableList<KubernetesManifest> list(
+      KubernetesV2Credentials credentials,
+      List<KubernetesKind> kinds,
+      String namespace,
+      KubernetesSelectorList selectors);
+
+  /**
+   * Lists the resources of the given kinds a page at a time, handing each page to pageConsumer
+   * before the next one is read, so that no more than a page need be held in memory at once.
+   */
+  void listInPages(
+      KubernetesV2Credentials credentials,
+      List<KubernetesKind> kinds,
+      String namespace,
+      KubernetesSelectorList selectors,
+      Consumer<ImmutableList<KubernetesManifest>> pageConsumer);
+
+  /** Reads a path of the Kubernetes API, such as a discovery document. */
+  <T> T getRaw(KubernetesV2Credentials credentials, String path, Class<T> type);
+
+  /**
+   * Lists a collection of the Kubernetes API, such as {@code /apis/apps/v1/namespaces/default/
+   * deployments}. Unlike {@link #list}, the result carries the resourceVersion of the collection,
+   * from which it can be watched.
+   */
+  @Nonnull
+  KubernetesManifestList listRaw(KubernetesV2Credentials credentials, String path);
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.op.job;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifest;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifestList;
+import com.netflix.spinnaker.clouddriver.kubernetes.op.job.KubectlJobExecutor.KubectlException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.WillClose;
+
+/**
+ * Parses a list read from the Kubernetes API as it streams in, one item at a time; unlike the lists
+ * kubectl prints, its items carry no kind or apiVersion of their own.
+ */
+final class RawManifestListParser {
+  private RawManifestListParser() {}
+
+  static KubernetesManifestList parse(Gson gson, @WillClose Reader r) throws IOException {
+    try (JsonReader reader = new JsonReader(r)) {
+      KubernetesManifestList result = new KubernetesManifestList();
+      List<KubernetesManifest> items = new ArrayList<>();
+      String kind = null;
+      String apiVersion = null;
+
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "kind":
+            kind = reader.nextString();
+            break;
+          case "apiVersion":
+            apiVersion = reader.nextString();
+            break;
+          case "metadata":
+            Map<?, ?> metadata = gson.fromJson(reader, Map.class);
+            result.setResourceVersion((String) metadata.get("resourceVersion"));
+            result.setContinueToken((String) metadata.get("continue"));
+            break;
+          case "items":
+            reader.beginArray();
+            while (reader.hasNext()) {
+              items.add(gson.fromJson(reader, KubernetesManifest.class));
+            }
+            reader.endArray();
+            break;
+          default:
+            reader.skipValue();
+        }
+      }
+      reader.endObject();
+
+      for (KubernetesManifest item : items) {
+        if (kind != null && kind.endsWith("List")) {
+          item.putIfAbsent("kind", kind.substring(0, kind.length() - "List".length()));
+        }
+        if (apiVersion != null) {
+          item.putIfAbsent("apiVersion", apiVersion);
+        }
+      }
+      result.setItems(items);
+      return result;
+    } catch (IllegalStateException | JsonSyntaxException | EOFException e) {
+      throw new KubectlException("Failed to parse list: " + e.getMessage(), e);
+    }
+  }
+}
@@ -45,19 +45,30 @@ import com.netflix.spinnaker.clouddriver.kubernetes.description.KubernetesPodMet
 import com.netflix.spinnaker.clouddriver.kubernetes.description.KubernetesResourceProperties;
 import com.netflix.spinnaker.clouddriver.kubernetes.description.KubernetesSpinnakerKindMap;
 import com.netflix.spinnaker.clouddriver.kubernetes.description.ResourcePropertyRegistry;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesApiResource;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesApiVersion;
 import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesKind;
 import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesKindProperties;
 import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifest;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifestList;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesWatchEvent;
 import com.netflix.spinnaker.clouddriver.kubernetes.op.job.KubectlJobExecutor;
 import com.netflix.spinnaker.clouddriver.kubernetes.op.job.KubectlJobExecutor.KubectlException;
 import com.netflix.spinnaker.clouddriver.kubernetes.op.job.KubectlJobExecutor.KubectlNotFoundException;
+import com.netflix.spinnaker.clouddriver.kubernetes.op.job.KubernetesApiClientReader;
+import com.netflix.spinnaker.clouddriver.kubernetes.op.job.KubernetesResourceReader;
 import com.netflix.spinnaker.clouddriver.names.NamerRegistry;
 import com.netflix.spinnaker.kork.configserver.ConfigFileService;
+import io.kubernetes.client.openapi.models.V1APIGroup;
+import io.kubernetes.client.openapi.models.V1APIGroupList;
+import io.kubernetes.client.openapi.models.V1APIResource;
+import io.kubernetes.client.openapi.models.V1APIResourceList;
 import io.kubernetes.client.openapi.models.V1DeleteOptions;
 import io.kubernetes.client.openapi.models.V1beta1CustomResourceDefinition;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -73,10 +84,13 @@ import org.springframework.stereotype.Component;
 public class KubernetesV2Credentials implements KubernetesCredentials {
   private static final int CRD_EXPIRY_SECONDS = 30;
   private static final int NAMESPACE_EXPIRY_SECONDS = 30;
+  private static final int API_RESOURCE_EXPIRY_MINUTES = 30;
+  private static final long API_DISCOVERY_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
 
   private final Registry registry;
   private final Clock clock;
   private final KubectlJobExecutor jobExecutor;
+  private final KubernetesResourceReader reader;
 
   @Include @Getter private final String accountName;
 
@@ -106,6 +120,10 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
 
   @Include @Getter private final boolean liveManifestCalls;
 
+  @Include @Getter private final boolean watchResources;
+
+  @Include @Getter private final boolean apiClientReads;
+
   @Include private final boolean checkPermissionsOnStartup;
 
   @Include @Getter private final List<KubernetesCachingPolicy> cachingPolicies;
@@ -127,6 +145,12 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
   private final Supplier<ImmutableList<String>> liveNamespaceSupplier =
       Memoizer.memoizeWithExpiration(
           this::namespaceSupplier, NAMESPACE_EXPIRY_SECONDS, TimeUnit.SECONDS);
+  private final Supplier<ImmutableMap<KubernetesKind, KubernetesApiResource>> apiResourceSupplier =
+      Suppliers.memoizeWithExpiration(
+          this::apiResourceSupplier, API_RESOURCE_EXPIRY_MINUTES, TimeUnit.MINUTES);
+
+  /** When to try discovery again after it failed, so that reads don't all wait on a failing API. */
+  private volatile long apiDiscoveryRetryAt;
 
   private KubernetesV2Credentials(
       Registry registry,
@@ -179,6 +203,8 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
 
     this.onlySpinnakerManaged = managedAccount.isOnlySpinnakerManaged();
     this.liveManifestCalls = managedAccount.isLiveManifestCalls();
+    this.watchResources = managedAccount.isWatchResources();
+    this.apiClientReads = managedAccount.isApiClientReads();
     this.checkPermissionsOnStartup = managedAccount.isCheckPermissionsOnStartup();
     this.cachingPolicies = managedAccount.getCachingPolicies();
 
@@ -188,6 +214,17 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
     this.metrics = managedAccount.isMetrics();
 
     this.debug = managedAccount.isDebug();
+
+    if (apiClientReads && !Strings.isNullOrEmpty(oAuthServiceAccount)) {
+      log.warn(
+          "{}: Reading with kubectl, as the Kubernetes API client does not support OAuth",
+          accountName);
+    }
+    this.reader =
+        apiClientReads && Strings.isNullOrEmpty(oAuthServiceAccount)
+            ? KubernetesApiClientReader.create(
+                jobExecutor, kubeconfigFile, context, serviceAccount, kubectlRequestTimeoutSeconds)
+            : jobExecutor;
   }
 
   /**
@@ -318,7 +355,7 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
   @Nonnull
   private ImmutableList<String> namespaceSupplier() {
     try {
-      return jobExecutor
+      return reader
           .list(this, ImmutableList.of(KubernetesKind.NAMESPACE), "", new KubernetesSelectorList())
           .stream()
           .map(KubernetesManifest::getName)
@@ -329,6 +366,75 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
     }
   }
 
+  /**
+   * @return where the Kubernetes API serves the given kind, if it is listed in the discovery
+   *     documents and can be listed and watched; nothing while discovery is failing
+   */
+  @Nonnull
+  public Optional<KubernetesApiResource> getApiResource(@Nonnull KubernetesKind kind) {
+    if (clock.wallTime() < apiDiscoveryRetryAt) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.ofNullable(apiResourceSupplier.get().get(kind));
+    } catch (KubectlException e) {
+      log.warn(
+          "{}: Failed to discover the API resources, retrying in {}ms",
+          accountName,
+          API_DISCOVERY_RETRY_MILLIS,
+          e);
+      apiDiscoveryRetryAt = clock.wallTime() + API_DISCOVERY_RETRY_MILLIS;
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Reads the preferred version of every API group. Groups are listed in order of priority, so the
+   * first group serving a kind is the one kubectl uses for it too.
+   *
+   * @throws KubectlException if the core API or the list of groups can't be read, so that the
+   *     failure isn't memoized
+   */
+  @Nonnull
+  private ImmutableMap<KubernetesKind, KubernetesApiResource> apiResourceSupplier() {
+    Map<KubernetesKind, KubernetesApiResource> result = new HashMap<>();
+    addApiResources(result, "/api/v1", getRaw("/api/v1", V1APIResourceList.class));
+
+    V1APIGroupList groups = getRaw("/apis", V1APIGroupList.class);
+    for (V1APIGroup group : groups.getGroups()) {
+      String prefix = "/apis/" + group.getPreferredVersion().getGroupVersion();
+      try {
+        addApiResources(result, prefix, getRaw(prefix, V1APIResourceList.class));
+      } catch (KubectlException e) {
+        // an aggregated API that is unavailable shouldn't hide the rest of the cluster
+        log.warn("{}: Failed to discover {}", accountName, prefix, e);
+      }
+    }
+    return ImmutableMap.copyOf(result);
+  }
+
+  private static void addApiResources(
+      Map<KubernetesKind, KubernetesApiResource> result,
+      String prefix,
+      V1APIResourceList resourceList) {
+    KubernetesApiVersion apiVersion =
+        KubernetesApiVersion.fromString(resourceList.getGroupVersion());
+    for (V1APIResource resource : resourceList.getResources()) {
+      boolean subresource = resource.getName().contains("/");
+      boolean watchable =
+          resource.getVerbs() != null
+              && resource.getVerbs().contains("list")
+              && resource.getVerbs().contains("watch");
+      if (subresource || !watchable) {
+        continue;
+      }
+
+      KubernetesKind kind = KubernetesKind.from(resource.getKind(), apiVersion.getApiGroup());
+      boolean namespaced = Boolean.TRUE.equals(resource.getNamespaced());
+      result.putIfAbsent(kind, new KubernetesApiResource(prefix, resource.getName(), namespaced));
+    }
+  }
+
   @Override
   public List<String> getDeclaredNamespaces() {
     List<String> result;
@@ -368,7 +474,7 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
 
   public KubernetesManifest get(KubernetesKind kind, String namespace, String name) {
     return runAndRecordMetrics(
-        "get", kind, namespace, () -> jobExecutor.get(this, kind, namespace, name));
+        "get", kind, namespace, () -> reader.get(this, kind, namespace, name));
   }
 
   @Nonnull
@@ -377,9 +483,7 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
         "list",
         kind,
         namespace,
-        () ->
-            jobExecutor.list(
-                this, ImmutableList.of(kind), namespace, new KubernetesSelectorList()));
+        () -> reader.list(this, ImmutableList.of(kind), namespace, new KubernetesSelectorList()));
   }
 
   @Nonnull
@@ -389,7 +493,7 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
         "list",
         kind,
         namespace,
-        () -> jobExecutor.list(this, ImmutableList.of(kind), namespace, selectors));
+        () -> reader.list(this, ImmutableList.of(kind), namespace, selectors));
   }
 
   @Nonnull
@@ -401,10 +505,67 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
           "list",
           kinds,
           namespace,
-          () -> jobExecutor.list(this, kinds, namespace, new KubernetesSelectorList()));
+          () -> reader.list(this, kinds, namespace, new KubernetesSelectorList()));
     }
   }
 
+  /**
+   * Lists the resources of the given kinds a page at a time, handing each page to pageConsumer
+   * before the next one is read.
+   */
+  public void listInPages(
+      List<KubernetesKind> kinds,
+      String namespace,
+      Consumer<ImmutableList<KubernetesManifest>> pageConsumer) {
+    if (kinds.isEmpty()) {
+      return;
+    }
+    runAndRecordMetrics(
+        "list",
+        kinds,
+        namespace,
+        () -> {
+          reader.listInPages(this, kinds, namespace, new KubernetesSelectorList(), pageConsumer);
+          return null;
+        });
+  }
+
+  /** Reads a path of the Kubernetes API, such as a discovery document. */
+  public <T> T getRaw(String path, Class<T> type) {
+    return runAndRecordMetrics(
+        "getRaw", ImmutableList.of(), null, () -> reader.getRaw(this, path, type));
+  }
+
+  /**
+   * Lists the collection of the Kubernetes API at path, which holds the resources of the given kind
+   * in the given namespace.
+   */
+  @Nonnull
+  public KubernetesManifestList listRaw(KubernetesKind kind, String namespace, String path) {
+    return runAndRecordMetrics("listRaw", kind, namespace, () -> reader.listRaw(this, path));
+  }
+
+  /**
+   * Watches the collection of the Kubernetes API at path, which holds the resources of the given
+   * kind in the given namespace. See {@link KubectlJobExecutor#watch}.
+   */
+  public void watch(
+      KubernetesKind kind,
+      String namespace,
+      String path,
+      String resourceVersion,
+      int timeoutSeconds,
+      Consumer<KubernetesWatchEvent> consumer) {
+    runAndRecordMetrics(
+        "watch",
+        kind,
+        namespace,
+        () -> {
+          jobExecutor.watch(this, path, resourceVersion, timeoutSeconds, consumer);
+          return null;
+        });
+  }
+
   @Nonnull
   public ImmutableList<KubernetesManifest> eventsFor(
       KubernetesKind kind, String namespace, String name) {
@@ -19,6 +19,7 @@ package com.netflix.spinnaker.clouddriver.kubernetes.artifact
 
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.google.common.collect.ImmutableList
+import com.google.common.collect.ImmutableSet
 import com.netflix.spinnaker.clouddriver.artifacts.kubernetes.KubernetesArtifactType
 import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifest
 import com.netflix.spinnaker.kork.artifacts.model.Artifact
@@ -85,6 +86,120 @@ spec:
     artifacts.size() == 0
   }
 
+  def "replaces artifacts in every pod template of a manifest without changing the input"() {
+    when:
+    def cronJobManifest = """
+apiVersion: batch/v1beta1
+kind: CronJob
+metadata:
+  name: my-cron-job
+spec:
+  schedule: "*/1 * * * *"
+  jobTemplate:
+    spec:
+      template:
+        spec:
+          initContainers:
+          - name: init
+            image: busybox
+          containers:
+          - name: main
+            image: nginx
+            envFrom:
+            - configMapRef:
+                name: my-config-map
+          - name: sidecar
+            image: envoy
+          volumes:
+          - name: secrets
+            secret:
+              secretName: my-secret
+"""
+    def artifactReplacer = new ArtifactReplacer(ImmutableList.of(
+      Replacer.dockerImage(),
+      Replacer.configMapEnv(),
+      Replacer.secretVolume()))
+    def manifest = stringToManifest(cronJobManifest)
+    def original = stringToManifest(cronJobManifest)
+    def image = Artifact.builder().type(KubernetesArtifactType.DockerImage.type).name("nginx").reference("nginx:1.17").build()
+    def initImage = Artifact.builder().type(KubernetesArtifactType.DockerImage.type).name("busybox").reference("busybox:1.31").build()
+    def configMap = Artifact.builder().type(KubernetesArtifactType.ConfigMap.type).name("my-config-map").reference("my-config-map-v001").location("default").build()
+    def secret = Artifact.builder().type(KubernetesArtifactType.Secret.type).name("other-secret").reference("other-secret-v001").location("default").build()
+    def result = artifactReplacer.replaceAll(manifest, [image, initImage, configMap, secret], "default", "my-account")
+    def podSpec = result.manifest.spec.jobTemplate.spec.template.spec
+
+    then:
+    podSpec.containers[0].image == "nginx:1.17"
+    podSpec.containers[0].envFrom[0].configMapRef.name == "my-config-map-v001"
+    podSpec.containers[1].image == "envoy"
+    podSpec.initContainers[0].image == "busybox:1.31"
+    podSpec.volumes[0].secret.secretName == "my-secret"
+    result.manifest.spec.schedule == "*/1 * * * *"
+    result.boundArtifacts == [image, initImage, configMap] as Set
+    manifest == original
+  }
+
+  def "replaces a reference with each artifact that names it in turn"() {
+    when:
+    def podManifest = """
+apiVersion: v1
+kind: Pod
+metadata:
+  name: my-pod
+spec:
+  containers:
+  - name: main
+    image: nginx
+"""
+    def artifactReplacer = new ArtifactReplacer(ImmutableList.of(Replacer.podDockerImage()))
+    def first = Artifact.builder().type(KubernetesArtifactType.DockerImage.type).name("nginx").reference("nginx:1.17").build()
+    def second = Artifact.builder().type(KubernetesArtifactType.DockerImage.type).name("nginx:1.17").reference("nginx:1.17-alpine").build()
+    def result = artifactReplacer.replaceAll(stringToManifest(podManifest), [first, second], "default", "my-account")
+
+    then:
+    result.manifest.spec.containers[0].image == "nginx:1.17-alpine"
+    result.boundArtifacts == [first, second] as Set
+  }
+
+  def "ignores artifacts without a type"() {
+    when:
+    def podManifest = """
+apiVersion: v1
+kind: Pod
+metadata:
+  name: my-pod
+spec:
+  containers:
+  - name: main
+    image: nginx
+"""
+    def artifactReplacer = new ArtifactReplacer(ImmutableList.of(Replacer.podDockerImage()))
+    def untyped = Artifact.builder().name("nginx").reference("nginx:1.16").build()
+    def image = Artifact.builder().type(KubernetesArtifactType.DockerImage.type).name("nginx").reference("nginx:1.17").build()
+    def result = artifactReplacer.replaceAll(stringToManifest(podManifest), [untyped, image], "default", "my-account")
+
+    then:
+    result.manifest.spec.containers[0].image == "nginx:1.17"
+    result.boundArtifacts == [image] as Set
+  }
+
+  @Unroll
+  def "a replacer rejects an artifact without a type"() {
+    when:
+    Replacer.podDockerImage().replaceArtifacts("nginx", [artifact], ImmutableSet.builder())
+
+    then:
+    def e = thrown(IllegalArgumentException)
+    e.message == "Artifact and artifact type must be set."
+
+    where:
+    artifact << [
+      null,
+      Artifact.builder().name("nginx").reference("nginx:1.17").build(),
+      Artifact.builder().type("").name("nginx").reference("nginx:1.17").build()
+    ]
+  }
+
   @Unroll
   def "correctly extracts Docker artifacts from image names"() {
     when:
@@ -19,6 +19,8 @@ package com.netflix.spinnaker.clouddriver.kubernetes.caching.agent
 
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.netflix.spinnaker.cats.cache.CacheData
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.cats.mem.InMemoryCache
 import com.netflix.spinnaker.clouddriver.kubernetes.KubernetesCloudProvider
 import com.netflix.spinnaker.clouddriver.kubernetes.caching.Keys
 import com.netflix.spinnaker.clouddriver.kubernetes.description.KubernetesPodMetric
@@ -32,12 +34,16 @@ import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.Kuberne
 import com.netflix.spinnaker.clouddriver.kubernetes.names.KubernetesManifestNamer
 import com.netflix.spinnaker.clouddriver.names.NamerRegistry
 import com.netflix.spinnaker.moniker.Moniker
+import io.kubernetes.client.openapi.models.V1Pod
 import org.apache.commons.lang3.tuple.Pair
 import org.yaml.snakeyaml.Yaml
 import org.yaml.snakeyaml.constructor.SafeConstructor
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
 class KubernetesCacheDataConvertSpec extends Specification {
   def mapper = new ObjectMapper()
   def yaml = new Yaml(new SafeConstructor())
@@ -168,6 +174,103 @@ metadata:
     ]
   }
 
+  def "reads the manifest of a cache entry without copying the values it does not modify"() {
+    setup:
+    def manifest = stringToManifest("""
+apiVersion: v1
+kind: Pod
+metadata:
+  name: my-pod
+  namespace: $NAMESPACE
+spec:
+  containers:
+  - name: main
+""")
+    def cacheData = new DefaultCacheData("id", [manifest: manifest], [:])
+
+    when:
+    def result = KubernetesCacheDataConverter.getManifest(cacheData)
+
+    then:
+    result == manifest
+    result.getKind() == KubernetesKind.POD
+    result.getName() == "my-pod"
+    result.get("spec").get("containers").is(manifest.get("spec").get("containers"))
+
+    when:
+    result.put("status", [phase: "Running"])
+    result.getLabels().put("app", "my-app")
+
+    then:
+    !manifest.containsKey("status")
+    !manifest.get("metadata").containsKey("labels")
+  }
+
+  def "manifests read concurrently from an in-memory cache leave the cached entry unchanged"() {
+    setup:
+    def cache = new InMemoryCache()
+    cache.merge("deployments", new DefaultCacheData("id", [manifest: stringToManifest("""
+apiVersion: apps/v1
+kind: Deployment
+metadata:
+  name: my-deployment
+  namespace: $NAMESPACE
+spec:
+  template:
+    metadata:
+      labels:
+        app: my-app
+""")], [:]))
+    def executor = Executors.newFixedThreadPool(8)
+
+    when:
+    def futures = (1..8).collect { thread ->
+      executor.submit({
+        (1..500).each { i ->
+          def manifest = KubernetesCacheDataConverter.getManifest(cache.get("deployments", "id"))
+          manifest.getLabels().put("reader", "$thread-$i".toString())
+          manifest.getAnnotations().put("reader", "$thread-$i".toString())
+          manifest.getSpecTemplateLabels().get().put("reader", "$thread-$i".toString())
+          manifest.getSpecTemplateAnnotations().get().size()
+        }
+      } as Callable)
+    }
+    futures*.get()
+
+    then:
+    def cached = cache.get("deployments", "id").attributes.manifest
+    cached.metadata == [name: "my-deployment", namespace: NAMESPACE]
+    cached.spec.template.metadata == [labels: [app: "my-app"]]
+
+    cleanup:
+    executor.shutdownNow()
+  }
+
+  def "converts a manifest to a typed resource"() {
+    setup:
+    def manifest = stringToManifest("""
+apiVersion: v1
+kind: Pod
+metadata:
+  name: my-pod
+  namespace: $NAMESPACE
+  creationTimestamp: "2020-01-02T03:04:05Z"
+spec:
+  containers:
+  - name: main
+    image: nginx:1.17
+""")
+
+    when:
+    def pod = KubernetesCacheDataConverter.getResource(manifest, V1Pod.class)
+
+    then:
+    pod.metadata.name == "my-pod"
+    pod.metadata.namespace == NAMESPACE
+    pod.metadata.creationTimestamp != null
+    pod.spec.containers*.image == ["nginx:1.17"]
+  }
+
   def containerMetric(String containerName) {
     return new KubernetesPodMetric.ContainerMetric(containerName, [
         "CPU(cores)": "10m",
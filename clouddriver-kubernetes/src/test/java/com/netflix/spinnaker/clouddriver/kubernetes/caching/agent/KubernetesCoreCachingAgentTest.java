@@ -21,6 +21,7 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.netflix.spinnaker.cats.agent.AgentDataType.Authority.AUTHORITATIVE;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -34,6 +35,7 @@ import com.google.common.collect.ImmutableSetMultimap;
 import com.netflix.spectator.api.NoopRegistry;
 import com.netflix.spinnaker.cats.agent.AgentDataType;
 import com.netflix.spinnaker.cats.agent.CacheResult;
+import com.netflix.spinnaker.cats.agent.DeltaCacheResult;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.cats.cache.DefaultCacheData;
 import com.netflix.spinnaker.cats.mem.InMemoryCache;
@@ -51,8 +53,10 @@ import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesNamedAcco
 import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesV2Credentials;
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.IntStream;
 import lombok.Value;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.junit.platform.runner.JUnitPlatform;
@@ -145,6 +149,16 @@ final class KubernetesCoreCachingAgentTest {
                   }
                   return result.build();
                 });
+    doAnswer(
+            invocation -> {
+              Consumer<ImmutableList<KubernetesManifest>> pageConsumer = invocation.getArgument(2);
+              pageConsumer.accept(
+                  v2Credentials.list(
+                      (List<KubernetesKind>) invocation.getArgument(0), invocation.getArgument(1)));
+              return null;
+            })
+        .when(v2Credentials)
+        .listInPages(any(), any(), any());
     return v2Credentials;
   }
 
@@ -153,13 +167,18 @@ final class KubernetesCoreCachingAgentTest {
    */
   private static KubernetesNamedAccountCredentials<KubernetesV2Credentials>
       getNamedAccountCredentials() {
+    return getNamedAccountCredentials(mockKubernetesV2Credentials());
+  }
+
+  /** Returns a KubernetesNamedAccountCredentials that contains the given v2Credentials */
+  private static KubernetesNamedAccountCredentials<KubernetesV2Credentials>
+      getNamedAccountCredentials(KubernetesV2Credentials v2Credentials) {
     KubernetesConfigurationProperties.ManagedAccount managedAccount =
         new KubernetesConfigurationProperties.ManagedAccount();
     managedAccount.setName(ACCOUNT);
 
-    KubernetesV2Credentials mockV2Credentials = mockKubernetesV2Credentials();
     KubernetesV2Credentials.Factory credentialFactory = mock(KubernetesV2Credentials.Factory.class);
-    when(credentialFactory.build(managedAccount)).thenReturn(mockV2Credentials);
+    when(credentialFactory.build(managedAccount)).thenReturn(v2Credentials);
     return new KubernetesNamedAccountCredentials<>(managedAccount, credentialFactory);
   }
 
@@ -563,6 +582,33 @@ final class KubernetesCoreCachingAgentTest {
     }
   }
 
+  @Test
+  public void loadDataInWatchModeReturnsDeltas() {
+    KubernetesV2Credentials v2Credentials = mockKubernetesV2Credentials();
+    when(v2Credentials.isWatchResources()).thenReturn(true);
+    // without discovery, every kind is listed as it would be outside of watch mode
+    when(v2Credentials.getApiResource(any())).thenReturn(Optional.empty());
+    KubernetesCoreCachingAgent cachingAgent =
+        new KubernetesCoreCachingAgent(
+            getNamedAccountCredentials(v2Credentials), objectMapper, new NoopRegistry(), 0, 1, 10L);
+    ProviderCache providerCache = new DefaultProviderCache(new InMemoryCache());
+
+    DeltaCacheResult first = (DeltaCacheResult) cachingAgent.loadData(providerCache);
+    assertThat(first.isFullResult()).isTrue();
+    assertThat(first.getCacheResults()).containsKeys(DEPLOYMENT_KIND, STORAGE_CLASS_KIND);
+
+    DeltaCacheResult second = (DeltaCacheResult) cachingAgent.loadData(providerCache);
+    assertThat(second.isFullResult()).isFalse();
+    assertThat(second.getBaseGeneration()).isEqualTo(first.getGeneration());
+    assertThat(second.getCacheResults()).doesNotContainKeys(DEPLOYMENT_KIND, STORAGE_CLASS_KIND);
+    assertThat(second.getEvictions()).doesNotContainKeys(DEPLOYMENT_KIND, STORAGE_CLASS_KIND);
+
+    cachingAgent.requestFullResync();
+    DeltaCacheResult third = (DeltaCacheResult) cachingAgent.loadData(providerCache);
+    assertThat(third.isFullResult()).isTrue();
+    assertThat(third.getGeneration()).isGreaterThan(second.getGeneration());
+  }
+
   @ParameterizedTest
   @ValueSource(ints = {1, 2, 10})
   public void authoritativeForLogicalTypes(int numAgents) {
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.caching.agent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesKind;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifest;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifestList;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesWatchEvent;
+import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesV2Credentials;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+final class KubernetesResourceInformerTest {
+  private static final String PODS = "/api/v1/pods";
+
+  private final KubernetesV2Credentials credentials = mock(KubernetesV2Credentials.class);
+  private final KubernetesResourceInformer informer =
+      new KubernetesResourceInformer(
+          credentials, KubernetesKind.POD, null, PODS, TimeUnit.MINUTES.toMillis(10));
+
+  /** The events each watch sends in turn; the informer is stopped once they run out. */
+  private final Deque<List<KubernetesWatchEvent>> watches = new ArrayDeque<>();
+
+  private final List<String> watchedVersions = new ArrayList<>();
+
+  KubernetesResourceInformerTest() {
+    doAnswer(
+            invocation -> {
+              watchedVersions.add(invocation.getArgument(3));
+              Consumer<KubernetesWatchEvent> consumer = invocation.getArgument(5);
+              List<KubernetesWatchEvent> events = watches.poll();
+              if (events == null) {
+                informer.stop();
+              } else {
+                events.forEach(consumer);
+              }
+              return null;
+            })
+        .when(credentials)
+        .watch(any(), any(), anyString(), any(), anyInt(), any());
+  }
+
+  @Test
+  void watchesFromTheVersionOfTheList() throws InterruptedException {
+    when(credentials.listRaw(KubernetesKind.POD, null, PODS))
+        .thenReturn(list("10", pod("default", "a", "8"), pod("default", "b", "9")));
+    watches.add(
+        ImmutableList.of(
+            event(KubernetesWatchEvent.ADDED, pod("default", "c", "11")),
+            event(KubernetesWatchEvent.MODIFIED, pod("default", "b", "12")),
+            event(KubernetesWatchEvent.DELETED, pod("default", "a", "13"))));
+
+    informer.run();
+
+    assertThat(informer.awaitSynced(0, TimeUnit.SECONDS)).isTrue();
+    assertThat(watchedVersions).containsExactly("10", "13");
+    assertThat(resourceVersions(informer.snapshot(null)))
+        .containsOnly(entry("b", "12"), entry("c", "11"));
+  }
+
+  @Test
+  void resumesAnEndedWatchFromTheLastVersionSeen() {
+    when(credentials.listRaw(KubernetesKind.POD, null, PODS))
+        .thenReturn(list("10", pod("default", "a", "8")));
+    watches.add(
+        ImmutableList.of(event(KubernetesWatchEvent.MODIFIED, pod("default", "a", "11"))));
+    watches.add(ImmutableList.of(event(KubernetesWatchEvent.BOOKMARK, bookmark("15"))));
+
+    informer.run();
+
+    verify(credentials, times(1)).listRaw(KubernetesKind.POD, null, PODS);
+    assertThat(watchedVersions).containsExactly("10", "11", "15");
+  }
+
+  @Test
+  void listsAgainOnceTheVersionHasExpired() {
+    when(credentials.listRaw(KubernetesKind.POD, null, PODS))
+        .thenReturn(list("10", pod("default", "a", "8")))
+        .thenReturn(list("20", pod("default", "b", "19")));
+    watches.add(ImmutableList.of(event(KubernetesWatchEvent.ERROR, status(410))));
+
+    informer.run();
+
+    verify(credentials, times(2)).listRaw(KubernetesKind.POD, null, PODS);
+    assertThat(watchedVersions).containsExactly("10", "20");
+    assertThat(resourceVersions(informer.snapshot(null))).containsOnly(entry("b", "19"));
+  }
+
+  @Test
+  void retriesOtherErrorsFromTheSameVersion() {
+    when(credentials.listRaw(KubernetesKind.POD, null, PODS))
+        .thenReturn(list("10", pod("default", "a", "8")));
+    watches.add(
+        ImmutableList.of(
+            event(KubernetesWatchEvent.MODIFIED, pod("default", "a", "11")),
+            event(KubernetesWatchEvent.ERROR, status(500))));
+
+    informer.run();
+
+    verify(credentials, times(1)).listRaw(KubernetesKind.POD, null, PODS);
+    assertThat(watchedVersions).containsExactly("10", "11");
+    assertThat(resourceVersions(informer.snapshot(null))).containsOnly(entry("a", "11"));
+  }
+
+  @Test
+  void keepsResourcesOfTheSameNameInEachNamespace() {
+    when(credentials.listRaw(KubernetesKind.POD, null, PODS))
+        .thenReturn(list("10", pod("default", "a", "8"), pod("other", "a", "9")));
+
+    informer.run();
+
+    assertThat(informer.snapshot(null)).hasSize(2);
+    assertThat(informer.snapshot(ImmutableSet.of("other")))
+        .extracting(KubernetesManifest::getNamespace)
+        .containsExactly("other");
+  }
+
+  @Test
+  void stopsOnceIdle() throws InterruptedException {
+    KubernetesResourceInformer idle =
+        new KubernetesResourceInformer(credentials, KubernetesKind.POD, null, PODS, 0);
+    Thread.sleep(5);
+
+    idle.run();
+
+    assertThat(idle.isStopped()).isTrue();
+    assertThat(idle.awaitSynced(0, TimeUnit.SECONDS)).isFalse();
+    verify(credentials, never()).listRaw(any(), any(), any());
+  }
+
+  private static Map<String, String> resourceVersions(List<KubernetesManifest> manifests) {
+    return manifests.stream()
+        .collect(
+            Collectors.toMap(KubernetesManifest::getName, m -> metadata(m).get("resourceVersion")));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, String> metadata(KubernetesManifest manifest) {
+    return (Map<String, String>) manifest.get("metadata");
+  }
+
+  private static KubernetesManifestList list(String resourceVersion, KubernetesManifest... items) {
+    KubernetesManifestList list = new KubernetesManifestList();
+    list.setResourceVersion(resourceVersion);
+    list.setItems(ImmutableList.copyOf(items));
+    return list;
+  }
+
+  private static KubernetesWatchEvent event(String type, KubernetesManifest object) {
+    KubernetesWatchEvent event = new KubernetesWatchEvent();
+    event.setType(type);
+    event.setObject(object);
+    return event;
+  }
+
+  private static KubernetesManifest pod(String namespace, String name, String resourceVersion) {
+    Map<String, Object> metadata = new HashMap<>();
+    metadata.put("namespace", namespace);
+    metadata.put("name", name);
+    metadata.put("resourceVersion", resourceVersion);
+    KubernetesManifest manifest = new KubernetesManifest();
+    manifest.put("kind", "Pod");
+    manifest.put("apiVersion", "v1");
+    manifest.put("metadata", metadata);
+    return manifest;
+  }
+
+  private static KubernetesManifest bookmark(String resourceVersion) {
+    KubernetesManifest manifest = new KubernetesManifest();
+    manifest.put("kind", "Pod");
+    manifest.put("apiVersion", "v1");
+    manifest.put("metadata", ImmutableMap.of("resourceVersion", resourceVersion));
+    return manifest;
+  }
+
+  private static KubernetesManifest status(int code) {
+    KubernetesManifest manifest = new KubernetesManifest();
+    manifest.put("kind", "Status");
+    manifest.put("apiVersion", "v1");
+    manifest.put("code", code);
+    manifest.put("message", "status " + code);
+    return manifest;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.description.manifest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifest.OwnerReference;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+final class KubernetesManifestTest {
+  @Test
+  void noOwnerReferences() {
+    assertThat(manifest(new HashMap<>()).getOwnerReferences()).isEmpty();
+  }
+
+  @Test
+  void ownerReferencesAreDecodedOnce() {
+    Map<String, Object> metadata = new HashMap<>();
+    metadata.put("ownerReferences", ImmutableList.of(ownerReference("rs-v000")));
+    KubernetesManifest manifest = manifest(metadata);
+
+    ImmutableList<OwnerReference> ownerReferences = manifest.getOwnerReferences();
+
+    assertThat(ownerReferences).extracting(OwnerReference::getName).containsExactly("rs-v000");
+    assertThat(ownerReferences.get(0).getKind()).isEqualTo(KubernetesKind.REPLICA_SET);
+    assertThat(manifest.getOwnerReferences()).isSameAs(ownerReferences);
+  }
+
+  @Test
+  void ownerReferencesAreDecodedAgainIfReplaced() {
+    Map<String, Object> metadata = new HashMap<>();
+    metadata.put("ownerReferences", ImmutableList.of(ownerReference("rs-v000")));
+    KubernetesManifest manifest = manifest(metadata);
+    manifest.getOwnerReferences();
+
+    metadata.put("ownerReferences", ImmutableList.of(ownerReference("rs-v001")));
+
+    assertThat(manifest.getOwnerReferences())
+        .extracting(OwnerReference::getName)
+        .containsExactly("rs-v001");
+  }
+
+  @Test
+  void wrapSharesNestedValues() {
+    List<Object> containers = ImmutableList.of(ImmutableMap.of("name", "main"));
+    Map<String, Object> source = deployment(containers);
+
+    KubernetesManifest manifest = KubernetesManifest.wrap(source);
+    manifest.put("status", ImmutableMap.of());
+
+    assertThat(manifest.getKind()).isEqualTo(KubernetesKind.DEPLOYMENT);
+    assertThat(manifest.getName()).isEqualTo("my-deployment");
+    assertThat(templateSpec(manifest).get("containers")).isSameAs(containers);
+    assertThat(source).doesNotContainKey("status");
+  }
+
+  @Test
+  void wrapCopiesWhatAccessorsWrite() {
+    Map<String, Object> source = deployment(ImmutableList.of());
+
+    KubernetesManifest manifest = KubernetesManifest.wrap(source);
+    manifest.setName("other-deployment");
+    manifest.setReplicas(3.0);
+    manifest.getLabels().put("app", "my-app");
+    manifest.getAnnotations().put("note", "value");
+    manifest.getSpecTemplateLabels().get().put("app", "my-app");
+    manifest.getSpecTemplateAnnotations().get().put("note", "value");
+
+    assertThat(source).isEqualTo(deployment(ImmutableList.of()));
+  }
+
+  private static Map<String, Object> deployment(List<Object> containers) {
+    Map<String, Object> templateMetadata = new HashMap<>();
+    templateMetadata.put("labels", new HashMap<>());
+    Map<String, Object> template = new HashMap<>();
+    template.put("metadata", templateMetadata);
+    template.put("spec", ImmutableMap.of("containers", containers));
+    Map<String, Object> spec = new HashMap<>();
+    spec.put("template", template);
+    Map<String, Object> metadata = new HashMap<>();
+    metadata.put("name", "my-deployment");
+    Map<String, Object> source = new HashMap<>();
+    source.put("kind", "Deployment");
+    source.put("apiVersion", "apps/v1");
+    source.put("metadata", metadata);
+    source.put("spec", spec);
+    return source;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> templateSpec(Map<String, Object> manifest) {
+    Map<String, Object> spec = (Map<String, Object>) manifest.get("spec");
+    Map<String, Object> template = (Map<String, Object>) spec.get("template");
+    return (Map<String, Object>) template.get("spec");
+  }
+
+  private static KubernetesManifest manifest(Map<String, Object> metadata) {
+    KubernetesManifest manifest = new KubernetesManifest();
+    manifest.put("kind", "Pod");
+    manifest.put("apiVersion", "v1");
+    manifest.put("metadata", metadata);
+    return manifest;
+  }
+
+  private static Map<String, Object> ownerReference(String name) {
+    return ImmutableMap.of(
+        "apiVersion", "apps/v1", "kind", "ReplicaSet", "name", name, "uid", "abc-123");
+  }
+}
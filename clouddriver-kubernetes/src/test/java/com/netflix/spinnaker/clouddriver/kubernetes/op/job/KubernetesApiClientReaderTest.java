@@ -0,0 +1,253 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.op.job;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.absent;
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.google.common.collect.ImmutableList;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesApiResource;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesKind;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifest;
+import com.netflix.spinnaker.clouddriver.kubernetes.description.manifest.KubernetesManifestList;
+import com.netflix.spinnaker.clouddriver.kubernetes.op.job.KubectlJobExecutor.KubectlExpiredException;
+import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesSelector;
+import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesSelectorList;
+import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesV2Credentials;
+import io.kubernetes.client.openapi.ApiClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import ru.lanwen.wiremock.ext.WiremockResolver;
+
+@ExtendWith(WiremockResolver.class)
+final class KubernetesApiClientReaderTest {
+  private static final String DEPLOYMENTS = "/apis/apps/v1/namespaces/default/deployments";
+
+  private final KubectlJobExecutor kubectl = mock(KubectlJobExecutor.class);
+  private final KubernetesV2Credentials credentials = mock(KubernetesV2Credentials.class);
+
+  KubernetesApiClientReaderTest() {
+    when(credentials.getApiResource(KubernetesKind.DEPLOYMENT))
+        .thenReturn(Optional.of(new KubernetesApiResource("/apis/apps/v1", "deployments", true)));
+  }
+
+  @Test
+  void listReadsEveryPage(@WiremockResolver.Wiremock WireMockServer server) {
+    server.stubFor(
+        get(urlPathEqualTo(DEPLOYMENTS))
+            .withQueryParam("continue", absent())
+            .willReturn(aResponse().withBody(deploymentList("10", "token", "first"))));
+    server.stubFor(
+        get(urlPathEqualTo(DEPLOYMENTS))
+            .withQueryParam("continue", equalTo("token"))
+            .willReturn(aResponse().withBody(deploymentList("10", "", "second"))));
+
+    ImmutableList<KubernetesManifest> result =
+        reader(server)
+            .list(
+                credentials,
+                ImmutableList.of(KubernetesKind.DEPLOYMENT),
+                "default",
+                new KubernetesSelectorList());
+
+    assertThat(result).extracting(KubernetesManifest::getName).containsExactly("first", "second");
+    assertThat(result).allMatch(m -> m.getKind().equals(KubernetesKind.DEPLOYMENT));
+    assertThat(result).allMatch(m -> "apps/v1".equals(m.get("apiVersion")));
+    server.verify(
+        2,
+        getRequestedFor(urlPathEqualTo(DEPLOYMENTS))
+            .withQueryParam(
+                "limit", equalTo(Integer.toString(KubernetesApiClientReader.PAGE_SIZE))));
+  }
+
+  @Test
+  void listInPagesHandsOverEachPage(@WiremockResolver.Wiremock WireMockServer server) {
+    server.stubFor(
+        get(urlPathEqualTo(DEPLOYMENTS))
+            .withQueryParam("continue", absent())
+            .willReturn(aResponse().withBody(deploymentList("10", "token", "first"))));
+    server.stubFor(
+        get(urlPathEqualTo(DEPLOYMENTS))
+            .withQueryParam("continue", equalTo("token"))
+            .willReturn(aResponse().withBody(deploymentList("10", "", "second"))));
+
+    List<List<String>> pages = new ArrayList<>();
+    reader(server)
+        .listInPages(
+            credentials,
+            ImmutableList.of(KubernetesKind.DEPLOYMENT),
+            "default",
+            new KubernetesSelectorList(),
+            page ->
+                pages.add(
+                    page.stream().map(KubernetesManifest::getName).collect(Collectors.toList())));
+
+    assertThat(pages).containsExactly(ImmutableList.of("first"), ImmutableList.of("second"));
+  }
+
+  @Test
+  void listRawKeepsResourceVersionOfFirstPage(@WiremockResolver.Wiremock WireMockServer server) {
+    server.stubFor(
+        get(urlPathEqualTo(DEPLOYMENTS))
+            .withQueryParam("continue", absent())
+            .willReturn(aResponse().withBody(deploymentList("10", "token", "first"))));
+    server.stubFor(
+        get(urlPathEqualTo(DEPLOYMENTS))
+            .withQueryParam("continue", equalTo("token"))
+            .willReturn(aResponse().withBody(deploymentList("11", "", "second"))));
+
+    KubernetesManifestList result = reader(server).listRaw(credentials, DEPLOYMENTS);
+
+    assertThat(result.getItems()).hasSize(2);
+    assertThat(result.getResourceVersion()).isEqualTo("10");
+    assertThat(result.getContinueToken()).isNull();
+  }
+
+  @Test
+  void listFailsIfContinueTokenExpired(@WiremockResolver.Wiremock WireMockServer server) {
+    server.stubFor(
+        get(urlPathEqualTo(DEPLOYMENTS))
+            .withQueryParam("continue", absent())
+            .willReturn(aResponse().withBody(deploymentList("10", "token", "first"))));
+    server.stubFor(
+        get(urlPathEqualTo(DEPLOYMENTS))
+            .withQueryParam("continue", equalTo("token"))
+            .willReturn(aResponse().withStatus(410)));
+
+    assertThatThrownBy(() -> reader(server).listRaw(credentials, DEPLOYMENTS))
+        .isInstanceOf(KubectlExpiredException.class);
+  }
+
+  @Test
+  void listPassesLabelSelector(@WiremockResolver.Wiremock WireMockServer server) {
+    server.stubFor(
+        get(urlPathEqualTo(DEPLOYMENTS))
+            .withQueryParam("labelSelector", equalTo("app=web"))
+            .willReturn(aResponse().withBody(deploymentList("10", null, "web"))));
+
+    KubernetesSelectorList selectors =
+        new KubernetesSelectorList(KubernetesSelector.equals("app", "web"));
+    ImmutableList<KubernetesManifest> result =
+        reader(server)
+            .list(credentials, ImmutableList.of(KubernetesKind.DEPLOYMENT), "default", selectors);
+
+    assertThat(result).extracting(KubernetesManifest::getName).containsExactly("web");
+  }
+
+  @Test
+  void getReadsResource(@WiremockResolver.Wiremock WireMockServer server) {
+    server.stubFor(
+        get(urlPathEqualTo(DEPLOYMENTS + "/web"))
+            .withHeader("Authorization", equalTo("Bearer token-1"))
+            .willReturn(
+                aResponse()
+                    .withBody(
+                        "{\"kind\":\"Deployment\",\"apiVersion\":\"apps/v1\","
+                            + "\"metadata\":{\"name\":\"web\",\"namespace\":\"default\"}}")));
+
+    KubernetesManifest result =
+        reader(server).get(credentials, KubernetesKind.DEPLOYMENT, "default", "web");
+
+    assertThat(result.getName()).isEqualTo("web");
+    assertThat(result.getNamespace()).isEqualTo("default");
+  }
+
+  @Test
+  void getReturnsNullIfNotFound(@WiremockResolver.Wiremock WireMockServer server) {
+    server.stubFor(
+        get(urlPathEqualTo(DEPLOYMENTS + "/web")).willReturn(aResponse().withStatus(404)));
+
+    assertThat(reader(server).get(credentials, KubernetesKind.DEPLOYMENT, "default", "web"))
+        .isNull();
+  }
+
+  @Test
+  void rebuildsClientIfCredentialsRejected(@WiremockResolver.Wiremock WireMockServer server) {
+    server.stubFor(
+        get(urlPathEqualTo(DEPLOYMENTS + "/web"))
+            .withHeader("Authorization", equalTo("Bearer token-1"))
+            .willReturn(aResponse().withStatus(401)));
+    server.stubFor(
+        get(urlPathEqualTo(DEPLOYMENTS + "/web"))
+            .withHeader("Authorization", equalTo("Bearer token-2"))
+            .willReturn(aResponse().withBody("{\"metadata\":{\"name\":\"web\"}}")));
+
+    KubernetesManifest result =
+        reader(server).get(credentials, KubernetesKind.DEPLOYMENT, "default", "web");
+
+    assertThat(result.getName()).isEqualTo("web");
+  }
+
+  @Test
+  void kubectlReadsUnknownKinds(@WiremockResolver.Wiremock WireMockServer server) {
+    KubernetesKind kind = KubernetesKind.fromString("Widget.example.com");
+    ImmutableList<KubernetesManifest> listed = ImmutableList.of(new KubernetesManifest());
+    when(kubectl.list(eq(credentials), eq(ImmutableList.of(kind)), eq("default"), any()))
+        .thenReturn(listed);
+
+    ImmutableList<KubernetesManifest> result =
+        reader(server)
+            .list(credentials, ImmutableList.of(kind), "default", new KubernetesSelectorList());
+
+    assertThat(result).isSameAs(listed);
+    verify(kubectl).list(eq(credentials), eq(ImmutableList.of(kind)), eq("default"), any());
+    assertThat(server.getAllServeEvents()).isEmpty();
+  }
+
+  /** Each client the reader builds authenticates with a new token. */
+  private KubernetesApiClientReader reader(WireMockServer server) {
+    AtomicInteger tokens = new AtomicInteger();
+    Supplier<ApiClient> clientFactory =
+        () -> {
+          ApiClient client = new ApiClient().setBasePath(server.baseUrl());
+          client.setApiKeyPrefix("Bearer");
+          client.setApiKey("token-" + tokens.incrementAndGet());
+          return client;
+        };
+    return new KubernetesApiClientReader(kubectl, clientFactory);
+  }
+
+  private static String deploymentList(String resourceVersion, String continueToken, String name) {
+    return "{\"kind\":\"DeploymentList\",\"apiVersion\":\"apps/v1\","
+        + "\"metadata\":{\"resourceVersion\":\""
+        + resourceVersion
+        + "\""
+        + (continueToken == null ? "" : ",\"continue\":\"" + continueToken + "\"")
+        + "},\"items\":[{\"metadata\":{\"name\":\""
+        + name
+        + "\",\"namespace\":\"default\"}}]}";
+  }
+}
@@ -23,6 +23,8 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableList;
@@ -47,7 +49,11 @@ import com.netflix.spinnaker.clouddriver.kubernetes.op.job.KubectlJobExecutor.Ku
 import com.netflix.spinnaker.clouddriver.names.NamerRegistry;
 import com.netflix.spinnaker.kork.configserver.CloudConfigResourceService;
 import com.netflix.spinnaker.kork.configserver.ConfigFileService;
+import io.kubernetes.client.openapi.models.V1APIGroupList;
+import io.kubernetes.client.openapi.models.V1APIResource;
+import io.kubernetes.client.openapi.models.V1APIResourceList;
 import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 import org.junit.platform.runner.JUnitPlatform;
 import org.junit.runner.RunWith;
@@ -390,6 +396,39 @@ final class KubernetesV2CredentialsTest {
     assertThat(result).isEqualTo(manifest);
   }
 
+  @Test
+  void apiDiscoveryFailuresAreRetriedRatherThanMemoized() {
+    KubectlJobExecutor jobExecutor = mock(KubectlJobExecutor.class);
+    ManualClock clock = new ManualClock();
+    KubernetesV2Credentials credentials =
+        getCredentials(new DefaultRegistry(clock), jobExecutor);
+    V1APIResourceList coreResources =
+        new V1APIResourceList()
+            .groupVersion("v1")
+            .resources(
+                ImmutableList.of(
+                    new V1APIResource()
+                        .name("pods")
+                        .kind("Pod")
+                        .namespaced(true)
+                        .verbs(ImmutableList.of("get", "list", "watch"))));
+    when(jobExecutor.getRaw(credentials, "/api/v1", V1APIResourceList.class))
+        .thenThrow(new KubectlException("connection refused"))
+        .thenReturn(coreResources);
+    when(jobExecutor.getRaw(credentials, "/apis", V1APIGroupList.class))
+        .thenReturn(new V1APIGroupList().groups(ImmutableList.of()));
+
+    assertThat(credentials.getApiResource(KubernetesKind.POD)).isEmpty();
+    clock.setWallTime(TimeUnit.SECONDS.toMillis(30));
+    assertThat(credentials.getApiResource(KubernetesKind.POD)).isEmpty();
+    verify(jobExecutor, times(1)).getRaw(credentials, "/api/v1", V1APIResourceList.class);
+
+    clock.setWallTime(TimeUnit.MINUTES.toMillis(2));
+    assertThat(credentials.getApiResource(KubernetesKind.POD))
+        .hasValueSatisfying(
+            resource -> assertThat(resource.collectionPath(null)).isEqualTo("/api/v1/pods"));
+  }
+
   // This is an error type that will only ever be thrown by stubs in this test; that way we can
   // assert that it is thrown and be sure that we aren't accidentally passing due to an unrelated
   // exception.
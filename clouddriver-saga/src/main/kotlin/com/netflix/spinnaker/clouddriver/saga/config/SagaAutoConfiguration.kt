@@ -37,8 +37,8 @@ open class SagaAutoConfiguration {
 
   @Bean
   @ConditionalOnMissingBean(SagaRepository::class)
-  open fun sagaRepository(eventRepository: EventRepository): SagaRepository {
-    return DefaultSagaRepository(eventRepository)
+  open fun sagaRepository(eventRepository: EventRepository, sagaProperties: SagaProperties): SagaRepository {
+    return DefaultSagaRepository(eventRepository, sagaProperties)
   }
 
   @Bean
@@ -58,4 +58,17 @@ open class SagaAutoConfiguration {
 }
 
 @ConfigurationProperties("spinnaker.clouddriver.sagas")
-open class SagaProperties
+open class SagaProperties {
+  /**
+   * Snapshot a saga once this many events have been added to it since its previous snapshot. A saga is only
+   * snapshotted again once its event log has doubled, so reading it replays at most this many events on top of the
+   * snapshot, or as many as the snapshot holds when that is more. Set to 0 to only snapshot on completed commands.
+   */
+  var snapshotInterval: Int = 50
+
+  /**
+   * Also snapshot a saga whenever one of its commands completes, which is when the next action is about to read it,
+   * provided its event log has doubled since its previous snapshot.
+   */
+  var snapshotOnCommandCompleted: Boolean = true
+}
@@ -44,6 +44,19 @@ class SagaSaved(
   val sequence: Long
 ) : AbstractSagaEvent()
 
+/**
+ * The state of a [Saga] as of an [com.netflix.spinnaker.clouddriver.event.AggregateSnapshot]. It is never logged as
+ * an event of the saga.
+ *
+ * @param sequence The [Saga]'s sequence
+ * @param events The events the [Saga] is rebuilt from, oldest to newest, without superseded [SagaSaved] events
+ */
+@JsonTypeName("sagaSnapshot")
+class SagaSnapshot(
+  val sequence: Long,
+  val events: List<SagaEvent>
+) : AbstractSagaEvent()
+
 /**
  * Emitted whenever an internal error has occurred while applying a [Saga].
  *
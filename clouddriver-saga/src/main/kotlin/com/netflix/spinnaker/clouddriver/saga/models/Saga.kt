@@ -50,6 +50,12 @@ class Saga(
   private val events: MutableList<SagaEvent> = mutableListOf()
   private val pendingEvents: MutableList<SagaEvent> = mutableListOf()
 
+  /**
+   * The position in the event log of the latest snapshot this saga was read from or saved with, if any.
+   */
+  @get:JsonIgnore
+  internal var snapshotSequence: Long = 0
+
   internal fun complete(success: Boolean = true) {
     addEvent(SagaCompleted(success))
   }
@@ -16,19 +16,34 @@
 package com.netflix.spinnaker.clouddriver.saga.persistence
 
 import com.netflix.spinnaker.clouddriver.event.Aggregate
+import com.netflix.spinnaker.clouddriver.event.AggregateSnapshot
 import com.netflix.spinnaker.clouddriver.event.persistence.EventRepository
 import com.netflix.spinnaker.clouddriver.event.persistence.EventRepository.ListAggregatesCriteria
+import com.netflix.spinnaker.clouddriver.saga.SagaCommandCompleted
 import com.netflix.spinnaker.clouddriver.saga.SagaEvent
 import com.netflix.spinnaker.clouddriver.saga.SagaSaved
+import com.netflix.spinnaker.clouddriver.saga.SagaSnapshot
+import com.netflix.spinnaker.clouddriver.saga.config.SagaProperties
 import com.netflix.spinnaker.clouddriver.saga.models.Saga
 import org.slf4j.LoggerFactory
 
 /**
  * The default [SagaRepository] implementation. Since Saga persistence is powered entirely by the
  * eventing lib, this class does not need an explicit persistence backend dependency.
+ *
+ * Sagas are periodically snapshotted (see [SagaProperties]) as a [SagaSnapshot], so that reading one only reads the
+ * events logged since its latest snapshot. A saga's state is queried straight from its event history, and actions read
+ * the payloads of commands that have long completed, so the snapshot holds every event of the saga except for
+ * superseded [SagaSaved] events.
+ *
+ * Since every snapshot rewrites the history before it, a saga is only snapshotted again once its event log has at
+ * least doubled since its previous snapshot. All the snapshots of a saga together then hold fewer than twice the events
+ * of its log, rather than growing with the square of its length, while a read replays no more events on top of a
+ * snapshot than the snapshot holds, or than [SagaProperties.snapshotInterval] when that is larger.
  */
 class DefaultSagaRepository(
-  private val eventRepository: EventRepository
+  private val eventRepository: EventRepository,
+  private val properties: SagaProperties = SagaProperties()
 ) : SagaRepository {
 
   private val log by lazy { LoggerFactory.getLogger(javaClass) }
@@ -56,6 +71,20 @@ class DefaultSagaRepository(
   }
 
   override fun get(type: String, id: String): Saga? {
+    val snapshot = getSnapshot(type, id)
+    if (snapshot != null) {
+      val state = snapshot.state as SagaSnapshot
+      val laterEvents = eventRepository.list(type, id, snapshot.sequence).filterIsInstance<SagaEvent>()
+      return Saga(
+        name = type,
+        id = id,
+        sequence = laterEvents.filterIsInstance<SagaSaved>().lastOrNull()?.sequence ?: state.sequence
+      ).also { saga ->
+        saga.hydrateEvents(state.events + laterEvents)
+        saga.snapshotSequence = snapshot.sequence
+      }
+    }
+
     val events = eventRepository.list(type, id)
     if (events.isEmpty()) {
       return null
@@ -76,6 +105,19 @@ class DefaultSagaRepository(
       }
   }
 
+  /**
+   * @return the latest snapshot of a saga, or null if there is none or it can't be read
+   */
+  private fun getSnapshot(type: String, id: String): AggregateSnapshot? {
+    return try {
+      eventRepository.getSnapshot(type, id)?.takeIf { it.state is SagaSnapshot }
+    } catch (e: Exception) {
+      // the saga can still be read from its full event log
+      log.warn("Failed to read the snapshot of saga $type/$id", e)
+      null
+    }
+  }
+
   override fun save(saga: Saga, additionalEvents: List<SagaEvent>) {
     val events: MutableList<SagaEvent> = saga.getPendingEvents().toMutableList()
     if (additionalEvents.isNotEmpty()) {
@@ -83,5 +125,46 @@ class DefaultSagaRepository(
     }
     events.add(SagaSaved(saga.getSequence()))
     eventRepository.save(saga.name, saga.id, saga.getVersion(), events)
+
+    if (shouldSnapshot(saga, events)) {
+      snapshot(saga, events)
+    }
+  }
+
+  private fun shouldSnapshot(saga: Saga, savedEvents: List<SagaEvent>): Boolean {
+    val added = savedEvents.last().getMetadata().sequence - saga.snapshotSequence
+    if (added < saga.snapshotSequence) {
+      // the log hasn't doubled since the previous snapshot
+      return false
+    }
+
+    if (properties.snapshotOnCommandCompleted && savedEvents.any { it is SagaCommandCompleted }) {
+      return true
+    }
+
+    val interval = properties.snapshotInterval
+    return interval > 0 && added >= interval
+  }
+
+  /**
+   * Snapshots [saga] as of [savedEvents], which must have just been saved on top of the events it was read with.
+   */
+  private fun snapshot(saga: Saga, savedEvents: List<SagaEvent>) {
+    val lastSaved = savedEvents.last()
+    // the last SagaSaved is kept for the saga's version, which is derived from its events
+    val events = (saga.getEvents() + savedEvents).filterNot { it is SagaSaved } + lastSaved
+    val state = SagaSnapshot(saga.getSequence(), events).apply {
+      setMetadata(lastSaved.getMetadata())
+    }
+
+    try {
+      eventRepository.saveSnapshot(
+        AggregateSnapshot(saga.name, saga.id, lastSaved.getMetadata().sequence, state)
+      )
+      saga.snapshotSequence = lastSaved.getMetadata().sequence
+    } catch (e: Exception) {
+      // the saga can still be read from its full event log
+      log.warn("Failed to snapshot saga ${saga.name}/${saga.id}", e)
+    }
   }
 }
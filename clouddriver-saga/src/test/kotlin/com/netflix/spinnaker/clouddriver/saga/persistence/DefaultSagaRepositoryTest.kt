@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.saga.persistence
+
+import com.netflix.spectator.api.NoopRegistry
+import com.netflix.spinnaker.clouddriver.event.AggregateSnapshot
+import com.netflix.spinnaker.clouddriver.event.config.MemoryEventRepositoryConfigProperties
+import com.netflix.spinnaker.clouddriver.event.persistence.InMemoryEventRepository
+import com.netflix.spinnaker.clouddriver.saga.SagaCommandCompleted
+import com.netflix.spinnaker.clouddriver.saga.SagaSaved
+import com.netflix.spinnaker.clouddriver.saga.SagaSnapshot
+import com.netflix.spinnaker.clouddriver.saga.config.SagaProperties
+import com.netflix.spinnaker.clouddriver.saga.models.Saga
+import dev.minutest.junit.JUnit5Minutests
+import dev.minutest.rootContext
+import io.mockk.mockk
+import strikt.api.expectThat
+import strikt.assertions.containsExactly
+import strikt.assertions.hasSize
+import strikt.assertions.isEqualTo
+import strikt.assertions.isNotNull
+import strikt.assertions.isNull
+
+class DefaultSagaRepositoryTest : JUnit5Minutests {
+
+  fun tests() = rootContext<Fixture> {
+    context("snapshotting on completed commands") {
+      fixture {
+        Fixture(SagaProperties().apply {
+          snapshotInterval = 0
+          snapshotOnCommandCompleted = true
+        })
+      }
+
+      test("sagas are read from their latest snapshot plus later events") {
+        Saga("test", "1").also {
+          it.log("one")
+          subject.save(it)
+        }
+        expectThat(eventRepository.getSnapshot("test", "1")).isNull()
+
+        subject.get("test", "1")!!.also {
+          it.log("two")
+          subject.save(it, listOf(SagaCommandCompleted("doIt")))
+        }
+        expectThat(eventRepository.getSnapshot("test", "1"))
+          .isNotNull()
+          .and {
+            get { sequence }.isEqualTo(5L)
+            get { (state as SagaSnapshot).events.filterIsInstance<SagaSaved>() }.hasSize(1)
+          }
+
+        subject.get("test", "1")!!.also {
+          it.log("three")
+          subject.save(it)
+        }
+
+        expectThat(subject.get("test", "1"))
+          .isNotNull()
+          .and {
+            get { getLogs() }.containsExactly("one", "two", "three")
+            get { getVersion() }.isEqualTo(3L)
+            get { getEvents().filterIsInstance<SagaSaved>() }.hasSize(2)
+          }
+      }
+
+      test("sagas are only snapshotted again once their event log has doubled") {
+        Saga("test", "1").also {
+          it.log("one")
+          subject.save(it, listOf(SagaCommandCompleted("doIt")))
+        }
+        expectThat(eventRepository.getSnapshot("test", "1")).isNotNull().get { sequence }.isEqualTo(3L)
+
+        val snapshotSequences = (2..5).map { n ->
+          subject.get("test", "1")!!.also {
+            it.log("log $n")
+            subject.save(it, listOf(SagaCommandCompleted("doIt")))
+          }
+          eventRepository.getSnapshot("test", "1")!!.sequence
+        }
+
+        expectThat(snapshotSequences).containsExactly(6L, 6L, 12L, 12L)
+        expectThat(subject.get("test", "1"))
+          .isNotNull()
+          .get { getLogs() }.containsExactly("one", "log 2", "log 3", "log 4", "log 5")
+      }
+    }
+
+    context("unreadable snapshots") {
+      fixture {
+        Fixture(SagaProperties())
+      }
+
+      test("sagas are read from their full event log") {
+        Saga("test", "1").also {
+          it.log("one")
+          subject.save(it)
+        }
+        eventRepository.saveSnapshot(
+          AggregateSnapshot("test", "1", 100, SagaSaved(0))
+        )
+
+        expectThat(subject.get("test", "1"))
+          .isNotNull()
+          .get { getLogs() }.containsExactly("one")
+      }
+    }
+
+    context("snapshotting on an interval") {
+      fixture {
+        Fixture(SagaProperties().apply {
+          snapshotInterval = 4
+          snapshotOnCommandCompleted = false
+        })
+      }
+
+      test("a snapshot is taken once the interval is crossed") {
+        Saga("test", "1").also {
+          it.log("one")
+          it.log("two")
+          subject.save(it)
+        }
+        expectThat(eventRepository.getSnapshot("test", "1")).isNull()
+
+        subject.get("test", "1")!!.also {
+          it.log("three")
+          subject.save(it, listOf(SagaCommandCompleted("doIt")))
+        }
+        expectThat(eventRepository.getSnapshot("test", "1"))
+          .isNotNull()
+          .get { sequence }.isEqualTo(6L)
+
+        expectThat(subject.get("test", "1"))
+          .isNotNull()
+          .get { getLogs() }.containsExactly("one", "two", "three")
+      }
+    }
+  }
+
+  private inner class Fixture(properties: SagaProperties) {
+    val eventRepository = InMemoryEventRepository(
+      MemoryEventRepositoryConfigProperties(),
+      mockk(relaxed = true),
+      NoopRegistry()
+    )
+    val subject = DefaultSagaRepository(eventRepository, properties)
+  }
+}
@@ -15,10 +15,15 @@
  */
 package com.netflix.spinnaker.clouddriver.config
 
+import com.netflix.spectator.api.Registry
 import com.netflix.spinnaker.clouddriver.scattergather.ScatterGather
 import com.netflix.spinnaker.clouddriver.scattergather.client.ScatteredOkHttpCallFactory
+import com.netflix.spinnaker.clouddriver.scattergather.concurrent.ConcurrentScatterGather
 import com.netflix.spinnaker.clouddriver.scattergather.naive.NaiveScatterGather
 import com.netflix.spinnaker.config.OkHttp3ClientConfiguration
+import java.time.Duration
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty
 import org.springframework.context.annotation.Bean
 import org.springframework.context.annotation.Configuration
 
@@ -31,7 +36,18 @@ open class ScatterGatherConfiguration {
   }
 
   @Bean
-  open fun scatterGather(callFactory: ScatteredOkHttpCallFactory): ScatterGather {
+  @ConditionalOnProperty(value = ["scatter-gather.mode"], havingValue = "concurrent", matchIfMissing = true)
+  open fun scatterGather(
+    callFactory: ScatteredOkHttpCallFactory,
+    registry: Registry,
+    @Value("\${scatter-gather.target-timeout-ms:30000}") targetTimeoutMs: Long
+  ): ScatterGather {
+    return ConcurrentScatterGather(callFactory, registry, Duration.ofMillis(targetTimeoutMs))
+  }
+
+  @Bean
+  @ConditionalOnProperty(value = ["scatter-gather.mode"], havingValue = "naive")
+  open fun naiveScatterGather(callFactory: ScatteredOkHttpCallFactory): ScatterGather {
     return NaiveScatterGather(callFactory)
   }
 }
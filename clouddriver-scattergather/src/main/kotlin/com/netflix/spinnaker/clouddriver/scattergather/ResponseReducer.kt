@@ -27,4 +27,10 @@ import okhttp3.Response
 interface ResponseReducer {
 
   fun reduce(responses: List<Response>): ReducedResponse
+
+  /**
+   * Starts a reduction that is fed responses as they arrive. Reducers that can do their work incrementally should
+   * override this; by default responses are collected and passed to [reduce] at the end.
+   */
+  fun newReduction(): ResponseReduction = CollectingResponseReduction(this)
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.scattergather
+
+import java.io.Closeable
+import okhttp3.Response
+
+/**
+ * A reduction in progress, fed one [Response] at a time as each target responds.
+ *
+ * Calls are never concurrent, but responses are added in the order they arrive rather than in target order. The
+ * reduction owns every response it is given: it closes each one once it has read it, and [close] releases any it
+ * still holds, whether or not [reduce] was called.
+ */
+interface ResponseReduction : Closeable {
+
+  fun add(response: Response)
+
+  fun reduce(): ReducedResponse
+
+  override fun close() {}
+}
+
+/**
+ * Collects responses until all have arrived, for reducers that can only work on the complete list.
+ */
+internal class CollectingResponseReduction(
+  private val reducer: ResponseReducer
+) : ResponseReduction {
+
+  private val responses = mutableListOf<Response>()
+
+  override fun add(response: Response) {
+    responses.add(response)
+  }
+
+  override fun reduce(): ReducedResponse =
+    try {
+      reducer.reduce(responses)
+    } finally {
+      close()
+    }
+
+  override fun close() {
+    responses.forEach { it.close() }
+    responses.clear()
+  }
+}
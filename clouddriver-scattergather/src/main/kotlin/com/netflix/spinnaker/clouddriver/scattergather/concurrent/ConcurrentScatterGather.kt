@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.scattergather.concurrent
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.clouddriver.scattergather.ReducedResponse
+import com.netflix.spinnaker.clouddriver.scattergather.ResponseReducer
+import com.netflix.spinnaker.clouddriver.scattergather.ScatterGather
+import com.netflix.spinnaker.clouddriver.scattergather.ServletScatterGatherRequest
+import com.netflix.spinnaker.clouddriver.scattergather.client.ScatteredOkHttpCallFactory
+import java.io.IOException
+import java.time.Duration
+import java.util.UUID
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import okhttp3.Call
+import okhttp3.Callback
+import okhttp3.MediaType
+import okhttp3.Protocol
+import okhttp3.Response
+import okhttp3.ResponseBody
+import org.slf4j.LoggerFactory
+import org.springframework.http.HttpStatus
+
+/**
+ * Performs a scatter/gather operation by dispatching every call at once.
+ *
+ * Responses are handed to the reducer as they arrive, so the reducer resolves conflicts in arrival order rather than
+ * target order. Targets that have not responded within [targetTimeout] are cancelled and reduced as a
+ * `504 Gateway Timeout`; targets that fail outright are reduced as a `502 Bad Gateway`. The overall request therefore
+ * never takes (much) longer than [targetTimeout], no matter how many targets are slow.
+ */
+class ConcurrentScatterGather(
+  private val callFactory: ScatteredOkHttpCallFactory,
+  private val registry: Registry,
+  private val targetTimeout: Duration = DEFAULT_TARGET_TIMEOUT
+) : ScatterGather {
+
+  private val log = LoggerFactory.getLogger(javaClass)
+  private val objectMapper = ObjectMapper()
+
+  private val targetLatencyId = registry.createId("scatterGather.targetLatency")
+
+  override fun request(request: ServletScatterGatherRequest, reducer: ResponseReducer): ReducedResponse {
+    val targetNames = request.targets.keys.toList()
+    val calls = callFactory.createCalls(
+      UUID.randomUUID().toString(),
+      request.targets,
+      request.original
+    )
+
+    val start = System.nanoTime()
+    val deadline = start + targetTimeout.toNanos()
+    val done = AtomicBoolean(false)
+    val completions = LinkedBlockingQueue<Completion>()
+    val pending = calls.indices.toMutableSet()
+
+    calls.forEachIndexed { index, call ->
+      call.enqueue(object : Callback {
+        override fun onResponse(call: Call, response: Response) {
+          completions.add(Completion(index, response, null))
+          if (done.get()) {
+            // the request is already reduced, and nobody else is going to close this
+            drain(completions)
+          }
+        }
+
+        override fun onFailure(call: Call, e: IOException) {
+          completions.add(Completion(index, null, e))
+        }
+      })
+    }
+
+    val reduction = reducer.newReduction()
+    try {
+      while (pending.isNotEmpty()) {
+        val remaining = deadline - System.nanoTime()
+        val completion = if (remaining > 0) completions.poll(remaining, TimeUnit.NANOSECONDS) else null
+        if (completion == null) {
+          break
+        }
+
+        pending.remove(completion.index)
+        val call = calls[completion.index]
+        if (completion.response != null) {
+          record(targetNames[completion.index], if (completion.response.isSuccessful) "success" else "error", start)
+          reduction.add(completion.response)
+        } else {
+          log.warn("Scattered request to ${targetNames[completion.index]} failed", completion.failure)
+          record(targetNames[completion.index], "error", start)
+          reduction.add(syntheticResponse(call, HttpStatus.BAD_GATEWAY, completion.failure?.message))
+        }
+      }
+
+      pending.forEach {
+        log.warn("Scattered request to ${targetNames[it]} did not complete within $targetTimeout, cancelling")
+        calls[it].cancel()
+        record(targetNames[it], "timeout", start)
+        reduction.add(syntheticResponse(calls[it], HttpStatus.GATEWAY_TIMEOUT, "Target did not respond in time"))
+      }
+
+      return reduction.reduce()
+    } finally {
+      reduction.close()
+      done.set(true)
+      drain(completions)
+    }
+  }
+
+  private fun record(target: String, outcome: String, start: Long) {
+    registry.timer(targetLatencyId.withTags("target", target, "outcome", outcome))
+      .record(System.nanoTime() - start, TimeUnit.NANOSECONDS)
+  }
+
+  private fun syntheticResponse(call: Call, status: HttpStatus, message: String?): Response =
+    Response.Builder()
+      .request(call.request())
+      .protocol(Protocol.HTTP_1_1)
+      .code(status.value())
+      .message(status.reasonPhrase)
+      .body(
+        ResponseBody.create(
+          JSON,
+          objectMapper.writeValueAsString(mapOf("error" to status.reasonPhrase, "message" to message))
+        )
+      )
+      .build()
+
+  /**
+   * Closes responses that arrived after the request was reduced (or while it was failing).
+   */
+  private fun drain(completions: LinkedBlockingQueue<Completion>) {
+    generateSequence { completions.poll() }.forEach { it.response?.close() }
+  }
+
+  private class Completion(
+    val index: Int,
+    val response: Response?,
+    val failure: IOException?
+  )
+
+  companion object {
+    val DEFAULT_TARGET_TIMEOUT: Duration = Duration.ofSeconds(30)
+
+    private val JSON = MediaType.parse("application/json")
+  }
+}
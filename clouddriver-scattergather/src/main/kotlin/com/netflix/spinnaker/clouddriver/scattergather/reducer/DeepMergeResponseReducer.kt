@@ -21,6 +21,7 @@ import com.fasterxml.jackson.databind.node.ArrayNode
 import com.fasterxml.jackson.databind.node.ObjectNode
 import com.netflix.spinnaker.clouddriver.scattergather.ReducedResponse
 import com.netflix.spinnaker.clouddriver.scattergather.ResponseReducer
+import com.netflix.spinnaker.clouddriver.scattergather.ResponseReduction
 import okhttp3.Response
 import org.springframework.http.HttpStatus
 
@@ -38,53 +39,58 @@ class DeepMergeResponseReducer : ResponseReducer {
 
   private val objectMapper = ObjectMapper()
 
-  override fun reduce(responses: List<Response>): ReducedResponse {
-    val status = getResponseCode(responses)
-    val body = mergeResponseBodies(responses, status)
-
-    return ReducedResponse(
-      status,
-      mapOf(), // TODO(rz): There's no real benefit to propagate headers at this point.
-      "application/json",
-      "UTF-8",
-      body?.toString(),
-      hasErrors(responses)
-    )
-  }
+  override fun reduce(responses: List<Response>): ReducedResponse =
+    newReduction()
+      .apply { responses.forEach { add(it) } }
+      .reduce()
 
   /**
-   * Merges all response bodies into a single [JsonNode]. Uses the first response
-   * as a base, layering each subsequent non-null response on top.
+   * Merges each response body into the result as it arrives, using the first one as a base and layering each
+   * subsequent non-null body on top.
    */
-  private fun mergeResponseBodies(responses: List<Response>, responseStatus: Int): JsonNode? {
-    val bodies = responses
-      .asSequence()
-      .map { Pair(it.body()?.string(), it) }
-      .filter { it.first != null }
-      .toList()
-
-    if (bodies.isEmpty()) {
-      return null
-    }
+  override fun newReduction(): ResponseReduction = DeepMergeReduction()
+
+  private inner class DeepMergeReduction : ResponseReduction {
+    private val codes = mutableListOf<Int>()
+    private var merged: JsonNode? = null
+    private var highestCode: Int? = null
+    private var highestBody: String? = null
+
+    override fun add(response: Response) {
+      val code = response.code()
+      codes.add(code)
+
+      val body = response.use { it.body()?.string() } ?: return
+      if (highestCode == null || code > highestCode!!) {
+        highestCode = code
+        highestBody = body
+      }
 
-    if (responseStatus !in (200..299)) {
-      // Find the highest response status and return that.
-      val highestResponseBody = bodies.sortedByDescending { it.second.code() }.first().first
-      if (highestResponseBody != null) {
-        return objectMapper.readTree(highestResponseBody)
+      // bodies only get merged if every response is successful
+      if (code in (200..299)) {
+        val node = objectMapper.readTree(body)
+        merged = merged?.let { mergeNodes(it, node) } ?: node
       }
     }
 
-    val main = objectMapper.readTree(bodies.first().first)
-    if (bodies.size == 1) {
-      return main
-    }
+    override fun reduce(): ReducedResponse {
+      val status = getResponseCode(codes)
+      val body = when {
+        highestBody == null -> null
+        // Return the body with the highest response status.
+        status !in (200..299) -> objectMapper.readTree(highestBody)
+        else -> merged
+      }
 
-    bodies.subList(1, bodies.size).forEach {
-      mergeNodes(main, objectMapper.readTree(it.first))
+      return ReducedResponse(
+        status,
+        mapOf(), // TODO(rz): There's no real benefit to propagate headers at this point.
+        "application/json",
+        "UTF-8",
+        body?.toString(),
+        hasErrors(codes)
+      )
     }
-
-    return main
   }
 
   private fun mergeNodes(mainNode: JsonNode, updateNode: JsonNode?): JsonNode {
@@ -115,12 +121,12 @@ class DeepMergeResponseReducer : ResponseReducer {
     return mainNode
   }
 
-  private fun getResponseCode(responses: List<Response>): Int {
-    if (hasErrors(responses)) {
+  private fun getResponseCode(codes: List<Int>): Int {
+    if (hasErrors(codes)) {
       return HttpStatus.BAD_GATEWAY.value()
     }
 
-    val distinctCodes = responses.asSequence().map { it.code() }.distinct().toList()
+    val distinctCodes = codes.distinct()
     return when {
       distinctCodes.size == 1 -> distinctCodes[0]
       distinctCodes.any { it == 404 } -> HttpStatus.NOT_FOUND.value()
@@ -129,6 +135,6 @@ class DeepMergeResponseReducer : ResponseReducer {
     }
   }
 
-  private fun hasErrors(responses: List<Response>): Boolean =
-    responses.any { it.code() >= 500 }
+  private fun hasErrors(codes: List<Int>): Boolean =
+    codes.any { it >= 500 }
 }
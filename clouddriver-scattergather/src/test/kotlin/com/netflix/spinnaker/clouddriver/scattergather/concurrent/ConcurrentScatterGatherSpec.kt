@@ -0,0 +1,190 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.scattergather.concurrent
+
+import com.netflix.spectator.api.DefaultRegistry
+import com.netflix.spinnaker.clouddriver.scattergather.ReducedResponse
+import com.netflix.spinnaker.clouddriver.scattergather.ResponseReducer
+import com.netflix.spinnaker.clouddriver.scattergather.ServletScatterGatherRequest
+import com.netflix.spinnaker.clouddriver.scattergather.client.ScatteredOkHttpCallFactory
+import com.netflix.spinnaker.clouddriver.scattergather.reducer.DeepMergeResponseReducer
+import java.time.Duration
+import java.util.Collections
+import okhttp3.Interceptor
+import okhttp3.MediaType
+import okhttp3.OkHttpClient
+import okhttp3.Protocol
+import okhttp3.Response
+import okhttp3.ResponseBody
+import okio.Buffer
+import okio.BufferedSource
+import org.jetbrains.spek.api.Spek
+import org.jetbrains.spek.api.dsl.describe
+import org.jetbrains.spek.api.dsl.given
+import org.jetbrains.spek.api.dsl.it
+import org.springframework.mock.web.MockHttpServletRequest
+import strikt.api.expectThat
+import strikt.assertions.all
+import strikt.assertions.contains
+import strikt.assertions.hasSize
+import strikt.assertions.isEqualTo
+import strikt.assertions.isFalse
+import strikt.assertions.isLessThan
+import strikt.assertions.isTrue
+
+internal object ConcurrentScatterGatherSpec : Spek({
+
+  describe("scattering a request concurrently") {
+    val okClient = OkHttpClient.Builder()
+      .addInterceptor(FakeTargets(
+        mapOf(
+          "one" to FakeTarget("""{"one": true}"""),
+          "two" to FakeTarget("""{"two": true}"""),
+          "slow" to FakeTarget("""{"slow": true}""", delayMillis = 2000)
+        )
+      ))
+      .build()
+    val registry = DefaultRegistry()
+    val subject = ConcurrentScatterGather(ScatteredOkHttpCallFactory(okClient), registry, Duration.ofMillis(250))
+
+    given("targets that all respond in time") {
+      val request = ServletScatterGatherRequest(
+        mapOf("one" to "http://one", "two" to "http://two"),
+        MockHttpServletRequest("GET", "/hello")
+      )
+
+      it("merges every response") {
+        val result = subject.request(request, DeepMergeResponseReducer())
+
+        expectThat(result) {
+          get { status }.isEqualTo(200)
+          get { isError }.isFalse()
+          get { body!! }.contains("\"one\":true").contains("\"two\":true")
+        }
+      }
+    }
+
+    given("a target that does not respond in time") {
+      val request = ServletScatterGatherRequest(
+        mapOf("one" to "http://one", "slow" to "http://slow"),
+        MockHttpServletRequest("GET", "/hello")
+      )
+
+      it("times out the slow target without waiting for it") {
+        val start = System.currentTimeMillis()
+        val result = subject.request(request, DeepMergeResponseReducer())
+
+        expectThat(System.currentTimeMillis() - start).isLessThan(1500)
+        expectThat(result) {
+          get { status }.isEqualTo(502)
+          get { isError }.isTrue()
+          get { body!! }.contains("Gateway Timeout")
+        }
+        expectThat(
+          registry.timer("scatterGather.targetLatency", "target", "slow", "outcome", "timeout").count()
+        ).isEqualTo(1L)
+      }
+    }
+
+    given("a reducer that only works on the complete list of responses") {
+      val targets = FakeTargets(
+        mapOf(
+          "one" to FakeTarget("""{"one": true}"""),
+          "two" to FakeTarget("""{"two": true}""")
+        )
+      )
+      val collecting = ConcurrentScatterGather(
+        ScatteredOkHttpCallFactory(OkHttpClient.Builder().addInterceptor(targets).build()),
+        registry,
+        Duration.ofMillis(250)
+      )
+      val reducer = object : ResponseReducer {
+        override fun reduce(responses: List<Response>) =
+          ReducedResponse(
+            200,
+            mapOf(),
+            "application/json",
+            "UTF-8",
+            responses.joinToString(",", "[", "]") { it.body()!!.string() },
+            false
+          )
+      }
+      val request = ServletScatterGatherRequest(
+        mapOf("one" to "http://one", "two" to "http://two"),
+        MockHttpServletRequest("GET", "/hello")
+      )
+
+      it("reads every body before closing it") {
+        val result = collecting.request(request, reducer)
+
+        expectThat(result.body!!).contains("\"one\": true").contains("\"two\": true")
+        expectThat(targets.bodies).hasSize(2).all { get { closed }.isTrue() }
+      }
+    }
+  }
+})
+
+private class FakeTarget(
+  val body: String,
+  val delayMillis: Long = 0
+)
+
+/**
+ * A body that, like one read from the network, can no longer be read once it has been closed.
+ */
+private class StreamedBody(content: String) : ResponseBody() {
+  private val buffer = Buffer().writeUtf8(content)
+
+  @Volatile
+  var closed = false
+
+  override fun contentType(): MediaType? = MediaType.parse("application/json")
+
+  override fun contentLength(): Long = -1
+
+  override fun source(): BufferedSource {
+    check(!closed) { "closed" }
+    return buffer
+  }
+
+  override fun close() {
+    closed = true
+  }
+}
+
+/**
+ * Answers each request with the canned response of the target matching its host, without any network calls.
+ */
+private class FakeTargets(
+  private val targets: Map<String, FakeTarget>
+) : Interceptor {
+
+  val bodies: MutableList<StreamedBody> = Collections.synchronizedList(mutableListOf())
+
+  override fun intercept(chain: Interceptor.Chain): Response {
+    val target = targets.getValue(chain.request().url().host())
+    if (target.delayMillis > 0) {
+      Thread.sleep(target.delayMillis)
+    }
+    return Response.Builder()
+      .request(chain.request())
+      .protocol(Protocol.HTTP_1_1)
+      .code(200)
+      .message("OK")
+      .body(StreamedBody(target.body).also { bodies.add(it) })
+      .build()
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.sql
+
+import com.netflix.spinnaker.clouddriver.data.task.TaskChangeFanout
+import com.netflix.spinnaker.kork.sql.routing.withPool
+import java.io.Closeable
+import java.time.Clock
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.function.BiConsumer
+import org.jooq.DSLContext
+import org.jooq.impl.DSL.field
+import org.jooq.impl.DSL.max
+import org.slf4j.LoggerFactory
+
+/**
+ * Discovers task changes made by other instances by polling `task_states` for recently created rows.
+ *
+ * Every state change already writes a row, so [broadcast] has nothing to do. Result objects and saga ids do not write
+ * a state and are therefore only seen by waiters on the instance that wrote them.
+ */
+class SqlTaskChangeFanout(
+  private val jooq: DSLContext,
+  private val clock: Clock,
+  private val pollIntervalMillis: Long,
+  private val poolName: String
+) : TaskChangeFanout, Closeable {
+
+  companion object {
+    /**
+     * States are stamped with the writer's clock, so each poll looks this far behind the previous one to pick up
+     * rows from instances whose clocks lag ours.
+     */
+    private val CLOCK_SKEW_MILLIS = TimeUnit.SECONDS.toMillis(5)
+
+    private val log = LoggerFactory.getLogger(SqlTaskChangeFanout::class.java)
+  }
+
+  private val listeners = CopyOnWriteArrayList<BiConsumer<String, Long>>()
+  private var executor: ScheduledExecutorService? = null
+  private var lastPolledAt = clock.millis()
+
+  override fun broadcast(taskId: String, version: Long) {}
+
+  @Synchronized
+  override fun subscribe(listener: BiConsumer<String, Long>) {
+    listeners.add(listener)
+    if (executor == null) {
+      executor = Executors.newSingleThreadScheduledExecutor { r ->
+        Thread(r, javaClass.simpleName).apply { isDaemon = true }
+      }.apply {
+        scheduleWithFixedDelay({ poll() }, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS)
+      }
+    }
+  }
+
+  override fun close() {
+    executor?.shutdownNow()
+  }
+
+  internal fun poll() {
+    val now = clock.millis()
+    val since = lastPolledAt - pollIntervalMillis - CLOCK_SKEW_MILLIS
+
+    try {
+      val changes = withPool(poolName) {
+        jooq.read { ctx ->
+          ctx.select(field("task_id", String::class.java), max(field("created_at", Long::class.java)))
+            .from(taskStatesTable)
+            .where(field("created_at", Long::class.java).gt(since))
+            .groupBy(field("task_id"))
+            .fetch()
+        }
+      }
+      lastPolledAt = now
+
+      changes.forEach { change ->
+        listeners.forEach { it.accept(change.value1(), change.value2()) }
+      }
+    } catch (e: Exception) {
+      log.warn("Failed to poll for task changes since $since", e)
+    }
+  }
+}
@@ -19,6 +19,7 @@ import com.fasterxml.jackson.databind.ObjectMapper
 import com.netflix.spinnaker.clouddriver.core.ClouddriverHostname
 import com.netflix.spinnaker.clouddriver.data.task.DefaultTaskStatus
 import com.netflix.spinnaker.clouddriver.data.task.Task
+import com.netflix.spinnaker.clouddriver.data.task.TaskChangeFeed
 import com.netflix.spinnaker.clouddriver.data.task.TaskRepository
 import com.netflix.spinnaker.clouddriver.data.task.TaskState
 import com.netflix.spinnaker.clouddriver.data.task.TaskState.FAILED
@@ -35,11 +36,12 @@ import org.jooq.impl.DSL.field
 import org.jooq.impl.DSL.sql
 import org.slf4j.LoggerFactory
 
-class SqlTaskRepository(
+class SqlTaskRepository @JvmOverloads constructor(
   private val jooq: DSLContext,
   private val mapper: ObjectMapper,
   private val clock: Clock,
-  private val poolName: String
+  private val poolName: String,
+  private val changeFeed: TaskChangeFeed = TaskChangeFeed.NONE
 ) : TaskRepository {
 
   private val log = LoggerFactory.getLogger(javaClass)
@@ -78,12 +80,13 @@ class SqlTaskRepository(
       // TODO(rz): So janky and bad.
       task.refresh(true)
     }
+    changeFeed.publish(task.id)
 
     return task
   }
 
   fun updateSagaIds(task: Task) {
-    return withPool(poolName) {
+    withPool(poolName) {
       jooq.transactional { ctx ->
         ctx.update(tasksTable)
           .set(field("saga_ids"), mapper.writeValueAsString(task.sagaIds))
@@ -91,6 +94,7 @@ class SqlTaskRepository(
           .execute()
       }
     }
+    changeFeed.publish(task.id)
   }
 
   override fun get(id: String): Task? {
@@ -157,6 +161,7 @@ class SqlTaskRepository(
         }
       }
     }
+    changeFeed.publish(task.id)
   }
 
   internal fun updateCurrentStatus(task: Task, phase: String, status: String) {
@@ -167,6 +172,7 @@ class SqlTaskRepository(
         addToHistory(ctx, historyId, task.id, state?.state ?: STARTED, phase, status.take(MAX_STATUS_LENGTH))
       }
     }
+    changeFeed.publish(task.id)
   }
 
   private fun addToHistory(ctx: DSLContext, id: String, taskId: String, state: TaskState, phase: String, status: String) {
@@ -188,6 +194,7 @@ class SqlTaskRepository(
         }
       }
     }
+    changeFeed.publish(task.id)
   }
 
   internal fun retrieveInternal(taskId: String): Task? {
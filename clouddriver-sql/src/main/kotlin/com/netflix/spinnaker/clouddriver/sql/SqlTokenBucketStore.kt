@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.sql
+
+import com.netflix.spinnaker.clouddriver.core.limits.TokenBucketStore
+import java.time.Clock
+import kotlin.math.floor
+import kotlin.math.min
+import org.jooq.DSLContext
+import org.jooq.Record2
+import org.jooq.impl.DSL
+import org.jooq.impl.DSL.field
+import org.jooq.impl.DSL.table
+
+/**
+ * Keeps each bucket as a row of its remaining tokens and the time it was last refilled, updated under a row lock.
+ *
+ * Transactions are not retried: a failure is surfaced immediately so that the caller can fall back to throttling
+ * locally.
+ */
+class SqlTokenBucketStore(
+  private val jooq: DSLContext,
+  private val clock: Clock
+) : TokenBucketStore {
+
+  override fun take(bucket: String, permitsPerSecond: Double, capacity: Long, permits: Long): Long {
+    val now = clock.millis()
+
+    return jooq.transactionResult { configuration ->
+      val ctx = DSL.using(configuration)
+
+      // locking an existing row first, as the shared lock an ignored insert takes deadlocks concurrent takes
+      val record = ctx.selectBucketForUpdate(bucket) ?: run {
+        ctx.insertInto(bucketsTable, bucketField, tokensField, refilledAtField)
+          .values(bucket, capacity.toDouble(), now)
+          .onDuplicateKeyIgnore()
+          .execute()
+        ctx.selectBucketForUpdate(bucket)!!
+      }
+
+      var tokens = record.value1()
+      var refilledAt = record.value2()
+      if (now > refilledAt) {
+        tokens = min(capacity.toDouble(), tokens + (now - refilledAt) * permitsPerSecond / 1000)
+        refilledAt = now
+      }
+      val taken = min(permits, floor(tokens).toLong())
+
+      ctx.update(bucketsTable)
+        .set(tokensField, tokens - taken)
+        .set(refilledAtField, refilledAt)
+        .where(bucketField.eq(bucket))
+        .execute()
+
+      taken
+    }
+  }
+
+  private fun DSLContext.selectBucketForUpdate(bucket: String): Record2<Double, Long>? =
+    select(tokensField, refilledAtField)
+      .from(bucketsTable)
+      .where(bucketField.eq(bucket))
+      .forUpdate()
+      .fetchOne()
+
+  companion object {
+    private val bucketsTable = table("rate_limit_buckets")
+    private val bucketField = field("bucket", String::class.java)
+    private val tokensField = field("tokens", Double::class.java)
+    private val refilledAtField = field("refilled_at", Long::class.java)
+  }
+}
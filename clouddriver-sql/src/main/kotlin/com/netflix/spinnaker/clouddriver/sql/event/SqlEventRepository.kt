@@ -18,6 +18,7 @@ package com.netflix.spinnaker.clouddriver.sql.event
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.netflix.spectator.api.Registry
 import com.netflix.spinnaker.clouddriver.event.Aggregate
+import com.netflix.spinnaker.clouddriver.event.AggregateSnapshot
 import com.netflix.spinnaker.clouddriver.event.CompositeSpinnakerEvent
 import com.netflix.spinnaker.clouddriver.event.EventMetadata
 import com.netflix.spinnaker.clouddriver.event.SpinnakerEvent
@@ -225,6 +226,55 @@ class SqlEventRepository(
     }
   }
 
+  override fun list(aggregateType: String, aggregateId: String, afterSequence: Long): List<SpinnakerEvent> {
+    return withPool(POOL_NAME) {
+      jooq.select().from(EVENTS_TABLE)
+        .where(field("aggregate_type").eq(aggregateType)
+          .and(field("aggregate_id").eq(aggregateId))
+          .and(field("sequence").gt(afterSequence)))
+        .orderBy(field("sequence").asc())
+        .fetchEvents(objectMapper)
+    }
+  }
+
+  override fun saveSnapshot(snapshot: AggregateSnapshot) {
+    val aggregateCondition = field("aggregate_type").eq(snapshot.aggregateType)
+      .and(field("aggregate_id").eq(snapshot.aggregateId))
+    val data = snapshot.toSqlData(objectMapper)
+
+    withPool(POOL_NAME) {
+      jooq.transactional { ctx ->
+        // Only ever move a snapshot forward, a slower writer may be saving an older one
+        val updated = ctx.update(SNAPSHOTS_TABLE)
+          .set(field("sequence"), snapshot.sequence)
+          .set(field("data"), data)
+          .where(aggregateCondition.and(field("sequence", Long::class.java).lt(snapshot.sequence)))
+          .execute()
+
+        if (updated == 0) {
+          ctx.insertInto(SNAPSHOTS_TABLE)
+            .columns(field("aggregate_type"), field("aggregate_id"), field("sequence"), field("data"))
+            .values(snapshot.aggregateType, snapshot.aggregateId, snapshot.sequence, data)
+            .onDuplicateKeyIgnore()
+            .execute()
+        }
+      }
+    }
+  }
+
+  override fun getSnapshot(aggregateType: String, aggregateId: String): AggregateSnapshot? {
+    return withPool(POOL_NAME) {
+      jooq.select(field("sequence", Long::class.java), field("data", String::class.java))
+        .from(SNAPSHOTS_TABLE)
+        .where(field("aggregate_type").eq(aggregateType)
+          .and(field("aggregate_id").eq(aggregateId)))
+        .fetchOne()
+        ?.let {
+          AggregateSnapshot(aggregateType, aggregateId, it.value1(), readSnapshotState(it.value2(), objectMapper))
+        }
+    }
+  }
+
   override fun listAggregates(criteria: ListAggregatesCriteria): EventRepository.ListAggregatesResult {
     // TODO(rz): validate criteria
 
@@ -266,6 +316,7 @@ class SqlEventRepository(
     private val POOL_NAME = ConnectionPools.EVENTS.value
     private val AGGREGATES_TABLE = table("event_aggregates")
     private val EVENTS_TABLE = table("events")
+    private val SNAPSHOTS_TABLE = table("event_snapshots")
 
     private val ulid = ULID()
   }
@@ -18,6 +18,7 @@ package com.netflix.spinnaker.clouddriver.sql.event
 import com.fasterxml.jackson.core.JsonProcessingException
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.netflix.spinnaker.clouddriver.event.Aggregate
+import com.netflix.spinnaker.clouddriver.event.AggregateSnapshot
 import com.netflix.spinnaker.clouddriver.event.CompositeSpinnakerEvent
 import com.netflix.spinnaker.clouddriver.event.EventMetadata
 import com.netflix.spinnaker.clouddriver.event.SpinnakerEvent
@@ -90,19 +91,37 @@ internal fun Select<out Record>.fetchEvents(objectMapper: ObjectMapper): List<Sp
   fetch().intoResultSet().let { rs ->
     mutableListOf<SpinnakerEvent>().apply {
       while (rs.next()) {
-        try {
-          val event = objectMapper.readValue(rs.getString("data"), SpinnakerEvent::class.java).apply {
-            setMetadata(objectMapper.readValue(rs.getString("metadata"), EventMetadata::class.java))
-          }
-          if (event is CompositeSpinnakerEvent) {
-            event.getComposedEvents().forEach {
-              it.setMetadata(event.getMetadata().copy(id = "N/A", sequence = -1))
-            }
-          }
-          add(event)
-        } catch (e: JsonProcessingException) {
-          throw InvalidEventTypeException(e)
+        add(readEvent(rs.getString("data"), rs.getString("metadata"), objectMapper))
+      }
+    }
+  }
+
+/**
+ * Serializes the state of an [AggregateSnapshot], including its metadata, for the `data` column of a snapshot row.
+ */
+internal fun AggregateSnapshot.toSqlData(objectMapper: ObjectMapper): String =
+  objectMapper.writeValueAsString(state)
+
+/**
+ * Converts the `data` column of a snapshot row back into the state of an [AggregateSnapshot].
+ */
+internal fun readSnapshotState(data: String, objectMapper: ObjectMapper): SpinnakerEvent =
+  try {
+    objectMapper.readValue(data, SpinnakerEvent::class.java)
+  } catch (e: JsonProcessingException) {
+    throw InvalidEventTypeException(e)
+  }
+
+private fun readEvent(data: String, metadata: String, objectMapper: ObjectMapper): SpinnakerEvent =
+  try {
+    objectMapper.readValue(data, SpinnakerEvent::class.java).apply {
+      setMetadata(objectMapper.readValue(metadata, EventMetadata::class.java))
+      if (this is CompositeSpinnakerEvent) {
+        getComposedEvents().forEach {
+          it.setMetadata(getMetadata().copy(id = "N/A", sequence = -1))
         }
       }
     }
+  } catch (e: JsonProcessingException) {
+    throw InvalidEventTypeException(e)
   }
@@ -17,11 +17,17 @@ package com.netflix.spinnaker.config
 
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.clouddriver.core.limits.TokenBucketStore
+import com.netflix.spinnaker.clouddriver.data.task.TaskChangeFanout
+import com.netflix.spinnaker.clouddriver.data.task.TaskChangeFeed
+import com.netflix.spinnaker.clouddriver.data.task.TaskChangeFeedProperties
 import com.netflix.spinnaker.clouddriver.data.task.TaskRepository
 import com.netflix.spinnaker.clouddriver.event.persistence.EventRepository
 import com.netflix.spinnaker.clouddriver.sql.SqlProvider
+import com.netflix.spinnaker.clouddriver.sql.SqlTaskChangeFanout
 import com.netflix.spinnaker.clouddriver.sql.SqlTaskCleanupAgent
 import com.netflix.spinnaker.clouddriver.sql.SqlTaskRepository
+import com.netflix.spinnaker.clouddriver.sql.SqlTokenBucketStore
 import com.netflix.spinnaker.clouddriver.sql.event.SqlEventCleanupAgent
 import com.netflix.spinnaker.clouddriver.sql.event.SqlEventRepository
 import com.netflix.spinnaker.kork.jackson.ObjectMapperSubtypeConfigurer
@@ -51,19 +57,32 @@ class SqlConfiguration {
   @ConditionalOnProperty("sql.task-repository.enabled")
   fun sqlTaskRepository(
     jooq: DSLContext,
-    clock: Clock
+    clock: Clock,
+    taskChangeFeed: TaskChangeFeed
   ): TaskRepository =
-    SqlTaskRepository(jooq, ObjectMapper(), clock, ConnectionPools.TASKS.value)
+    SqlTaskRepository(jooq, ObjectMapper(), clock, ConnectionPools.TASKS.value, taskChangeFeed)
 
   @Bean
   @ConditionalOnProperty("sql.task-repository.enabled", "sql.task-repository.secondary.enabled")
   fun secondarySqlTaskRepository(
     jooq: DSLContext,
     clock: Clock,
-    @Value("\${sql.task-repository.secondary.pool-name}") poolName: String
-
+    @Value("\${sql.task-repository.secondary.pool-name}") poolName: String,
+    taskChangeFeed: TaskChangeFeed
   ): TaskRepository =
-    SqlTaskRepository(jooq, ObjectMapper(), clock, poolName)
+    SqlTaskRepository(jooq, ObjectMapper(), clock, poolName, taskChangeFeed)
+
+  @Bean
+  @ConditionalOnExpression(
+    "\${sql.task-repository.enabled:false} && " +
+      "('\${tasks.change-feed.fanout:auto}' == 'sql' || '\${tasks.change-feed.fanout:auto}' == 'auto')"
+  )
+  fun sqlTaskChangeFanout(
+    jooq: DSLContext,
+    clock: Clock,
+    properties: TaskChangeFeedProperties
+  ): TaskChangeFanout =
+    SqlTaskChangeFanout(jooq, clock, properties.pollIntervalMillis, ConnectionPools.TASKS.value)
 
   @Bean
   @ConditionalOnProperty("sql.task-repository.enabled")
@@ -87,6 +106,16 @@ class SqlConfiguration {
   fun sqlProvider(sqlTaskCleanupAgent: SqlTaskCleanupAgent): SqlProvider =
     SqlProvider(mutableListOf(sqlTaskCleanupAgent))
 
+  @Bean
+  @ConditionalOnExpression(
+    "\${rate-limits.distributed.enabled:false} && '\${rate-limits.distributed.backend:redis}' == 'sql'"
+  )
+  fun sqlTokenBucketStore(
+    jooq: DSLContext,
+    clock: Clock
+  ): TokenBucketStore =
+    SqlTokenBucketStore(jooq, clock)
+
   @Bean
   fun sqlEventRepository(
     jooq: DSLContext,
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.sql
+
+import com.netflix.spinnaker.kork.sql.test.SqlTestUtil
+import de.huxhorn.sulky.ulid.ULID
+import dev.minutest.junit.JUnit5Minutests
+import dev.minutest.rootContext
+import io.mockk.every
+import io.mockk.mockk
+import java.time.Clock
+import java.util.function.BiConsumer
+import org.jooq.impl.DSL.field
+import strikt.api.expectThat
+import strikt.assertions.containsExactlyInAnyOrder
+import strikt.assertions.isEmpty
+
+class SqlTaskChangeFanoutTest : JUnit5Minutests {
+
+  fun tests() = rootContext<Fixture> {
+    fixture {
+      Fixture()
+    }
+
+    test("reports the latest state of each task written since the last poll") {
+      addState("1", now + 500)
+      addState("1", now + 1000)
+      addState("2", now + 200)
+
+      subject.poll()
+
+      expectThat(changes).containsExactlyInAnyOrder("1" to now + 1000, "2" to now + 200)
+    }
+
+    test("looks back far enough to see states stamped by a lagging clock") {
+      addState("1", now - 3000)
+      addState("2", now - 10_000)
+
+      subject.poll()
+
+      expectThat(changes).containsExactlyInAnyOrder("1" to now - 3000)
+    }
+
+    test("stops reporting states once later polls have moved past them") {
+      addState("1", now - 3000)
+      subject.poll()
+
+      now += 10_000
+      subject.poll()
+      changes.clear()
+
+      now += 10_000
+      subject.poll()
+
+      expectThat(changes).isEmpty()
+    }
+
+    test("has nothing to broadcast, as every state change is already a row") {
+      subject.broadcast("1", now)
+      subject.poll()
+
+      expectThat(changes).isEmpty()
+    }
+  }
+
+  private inner class Fixture {
+    val database = SqlTestUtil.initTcMysqlDatabase()!!
+
+    var now = 100_000L
+    val clock: Clock = mockk {
+      every { millis() } answers { now }
+    }
+
+    val subject = SqlTaskChangeFanout(database.context, clock, 1000, "default")
+    val changes = mutableListOf<Pair<String, Long>>()
+
+    init {
+      SqlTestUtil.cleanupDb(database.context)
+
+      subject.subscribe(BiConsumer { taskId, version -> changes.add(taskId to version) })
+      // polls are driven by the tests rather than the scheduler
+      subject.close()
+    }
+
+    fun addState(taskId: String, createdAt: Long) {
+      database.context
+        .insertInto(
+          taskStatesTable,
+          listOf(field("id"), field("task_id"), field("created_at"), field("state"), field("phase"), field("status"))
+        )
+        .values(listOf(ULID().nextULID(), taskId, createdAt, "STARTED", "ORCHESTRATION", "running"))
+        .execute()
+    }
+  }
+}
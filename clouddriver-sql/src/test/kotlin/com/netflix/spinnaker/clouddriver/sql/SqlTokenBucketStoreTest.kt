@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.spinnaker.clouddriver.sql
+
+import com.netflix.spinnaker.kork.sql.test.SqlTestUtil
+import dev.minutest.junit.JUnit5Minutests
+import dev.minutest.rootContext
+import io.mockk.every
+import io.mockk.mockk
+import java.time.Clock
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import strikt.api.expectThat
+import strikt.assertions.isEqualTo
+
+class SqlTokenBucketStoreTest : JUnit5Minutests {
+
+  fun tests() = rootContext<Fixture> {
+    fixture {
+      Fixture()
+    }
+
+    test("a new bucket starts out full") {
+      expectThat(subject.take("bucket", 10.0, 20, 5)).isEqualTo(5)
+      expectThat(subject.take("bucket", 10.0, 20, 100)).isEqualTo(15)
+      expectThat(subject.take("bucket", 10.0, 20, 1)).isEqualTo(0)
+    }
+
+    test("refills at the rate, up to the capacity") {
+      subject.take("bucket", 10.0, 20, 20)
+
+      now += 500
+      expectThat(subject.take("bucket", 10.0, 20, 10)).isEqualTo(5)
+
+      now += 10_000
+      expectThat(subject.take("bucket", 10.0, 20, 100)).isEqualTo(20)
+    }
+
+    test("keeps fractions of a permit for the next take") {
+      subject.take("bucket", 10.0, 20, 20)
+
+      now += 50
+      expectThat(subject.take("bucket", 10.0, 20, 1)).isEqualTo(0)
+
+      now += 50
+      expectThat(subject.take("bucket", 10.0, 20, 1)).isEqualTo(1)
+    }
+
+    test("never refills for time that has already been accounted for") {
+      subject.take("bucket", 10.0, 20, 20)
+
+      // a node whose clock is behind takes from the bucket
+      now -= 500
+      expectThat(subject.take("bucket", 10.0, 20, 1)).isEqualTo(0)
+
+      now += 600
+      expectThat(subject.take("bucket", 10.0, 20, 100)).isEqualTo(1)
+    }
+
+    test("concurrent takes never grant more than the bucket holds") {
+      subject.take("bucket", 10.0, 20, 0)
+
+      val executor = Executors.newFixedThreadPool(8)
+      try {
+        val taken = executor
+          .invokeAll((1..40).map { Callable { subject.take("bucket", 10.0, 20, 1) } })
+          .map { it.get() }
+          .sum()
+
+        expectThat(taken).isEqualTo(20)
+      } finally {
+        executor.shutdown()
+      }
+    }
+
+    test("buckets are independent") {
+      subject.take("bucket", 10.0, 20, 20)
+
+      expectThat(subject.take("other", 10.0, 20, 5)).isEqualTo(5)
+    }
+  }
+
+  private inner class Fixture {
+    val database = SqlTestUtil.initTcMysqlDatabase()!!
+
+    var now = 1000L
+    val clock: Clock = mockk {
+      every { millis() } answers { now }
+    }
+
+    val subject = SqlTokenBucketStore(database.context, clock)
+
+    init {
+      SqlTestUtil.cleanupDb(database.context)
+    }
+  }
+}
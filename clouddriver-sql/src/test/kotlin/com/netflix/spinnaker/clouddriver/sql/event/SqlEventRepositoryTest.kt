@@ -20,6 +20,8 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
 import com.fasterxml.jackson.module.kotlin.KotlinModule
 import com.netflix.spectator.api.NoopRegistry
 import com.netflix.spinnaker.clouddriver.event.AbstractSpinnakerEvent
+import com.netflix.spinnaker.clouddriver.event.AggregateSnapshot
+import com.netflix.spinnaker.clouddriver.event.EventMetadata
 import com.netflix.spinnaker.clouddriver.event.exceptions.AggregateChangeRejectedException
 import com.netflix.spinnaker.clouddriver.event.persistence.EventRepository.ListAggregatesCriteria
 import com.netflix.spinnaker.clouddriver.event.persistence.EventRepository.ListAggregatesResult
@@ -98,6 +100,53 @@ class SqlEventRepositoryTest : JUnit5Minutests {
             .containsExactly(1, 2, 3, 4)
       }
 
+      context("snapshots") {
+        fun Fixture.snapshot(sequence: Long, vararg values: String): AggregateSnapshot {
+          val events = subject.list("agg", "1").filterIsInstance<MyEvent>().filter { it.value in values }
+          val state = MyState(events).apply {
+            setMetadata(EventMetadata("state", "agg", "1", sequence, 0))
+          }
+          return AggregateSnapshot("agg", "1", sequence, state)
+        }
+
+        test("the state is read back with its metadata and the events after it") {
+          subject.save("agg", "1", 0, listOf(MyEvent("one"), MyEvent("two")))
+          subject.saveSnapshot(snapshot(2, "one", "two"))
+          subject.save("agg", "1", 1, listOf(MyEvent("three")))
+
+          val snapshot = subject.getSnapshot("agg", "1")
+          expectThat(snapshot)
+            .isNotNull()
+            .and {
+              get { sequence }.isEqualTo(2L)
+              get { state }.isA<MyState>().and {
+                get { getMetadata().sequence }.isEqualTo(2L)
+                get { events.map { it.value } }.containsExactly("one", "two")
+                get { events.map { it.getMetadata().sequence } }.containsExactly(1L, 2L)
+              }
+            }
+          expectThat(subject.list("agg", "1", snapshot!!.sequence))
+            .get { map { (it as MyEvent).value } }
+            .containsExactly("three")
+        }
+
+        test("an older snapshot does not replace a newer one") {
+          subject.save("agg", "1", 0, listOf(MyEvent("one"), MyEvent("two")))
+          subject.saveSnapshot(snapshot(2, "one", "two"))
+          subject.saveSnapshot(snapshot(1, "one"))
+
+          expectThat(subject.getSnapshot("agg", "1"))
+            .isNotNull()
+            .get { sequence }.isEqualTo(2L)
+        }
+
+        test("there is no snapshot until one is saved") {
+          subject.save("agg", "1", 0, listOf(MyEvent("one")))
+
+          expectThat(subject.getSnapshot("agg", "1")).isNull()
+        }
+      }
+
       context("listing aggregates") {
         fun Fixture.setupAggregates() {
           subject.save("foo", "1", 0, listOf(MyEvent("hi foo")))
@@ -201,7 +250,7 @@ class SqlEventRepositoryTest : JUnit5Minutests {
       serviceVersion = serviceVersion,
       objectMapper = ObjectMapper().apply {
         registerModules(KotlinModule(), JavaTimeModule())
-        registerSubtypes(MyEvent::class.java)
+        registerSubtypes(MyEvent::class.java, MyState::class.java)
       },
       applicationEventPublisher = applicationEventPublisher,
       registry = NoopRegistry()
@@ -217,4 +266,9 @@ class SqlEventRepositoryTest : JUnit5Minutests {
   private class MyEvent(
     val value: String
   ) : AbstractSpinnakerEvent()
+
+  @JsonTypeName("myState")
+  private class MyState(
+    val events: List<MyEvent>
+  ) : AbstractSpinnakerEvent()
 }
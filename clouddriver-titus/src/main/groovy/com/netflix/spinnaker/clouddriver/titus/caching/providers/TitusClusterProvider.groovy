@@ -17,6 +17,7 @@
 package com.netflix.spinnaker.clouddriver.titus.caching.providers
 
 import com.fasterxml.jackson.databind.ObjectMapper
+import com.google.common.collect.Iterators
 import com.netflix.spinnaker.cats.cache.Cache
 import com.netflix.spinnaker.cats.cache.CacheData
 import com.netflix.spinnaker.cats.cache.CacheFilter
@@ -41,6 +42,7 @@ import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.stereotype.Component
 
 import javax.inject.Provider
+import java.util.stream.Stream
 
 import static com.netflix.spinnaker.clouddriver.core.provider.agent.Namespace.HEALTH
 import static com.netflix.spinnaker.clouddriver.titus.caching.Keys.Namespace.*
@@ -48,6 +50,8 @@ import static com.netflix.spinnaker.clouddriver.titus.caching.Keys.Namespace.*
 @Component
 class TitusClusterProvider implements ClusterProvider<TitusCluster>, ServerGroupProvider {
 
+  private static final int CLUSTER_TRANSLATION_BATCH_SIZE = 500
+
   private final TitusCloudProvider titusCloudProvider
   private final Cache cacheView
   private final TitusCachingProvider titusCachingProvider
@@ -81,8 +85,16 @@ class TitusClusterProvider implements ClusterProvider<TitusCluster>, ServerGroup
    */
   @Override
   Map<String, Set<TitusCluster>> getClusters() {
-    Collection<CacheData> clusterData = cacheView.getAll(CLUSTERS.ns)
-    Collection<TitusCluster> clustersList = translateClusters(clusterData, false)
+    // translate clusters a batch at a time rather than holding every cluster's CacheData at once
+    Collection<TitusCluster> clustersList = []
+    Stream<CacheData> clusterData = cacheView.streamAll(CLUSTERS.ns)
+    try {
+      Iterators.partition(clusterData.iterator(), CLUSTER_TRANSLATION_BATCH_SIZE).each { List<CacheData> batch ->
+        clustersList.addAll(translateClusters(batch, false))
+      }
+    } finally {
+      clusterData.close()
+    }
     Map<String, Set<TitusCluster>> clusters = clustersList.groupBy {
       it.accountName
     }.collectEntries { k, v -> [k, new HashSet(v)] }
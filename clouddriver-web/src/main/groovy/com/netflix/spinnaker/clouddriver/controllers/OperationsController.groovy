@@ -18,6 +18,8 @@ package com.netflix.spinnaker.clouddriver.controllers
 
 import com.fasterxml.jackson.annotation.JsonProperty
 import com.netflix.spinnaker.clouddriver.data.task.Task
+import com.netflix.spinnaker.clouddriver.data.task.TaskChangeFeed
+import com.netflix.spinnaker.clouddriver.data.task.TaskChangeFeedProperties
 import com.netflix.spinnaker.clouddriver.data.task.TaskRepository
 import com.netflix.spinnaker.clouddriver.orchestration.AtomicOperation
 import com.netflix.spinnaker.clouddriver.orchestration.OperationsService
@@ -32,10 +34,12 @@ import org.springframework.web.bind.annotation.PostMapping
 import org.springframework.web.bind.annotation.RequestBody
 import org.springframework.web.bind.annotation.RequestParam
 import org.springframework.web.bind.annotation.RestController
+import org.springframework.web.context.request.async.DeferredResult
 
 import javax.annotation.Nonnull
 import javax.annotation.Nullable
 import javax.annotation.PreDestroy
+import java.util.concurrent.CompletableFuture
 import java.util.concurrent.TimeUnit
 
 import static java.lang.String.format
@@ -47,16 +51,22 @@ class OperationsController {
   private final OperationsService operationsService
   private final OrchestrationProcessor orchestrationProcessor
   private final TaskRepository taskRepository
+  private final TaskChangeFeed taskChangeFeed
+  private final TaskChangeFeedProperties taskChangeFeedProperties
   private final long shutdownWaitSeconds
 
   OperationsController(
     OperationsService operationsService,
     OrchestrationProcessor orchestrationProcessor,
     TaskRepository taskRepository,
+    TaskChangeFeed taskChangeFeed,
+    TaskChangeFeedProperties taskChangeFeedProperties,
     @Value('${admin.tasks.shutdown-wait-seconds:600}') long shutdownWaitSeconds) {
     this.operationsService = operationsService
     this.orchestrationProcessor = orchestrationProcessor
     this.taskRepository = taskRepository
+    this.taskChangeFeed = taskChangeFeed
+    this.taskChangeFeedProperties = taskChangeFeedProperties
     this.shutdownWaitSeconds = shutdownWaitSeconds
   }
 /**
@@ -112,6 +122,35 @@ class OperationsController {
     return t
   }
 
+  /**
+   * Long-poll for a change to a task, as a cheaper alternative to polling /task/{id}.
+   *
+   * Responds as soon as the task's version is greater than {@code since}, or with {@code changed: false} once
+   * {@code waitMs} (capped at tasks.change-feed.max-wait-millis) has passed. Callers pass the version of the previous
+   * response as the next {@code since}.
+   */
+  @GetMapping("/task/{id}/changes")
+  DeferredResult<TaskChangeResult> awaitChange(
+    @PathVariable("id") String id,
+    @RequestParam(value = "since", defaultValue = "0") long since,
+    @RequestParam(value = "waitMs", required = false) Long waitMs) {
+    long maxWaitMillis = taskChangeFeedProperties.maxWaitMillis
+    long timeout = Math.max(1L, Math.min(waitMs ?: maxWaitMillis, maxWaitMillis))
+
+    DeferredResult<TaskChangeResult> result = new DeferredResult<>(timeout)
+    CompletableFuture<Long> change = taskChangeFeed.awaitChange(id, since)
+    result.onTimeout {
+      result.setResult(new TaskChangeResult(id, taskChangeFeed.getVersion(id), false))
+    }
+    result.onCompletion {
+      change.cancel(false)
+    }
+    change.thenAccept { Long version ->
+      result.setResult(new TaskChangeResult(id, version, true))
+    }
+    return result
+  }
+
   @GetMapping("/task")
   List<Task> list() {
     taskRepository.list()
@@ -170,6 +209,18 @@ class OperationsController {
     return new StartOperationResult(task.getId());
   }
 
+  static class TaskChangeResult {
+    @JsonProperty final String id
+    @JsonProperty final long version
+    @JsonProperty final boolean changed
+
+    TaskChangeResult(String id, long version, boolean changed) {
+      this.id = id
+      this.version = version
+      this.changed = changed
+    }
+  }
+
   static class StartOperationResult {
     @JsonProperty private final String id
 
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.controllers.admin;
+
+import com.netflix.spinnaker.cats.agent.SchedulerTelemetryStore;
+import com.netflix.spinnaker.cats.agent.SchedulerTelemetryStore.AgentStats;
+import com.netflix.spinnaker.cats.agent.SchedulerTelemetryStore.SchedulerStats;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/** Latest scheduling telemetry recorded by the agent schedulers on this instance. */
+@RestController
+@RequestMapping("/admin/scheduling")
+public class AgentSchedulingAdminController {
+
+  @RequestMapping(value = "/schedulers", method = RequestMethod.GET)
+  Collection<SchedulerStats> schedulers() {
+    return SchedulerTelemetryStore.getStore().listSchedulers();
+  }
+
+  /** Agents sorted by how long they last waited to run, longest first. */
+  @RequestMapping(value = "/agents", method = RequestMethod.GET)
+  List<AgentStats> agents(
+      @RequestParam(name = "provider", required = false) String provider,
+      @RequestParam(name = "limit", defaultValue = "1000") int limit) {
+    return SchedulerTelemetryStore.getStore().listAgents().stream()
+        .filter(a -> provider == null || provider.equals(a.getProviderName()))
+        .sorted(
+            Comparator.comparing(
+                AgentStats::getLastQueueWaitMs, Comparator.nullsLast(Comparator.reverseOrder())))
+        .limit(limit)
+        .collect(Collectors.toList());
+  }
+}